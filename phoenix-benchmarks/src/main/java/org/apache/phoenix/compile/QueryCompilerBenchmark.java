@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.jdbc.ConnectionlessState;
+import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
+import org.apache.phoenix.parse.BindableStatement;
+import org.apache.phoenix.parse.SQLParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing a query, compiling it with the QueryCompiler and WhereOptimizer, and choosing
+ * the plan to run among the data table and its index with the QueryOptimizer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class QueryCompilerBenchmark {
+
+  @Param({ "POINT", "RANGE", "IN_LIST", "AGGREGATE", "INDEX" })
+  private String queryType;
+
+  private String sql;
+  private PhoenixPreparedStatement statement;
+
+  @Setup(Level.Trial)
+  public void setup(ConnectionlessState state) throws SQLException {
+    String table = ConnectionlessState.TABLE_NAME;
+    switch (queryType) {
+      case "POINT":
+        sql = "SELECT A, B, S FROM " + table
+          + " WHERE TENANT_ID = ? AND ENTITY_ID = ? AND CREATED_DATE = ?";
+        break;
+      case "RANGE":
+        sql = "SELECT * FROM " + table
+          + " WHERE TENANT_ID = ? AND ENTITY_ID > ? AND ENTITY_ID < ? AND B > 10 LIMIT 100";
+        break;
+      case "IN_LIST":
+        sql = "SELECT A, S FROM " + table
+          + " WHERE TENANT_ID IN ('t1', 't2', 't3') AND ENTITY_ID IN ('e1', 'e2', 'e3', 'e4')"
+          + " ORDER BY CREATED_DATE DESC";
+        break;
+      case "AGGREGATE":
+        sql = "SELECT ENTITY_ID, COUNT(*), SUM(B), MAX(C) FROM " + table
+          + " WHERE TENANT_ID = 'tenant' GROUP BY ENTITY_ID HAVING COUNT(*) > 1";
+        break;
+      case "INDEX":
+        sql = "SELECT S FROM " + table + " WHERE A = 5";
+        break;
+      default:
+        throw new IllegalArgumentException(queryType);
+    }
+    statement =
+      state.getConnection().prepareStatement(sql).unwrap(PhoenixPreparedStatement.class);
+    for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+      if (i == 3 && "POINT".equals(queryType)) {
+        statement.setDate(i, new java.sql.Date(0));
+      } else {
+        statement.setString(i, "value" + i);
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws SQLException {
+    statement.close();
+  }
+
+  @Benchmark
+  public BindableStatement parse() throws SQLException {
+    return new SQLParser(sql).parseStatement();
+  }
+
+  @Benchmark
+  public QueryPlan compile() throws SQLException {
+    return statement.compileQuery();
+  }
+
+  @Benchmark
+  public QueryPlan compileAndOptimize() throws SQLException {
+    return statement.optimizeQuery();
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.expression.function.SumAggregateFunction;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.types.PLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the GroupByCache implementations an unordered group by can be configured with, by
+ * aggregating COUNT and SUM over rows spread across a number of groups and then draining the
+ * groups through the cache scanner, the way UnorderedGroupByRegionScanner uses them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GroupByCacheBenchmark {
+  private static final int ROWS_PER_GROUP = 4;
+
+  @Param({ "inMemory", "spillable", "sortSpill", "openAddressing" })
+  private String cacheType;
+
+  @Param({ "1000", "100000" })
+  private int groupCount;
+
+  private RegionCoprocessorEnvironment env;
+  private RegionScanner scanner;
+  private ServerAggregators aggregators;
+  private ImmutableBytesPtr[] groupKeys;
+  private ImmutableBytesPtr[] rowKeys;
+  private ImmutableBytesPtr[] values;
+
+  /**
+   * Stub whose only behavior is to hand out the configuration, the caches do not call anything
+   * else on the environment or on the scanner they wrap.
+   */
+  private static <T> T stub(Class<T> type, final Configuration conf) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+      new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+          if ("getConfiguration".equals(method.getName())) {
+            return conf;
+          }
+          return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+        }
+      }));
+  }
+
+  @Setup
+  public void setup() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setBoolean(QueryServices.GROUPBY_OPEN_ADDRESSING_ENABLED_ATTRIB,
+      "openAddressing".equals(cacheType));
+    conf.setBoolean(QueryServices.GROUPBY_SPILLABLE_ATTRIB,
+      "spillable".equals(cacheType) || "sortSpill".equals(cacheType));
+    conf.set(QueryServices.GROUPBY_SPILL_STRATEGY_ATTRIB,
+      "sortSpill".equals(cacheType) ? "SORT" : "HASH");
+    env = stub(RegionCoprocessorEnvironment.class, conf);
+    scanner = stub(RegionScanner.class, conf);
+
+    List<Expression> child = Collections.<Expression> singletonList(
+      LiteralExpression.newConstant(1L, PLong.INSTANCE));
+    List<SingleAggregateFunction> functions = Arrays.<SingleAggregateFunction> asList(
+      new CountAggregateFunction(child), new SumAggregateFunction(child));
+    aggregators =
+      ServerAggregators.deserialize(ServerAggregators.serialize(functions, 1), conf, null);
+
+    // Rows visit the groups in a scattered order, as they would for an unordered group by
+    int rowCount = groupCount * ROWS_PER_GROUP;
+    groupKeys = new ImmutableBytesPtr[rowCount];
+    rowKeys = new ImmutableBytesPtr[rowCount];
+    values = new ImmutableBytesPtr[rowCount];
+    for (int row = 0; row < rowCount; row++) {
+      int group = (int) ((row * 7919L) % groupCount);
+      groupKeys[row] = new ImmutableBytesPtr(Bytes.toBytes(String.format("group%08d", group)));
+      rowKeys[row] = new ImmutableBytesPtr(Bytes.toBytes(String.format("row%010d", row)));
+      values[row] = new ImmutableBytesPtr(PLong.INSTANCE.toBytes((long) row));
+    }
+  }
+
+  @Benchmark
+  public int aggregateAndScan() throws IOException {
+    GroupByCache cache = GroupedAggregateRegionObserver.GroupByCacheFactory.INSTANCE
+      .newCache(env, null, null, aggregators, groupCount, false);
+    for (int row = 0; row < groupKeys.length; row++) {
+      Aggregator[] rowAggregators = cache.cache(groupKeys[row]);
+      for (Aggregator aggregator : rowAggregators) {
+        aggregator.aggregate(null, values[row]);
+      }
+      cache.cacheAggregateRowKey(groupKeys[row], rowKeys[row]);
+    }
+    int cellCount = 0;
+    List<Cell> results = new ArrayList<>();
+    try (RegionScanner groupScanner = cache.getScanner(scanner)) {
+      boolean hasMore;
+      do {
+        results.clear();
+        hasMore = groupScanner.next(results);
+        cellCount += results.size();
+      } while (hasMore);
+    }
+    return cellCount;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures splitting the mutations of a commit into batches bounded by row count and size with
+ * MutationState.getMutationBatchList.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MutationBatchBenchmark {
+  private static final byte[] FAMILY = Bytes.toBytes("0");
+
+  @Param({ "1000", "100000" })
+  private int mutationCount;
+
+  @Param({ "100", "1000" })
+  private int batchSize;
+
+  @Param({ "2097152" })
+  private long batchSizeBytes;
+
+  @Param({ "4" })
+  private int columnCount;
+
+  private List<Mutation> mutations;
+
+  @Setup
+  public void setup() {
+    mutations = new ArrayList<>(mutationCount);
+    for (int i = 0; i < mutationCount; i++) {
+      Put put = new Put(Bytes.toBytes(String.format("row%010d", i)));
+      for (int c = 0; c < columnCount; c++) {
+        put.addColumn(FAMILY, Bytes.toBytes("C" + c), Bytes.toBytes("value" + i));
+      }
+      mutations.add(put);
+    }
+  }
+
+  @Benchmark
+  public List<List<Mutation>> getMutationBatchList() {
+    return MutationState.getMutationBatchList(batchSize, batchSizeBytes, mutations);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.ColumnProjector;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.jdbc.ConnectionlessState;
+import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PChar;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures evaluating compiled expressions against a row, the work done for every row by
+ * projections on the client and by filters and aggregations on the server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionBenchmark {
+  private static final byte[] FAMILY = Bytes.toBytes("0");
+
+  @Param({ "A + 1", "A * 2 + B", "C * 1.5", "A > 10 AND B < 100", "A IN (1, 5, 10, 50, 100)",
+    "S LIKE 'val%'", "SUBSTR(S, 2, 3) || ENTITY_ID", "UPPER(S)",
+    "CASE WHEN A > B THEN 'greater' ELSE 'lesser' END", "COALESCE(A, 0) + LENGTH(S)",
+    "TO_CHAR(CREATED_DATE)" })
+  private String expressionSql;
+
+  private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+  private Expression expression;
+  private Tuple tuple;
+
+  @Setup
+  public void setup(ConnectionlessState state) throws SQLException {
+    try (PhoenixPreparedStatement statement = state.getConnection()
+      .prepareStatement("SELECT " + expressionSql + " FROM " + ConnectionlessState.TABLE_NAME)
+      .unwrap(PhoenixPreparedStatement.class)) {
+      QueryPlan plan = statement.compileQuery();
+      ColumnProjector projector = plan.getProjector().getColumnProjector(0);
+      expression = projector.getExpression();
+    }
+    PTable table = state.getTable();
+    table.newKey(ptr,
+      new byte[][] { PChar.INSTANCE.toBytes("tenant000000001"),
+        PVarchar.INSTANCE.toBytes("entity-0123456789"),
+        PDate.INSTANCE.toBytes(new Date(1700000000000L)) });
+    byte[] row = ptr.copyBytes();
+    // Cells must be sorted by qualifier, as they would be in a Result
+    List<Cell> cells = new ArrayList<>();
+    cells.add(new KeyValue(row, FAMILY, Bytes.toBytes("A"), PInteger.INSTANCE.toBytes(42)));
+    cells.add(new KeyValue(row, FAMILY, Bytes.toBytes("B"), PLong.INSTANCE.toBytes(7L)));
+    cells.add(new KeyValue(row, FAMILY, Bytes.toBytes("C"),
+      PDecimal.INSTANCE.toBytes(new BigDecimal("1234.56"))));
+    cells.add(new KeyValue(row, FAMILY, Bytes.toBytes("S"),
+      PVarchar.INSTANCE.toBytes("value of the string column")));
+    tuple = new MultiKeyValueTuple(cells);
+  }
+
+  @Benchmark
+  public int evaluate() {
+    expression.reset();
+    return expression.evaluate(tuple, ptr) ? ptr.getLength() : -1;
+  }
+}
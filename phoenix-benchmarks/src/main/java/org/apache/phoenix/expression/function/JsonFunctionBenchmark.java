@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.schema.types.PJson;
+import org.apache.phoenix.schema.types.PVarbinary;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures evaluating the JSON and BSON functions with a constant path against a stored document,
+ * with the field being looked up placed after a varying number of other fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonFunctionBenchmark {
+
+  @Param({ "JSON_VALUE", "JSON_QUERY", "JSON_EXISTS", "BSON_VALUE" })
+  private String function;
+
+  // Number of fields preceding the one that is looked up
+  @Param({ "10", "100", "1000" })
+  private int fieldCount;
+
+  private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+  private Expression expression;
+
+  @Setup
+  public void setup() throws SQLException {
+    StringBuilder json = new StringBuilder("{");
+    for (int i = 0; i < fieldCount; i++) {
+      json.append("\"field").append(i).append("\": {\"id\": ").append(i)
+        .append(", \"name\": \"name").append(i).append("\", \"values\": [1, 2, 3]}, ");
+    }
+    json.append("\"info\": {\"address\": {\"town\": \"Bristol\", \"country\": \"UK\"}, ")
+      .append("\"tags\": [\"Sport\", \"Water polo\"]}}");
+    byte[] document = PJson.INSTANCE.toBytes(PJson.INSTANCE.toObject(json.toString()));
+    Expression documentExpression = LiteralExpression.newConstant(document, PVarbinary.INSTANCE);
+
+    List<Expression> children;
+    switch (function) {
+      case "JSON_VALUE":
+        children = Arrays.asList(documentExpression,
+          LiteralExpression.newConstant("$.info.address.town", PVarchar.INSTANCE));
+        expression = new JsonValueFunction(children);
+        break;
+      case "JSON_QUERY":
+        children = Arrays.asList(documentExpression,
+          LiteralExpression.newConstant("$.info.tags", PVarchar.INSTANCE));
+        expression = new JsonQueryFunction(children);
+        break;
+      case "JSON_EXISTS":
+        children = Arrays.asList(documentExpression,
+          LiteralExpression.newConstant("$.info.address.country", PVarchar.INSTANCE));
+        expression = new JsonExistsFunction(children);
+        break;
+      case "BSON_VALUE":
+        children = Arrays.asList(documentExpression,
+          LiteralExpression.newConstant("info.address.town", PVarchar.INSTANCE),
+          LiteralExpression.newConstant("VARCHAR", PVarchar.INSTANCE),
+          LiteralExpression.newConstant(null, PVarchar.INSTANCE));
+        expression = new BsonValueFunction(children);
+        break;
+      default:
+        throw new IllegalArgumentException(function);
+    }
+  }
+
+  @Benchmark
+  public int evaluate() {
+    return expression.evaluate(null, ptr) ? ptr.getLength() : -1;
+  }
+}
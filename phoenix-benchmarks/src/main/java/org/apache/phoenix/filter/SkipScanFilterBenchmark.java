@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.jdbc.ConnectionlessState;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PChar;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a SkipScanFilter navigating a sorted region of rows the way a region scanner drives
+ * it: every cell is offered to the filter and the scanner seeks to the hint the filter returns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SkipScanFilterBenchmark {
+  private static final int TENANT_COUNT = 16;
+  private static final int ENTITY_COUNT = 1000;
+  private static final int DATE_COUNT = 4;
+  private static final byte[] FAMILY = Bytes.toBytes("0");
+  private static final byte[] QUALIFIER = Bytes.toBytes("A");
+
+  // Number of tenants and of entity ranges in the skip scan
+  @Param({ "1", "4", "16" })
+  private int keyCount;
+
+  private SkipScanFilter filter;
+  private byte[][] rows;
+  private Cell[] cells;
+
+  private static byte[] tenantId(int i) {
+    return PChar.INSTANCE.toBytes(String.format("tenant%09d", i));
+  }
+
+  private static byte[] entityId(int i) {
+    return PVarchar.INSTANCE.toBytes(String.format("entity%06d", i));
+  }
+
+  @Setup
+  public void setup(ConnectionlessState state) throws SQLException {
+    PTable table = state.getTable();
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    rows = new byte[TENANT_COUNT * ENTITY_COUNT * DATE_COUNT][];
+    cells = new Cell[rows.length];
+    int n = 0;
+    for (int t = 0; t < TENANT_COUNT; t++) {
+      for (int e = 0; e < ENTITY_COUNT; e++) {
+        for (int d = 0; d < DATE_COUNT; d++) {
+          table.newKey(ptr, new byte[][] { tenantId(t), entityId(e),
+            PDate.INSTANCE.toBytes(new Date(d * 1000L)) });
+          rows[n] = ptr.copyBytes();
+          cells[n] = new KeyValue(rows[n], FAMILY, QUALIFIER, Bytes.toBytes(n));
+          n++;
+        }
+      }
+    }
+    KeyRange[] tenants = new KeyRange[keyCount];
+    KeyRange[] entities = new KeyRange[keyCount];
+    int tenantStep = TENANT_COUNT / keyCount;
+    int entityStep = ENTITY_COUNT / keyCount;
+    for (int i = 0; i < keyCount; i++) {
+      byte[] tenantId = tenantId(i * tenantStep);
+      tenants[i] = PChar.INSTANCE.getKeyRange(tenantId, true, tenantId, true, SortOrder.ASC);
+      entities[i] = PVarchar.INSTANCE.getKeyRange(entityId(i * entityStep), true,
+        entityId(i * entityStep + entityStep / 4), false, SortOrder.ASC);
+    }
+    List<List<KeyRange>> slots = Arrays.asList(Arrays.asList(tenants), Arrays.asList(entities));
+    filter = new SkipScanFilter(slots, table.getRowKeySchema());
+  }
+
+  @Benchmark
+  public int scan() {
+    SkipScanFilter skipScan = new SkipScanFilter(filter, false);
+    int included = 0;
+    int i = 0;
+    while (i < cells.length && !skipScan.filterAllRemaining()) {
+      ReturnCode code = skipScan.filterCell(cells[i]);
+      if (code == ReturnCode.SEEK_NEXT_USING_HINT) {
+        i = seek(skipScan.getNextCellHint(cells[i]), i + 1);
+      } else {
+        if (code != ReturnCode.NEXT_ROW && code != ReturnCode.SKIP) {
+          included++;
+        }
+        i++;
+      }
+    }
+    return included;
+  }
+
+  private int seek(Cell hint, int from) {
+    if (hint == null) {
+      return cells.length;
+    }
+    byte[] row = Arrays.copyOfRange(hint.getRowArray(), hint.getRowOffset(),
+      hint.getRowOffset() + hint.getRowLength());
+    int i = Arrays.binarySearch(rows, from, rows.length, row, Bytes.BYTES_COMPARATOR);
+    return i < 0 ? -(i + 1) : i;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.jdbc;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Connection to in-memory query services, which keep the metadata of the tables created through
+ * them without a cluster, so that benchmarks can compile statements and build row keys offline.
+ */
+@State(Scope.Benchmark)
+public class ConnectionlessState {
+  public static final String URL = PhoenixRuntime.JDBC_PROTOCOL
+    + PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR + PhoenixRuntime.CONNECTIONLESS;
+  public static final String TABLE_NAME = "BENCH";
+  public static final String INDEX_NAME = "BENCH_IDX";
+
+  private PhoenixConnection connection;
+
+  @Setup
+  public void setup() throws SQLException {
+    connection = DriverManager.getConnection(URL).unwrap(PhoenixConnection.class);
+    connection.createStatement().execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+      + " (TENANT_ID CHAR(15) NOT NULL, ENTITY_ID VARCHAR NOT NULL, CREATED_DATE DATE NOT NULL,"
+      + " A INTEGER, B BIGINT, C DECIMAL(10,2), S VARCHAR"
+      + " CONSTRAINT PK PRIMARY KEY (TENANT_ID, ENTITY_ID, CREATED_DATE))"
+      + " COLUMN_ENCODED_BYTES=0");
+    connection.createStatement().execute(
+      "CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + TABLE_NAME + " (A) INCLUDE (S)");
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    connection.close();
+  }
+
+  public PhoenixConnection getConnection() {
+    return connection;
+  }
+
+  public PTable getTable() throws SQLException {
+    return connection.getTable(TABLE_NAME);
+  }
+}
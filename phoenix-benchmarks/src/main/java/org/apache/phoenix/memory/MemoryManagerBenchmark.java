@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.memory;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of the synchronized GlobalMemoryManager with the ConcurrentMemoryManager
+ * when many threads allocate, grow and free memory chunks at the same time, the way the client
+ * does for spooling and the server does for hash join and group by caches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(32)
+public class MemoryManagerBenchmark {
+  private static final long MAX_MEMORY_BYTES = 1024L * 1024 * 1024;
+
+  @Param({ "global", "concurrent" })
+  private String memoryManagerType;
+
+  @Param({ "1024" })
+  private int chunkSize;
+
+  private MemoryManager memoryManager;
+
+  @Setup
+  public void setup() {
+    if ("concurrent".equals(memoryManagerType)) {
+      memoryManager = new ConcurrentMemoryManager(MAX_MEMORY_BYTES,
+        QueryServicesOptions.DEFAULT_CONCURRENT_MEMORY_MANAGER_RESERVATION_BYTES,
+        QueryServicesOptions.DEFAULT_CONCURRENT_MEMORY_MANAGER_MAX_WAIT_MS);
+    } else {
+      memoryManager = new GlobalMemoryManager(MAX_MEMORY_BYTES);
+    }
+  }
+
+  @Benchmark
+  public long allocateAndClose() {
+    MemoryChunk chunk = memoryManager.allocate(chunkSize);
+    long size = chunk.getSize();
+    chunk.close();
+    return size;
+  }
+
+  @Benchmark
+  public long allocateResizeAndClose() {
+    MemoryChunk chunk = memoryManager.allocate(chunkSize / 2, chunkSize);
+    chunk.resize(chunkSize * 4);
+    chunk.resize(chunkSize);
+    long size = chunk.getSize();
+    chunk.close();
+    return size;
+  }
+}
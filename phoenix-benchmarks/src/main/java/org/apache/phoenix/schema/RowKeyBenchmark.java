@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.jdbc.ConnectionlessState;
+import org.apache.phoenix.schema.types.PChar;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures building the row key of a table with a composite primary key through PTableImpl and
+ * walking its fields back through the RowKeySchema.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RowKeyBenchmark {
+  private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+  private PTable table;
+  private byte[][] pkValues;
+  private byte[] rowKey;
+
+  @Setup
+  public void setup(ConnectionlessState state) throws SQLException {
+    table = state.getTable();
+    pkValues = new byte[][] { PChar.INSTANCE.toBytes("tenant000000001"),
+      PVarchar.INSTANCE.toBytes("entity-0123456789"),
+      PDate.INSTANCE.toBytes(new Date(1700000000000L)) };
+    table.newKey(ptr, pkValues);
+    rowKey = ptr.copyBytes();
+  }
+
+  @Benchmark
+  public int newKey() {
+    return table.newKey(ptr, pkValues);
+  }
+
+  @Benchmark
+  public void iterateKey(Blackhole blackhole) {
+    RowKeySchema schema = table.getRowKeySchema();
+    int maxOffset = schema.iterator(rowKey, ptr);
+    for (int i = 0; i < schema.getFieldCount(); i++) {
+      if (schema.next(ptr, i, maxOffset) != null) {
+        blackhole.consume(ptr.getLength());
+      }
+    }
+  }
+}
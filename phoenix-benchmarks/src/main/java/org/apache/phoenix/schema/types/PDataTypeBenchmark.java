@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.types;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.schema.SortOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encoding values of each data type, scalar and array, to bytes and decoding them back,
+ * in ascending and descending sort order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PDataTypeBenchmark {
+  // Length of sample strings and binaries and number of elements of sample arrays
+  private static final int SAMPLE_LENGTH = 16;
+
+  @Param({ "CHAR", "VARCHAR", "BINARY", "VARBINARY", "TINYINT", "SMALLINT", "INTEGER", "BIGINT",
+    "FLOAT", "DOUBLE", "DECIMAL", "BOOLEAN", "DATE", "TIME", "TIMESTAMP", "UNSIGNED_TINYINT",
+    "UNSIGNED_SMALLINT", "UNSIGNED_INT", "UNSIGNED_LONG", "UNSIGNED_FLOAT", "UNSIGNED_DOUBLE",
+    "UNSIGNED_DATE", "UNSIGNED_TIME", "UNSIGNED_TIMESTAMP", "CHAR ARRAY", "VARCHAR ARRAY",
+    "INTEGER ARRAY", "BIGINT ARRAY", "DOUBLE ARRAY", "DECIMAL ARRAY", "BOOLEAN ARRAY",
+    "TIMESTAMP ARRAY" })
+  private String sqlTypeName;
+
+  @Param({ "ASC", "DESC" })
+  private SortOrder sortOrder;
+
+  private PDataType type;
+  private Object value;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() {
+    type = PDataType.fromSqlTypeName(sqlTypeName);
+    value = type.getSampleValue(SAMPLE_LENGTH, SAMPLE_LENGTH);
+    bytes = type.toBytes(value, sortOrder);
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return type.toBytes(value, sortOrder);
+  }
+
+  @Benchmark
+  public Object decode() {
+    return type.toObject(bytes, 0, bytes.length, type, sortOrder, SAMPLE_LENGTH, null);
+  }
+}
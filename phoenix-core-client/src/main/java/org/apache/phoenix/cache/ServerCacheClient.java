@@ -20,6 +20,7 @@ package org.apache.phoenix.cache;
 import static org.apache.phoenix.monitoring.TaskExecutionMetricsHolder.NO_OP_INSTANCE;
 import static org.apache.phoenix.util.LogUtil.addCustomAnnotations;
 
+import com.google.protobuf.ByteString;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
@@ -51,6 +52,7 @@ import org.apache.phoenix.compat.hbase.ByteStringer;
 import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.compile.ScanRanges;
 import org.apache.phoenix.coprocessor.generated.ServerCacheFactoryProtos;
+import org.apache.phoenix.coprocessor.generated.ServerCachingProtos;
 import org.apache.phoenix.coprocessor.generated.ServerCachingProtos.AddServerCacheRequest;
 import org.apache.phoenix.coprocessor.generated.ServerCachingProtos.AddServerCacheResponse;
 import org.apache.phoenix.coprocessor.generated.ServerCachingProtos.RemoveServerCacheRequest;
@@ -65,10 +67,12 @@ import org.apache.phoenix.memory.InsufficientMemoryException;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
 import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.ConnectionQueryServices.Feature;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.Closeables;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.SQLCloseable;
@@ -370,6 +374,105 @@ public class ServerCacheClient {
     return hashCacheSpec;
   }
 
+  /**
+   * Take a reference on a cache that another query already sent to every region server hosting
+   * the given key ranges, so that the build side does not have to be executed and shipped again.
+   * @return the client-side handle of the shared cache, or null if at least one server does not
+   *         hold the cache or is too old to take a reference on it, in which case any reference
+   *         taken so far has been released again
+   */
+  public ServerCache reuseServerCache(ScanRanges keyRanges, final byte[] cacheId,
+    final ServerCacheFactory cacheFactory, final PTable cacheUsingTable) throws SQLException {
+    ConnectionQueryServices services = connection.getQueryServices();
+    if (!services.supportsFeature(Feature.SERVER_CACHE_REUSE)) {
+      return null;
+    }
+    final ImmutableBytesWritable emptyPtr = new ImmutableBytesWritable(ByteUtil.EMPTY_BYTE_ARRAY);
+    List<Closeable> closeables = new ArrayList<Closeable>();
+    Map<HRegionLocation, Future<Boolean>> futures = new HashMap<HRegionLocation, Future<Boolean>>();
+    Set<HRegionLocation> reused = new HashSet<HRegionLocation>();
+    boolean success = false;
+    SQLException firstException = null;
+    try {
+      int timeoutMs = services.getProps().getInt(QueryServices.THREAD_TIMEOUT_MS_ATTRIB,
+        QueryServicesOptions.DEFAULT_THREAD_TIMEOUT_MS);
+      List<HRegionLocation> locations =
+        services.getAllTableRegions(cacheUsingTable.getPhysicalName().getBytes(), timeoutMs);
+      for (HRegionLocation entry : locations) {
+        byte[] regionStartKey = entry.getRegion().getStartKey();
+        byte[] regionEndKey = entry.getRegion().getEndKey();
+        if (
+          !futures.containsKey(entry) && keyRanges.intersectRegion(regionStartKey, regionEndKey,
+            cacheUsingTable.getIndexType() == IndexType.LOCAL)
+        ) {
+          final byte[] key = getKeyInRegion(regionStartKey);
+          final Table htable = services.getTable(cacheUsingTable.getPhysicalName().getBytes());
+          closeables.add(htable);
+          futures.put(entry, services.getExecutor().submit(new JobCallable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+              return addServerCache(htable, key, cacheUsingTable, cacheId, emptyPtr, cacheFactory,
+                ByteUtil.EMPTY_BYTE_ARRAY, false, true);
+            }
+
+            @Override
+            public Object getJobId() {
+              return ServerCacheClient.this;
+            }
+
+            @Override
+            public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+              return NO_OP_INSTANCE;
+            }
+          }));
+        }
+      }
+      for (Map.Entry<HRegionLocation, Future<Boolean>> entry : futures.entrySet()) {
+        if (Boolean.TRUE.equals(entry.getValue().get(timeoutMs, TimeUnit.MILLISECONDS))) {
+          reused.add(entry.getKey());
+        }
+      }
+      success = !futures.isEmpty() && reused.size() == futures.size();
+    } catch (SQLException e) {
+      firstException = e;
+    } catch (Exception e) {
+      firstException = new SQLException(e);
+    } finally {
+      Closeables.closeAllQuietly(closeables);
+    }
+    try {
+      cacheUsingTableMap.put(Bytes.mapKey(cacheId), cacheUsingTable);
+      ServerCache cache = new ServerCache(cacheId, reused, emptyPtr, services, false);
+      if (success) {
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug(addCustomAnnotations(
+            "Cache " + idToString(cacheId) + " reused on " + reused.size() + " servers.",
+            connection));
+        }
+        return cache;
+      }
+      if (firstException == null) {
+        // Drop the references taken on the servers that did hold the cache
+        cache.close();
+      } else {
+        for (Future<Boolean> future : futures.values()) {
+          future.cancel(true);
+        }
+        SQLCloseables.closeAllQuietly(Collections.singletonList(cache));
+      }
+    } catch (IOException e) {
+      cacheUsingTableMap.remove(Bytes.mapKey(cacheId));
+      if (firstException == null) {
+        firstException = new SQLException(e);
+      }
+    }
+    if (firstException != null) {
+      throw firstException;
+    }
+    return null;
+  }
+
   /**
    * Remove the cached table from all region servers
    * @throws IllegalStateException if hashed table cannot be removed on any region server on which
@@ -494,7 +597,8 @@ public class ServerCacheClient {
       table = services.getTable(tableName);
       HRegionLocation tableRegionLocation =
         services.getTableRegionLocation(tableName, startkeyOfRegion);
-      if (cache.isExpired(tableRegionLocation)) {
+      if (cache.isExpired(tableRegionLocation) || cache.getCachePtr() == null) {
+        // A cache reused from another query has no client-side copy to resend
         return false;
       }
       if (
@@ -514,8 +618,15 @@ public class ServerCacheClient {
     final byte[] cacheId, final ImmutableBytesWritable cachePtr,
     final ServerCacheFactory cacheFactory, final byte[] txState, final boolean usePersistentCache)
     throws Exception {
+    return addServerCache(htable, key, cacheUsingTable, cacheId, cachePtr, cacheFactory, txState,
+      usePersistentCache, false);
+  }
+
+  private boolean addServerCache(Table htable, byte[] key, final PTable cacheUsingTable,
+    final byte[] cacheId, final ImmutableBytesWritable cachePtr,
+    final ServerCacheFactory cacheFactory, final byte[] txState, final boolean usePersistentCache,
+    final boolean reuseOnly) throws Exception {
     byte[] keyInRegion = getKeyInRegion(key);
-    final Map<byte[], AddServerCacheResponse> results;
 
     AddServerCacheRequest.Builder builder = AddServerCacheRequest.newBuilder();
     final byte[] tenantIdBytes;
@@ -537,7 +648,7 @@ public class ServerCacheClient {
     }
     builder.setCacheId(ByteStringer.wrap(cacheId));
     builder.setUsePersistentCache(usePersistentCache);
-    builder.setCachePtr(org.apache.phoenix.protobuf.ProtobufUtil.toProto(cachePtr));
+    builder.setReuseOnly(reuseOnly);
     builder.setHasProtoBufIndexMaintainer(true);
     ServerCacheFactoryProtos.ServerCacheFactory.Builder svrCacheFactoryBuider =
       ServerCacheFactoryProtos.ServerCacheFactory.newBuilder();
@@ -545,8 +656,37 @@ public class ServerCacheClient {
     builder.setCacheFactory(svrCacheFactoryBuider.build());
     builder.setTxState(ByteStringer.wrap(txState));
     builder.setClientVersion(MetaDataProtocol.PHOENIX_VERSION);
-    final AddServerCacheRequest request = builder.build();
 
+    int chunkSize = connection.getQueryServices().getProps().getInt(
+      QueryServices.SERVER_CACHE_CHUNK_SIZE_ATTRIB,
+      QueryServicesOptions.DEFAULT_SERVER_CACHE_CHUNK_SIZE);
+    if (
+      reuseOnly || chunkSize <= 0 || cachePtr.getLength() <= chunkSize
+        || !connection.getQueryServices().supportsFeature(Feature.CHUNKED_SERVER_CACHE)
+    ) {
+      builder.setCachePtr(org.apache.phoenix.protobuf.ProtobufUtil.toProto(cachePtr));
+      return addServerCache(htable, keyInRegion, builder.build());
+    }
+    // Send large caches in chunks one after the other, so that neither side has to hold a
+    // request of the size of the whole cache and each server has one chunk in flight at most
+    builder.setUploadId(RANDOM.nextLong());
+    builder.setTotalLength(cachePtr.getLength());
+    for (int offset = 0; offset < cachePtr.getLength(); offset += chunkSize) {
+      int length = Math.min(chunkSize, cachePtr.getLength() - offset);
+      builder.setChunkOffset(offset);
+      builder.setCachePtr(ServerCachingProtos.ImmutableBytesWritable.newBuilder()
+        .setByteArray(ByteString.copyFrom(cachePtr.get(), cachePtr.getOffset() + offset, length))
+        .setOffset(0).setLength(length).build());
+      if (!addServerCache(htable, keyInRegion, builder.build())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean addServerCache(Table htable, byte[] keyInRegion,
+    final AddServerCacheRequest request) throws Exception {
+    final Map<byte[], AddServerCacheResponse> results;
     try {
       results = htable.coprocessorService(ServerCachingService.class, keyInRegion, keyInRegion,
         new Batch.Call<ServerCachingService, AddServerCacheResponse>() {
@@ -37,6 +37,23 @@ public interface TenantCache {
     byte[] txState, ServerCacheFactory cacheFactory, boolean useProtoForIndexMaintainer,
     boolean usePersistentCache, int clientVersion) throws SQLException;
 
+  /**
+   * Adds one chunk of a cache that is sent in several chunks of one upload, in the order of their
+   * offsets. The memory of the whole cache is allocated when its first chunk arrives.
+   * @return the cache once its last chunk arrived, null before
+   */
+  Closeable addServerCacheChunk(ImmutableBytesPtr cacheId, long uploadId,
+    ImmutableBytesWritable chunkPtr, int chunkOffset, int totalLength, byte[] txState,
+    ServerCacheFactory cacheFactory, boolean useProtoForIndexMaintainer, boolean usePersistentCache,
+    int clientVersion) throws SQLException;
+
+  /**
+   * Takes a reference on the live cache with the given id, which is released by
+   * {@link #removeServerCache(ImmutableBytesPtr)}
+   * @return true if the cache is present, false otherwise
+   */
+  boolean reuseServerCache(ImmutableBytesPtr cacheId);
+
   void removeServerCache(ImmutableBytesPtr cacheId);
 
   void removeAllServerCache();
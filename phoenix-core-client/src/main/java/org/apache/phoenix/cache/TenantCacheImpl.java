@@ -29,6 +29,7 @@ import org.apache.phoenix.coprocessorclient.ServerCachingProtocol.ServerCacheFac
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.Closeables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +58,8 @@ public class TenantCacheImpl implements TenantCache {
   // the persistent cache before throwing an exception.
   private volatile Cache<ImmutableBytesPtr, CacheEntry> serverCaches;
   private volatile Cache<ImmutableBytesPtr, CacheEntry> persistentServerCaches;
+  // Caches sent in several chunks whose last chunk has not arrived yet, keyed by upload
+  private volatile Cache<ImmutableBytesPtr, PendingCache> pendingServerCaches;
 
   private final long EVICTION_MARGIN_BYTES = 10000000;
 
@@ -118,6 +121,58 @@ public class TenantCacheImpl implements TenantCache {
     }
   }
 
+  /**
+   * Cache being uploaded in chunks. The chunks are gathered into one buffer of the total length,
+   * allocated and accounted for when the first chunk arrives, rather than being fed to the cache
+   * factory as they come: a hash cache is compressed as a whole, so none of it can be decoded
+   * before the last chunk is in, and an upload too large for the memory manager fails right away
+   * instead of after most of it has been sent.
+   */
+  private static class PendingCache implements Closeable {
+    private final ImmutableBytesPtr cacheId;
+    private final byte[] bytes;
+    private final MemoryChunk chunk;
+    private int receivedLength;
+    private boolean completed;
+
+    public PendingCache(ImmutableBytesPtr cacheId, int totalLength, MemoryChunk chunk) {
+      this.cacheId = cacheId;
+      this.bytes = new byte[totalLength];
+      this.chunk = chunk;
+    }
+
+    /**
+     * Adds the given chunk, unless it was received before, as happens when the client retries a
+     * request whose response got lost
+     * @return true if this chunk completed the upload
+     */
+    synchronized public boolean add(ImmutableBytesWritable chunkPtr, int chunkOffset)
+      throws SQLException {
+      int chunkEnd = chunkOffset + chunkPtr.getLength();
+      if (chunkOffset < 0 || chunkOffset > receivedLength || chunkEnd > bytes.length) {
+        throw new SQLException("Expected chunk at offset " + receivedLength + " of cache ID "
+          + Bytes.toLong(cacheId.get()) + " but got chunk at offset " + chunkOffset);
+      }
+      if (chunkEnd <= receivedLength) {
+        return false;
+      }
+      int skippedLength = receivedLength - chunkOffset;
+      System.arraycopy(chunkPtr.get(), chunkPtr.getOffset() + skippedLength, bytes, receivedLength,
+        chunkPtr.getLength() - skippedLength);
+      receivedLength = chunkEnd;
+      completed = receivedLength == bytes.length;
+      return completed;
+    }
+
+    @Override
+    synchronized public void close() {
+      // The memory of a completed upload is owned by the cache built from it
+      if (!completed) {
+        chunk.close();
+      }
+    }
+  }
+
   public TenantCacheImpl(MemoryManager memoryManager, int maxTimeToLiveMs,
     int maxPersistenceTimeToLiveMs) {
     this(memoryManager, maxTimeToLiveMs, maxPersistenceTimeToLiveMs, Ticker.systemTicker());
@@ -144,6 +199,9 @@ public class TenantCacheImpl implements TenantCache {
       if (persistentServerCaches != null) {
         persistentServerCaches.cleanUp();
       }
+      if (pendingServerCaches != null) {
+        pendingServerCaches.cleanUp();
+      }
     }
   }
 
@@ -176,6 +234,27 @@ public class TenantCacheImpl implements TenantCache {
     return persistentServerCaches;
   }
 
+  private Cache<ImmutableBytesPtr, PendingCache> getPendingServerCaches() {
+    /* Delay creation of this map until it's needed */
+    if (pendingServerCaches == null) {
+      synchronized (this) {
+        if (pendingServerCaches == null) {
+          // An upload whose client went away is dropped like an unused live cache
+          pendingServerCaches = CacheBuilder.newBuilder()
+            .expireAfterAccess(maxTimeToLiveMs, TimeUnit.MILLISECONDS).ticker(getTicker())
+            .removalListener(new RemovalListener<ImmutableBytesPtr, PendingCache>() {
+              @Override
+              public void
+                onRemoval(RemovalNotification<ImmutableBytesPtr, PendingCache> notification) {
+                Closeables.closeAllQuietly(Collections.singletonList(notification.getValue()));
+              }
+            }).build();
+        }
+      }
+    }
+    return pendingServerCaches;
+  }
+
   private Cache<ImmutableBytesPtr, CacheEntry> buildCache(final int ttl,
     final boolean isPersistent) {
     CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
@@ -234,12 +313,63 @@ public class TenantCacheImpl implements TenantCache {
     byte[] txState, ServerCacheFactory cacheFactory, boolean useProtoForIndexMaintainer,
     boolean usePersistentCache, int clientVersion) throws SQLException {
     getServerCaches().cleanUp();
+    MemoryChunk chunk = allocate(cachePtr.getLength() + txState.length);
+    return addServerCache(cacheId, cachePtr, txState, cacheFactory, useProtoForIndexMaintainer,
+      usePersistentCache, clientVersion, chunk);
+  }
+
+  @Override
+  public Closeable addServerCacheChunk(ImmutableBytesPtr cacheId, long uploadId,
+    ImmutableBytesWritable chunkPtr, int chunkOffset, int totalLength, byte[] txState,
+    ServerCacheFactory cacheFactory, boolean useProtoForIndexMaintainer, boolean usePersistentCache,
+    int clientVersion) throws SQLException {
+    ImmutableBytesPtr uploadKey = new ImmutableBytesPtr(
+      ByteUtil.concat(cacheId.copyBytesIfNecessary(), Bytes.toBytes(uploadId)));
+    PendingCache pending = getPendingServerCaches().getIfPresent(uploadKey);
+    if (pending == null) {
+      if (
+        chunkOffset + chunkPtr.getLength() == totalLength && chunkOffset != 0
+          && getIfPresent(cacheId) != null
+      ) {
+        // The last chunk was sent again after it completed the upload
+        return null;
+      }
+      if (chunkOffset != 0) {
+        throw new SQLException("Upload " + uploadId + " of cache ID " + Bytes.toLong(cacheId.get())
+          + " is not known, it might have expired");
+      }
+      getServerCaches().cleanUp();
+      pending = new PendingCache(cacheId, totalLength, allocate(totalLength + txState.length));
+      getPendingServerCaches().put(uploadKey, pending);
+    }
+    boolean success = false;
+    try {
+      boolean completed = pending.add(chunkPtr, chunkOffset);
+      success = true;
+      if (!completed) {
+        return null;
+      }
+    } finally {
+      if (!success) {
+        getPendingServerCaches().invalidate(uploadKey);
+      }
+    }
+    getPendingServerCaches().invalidate(uploadKey);
+    return addServerCache(cacheId, new ImmutableBytesWritable(pending.bytes), txState, cacheFactory,
+      useProtoForIndexMaintainer, usePersistentCache, clientVersion, pending.chunk);
+  }
+
+  private MemoryChunk allocate(long size) {
     long available = this.getMemoryManager().getAvailableMemory();
-    int size = cachePtr.getLength() + txState.length;
     if (size > available) {
       evictInactiveEntries(size - available + EVICTION_MARGIN_BYTES);
     }
-    MemoryChunk chunk = this.getMemoryManager().allocate(size);
+    return this.getMemoryManager().allocate(size);
+  }
+
+  private Closeable addServerCache(ImmutableBytesPtr cacheId, ImmutableBytesWritable cachePtr,
+    byte[] txState, ServerCacheFactory cacheFactory, boolean useProtoForIndexMaintainer,
+    boolean usePersistentCache, int clientVersion, MemoryChunk chunk) throws SQLException {
     boolean success = false;
     try {
       CacheEntry entry;
@@ -252,6 +382,9 @@ public class TenantCacheImpl implements TenantCache {
           if (usePersistentCache) {
             getPersistentServerCaches().put(cacheId, entry);
           }
+        } else {
+          // Another query already added the cache, so the memory of this copy is not needed
+          Closeables.closeAllQuietly(Collections.singletonList(chunk));
         }
         entry.incrementLiveQueryCount();
       }
@@ -264,6 +397,16 @@ public class TenantCacheImpl implements TenantCache {
     }
   }
 
+  @Override
+  synchronized public boolean reuseServerCache(ImmutableBytesPtr cacheId) {
+    CacheEntry entry = getServerCaches().getIfPresent(cacheId);
+    if (entry == null) {
+      return false;
+    }
+    entry.incrementLiveQueryCount();
+    return true;
+  }
+
   @Override
   synchronized public void removeServerCache(ImmutableBytesPtr cacheId) {
     CacheEntry entry = getServerCaches().getIfPresent(cacheId);
@@ -279,6 +422,9 @@ public class TenantCacheImpl implements TenantCache {
 
   @Override
   public void removeAllServerCache() {
+    if (pendingServerCaches != null) {
+      pendingServerCaches.invalidateAll();
+    }
     getServerCaches().invalidateAll();
     getPersistentServerCaches().invalidateAll();
   }
@@ -73,5 +73,37 @@ public interface ColumnProjector {
   Object getValue(Tuple tuple, PDataType type, ImmutableBytesWritable ptr, Class jdbcType)
     throws SQLException;
 
+  /**
+   * Get the value of the column as a long without boxing it
+   * @param tuple the row containing the column
+   * @param ptr   used to retrieve the value, left empty if the value is null
+   * @return the long value of the column or 0 if the value is null
+   */
+  long getLong(Tuple tuple, ImmutableBytesWritable ptr) throws SQLException;
+
+  /**
+   * Get the value of the column as an int without boxing it
+   * @param tuple the row containing the column
+   * @param ptr   used to retrieve the value, left empty if the value is null
+   * @return the int value of the column or 0 if the value is null
+   */
+  int getInt(Tuple tuple, ImmutableBytesWritable ptr) throws SQLException;
+
+  /**
+   * Get the value of the column as a double without boxing it
+   * @param tuple the row containing the column
+   * @param ptr   used to retrieve the value, left empty if the value is null
+   * @return the double value of the column or 0 if the value is null
+   */
+  double getDouble(Tuple tuple, ImmutableBytesWritable ptr) throws SQLException;
+
+  /**
+   * Get the serialized value of the column without decoding it
+   * @param tuple the row containing the column
+   * @param ptr   set to the bytes of the value, left empty if the value is null
+   * @return true if the value is not null and false otherwise
+   */
+  boolean getValueBytes(Tuple tuple, ImmutableBytesWritable ptr) throws SQLException;
+
   boolean isCaseSensitive();
 }
@@ -22,6 +22,10 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.util.ByteUtil;
 
 /**
  * Projector for getting value from a select statement for an expression
@@ -109,6 +113,84 @@ public class ExpressionProjector implements ColumnProjector {
     }
   }
 
+  @Override
+  public final long getLong(Tuple tuple, ImmutableBytesWritable ptr) throws SQLException {
+    if (!isPrimitiveDecodable(PLong.INSTANCE)) {
+      Long value = (Long) getValue(tuple, PLong.INSTANCE, ptr);
+      if (value == null) {
+        ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+        return 0;
+      }
+      return value;
+    }
+    if (!getValueBytes(tuple, ptr)) {
+      return 0;
+    }
+    return expression.getDataType().getCodec().decodeLong(ptr, expression.getSortOrder());
+  }
+
+  @Override
+  public final int getInt(Tuple tuple, ImmutableBytesWritable ptr) throws SQLException {
+    if (!isPrimitiveDecodable(PInteger.INSTANCE)) {
+      Integer value = (Integer) getValue(tuple, PInteger.INSTANCE, ptr);
+      if (value == null) {
+        ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+        return 0;
+      }
+      return value;
+    }
+    if (!getValueBytes(tuple, ptr)) {
+      return 0;
+    }
+    return expression.getDataType().getCodec().decodeInt(ptr, expression.getSortOrder());
+  }
+
+  @Override
+  public final double getDouble(Tuple tuple, ImmutableBytesWritable ptr) throws SQLException {
+    if (!isPrimitiveDecodable(PDouble.INSTANCE)) {
+      Double value = (Double) getValue(tuple, PDouble.INSTANCE, ptr);
+      if (value == null) {
+        ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+        return 0;
+      }
+      return value;
+    }
+    if (!getValueBytes(tuple, ptr)) {
+      return 0;
+    }
+    return expression.getDataType().getCodec().decodeDouble(ptr, expression.getSortOrder());
+  }
+
+  @Override
+  public final boolean getValueBytes(Tuple tuple, ImmutableBytesWritable ptr)
+    throws SQLException {
+    try {
+      if (!getExpression().evaluate(tuple, ptr) || ptr.getLength() == 0) {
+        ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+        return false;
+      }
+      return true;
+    } catch (RuntimeException e) {
+      // FIXME: Expression.evaluate does not throw SQLException
+      // so this will unwrap throws from that.
+      if (e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * The codec of the expression type can only be used directly when the type is coercible to the
+   * requested one. Other types, such as DECIMAL or a narrowing conversion that needs a range
+   * check, go through {@link PDataType#toObject} as before.
+   */
+  private boolean isPrimitiveDecodable(PDataType targetType) {
+    PDataType actualType = expression.getDataType();
+    return actualType != null && actualType.getCodec() != null
+      && actualType.isCoercibleTo(targetType);
+  }
+
   @Override
   public boolean isCaseSensitive() {
     return isCaseSensitive;
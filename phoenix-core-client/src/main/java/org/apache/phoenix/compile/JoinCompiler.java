@@ -45,6 +45,7 @@ import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.function.MinAggregateFunction;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.optimize.Cost;
 import org.apache.phoenix.parse.AliasedNode;
 import org.apache.phoenix.parse.AndBooleanParseNodeVisitor;
 import org.apache.phoenix.parse.AndParseNode;
@@ -559,6 +560,135 @@ public class JoinCompiler {
 
       return false;
     }
+
+    /**
+     * Returns true if the tables of this join can be joined in any order: all joins are inner
+     * joins of a single table on at least one equality condition.
+     */
+    public boolean isReorderable() {
+      if (joinSpecs.size() < 2 || joinSpecs.size() + 1 >= Long.SIZE) {
+        return false;
+      }
+      for (JoinSpec joinSpec : joinSpecs) {
+        if (
+          joinSpec.getType() != JoinType.Inner || joinSpec.isSingleValueOnly()
+            || !joinSpec.getRhsJoinTable().getJoinSpecs().isEmpty()
+            || joinSpec.getOnConditions().isEmpty()
+        ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns this join with its tables reordered to the order with the least estimated cost, or
+     * this join itself if the written order is at least as cheap.
+     * @param rowEstimates  estimated number of rows of each table of {@link #getAllTables()} after
+     *                      its filters are applied
+     * @param parallelLevel number of parallel workers the joins are executed by
+     * @param dpThreshold   maximum number of tables ordered by dynamic programming rather than
+     *                      greedily
+     * @see JoinOrderOptimizer
+     */
+    public JoinTable reorder(double[] rowEstimates, int parallelLevel, int dpThreshold)
+      throws SQLException {
+      assert isReorderable();
+      int count = allTables.size();
+      List<EqualParseNode> conditions = new ArrayList<EqualParseNode>();
+      List<Long> lhsTables = new ArrayList<Long>();
+      List<Integer> rhsTables = new ArrayList<Integer>();
+      ColumnRefParseNodeVisitor visitor =
+        new ColumnRefParseNodeVisitor(origResolver, phoenixStatement.getConnection());
+      for (int i = 0; i < joinSpecs.size(); i++) {
+        for (EqualParseNode condition : joinSpecs.get(i).getOnConditions()) {
+          visitor.reset();
+          condition.getLHS().accept(visitor);
+          long lhs = 0;
+          for (TableRef tableRef : visitor.getTableRefSet()) {
+            int index = allTableRefs.indexOf(tableRef);
+            if (index < 0) {
+              return this;
+            }
+            lhs |= 1L << index;
+          }
+          conditions.add(condition);
+          lhsTables.add(lhs);
+          rhsTables.add(i + 1);
+        }
+      }
+      long[] edgeLhs = new long[conditions.size()];
+      int[] edgeRhs = new int[conditions.size()];
+      for (int i = 0; i < edgeLhs.length; i++) {
+        edgeLhs[i] = lhsTables.get(i);
+        edgeRhs[i] = rhsTables.get(i);
+      }
+      boolean[] canProbe = new boolean[count];
+      int[] writtenOrder = new int[count];
+      for (int i = 0; i < count; i++) {
+        canProbe[i] = allTables.get(i).isCouldPushToServerAsHashJoinProbeSide();
+        writtenOrder[i] = i;
+      }
+      JoinOrderOptimizer optimizer =
+        new JoinOrderOptimizer(rowEstimates, edgeLhs, edgeRhs, canProbe, parallelLevel);
+      int[] order = optimizer.optimize(dpThreshold);
+      Cost writtenCost = optimizer.getCost(writtenOrder);
+      if (
+        order == null || (writtenCost != null && optimizer.getCost(order).compareTo(writtenCost) >= 0)
+      ) {
+        return this;
+      }
+
+      // Each condition is evaluated by the join of whichever of its tables is joined last, with
+      // the side referencing only that table as the right hand side of the equality.
+      List<JoinSpec> reorderedJoinSpecs = new ArrayList<JoinSpec>(joinSpecs.size());
+      boolean[] assigned = new boolean[conditions.size()];
+      long joined = 1L << order[0];
+      for (int i = 1; i < count; i++) {
+        int t = order[i];
+        JoinTable rhsJoinTable =
+          t == 0 ? new JoinTable(leftTable) : joinSpecs.get(t - 1).getRhsJoinTable();
+        JoinSpec joinSpec =
+          new JoinSpec(JoinType.Inner, null, rhsJoinTable, false, origResolver);
+        joined |= 1L << t;
+        for (int e = 0; e < conditions.size(); e++) {
+          if (assigned[e] || ((edgeLhs[e] | 1L << edgeRhs[e]) & ~joined) != 0) {
+            continue;
+          }
+          EqualParseNode condition = conditions.get(e);
+          if (edgeRhs[e] == t) {
+            joinSpec.addOnCondition(condition);
+            joinSpec.addDependentTableRefs(getTableRefs(edgeLhs[e]));
+          } else {
+            // The right hand side of the condition is now evaluated against the joined tables
+            visitor.reset();
+            condition.getRHS().accept(visitor);
+            for (ColumnRef ref : visitor.getColumnRefMap().keySet()) {
+              columnRefs.put(ref, ColumnRefType.GENERAL);
+            }
+            joinSpec.addOnCondition(NODE_FACTORY.equal(condition.getRHS(), condition.getLHS()));
+            joinSpec.addDependentTableRefs(getTableRefs(1L << edgeRhs[e]));
+          }
+          assigned[e] = true;
+        }
+        reorderedJoinSpecs.add(joinSpec);
+      }
+      JoinTable reordered = new JoinTable(allTables.get(order[0]), reorderedJoinSpecs);
+      for (ParseNode postFilter : postFilters) {
+        reordered.addPostJoinFilter(postFilter);
+      }
+      return reordered;
+    }
+
+    private Set<TableRef> getTableRefs(long tables) {
+      Set<TableRef> tableRefs = new HashSet<TableRef>();
+      for (int i = 0; i < allTableRefs.size(); i++) {
+        if ((tables & 1L << i) != 0) {
+          tableRefs.add(allTableRefs.get(i));
+        }
+      }
+      return tableRefs;
+    }
   }
 
   public class JoinSpec {
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import org.apache.phoenix.execute.visitor.RowCountVisitor;
+import org.apache.phoenix.optimize.Cost;
+import org.apache.phoenix.parse.JoinTableNode.JoinType;
+import org.apache.phoenix.util.CostUtil;
+
+/**
+ * Chooses the order of the tables of a multi-way inner join. The first table of the order is
+ * scanned as the probe side and each following table is joined to the tables before it as the
+ * build side of a hash join. The order with the least cost is found by dynamic programming over
+ * the subsets of tables if there are few tables, otherwise greedily from each table that can be
+ * probed, by adding at each step the table that is the cheapest to join next.
+ * <p>
+ * The join conditions are given as edges from the tables referenced by one side of an equality to
+ * the single table referenced by its other side. A table can only be joined next if every edge
+ * between it and the tables joined before it has a side referencing only that table, and there is
+ * at least one such edge, so cross joins are never introduced. Costs follow
+ * {@link CostUtil#estimateHashJoinCost} with row counts in place of byte counts.
+ */
+public class JoinOrderOptimizer {
+  // Bound on the number of tables ordered by dynamic programming, which is exponential in it
+  static final int MAX_EXHAUSTIVE_TABLES = 16;
+
+  private final double[] rows;
+  private final long[] edgeLhs;
+  private final int[] edgeRhs;
+  private final boolean[] canProbe;
+  private final int parallelLevel;
+
+  /**
+   * @param rows          estimated number of rows of each table after its filters are applied
+   * @param edgeLhs       bit set of the tables referenced by one side of each join condition
+   * @param edgeRhs       the table referenced by the other side of each join condition
+   * @param canProbe      whether each table can be the probe side of the hash joins
+   * @param parallelLevel number of parallel workers the joins are executed by
+   */
+  public JoinOrderOptimizer(double[] rows, long[] edgeLhs, int[] edgeRhs, boolean[] canProbe,
+    int parallelLevel) {
+    if (rows.length >= Long.SIZE) {
+      throw new IllegalArgumentException("Too many tables to order: " + rows.length);
+    }
+    this.rows = rows;
+    this.edgeLhs = edgeLhs;
+    this.edgeRhs = edgeRhs;
+    this.canProbe = canProbe;
+    this.parallelLevel = parallelLevel;
+  }
+
+  /**
+   * Returns the order of the tables with the least estimated cost, or null if the tables cannot be
+   * joined in any order.
+   * @param dpThreshold maximum number of tables ordered by dynamic programming
+   */
+  public int[] optimize(int dpThreshold) {
+    return rows.length <= Math.min(dpThreshold, MAX_EXHAUSTIVE_TABLES)
+      ? optimizeExhaustively()
+      : optimizeGreedily();
+  }
+
+  /**
+   * Returns the estimated cost of joining the tables in the given order, or null if they cannot be
+   * joined in that order.
+   */
+  public Cost getCost(int[] order) {
+    if (!canProbe[order[0]]) {
+      return null;
+    }
+    long joined = bit(order[0]);
+    Cost cost = getScanCost(order[0]);
+    for (int i = 1; i < order.length; i++) {
+      if (!canJoin(joined, order[i])) {
+        return null;
+      }
+      cost = cost.plus(getJoinCost(joined, order[i]));
+      joined |= bit(order[i]);
+    }
+    return cost;
+  }
+
+  private int[] optimizeExhaustively() {
+    int n = rows.length;
+    int subsets = 1 << n;
+    Cost[] best = new Cost[subsets];
+    int[] last = new int[subsets];
+    for (int t = 0; t < n; t++) {
+      if (canProbe[t]) {
+        best[1 << t] = getScanCost(t);
+        last[1 << t] = t;
+      }
+    }
+    for (int joined = 1; joined < subsets; joined++) {
+      if (Integer.bitCount(joined) < 2) {
+        continue;
+      }
+      for (int t = 0; t < n; t++) {
+        int previous = joined & ~(1 << t);
+        if (previous == joined || best[previous] == null || !canJoin(previous, t)) {
+          continue;
+        }
+        Cost cost = best[previous].plus(getJoinCost(previous, t));
+        if (best[joined] == null || cost.compareTo(best[joined]) < 0) {
+          best[joined] = cost;
+          last[joined] = t;
+        }
+      }
+    }
+    if (best[subsets - 1] == null) {
+      return null;
+    }
+    int[] order = new int[n];
+    for (int i = n - 1, joined = subsets - 1; i >= 0; i--) {
+      order[i] = last[joined];
+      joined &= ~(1 << order[i]);
+    }
+    return order;
+  }
+
+  private int[] optimizeGreedily() {
+    int[] bestOrder = null;
+    Cost bestCost = null;
+    for (int first = 0; first < rows.length; first++) {
+      if (!canProbe[first]) {
+        continue;
+      }
+      int[] order = optimizeGreedily(first);
+      if (order != null) {
+        Cost cost = getCost(order);
+        if (bestOrder == null || cost.compareTo(bestCost) < 0) {
+          bestOrder = order;
+          bestCost = cost;
+        }
+      }
+    }
+    return bestOrder;
+  }
+
+  private int[] optimizeGreedily(int first) {
+    int n = rows.length;
+    int[] order = new int[n];
+    order[0] = first;
+    long joined = bit(first);
+    for (int i = 1; i < n; i++) {
+      int next = -1;
+      Cost nextCost = null;
+      for (int t = 0; t < n; t++) {
+        if ((joined & bit(t)) != 0 || !canJoin(joined, t)) {
+          continue;
+        }
+        Cost cost = getJoinCost(joined, t);
+        if (next < 0 || cost.compareTo(nextCost) < 0) {
+          next = t;
+          nextCost = cost;
+        }
+      }
+      if (next < 0) {
+        return null;
+      }
+      order[i] = next;
+      joined |= bit(next);
+    }
+    return order;
+  }
+
+  private boolean canJoin(long joined, int t) {
+    long tables = joined | bit(t);
+    boolean connected = false;
+    for (int e = 0; e < edgeLhs.length; e++) {
+      long edgeTables = edgeLhs[e] | bit(edgeRhs[e]);
+      if ((edgeTables & bit(t)) == 0 || (edgeTables & ~tables) != 0) {
+        continue;
+      }
+      if ((edgeRhs[e] != t || (edgeLhs[e] & bit(t)) != 0) && edgeLhs[e] != bit(t)) {
+        return false;
+      }
+      connected = true;
+    }
+    return connected;
+  }
+
+  private double getRowCount(long tables) {
+    double rowCount = -1;
+    for (int t = 0; t < rows.length; t++) {
+      if ((tables & bit(t)) != 0) {
+        rowCount =
+          rowCount < 0 ? rows[t] : RowCountVisitor.join(rowCount, rows[t], JoinType.Inner);
+      }
+    }
+    return rowCount;
+  }
+
+  private Cost getScanCost(int t) {
+    return new Cost(0, 0, rows[t] / parallelLevel);
+  }
+
+  private Cost getJoinCost(long joined, int t) {
+    return CostUtil.estimateHashJoinCost(getRowCount(joined), rows[t],
+      getRowCount(joined | bit(t)), false, parallelLevel);
+  }
+
+  private static long bit(int t) {
+    return 1L << t;
+  }
+}
@@ -51,10 +51,17 @@ import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
 import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.execute.UnionPlan;
+import org.apache.phoenix.execute.visitor.RowCountVisitor;
+import org.apache.phoenix.expression.CorrelateVariableFieldAccessExpression;
 import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
 import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.ProjectedColumnExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.expression.SingleCellColumnExpression;
 import org.apache.phoenix.expression.function.PhoenixRowTimestampFunction;
+import org.apache.phoenix.expression.visitor.CloneExpressionVisitor;
+import org.apache.phoenix.filter.JoinKeyBloomFilter;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.ParallelIteratorFactory;
 import org.apache.phoenix.jdbc.PhoenixConnection;
@@ -89,6 +96,7 @@ import org.apache.phoenix.schema.RowValueConstructorOffsetNotCoercibleException;
 import org.apache.phoenix.schema.TableNotFoundException;
 import org.apache.phoenix.schema.TableRef;
 import org.apache.phoenix.util.CDCUtil;
+import org.apache.phoenix.util.CostUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.ParseNodeUtil;
 import org.apache.phoenix.util.ParseNodeUtil.RewriteResult;
@@ -120,6 +128,7 @@ public class QueryCompiler {
   private final boolean optimizeSubquery;
   private final Map<TableRef, QueryPlan> dataPlans;
   private final boolean costBased;
+  private final boolean joinReorder;
   private final StatementContext parentContext;
 
   public QueryCompiler(PhoenixStatement statement, SelectStatement select, ColumnResolver resolver,
@@ -183,6 +192,8 @@ public class QueryCompiler {
     ConnectionQueryServices services = statement.getConnection().getQueryServices();
     this.costBased = services.getProps().getBoolean(QueryServices.COST_BASED_OPTIMIZER_ENABLED,
       QueryServicesOptions.DEFAULT_COST_BASED_OPTIMIZER_ENABLED);
+    this.joinReorder = services.getProps().getBoolean(QueryServices.JOIN_REORDER_ENABLED_ATTRIB,
+      QueryServicesOptions.DEFAULT_JOIN_REORDER_ENABLED);
     scan.setLoadColumnFamiliesOnDemand(true);
     if (select.getHint().hasHint(Hint.NO_CACHE)) {
       scan.setCacheBlocks(false);
@@ -314,12 +325,38 @@ public class QueryCompiler {
     }
     if (select.isJoin()) {
       JoinTable joinTable = JoinCompiler.compile(statement, select, context.getResolver());
-      return compileJoinQuery(context, joinTable, false, false, null);
+      return compileJoinQuery(context, reorderJoin(joinTable), false, false, null);
     } else {
       return compileSingleQuery(context, select, false, true);
     }
   }
 
+  /**
+   * Reorders the tables of a multi-way inner join to the order with the least estimated cost,
+   * based on the number of rows of each table estimated from its guideposts and the selectivity of
+   * its filters. The join is left as written if any of the estimates is unavailable. Wildcard
+   * queries are not reordered, as the order of their columns follows the order of the tables.
+   */
+  private JoinTable reorderJoin(JoinTable joinTable) throws SQLException {
+    if (!joinReorder || select.hasWildcard() || !joinTable.isReorderable()) {
+      return joinTable;
+    }
+    List<Table> tables = joinTable.getAllTables();
+    double[] rowEstimates = new double[tables.size()];
+    for (int i = 0; i < rowEstimates.length; i++) {
+      QueryPlan plan = compileSubquery(tables.get(i).getAsSubquery(null), false);
+      Double rows = plan.accept(new RowCountVisitor());
+      if (rows == null || plan.getEstimateInfoTimestamp() == null) {
+        return joinTable;
+      }
+      rowEstimates[i] = rows;
+    }
+    ConnectionQueryServices services = statement.getConnection().getQueryServices();
+    return joinTable.reorder(rowEstimates, CostUtil.estimateParallelLevel(true, services),
+      services.getProps().getInt(QueryServices.JOIN_REORDER_DP_THRESHOLD_ATTRIB,
+        QueryServicesOptions.DEFAULT_JOIN_REORDER_DP_THRESHOLD));
+  }
+
   private StatementContext createStatementContext() {
     return new StatementContext(statement, resolver, bindManager, scan, sequenceManager);
   }
@@ -467,9 +504,11 @@ public class QueryCompiler {
               ? 0
               : (tables[i].getColumns().size() - tables[i].getPKColumns().size()));
           }
+          List<Expression> bloomFilterExpressions = getBloomFilterExpressions(joinTypes[i],
+            table.isSubselect(), joinExpressions[i], tupleProjector);
           hashPlans[i] = new HashSubPlan(i, subPlans[i], optimized ? null : hashExpressions,
             joinSpec.isSingleValueOnly(), usePersistentCache, keyRangeLhsExpression,
-            keyRangeRhsExpression);
+            keyRangeRhsExpression, bloomFilterExpressions);
         }
         TupleProjector.serializeProjectorIntoScan(context.getScan(), tupleProjector,
           wildcardIncludesDynamicCols);
@@ -560,9 +599,12 @@ public class QueryCompiler {
         getKeyExpressionCombinations(keyRangeExpressions, context,
           joinTable.getOriginalJoinSelectStatement(), rhsTableRef, type, joinExpressions,
           hashExpressions);
+        List<Expression> bloomFilterExpressions =
+          getBloomFilterExpressions(type, rhsTable.isSubselect(), joinExpressions, tupleProjector);
         return HashJoinPlan.create(joinTable.getOriginalJoinSelectStatement(), rhsPlan, joinInfo,
           new HashSubPlan[] { new HashSubPlan(0, lhsPlan, hashExpressions, false,
-            usePersistentCache, keyRangeExpressions.getFirst(), keyRangeExpressions.getSecond()) });
+            usePersistentCache, keyRangeExpressions.getFirst(), keyRangeExpressions.getSecond(),
+            bloomFilterExpressions) });
       }
       case SORT_MERGE: {
         JoinTable lhsJoin = joinTable.createSubJoinTable(statement.getConnection());
@@ -688,6 +730,86 @@ public class QueryCompiler {
     return type == JoinType.Semi && complete;
   }
 
+  /**
+   * Rewrites the join key expressions of the probe side of a hash join so that they can be
+   * evaluated over the cells of the probe side table by a {@link JoinKeyBloomFilter}, before the
+   * row is projected.
+   * @return the rewritten expressions, or null if a probe side row without a match is not dropped
+   *         by the join or if the key does not only depend on columns of the probe side table
+   */
+  private List<Expression> getBloomFilterExpressions(JoinType type, boolean isSubselect,
+    List<Expression> joinExpressions, TupleProjector tupleProjector) {
+    if (
+      (type != JoinType.Inner && type != JoinType.Semi) || isSubselect
+        || this.noChildParentJoinOptimization
+    ) {
+      return null;
+    }
+
+    SourceColumnExpressionVisitor visitor =
+      new SourceColumnExpressionVisitor(tupleProjector.getExpressions());
+    List<Expression> expressions = Lists.newArrayListWithExpectedSize(joinExpressions.size());
+    for (Expression expression : joinExpressions) {
+      expressions.add(expression.accept(visitor));
+    }
+    return visitor.isComplete() ? expressions : null;
+  }
+
+  /**
+   * Replaces the columns of a projected table by the expressions they are projected from.
+   */
+  private static class SourceColumnExpressionVisitor extends CloneExpressionVisitor {
+    private final Expression[] sourceExpressions;
+    private boolean complete = true;
+
+    SourceColumnExpressionVisitor(Expression[] sourceExpressions) {
+      this.sourceExpressions = sourceExpressions;
+    }
+
+    boolean isComplete() {
+      return complete;
+    }
+
+    @Override
+    public boolean isCloneNode(Expression node, List<Expression> children) {
+      return !children.equals(node.getChildren());
+    }
+
+    @Override
+    public Expression visit(ProjectedColumnExpression node) {
+      // Columns past the probe side table come from the hash caches of preceding joins
+      if (node.getPosition() >= sourceExpressions.length) {
+        complete = false;
+        return node;
+      }
+      return sourceExpressions[node.getPosition()];
+    }
+
+    @Override
+    public Expression visit(KeyValueColumnExpression node) {
+      complete = false;
+      return node;
+    }
+
+    @Override
+    public Expression visit(SingleCellColumnExpression node) {
+      complete = false;
+      return node;
+    }
+
+    @Override
+    public Expression visit(CorrelateVariableFieldAccessExpression node) {
+      complete = false;
+      return node;
+    }
+
+    @Override
+    public Expression visit(SequenceValueExpression node) {
+      complete = false;
+      return node;
+    }
+  }
+
   protected QueryPlan compileSubquery(SelectStatement subquery, boolean pushDownMaxRows)
     throws SQLException {
     return compileSubquery(subquery, pushDownMaxRows, null);
@@ -88,6 +88,8 @@ import org.apache.phoenix.schema.ColumnRef;
 import org.apache.phoenix.schema.ConstraintViolationException;
 import org.apache.phoenix.schema.DelegateColumn;
 import org.apache.phoenix.schema.IllegalDataException;
+import org.apache.phoenix.schema.MaxMutationSizeBytesExceededException;
+import org.apache.phoenix.schema.MaxMutationSizeExceededException;
 import org.apache.phoenix.schema.MaxPhoenixColumnSizeExceededException;
 import org.apache.phoenix.schema.MetaDataClient;
 import org.apache.phoenix.schema.PColumn;
@@ -352,6 +354,24 @@ public class UpsertCompiler {
     this.operation = operation;
   }
 
+  /**
+   * Compiles an UPSERT VALUES statement with a single row of bind parameters and constants once
+   * and returns a plan that upserts one row for each of the given bind parameter sets.
+   * @param upsert        the UPSERT VALUES statement
+   * @param parameterSets the bind parameter values of each row
+   * @return the mutation plan upserting all the rows
+   * @throws SQLException if the statement cannot be compiled
+   */
+  public MutationPlan compileBatch(UpsertStatement upsert, List<List<Object>> parameterSets)
+    throws SQLException {
+    MutationPlan plan = compile(upsert);
+    if (!(plan instanceof UpsertValuesMutationPlan) || upsert.getValues().size() != 1) {
+      throw new IllegalArgumentException("Only single row UPSERT VALUES can be batched: " + upsert);
+    }
+    return ((UpsertValuesMutationPlan) plan).newBatchPlan(upsert.getValues().get(0),
+      parameterSets);
+  }
+
   private static LiteralParseNode getNodeForRowTimestampColumn(PColumn col) {
     PDataType type = col.getDataType();
     long dummyValue = 0L;
@@ -963,7 +983,8 @@ public class UpsertCompiler {
 
     return new UpsertValuesMutationPlan(context, tableRef, nodeIndexOffset, constantExpressionsList,
       allColumns, columnIndexes, overlapViewColumns, valuesList, addViewColumns, connection,
-      pkSlotIndexes, useServerTimestamp, onDupKeyBytes, onDupKeyType, maxSize, maxSizeBytes);
+      pkSlotIndexes, useServerTimestamp, onDupKeyBytes, onDupKeyType, maxSize, maxSizeBytes,
+      false);
   }
 
   private static byte[] getOnDuplicateKeyBytes(PTable table, StatementContext context,
@@ -1282,13 +1303,15 @@ public class UpsertCompiler {
     private final OnDuplicateKeyType onDupKeyType;
     private final int maxSize;
     private final long maxSizeBytes;
+    // true if each row comes from a separate statement of a JDBC batch
+    private final boolean batch;
 
     public UpsertValuesMutationPlan(StatementContext context, TableRef tableRef,
       int nodeIndexOffset, List<List<Expression>> constantExpressionsList, List<PColumn> allColumns,
       int[] columnIndexes, Set<PColumn> overlapViewColumns, List<byte[][]> valuesList,
       Set<PColumn> addViewColumns, PhoenixConnection connection, int[] pkSlotIndexes,
       boolean useServerTimestamp, byte[] onDupKeyBytes, OnDuplicateKeyType onDupKeyType,
-      int maxSize, long maxSizeBytes) {
+      int maxSize, long maxSizeBytes, boolean batch) {
       this.context = context;
       this.tableRef = tableRef;
       this.nodeIndexOffset = nodeIndexOffset;
@@ -1305,6 +1328,42 @@ public class UpsertCompiler {
       this.onDupKeyType = onDupKeyType;
       this.maxSize = maxSize;
       this.maxSizeBytes = maxSizeBytes;
+      this.batch = batch;
+    }
+
+    /**
+     * Creates a plan upserting a row for each bind parameter set by binding the parameters of the
+     * compiled row to the values of each set. The value nodes must be bind parameters or literals.
+     */
+    private UpsertValuesMutationPlan newBatchPlan(List<ParseNode> valueNodes,
+      List<List<Object>> parameterSets) throws SQLException {
+      List<Expression> compiledExpressions = constantExpressionsList.get(0);
+      byte[][] compiledValues = valuesList.get(0);
+      List<List<Expression>> batchExpressionsList = new ArrayList<>(parameterSets.size());
+      List<byte[][]> batchValuesList = new ArrayList<>(parameterSets.size());
+      for (List<Object> parameters : parameterSets) {
+        List<Expression> expressions = new ArrayList<>(compiledExpressions.size());
+        for (int i = 0; i < valueNodes.size(); i++) {
+          ParseNode valueNode = valueNodes.get(i);
+          if (valueNode instanceof BindParseNode) {
+            PColumn column = allColumns.get(columnIndexes[nodeIndexOffset + i]);
+            Object value = parameters.get(((BindParseNode) valueNode).getIndex());
+            expressions.add(LiteralExpression.newConstant(value, column.getDataType(),
+              column.getSortOrder(), Determinism.ALWAYS));
+          } else if (valueNode instanceof LiteralParseNode) {
+            expressions.add(compiledExpressions.get(i));
+          } else {
+            throw new IllegalArgumentException("Cannot batch UPSERT VALUES with " + valueNode);
+          }
+        }
+        batchExpressionsList.add(expressions);
+        // The tenant id and view index id values are set at compile time
+        batchValuesList.add(compiledValues.clone());
+      }
+      return new UpsertValuesMutationPlan(context, tableRef, nodeIndexOffset, batchExpressionsList,
+        allColumns, columnIndexes, overlapViewColumns, batchValuesList, addViewColumns, connection,
+        pkSlotIndexes, useServerTimestamp, onDupKeyBytes, onDupKeyType, maxSize, maxSizeBytes,
+        true);
     }
 
     @Override
@@ -1401,25 +1460,45 @@ public class UpsertCompiler {
       }
 
       MultiRowMutationState mutation = new MultiRowMutationState(valuesList.size());
-      for (byte[][] valuesListItems : valuesList) {
-        IndexMaintainer indexMaintainer = null;
-        byte[][] viewConstants = null;
-        if (table.getIndexType() == IndexType.LOCAL) {
-          PTable parentTable = statement.getConnection().getMetaDataCache()
-            .getTableRef(new PTableKey(statement.getConnection().getTenantId(),
-              table.getParentName().getString()))
-            .getTable();
-          indexMaintainer = table.getIndexMaintainer(parentTable, connection);
-          viewConstants = IndexUtil.getViewConstants(parentTable);
+      IndexMaintainer indexMaintainer = null;
+      byte[][] viewConstants = null;
+      if (table.getIndexType() == IndexType.LOCAL) {
+        PTable parentTable = statement.getConnection().getMetaDataCache()
+          .getTableRef(new PTableKey(statement.getConnection().getTenantId(),
+            table.getParentName().getString()))
+          .getTable();
+        indexMaintainer = table.getIndexMaintainer(parentTable, connection);
+        viewConstants = IndexUtil.getViewConstants(parentTable);
+      }
+      int maxHBaseClientKeyValueSize = statement.getConnection().getQueryServices().getProps()
+        .getInt(QueryServices.HBASE_CLIENT_KEYVALUE_MAXSIZE,
+          QueryServicesOptions.DEFAULT_HBASE_CLIENT_KEYVALUE_MAXSIZE);
+      for (int index = 0; index < valuesList.size(); index++) {
+        byte[][] valuesListItems = valuesList.get(index);
+        if (batch && index > 0) {
+          // Keep the statement index of each row of the batch as if executed one by one
+          connection.incrementStatementExecutionCounter();
         }
-        int maxHBaseClientKeyValueSize = statement.getConnection().getQueryServices().getProps()
-          .getInt(QueryServices.HBASE_CLIENT_KEYVALUE_MAXSIZE,
-            QueryServicesOptions.DEFAULT_HBASE_CLIENT_KEYVALUE_MAXSIZE);
         setValues(valuesListItems, pkSlotIndexes, columnIndexes, table, mutation, statement,
           useServerTimestamp, indexMaintainer, viewConstants, onDupKeyBytes, onDupKeyType, 0,
           maxHBaseClientKeyValueSize);
       }
-      return new MutationState(tableRef, mutation, 0, maxSize, maxSizeBytes, connection);
+      MutationState state =
+        new MutationState(tableRef, mutation, 0, maxSize, maxSizeBytes, connection);
+      if (batch) {
+        // Joining rows that do not fit would reset the mutation state of the connection. Fail
+        // before joining instead, so that the statements of the batch can be run one by one.
+        MutationState connectionState = connection.getMutationState();
+        int numRows = connectionState.getNumRows() + state.getNumRows();
+        if (numRows > maxSize) {
+          throw new MaxMutationSizeExceededException(maxSize, numRows);
+        }
+        long sizeBytes = connectionState.getEstimatedSize() + state.getEstimatedSize();
+        if (sizeBytes > maxSizeBytes) {
+          throw new MaxMutationSizeBytesExceededException(maxSizeBytes, sizeBytes);
+        }
+      }
+      return state;
     }
 
     @Override
@@ -113,6 +113,11 @@ public abstract class MetaDataProtocol extends MetaDataService {
   public static final int MIN_VERSION_ALLOW_VBE_COLUMNS = VersionUtil.encodeVersion("5", "3", "0");
   public static final int MIN_VERSION_TABLE_TTL_IN_SYSTEM_CATALOG =
     VersionUtil.encodeVersion("5", "3", "0");
+  // The minimum server version that takes a reference on a server cache without replacing it
+  public static final int MIN_SERVER_CACHE_REUSE_VERSION = VersionUtil.encodeVersion("5", "4", "0");
+  // The minimum server version that assembles a server cache sent in several chunks
+  public static final int MIN_CHUNKED_SERVER_CACHE_VERSION =
+    VersionUtil.encodeVersion("5", "4", "0");
   // Version below which we should turn off essential column family.
   public static final int ESSENTIAL_FAMILY_VERSION_THRESHOLD =
     VersionUtil.encodeVersion("0", "94", "7");
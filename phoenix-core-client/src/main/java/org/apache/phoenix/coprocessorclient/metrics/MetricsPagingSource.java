@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessorclient.metrics;
+
+import org.apache.hadoop.hbase.metrics.BaseSource;
+
+/**
+ * Interface for metrics about server side paging
+ */
+public interface MetricsPagingSource extends BaseSource {
+  // Metrics2 and JMX constants
+  String METRICS_NAME = "Paging";
+  String METRICS_CONTEXT = "phoenix";
+  String METRICS_DESCRIPTION = "Metrics about server side paging";
+  String METRICS_JMX_CONTEXT = "RegionServer,sub=" + METRICS_NAME;
+
+  String DUMMY_RESULTS = "numPagingDummyResults";
+  String DUMMY_RESULTS_DESC =
+    "Number of dummy results returned because a page ended before a row qualified.";
+
+  String PAGE_TIME = "pagingPageTimeMs";
+  String PAGE_TIME_DESC =
+    "Histogram for the time in milliseconds spent in pages that ended with a dummy result.";
+
+  String PAGE_SIZE = "pagingAdaptivePageSizeMs";
+  String PAGE_SIZE_DESC = "Histogram for the page sizes in milliseconds picked by adaptive paging.";
+
+  /**
+   * Report a dummy result returned when a page ended before a row qualified.
+   */
+  void incrementDummyResultCount();
+
+  /**
+   * Add to the page time histogram.
+   */
+  void addPageTime(long t);
+
+  /**
+   * Add to the adaptive page size histogram.
+   */
+  void addPageSize(long t);
+}
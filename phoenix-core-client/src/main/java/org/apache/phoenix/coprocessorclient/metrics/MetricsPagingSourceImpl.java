@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessorclient.metrics;
+
+import org.apache.hadoop.hbase.metrics.BaseSourceImpl;
+import org.apache.hadoop.metrics2.MetricHistogram;
+import org.apache.hadoop.metrics2.lib.MutableFastCounter;
+
+/**
+ * Implementation for tracking server side paging metrics.
+ */
+public class MetricsPagingSourceImpl extends BaseSourceImpl implements MetricsPagingSource {
+
+  private final MutableFastCounter dummyResultCounter;
+  private final MetricHistogram pageTimeHistogram;
+  private final MetricHistogram pageSizeHistogram;
+
+  public MetricsPagingSourceImpl() {
+    this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
+  }
+
+  public MetricsPagingSourceImpl(String metricsName, String metricsDescription,
+    String metricsContext, String metricsJmxContext) {
+    super(metricsName, metricsDescription, metricsContext, metricsJmxContext);
+    dummyResultCounter = getMetricsRegistry().newCounter(DUMMY_RESULTS, DUMMY_RESULTS_DESC, 0L);
+    pageTimeHistogram = getMetricsRegistry().newHistogram(PAGE_TIME, PAGE_TIME_DESC);
+    pageSizeHistogram = getMetricsRegistry().newHistogram(PAGE_SIZE, PAGE_SIZE_DESC);
+  }
+
+  @Override
+  public void incrementDummyResultCount() {
+    dummyResultCounter.incr();
+  }
+
+  @Override
+  public void addPageTime(long t) {
+    pageTimeHistogram.add(t);
+  }
+
+  @Override
+  public void addPageSize(long t) {
+    pageSizeHistogram.add(t);
+  }
+}
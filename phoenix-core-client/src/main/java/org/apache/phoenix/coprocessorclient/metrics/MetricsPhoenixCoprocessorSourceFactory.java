@@ -26,6 +26,7 @@ public class MetricsPhoenixCoprocessorSourceFactory {
     new MetricsPhoenixCoprocessorSourceFactory();
   private static volatile MetricsMetadataCachingSource metadataCachingSource;
   private static volatile MetricsPhoenixMasterSource phoenixMasterSource;
+  private static volatile MetricsPagingSource pagingSource;
 
   public static MetricsPhoenixCoprocessorSourceFactory getInstance() {
     return INSTANCE;
@@ -52,4 +53,15 @@ public class MetricsPhoenixCoprocessorSourceFactory {
     }
     return INSTANCE.phoenixMasterSource;
   }
+
+  public MetricsPagingSource getPagingSource() {
+    if (INSTANCE.pagingSource == null) {
+      synchronized (MetricsPagingSource.class) {
+        if (INSTANCE.pagingSource == null) {
+          INSTANCE.pagingSource = new MetricsPagingSourceImpl();
+        }
+      }
+    }
+    return INSTANCE.pagingSource;
+  }
 }
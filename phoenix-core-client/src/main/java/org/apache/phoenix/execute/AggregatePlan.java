@@ -50,6 +50,7 @@ import org.apache.phoenix.iterate.DistinctAggregatingResultIterator;
 import org.apache.phoenix.iterate.FilterAggregatingResultIterator;
 import org.apache.phoenix.iterate.GroupedAggregatingResultIterator;
 import org.apache.phoenix.iterate.LimitingResultIterator;
+import org.apache.phoenix.iterate.MappedSpoolingResultIterator;
 import org.apache.phoenix.iterate.MergeSortRowKeyResultIterator;
 import org.apache.phoenix.iterate.OffsetResultIterator;
 import org.apache.phoenix.iterate.OrderedAggregatingResultIterator;
@@ -62,7 +63,6 @@ import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.iterate.RowKeyOrderedAggregateResultIterator;
 import org.apache.phoenix.iterate.SequenceResultIterator;
 import org.apache.phoenix.iterate.SerialIterators;
-import org.apache.phoenix.iterate.SpoolingResultIterator;
 import org.apache.phoenix.iterate.UngroupedAggregatingResultIterator;
 import org.apache.phoenix.optimize.Cost;
 import org.apache.phoenix.parse.FilterableStatement;
@@ -131,7 +131,7 @@ public class AggregatePlan extends BaseQueryPlan {
     double inputBytes = inputRows * rowWidth;
     double rowsBeforeHaving =
       RowCountVisitor.aggregate(RowCountVisitor.filter(inputRows.doubleValue(),
-        RowCountVisitor.stripSkipScanFilter(context.getScan().getFilter())), groupBy);
+        RowCountVisitor.stripSkipScanFilter(context.getScan().getFilter()), context), groupBy);
     double rowsAfterHaving = RowCountVisitor.filter(rowsBeforeHaving, having);
     double bytesBeforeHaving = rowWidth * rowsBeforeHaving;
     double bytesAfterHaving = rowWidth * rowsAfterHaving;
@@ -221,7 +221,7 @@ public class AggregatePlan extends BaseQueryPlan {
       if (ScanUtil.isPacingScannersPossible(context)) {
         innerFactory = ParallelIteratorFactory.NOOP_FACTORY;
       } else {
-        innerFactory = new SpoolingResultIterator.SpoolingResultIteratorFactory(services);
+        innerFactory = MappedSpoolingResultIterator.newSpoolingFactory(services);
       }
     } else {
       innerFactory = new OrderingResultIteratorFactory(services, this.getOrderBy());
@@ -28,6 +28,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -35,6 +36,8 @@ import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
@@ -57,6 +60,7 @@ import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.InListExpression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.filter.JoinKeyBloomFilter;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.*;
 import org.apache.phoenix.jdbc.PhoenixConnection;
@@ -83,9 +87,11 @@ import org.apache.phoenix.util.ClientUtil;
 import org.apache.phoenix.util.CostUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.SQLCloseables;
+import org.apache.phoenix.util.ScanUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 import org.apache.phoenix.thirdparty.com.google.common.base.Optional;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
@@ -102,10 +108,17 @@ public class HashJoinPlan extends DelegateQueryPlan {
   private final Set<TableRef> tableRefs;
   private final int maxServerCacheTimeToLive;
   private final long serverCacheLimit;
+  private final boolean bloomFilterEnabled;
+  private final int bloomFilterMaxKeys;
+  private final float bloomFilterFpp;
+  private final boolean sharedHashCacheEnabled;
+  private final long sharedHashCacheWindowMs;
+  private final Set<Long> sharedCacheIds = ConcurrentHashMap.newKeySet();
   private final Map<ImmutableBytesPtr, ServerCache> dependencies = Maps.newHashMap();
   private HashCacheClient hashClient;
   private AtomicLong firstJobEndTime;
   private List<Expression> keyRangeExpressions;
+  private List<JoinKeyBloomFilter> joinKeyBloomFilters;
   private Long estimatedRows;
   private Long estimatedBytes;
   private Long estimateInfoTs;
@@ -156,6 +169,21 @@ public class HashJoinPlan extends DelegateQueryPlan {
     this.serverCacheLimit =
       services.getProps().getLongBytes(QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB,
         QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
+    this.bloomFilterEnabled =
+      services.getProps().getBoolean(QueryServices.HASH_JOIN_BLOOM_FILTER_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_ENABLED);
+    this.bloomFilterMaxKeys =
+      services.getProps().getInt(QueryServices.HASH_JOIN_BLOOM_FILTER_MAX_KEYS_ATTRIB,
+        QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_MAX_KEYS);
+    this.bloomFilterFpp =
+      services.getProps().getFloat(QueryServices.HASH_JOIN_BLOOM_FILTER_FPP_ATTRIB,
+        QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_FPP);
+    this.sharedHashCacheEnabled =
+      services.getProps().getBoolean(QueryServices.SHARED_HASH_CACHE_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_SHARED_HASH_CACHE_ENABLED);
+    this.sharedHashCacheWindowMs =
+      Math.max(1, services.getProps().getLong(QueryServices.SHARED_HASH_CACHE_WINDOW_MS_ATTRIB,
+        QueryServicesOptions.DEFAULT_SHARED_HASH_CACHE_WINDOW_MS));
     for (SubPlan subPlan : subPlans) {
       this.getContext().addSubStatementContext(subPlan.getInnerPlan().getContext());
     }
@@ -183,6 +211,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
         : new HashCacheClient(delegate.getContext().getConnection());
       firstJobEndTime = new AtomicLong(0);
       keyRangeExpressions = new CopyOnWriteArrayList<Expression>();
+      joinKeyBloomFilters = new CopyOnWriteArrayList<JoinKeyBloomFilter>();
     }
 
     for (int i = 0; i < count; i++) {
@@ -259,6 +288,11 @@ public class HashJoinPlan extends DelegateQueryPlan {
     }
 
     if (joinInfo != null) {
+      // Filters of an earlier execution refer to hash caches that are gone by now
+      removeJoinKeyBloomFilters(scan);
+      for (JoinKeyBloomFilter bloomFilter : joinKeyBloomFilters) {
+        ScanUtil.andFilterAtEnd(scan, bloomFilter);
+      }
       HashJoinInfo.serializeHashJoinIntoScan(scan, joinInfo);
     }
 
@@ -269,7 +303,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
       iterator = new FilterResultIterator(iterator, postFilter);
     }
 
-    if (hasSubPlansWithPersistentCache) {
+    if (hasSubPlansWithPersistentCache || !sharedCacheIds.isEmpty()) {
       return peekForPersistentCache(iterator, scanGrouper, scan);
     } else {
       return iterator;
@@ -281,7 +315,8 @@ public class HashJoinPlan extends DelegateQueryPlan {
     // The persistent subquery is optimistic and assumes caches are present on region
     // servers. We verify that this is the case by peeking at one result. If there is
     // a cache missing exception, we retry the query with the persistent cache disabled
-    // for that specific cache ID.
+    // for that specific cache ID. The same holds for hash caches shared with other queries,
+    // which may be gone by the time this query scans.
     PeekingResultIterator peeking = LookAheadResultIterator.wrap(iterator);
     try {
       peeking.peek();
@@ -294,12 +329,50 @@ public class HashJoinPlan extends DelegateQueryPlan {
           throw e2;
         }
         delegate.getContext().setRetryingPersistentCache(cacheId);
+        // Release the references on the shared caches, they are taken again by the retry
+        for (Long sharedCacheId : sharedCacheIds) {
+          ServerCache cache =
+            dependencies.remove(new ImmutableBytesPtr(Bytes.toBytes(sharedCacheId)));
+          if (cache != null) {
+            SQLCloseables.closeAllQuietly(Collections.singletonList(cache));
+          }
+        }
+        sharedCacheIds.clear();
         return iterator(scanGrouper, scan);
       }
     }
     return peeking;
   }
 
+  @VisibleForTesting
+  static void removeJoinKeyBloomFilters(Scan scan) {
+    Filter filter = scan.getFilter();
+    if (filter instanceof JoinKeyBloomFilter) {
+      scan.setFilter(null);
+    } else if (filter instanceof FilterList) {
+      // The filter list may be shared with other scans, so a new one is built without the filters
+      FilterList filterList = (FilterList) filter;
+      List<Filter> filters = Lists.newArrayListWithExpectedSize(filterList.size());
+      for (Filter listFilter : filterList.getFilters()) {
+        if (!(listFilter instanceof JoinKeyBloomFilter)) {
+          filters.add(listFilter);
+        }
+      }
+      if (filters.size() == filterList.size()) {
+        return;
+      }
+      if (filters.isEmpty()) {
+        scan.setFilter(null);
+      } else if (
+        filters.size() == 1 && filterList.getOperator() == FilterList.Operator.MUST_PASS_ALL
+      ) {
+        scan.setFilter(filters.get(0));
+      } else {
+        scan.setFilter(new FilterList(filterList.getOperator(), filters));
+      }
+    }
+  }
+
   private Expression createKeyRangeExpression(Expression lhsExpression, Expression rhsExpression,
     List<Expression> rhsValues, ImmutableBytesWritable ptr, boolean rowKeyOrderOptimizable)
     throws SQLException {
@@ -365,7 +438,8 @@ public class HashJoinPlan extends DelegateQueryPlan {
 
       double rowWidth = w;
       double rows = RowCountVisitor.filter(r.doubleValue(),
-        RowCountVisitor.stripSkipScanFilter(delegate.getContext().getScan().getFilter()));
+        RowCountVisitor.stripSkipScanFilter(delegate.getContext().getScan().getFilter()),
+        delegate.getContext());
       double bytes = rowWidth * rows;
       Cost cost = Cost.ZERO;
       double rhsByteSum = 0.0;
@@ -532,11 +606,24 @@ public class HashJoinPlan extends DelegateQueryPlan {
     private final boolean usePersistentCache;
     private final Expression keyRangeLhsExpression;
     private final Expression keyRangeRhsExpression;
+    private final List<Expression> bloomFilterExpressions;
     private final MessageDigest digest;
 
     public HashSubPlan(int index, QueryPlan subPlan, List<Expression> hashExpressions,
       boolean singleValueOnly, boolean usePersistentCache, Expression keyRangeLhsExpression,
       Expression keyRangeRhsExpression) {
+      this(index, subPlan, hashExpressions, singleValueOnly, usePersistentCache,
+        keyRangeLhsExpression, keyRangeRhsExpression, null);
+    }
+
+    /**
+     * @param bloomFilterExpressions the join key expressions of the probe side evaluated over the
+     *                               cells of its table, or null if the probe side scan cannot be
+     *                               filtered by a bloom filter over the hash keys
+     */
+    public HashSubPlan(int index, QueryPlan subPlan, List<Expression> hashExpressions,
+      boolean singleValueOnly, boolean usePersistentCache, Expression keyRangeLhsExpression,
+      Expression keyRangeRhsExpression, List<Expression> bloomFilterExpressions) {
       this.index = index;
       this.plan = subPlan;
       this.hashExpressions = hashExpressions;
@@ -544,6 +631,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
       this.usePersistentCache = usePersistentCache;
       this.keyRangeLhsExpression = keyRangeLhsExpression;
       this.keyRangeRhsExpression = keyRangeRhsExpression;
+      this.bloomFilterExpressions = bloomFilterExpressions;
       try {
         this.digest = MessageDigest.getInstance("SHA-256");
       } catch (NoSuchAlgorithmException e) {
@@ -560,31 +648,47 @@ public class HashJoinPlan extends DelegateQueryPlan {
       }
       ServerCache cache = null;
       if (hashExpressions != null) {
-        ResultIterator iterator = plan.iterator();
-        try {
-          final byte[] cacheId;
-          String queryString = plan.getStatement().toString().replaceAll("\\$[0-9]+", "\\$");
-          if (usePersistentCache) {
-            cacheId =
-              Arrays.copyOfRange(digest.digest(queryString.getBytes(StandardCharsets.UTF_8)), 0, 8);
-            boolean retrying =
-              parent.delegate.getContext().getRetryingPersistentCache(Bytes.toLong(cacheId));
-            if (!retrying) {
-              try {
-                cache = parent.hashClient.createServerCache(cacheId, parent.delegate);
-              } catch (IOException e) {
-                throw new RuntimeException(e);
-              }
+        final byte[] cacheId;
+        String queryString = plan.getStatement().toString().replaceAll("\\$[0-9]+", "\\$");
+        if (usePersistentCache) {
+          cacheId =
+            Arrays.copyOfRange(digest.digest(queryString.getBytes(StandardCharsets.UTF_8)), 0, 8);
+          boolean retrying =
+            parent.delegate.getContext().getRetryingPersistentCache(Bytes.toLong(cacheId));
+          if (!retrying) {
+            try {
+              cache = parent.hashClient.createServerCache(cacheId, parent.delegate);
+            } catch (IOException e) {
+              throw new RuntimeException(e);
             }
-          } else {
-            cacheId = Bytes.toBytes(RANDOM.nextLong());
           }
-          LOGGER.debug("Using cache ID " + Hex.encodeHexString(cacheId) + " for " + queryString);
-          if (cache == null) {
+        } else if (isShareable(parent)) {
+          cacheId = getSharedCacheId(parent);
+          boolean retrying =
+            parent.delegate.getContext().getRetryingPersistentCache(Bytes.toLong(cacheId));
+          parent.sharedCacheIds.add(Bytes.toLong(cacheId));
+          if (!retrying) {
+            cache = parent.hashClient.reuseHashCache(ranges, cacheId,
+              parent.delegate.getTableRef().getTable());
+          }
+        } else {
+          cacheId = Bytes.toBytes(RANDOM.nextLong());
+        }
+        LOGGER.debug("Using cache ID " + Hex.encodeHexString(cacheId) + " for " + queryString);
+        if (cache == null) {
+          ResultIterator iterator = plan.iterator();
+          try {
             LOGGER.debug("Making RPC to add cache " + Hex.encodeHexString(cacheId));
+            List<ImmutableBytesPtr> hashKeys =
+              usesBloomFilter(parent) ? Lists.<ImmutableBytesPtr> newArrayList() : null;
             cache = parent.hashClient.addHashCache(ranges, cacheId, iterator,
               plan.getEstimatedSize(), hashExpressions, singleValueOnly, usePersistentCache,
-              parent.delegate.getTableRef().getTable(), keyRangeRhsExpression, keyRangeRhsValues);
+              parent.delegate.getTableRef().getTable(), keyRangeRhsExpression, keyRangeRhsValues,
+              hashKeys);
+            if (hashKeys != null && hashKeys.size() <= parent.bloomFilterMaxKeys) {
+              parent.joinKeyBloomFilters.add(
+                new JoinKeyBloomFilter(bloomFilterExpressions, hashKeys, parent.bloomFilterFpp));
+            }
             long endTime = EnvironmentEdgeManager.currentTimeMillis();
             boolean isSet = parent.firstJobEndTime.compareAndSet(0, endTime);
             if (
@@ -595,9 +699,9 @@ public class HashJoinPlan extends DelegateQueryPlan {
                   + " hash cache(s) might have expired on servers.",
                 parent.delegate.getContext().getConnection()));
             }
+          } finally {
+            iterator.close();
           }
-        } finally {
-          iterator.close();
         }
       } else {
         assert (keyRangeRhsExpression != null);
@@ -646,8 +750,61 @@ public class HashJoinPlan extends DelegateQueryPlan {
       return steps;
     }
 
+    /**
+     * The bloom filter only pays off for hash caches whose keys do not already restrict the probe
+     * side scan through a key range.
+     */
+    private boolean usesBloomFilter(HashJoinPlan parent) {
+      return parent.bloomFilterEnabled && bloomFilterExpressions != null
+        && hashExpressions != null && keyRangeLhsExpression == null;
+    }
+
+    /**
+     * A hash cache can be shared with other queries only if nothing but the cache itself is taken
+     * from the rows of the build side, and if those rows do not depend on this query alone.
+     */
+    private boolean isShareable(HashJoinPlan parent) {
+      StatementContext context = plan.getContext();
+      return parent.sharedHashCacheEnabled && keyRangeRhsExpression == null
+        && !usesBloomFilter(parent) && context.getSequenceManager().getSequenceCount() == 0
+        && !context.getConnection().getMutationState().isTransactionStarted();
+    }
+
+    /**
+     * The id of a shared hash cache is derived from everything its content depends on. Queries
+     * without an SCN only share caches built within the same time window, so that the build side
+     * they see is at most one window old.
+     */
+    private byte[] getSharedCacheId(HashJoinPlan parent) throws SQLException {
+      StatementContext context = plan.getContext();
+      PhoenixConnection connection = context.getConnection();
+      long window = connection.getSCN() != null
+        ? connection.getSCN()
+        : EnvironmentEdgeManager.currentTimeMillis() / parent.sharedHashCacheWindowMs;
+      StringBuilder buf = new StringBuilder(plan.getStatement().toString());
+      buf.append('\0').append(connection.getTenantId());
+      for (Object param : context.getStatement().getParameters()) {
+        buf.append('\0')
+          .append(param instanceof byte[] ? Bytes.toStringBinary((byte[]) param) : param);
+      }
+      buf.append('\0').append(hashExpressions).append('\0').append(singleValueOnly).append('\0')
+        .append(window);
+      return Arrays.copyOfRange(digest.digest(buf.toString().getBytes(StandardCharsets.UTF_8)), 0,
+        8);
+    }
+
     @Override
     public List<String> getPostSteps(HashJoinPlan parent) throws SQLException {
+      if (usesBloomFilter(parent)) {
+        // The filter is only built if the build side has few enough keys, which is known once the
+        // hash cache is built, so leave it out if the estimated build side rows exceed the limit
+        Long estimatedRows = plan.getEstimatedRowsToScan();
+        if (estimatedRows != null && estimatedRows > parent.bloomFilterMaxKeys) {
+          return Collections.<String> emptyList();
+        }
+        return Collections.<String> singletonList("    DYNAMIC SERVER FILTER BY BLOOM FILTER ON "
+          + bloomFilterExpressions + " IF AT MOST " + parent.bloomFilterMaxKeys + " KEYS");
+      }
       if (keyRangeLhsExpression == null) return Collections.<String> emptyList();
 
       String step = "    DYNAMIC SERVER FILTER BY " + keyRangeLhsExpression.toString() + " IN ("
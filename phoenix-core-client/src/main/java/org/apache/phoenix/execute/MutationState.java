@@ -24,18 +24,22 @@ import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_BYTES;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_COMMIT_TIME;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_INDEX_COMMIT_FAILURE_COUNT;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_PIPELINED_TABLE_COMMIT_TIME;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_SYSCAT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.DELETE_AGGREGATE_FAILURE_SQL_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.DELETE_AGGREGATE_SUCCESS_SQL_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.MUTATION_PIPELINED_TABLE_COMMIT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.NUM_METADATA_LOOKUP_FAILURES;
 import static org.apache.phoenix.monitoring.MetricType.UPSERT_AGGREGATE_FAILURE_SQL_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.UPSERT_AGGREGATE_SUCCESS_SQL_COUNTER;
 import static org.apache.phoenix.query.QueryServices.INDEX_REGION_OBSERVER_ENABLED_ALL_TABLES_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.MUTATE_PIPELINED_COMMIT_ENABLED_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.PRESERVE_MUTATIONS_ON_LIMIT_EXCEEDED_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.SERVER_SIDE_IMMUTABLE_INDEXES_ENABLED_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.SOURCE_OPERATION_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.WILDCARD_QUERY_DYNAMIC_COLS_ATTRIB;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_INDEX_REGION_OBSERVER_ENABLED_ALL_TABLES;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_MUTATE_PIPELINED_COMMIT_ENABLED;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_PRESERVE_MUTATIONS_ON_LIMIT_EXCEEDED;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_SERVER_SIDE_IMMUTABLE_INDEXES_ENABLED;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_WILDCARD_QUERY_DYNAMIC_COLS_ATTRIB;
@@ -55,6 +59,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
 import org.apache.hadoop.hbase.Cell;
@@ -191,6 +196,8 @@ public class MutationState implements SQLCloseable {
   private final boolean indexRegionObserverEnabledAllTables;
   private final boolean serverSideImmutableIndexes;
   private final boolean preserveOnLimitExceeded;
+  // Send the tables of a commit phase, and the region servers of a table, concurrently
+  private final boolean pipelinedCommit;
 
   /**
    * Return result back to client. To be used when client needs to read the whole row or some
@@ -274,6 +281,8 @@ public class MutationState implements SQLCloseable {
         DEFAULT_SERVER_SIDE_IMMUTABLE_INDEXES_ENABLED);
     this.preserveOnLimitExceeded = this.connection.getQueryServices().getProps().getBoolean(
       PRESERVE_MUTATIONS_ON_LIMIT_EXCEEDED_ATTRIB, DEFAULT_PRESERVE_MUTATIONS_ON_LIMIT_EXCEEDED);
+    this.pipelinedCommit = this.connection.getQueryServices().getProps()
+      .getBoolean(MUTATE_PIPELINED_COMMIT_ENABLED_ATTRIB, DEFAULT_MUTATE_PIPELINED_COMMIT_ENABLED);
   }
 
   public MutationState(TableRef table, MultiRowMutationState mutations, long sizeOffset,
@@ -1490,168 +1499,297 @@ public class MutationState implements SQLCloseable {
   private void sendMutations(Iterator<Entry<TableInfo, List<Mutation>>> mutationsIterator,
     Span span, ImmutableBytesWritable indexMetaDataPtr, boolean isVerifiedPhase)
     throws SQLException {
+    if (pipelinedCommit) {
+      List<Entry<TableInfo, List<Mutation>>> entries = Lists.newArrayList(mutationsIterator);
+      if (canSendTablesConcurrently(entries)) {
+        sendMutationsConcurrently(entries, span, isVerifiedPhase);
+        return;
+      }
+      mutationsIterator = entries.iterator();
+    }
     while (mutationsIterator.hasNext()) {
       Entry<TableInfo, List<Mutation>> pair = mutationsIterator.next();
-      TableInfo tableInfo = pair.getKey();
-      byte[] htableName = tableInfo.getHTableName().getBytes();
-      String htableNameStr = tableInfo.getHTableName().getString();
-      List<Mutation> mutationList = pair.getValue();
-      List<List<Mutation>> mutationBatchList =
-        getMutationBatchList(batchSize, batchSizeBytes, mutationList);
-      int totalBatchCount = mutationBatchList.size();
-
-      // create a span per target table
-      // TODO maybe we can be smarter about the table name to string here?
-      Span child =
-        Tracing.child(span, "Writing mutation batch for table: " + Bytes.toString(htableName));
-
-      int retryCount = 0;
-      boolean shouldRetry = false;
-      long numMutations = 0;
-      long mutationSizeBytes = 0;
-      long mutationCommitTime = 0;
-      long numFailedMutations = 0;
-      long numFailedPhase3Mutations = 0;
-
-      long startTime = EnvironmentEdgeManager.currentTimeMillis();
-      MutationBytes totalMutationBytesObject = null;
-      boolean shouldRetryIndexedMutation = false;
-      IndexWriteException iwe = null;
-      do {
-        TableRef origTableRef = tableInfo.getOrigTableRef();
-        PTable table = origTableRef.getTable();
-        table.getIndexMaintainers(indexMetaDataPtr, connection);
-        final ServerCache cache = tableInfo.isDataTable()
-          ? IndexMetaDataCacheClient.setMetaDataOnMutations(connection, table, mutationList,
-            indexMetaDataPtr)
-          : null;
-        // no-op if table doesn't have Conditional TTL
-        ScanUtil.annotateMutationWithConditionalTTL(connection, tableInfo.getPTable(),
-          mutationList);
-        // If we haven't retried yet, retry for this case only, as it's possible that
-        // a split will occur after we send the index metadata cache to all known
-        // region servers.
-        shouldRetry = cache != null;
-        SQLException sqlE = null;
-        Table hTable = connection.getQueryServices().getTable(htableName);
-        List<Mutation> currentMutationBatch = null;
-        boolean areAllBatchesSuccessful = false;
-        Object[] resultObjects = null;
+      TableSendResult sendResult =
+        new TableSendResult(allUpsertsMutations, allDeletesMutations);
+      try {
+        sendTableMutations(pair.getKey(), pair.getValue(), span, indexMetaDataPtr,
+          isVerifiedPhase, sendResult);
+      } finally {
+        resetAllMutationState();
+        mergeTableSendResult(sendResult);
+      }
+    }
+  }
 
-        try {
-          if (table.isTransactional()) {
-            // Track tables to which we've sent uncommitted data
-            if (tableInfo.isDataTable()) {
-              uncommittedPhysicalNames.add(table.getPhysicalName().getString());
-              phoenixTransactionContext.markDMLFence(table);
-            }
-            // Only pass true for last argument if the index is being written to on it's own (i.e.
-            // initial
-            // index population), not if it's being written to for normal maintenance due to writes
-            // to
-            // the data table. This case is different because the initial index population does not
-            // need
-            // to be done transactionally since the index is only made active after all writes have
-            // occurred successfully.
-            hTable = phoenixTransactionContext.getTransactionalTableWriter(connection, table,
-              hTable, tableInfo.isDataTable() && table.getType() == PTableType.INDEX);
+  /**
+   * State produced while sending the mutations of a single table. Tables may be sent concurrently
+   * by pipelined commit, so each keeps its own and they are merged on the committing thread.
+   */
+  private static class TableSendResult {
+    // Whether the mutations being committed are all upserts or all deletes, only the first table
+    // sent after the mutations were added reports them
+    private boolean allUpserts;
+    private boolean allDeletes;
+    private boolean hasUpdatedRowCount;
+    private int numUpdatedRows;
+    private Result result;
+
+    private TableSendResult(boolean allUpserts, boolean allDeletes) {
+      this.allUpserts = allUpserts;
+      this.allDeletes = allDeletes;
+    }
+  }
+
+  private void mergeTableSendResult(TableSendResult sendResult) {
+    if (sendResult.hasUpdatedRowCount) {
+      numUpdatedRowsForAutoCommit = sendResult.numUpdatedRows;
+    }
+    if (sendResult.result != null) {
+      result = sendResult.result;
+    }
+  }
+
+  private static boolean
+    canSendTablesConcurrently(List<Entry<TableInfo, List<Mutation>>> entries) {
+    if (entries.size() <= 1) {
+      return false;
+    }
+    // Transactional writes go through a single transaction context, keep them serial
+    for (Entry<TableInfo, List<Mutation>> entry : entries) {
+      if (entry.getKey().getOrigTableRef().getTable().isTransactional()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void sendMutationsConcurrently(List<Entry<TableInfo, List<Mutation>>> entries,
+    final Span span, final boolean isVerifiedPhase) throws SQLException {
+    List<Callable<Void>> tableTasks = Lists.newArrayListWithExpectedSize(entries.size());
+    List<TableSendResult> sendResults = Lists.newArrayListWithExpectedSize(entries.size());
+    // Same as sending the tables serially, only the first one reports the mutation kind
+    boolean allUpserts = allUpsertsMutations;
+    boolean allDeletes = allDeletesMutations;
+    resetAllMutationState();
+    for (final Entry<TableInfo, List<Mutation>> entry : entries) {
+      final TableSendResult sendResult = new TableSendResult(allUpserts, allDeletes);
+      allUpserts = true;
+      allDeletes = true;
+      sendResults.add(sendResult);
+      tableTasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws SQLException {
+          // Each table serializes its own index maintainers, so the pointer can't be shared
+          sendTableMutations(entry.getKey(), entry.getValue(), span, new ImmutableBytesWritable(),
+            isVerifiedPhase, sendResult);
+          return null;
+        }
+      });
+    }
+    try {
+      connection.getQueryServices().getPipelinedMutationDispatcher().dispatchTables(tableTasks);
+    } finally {
+      // All tasks are done here, dispatchTables waits for them even when one fails
+      for (TableSendResult sendResult : sendResults) {
+        mergeTableSendResult(sendResult);
+      }
+    }
+  }
+
+  private void sendTableMutations(TableInfo tableInfo, List<Mutation> mutationList, Span span,
+    ImmutableBytesWritable indexMetaDataPtr, boolean isVerifiedPhase, TableSendResult sendResult)
+    throws SQLException {
+    byte[] htableName = tableInfo.getHTableName().getBytes();
+    String htableNameStr = tableInfo.getHTableName().getString();
+    boolean sendByServer =
+      pipelinedCommit && !tableInfo.getOrigTableRef().getTable().isTransactional();
+    PipelinedMutationDispatcher pipelinedDispatcher =
+      sendByServer ? connection.getQueryServices().getPipelinedMutationDispatcher() : null;
+    List<List<Mutation>> mutationBatchList = sendByServer
+      ? pipelinedDispatcher.getMutationBatchListByServer(connection, htableName, batchSize,
+        batchSizeBytes, mutationList)
+      : getMutationBatchList(batchSize, batchSizeBytes, mutationList);
+    int totalBatchCount = mutationBatchList.size();
+
+    // create a span per target table
+    // TODO maybe we can be smarter about the table name to string here?
+    Span child =
+      Tracing.child(span, "Writing mutation batch for table: " + Bytes.toString(htableName));
+
+    int retryCount = 0;
+    boolean shouldRetry = false;
+    long numMutations = 0;
+    long mutationSizeBytes = 0;
+    long mutationCommitTime = 0;
+    long numFailedMutations = 0;
+    long numFailedPhase3Mutations = 0;
+
+    long startTime = EnvironmentEdgeManager.currentTimeMillis();
+    MutationBytes totalMutationBytesObject = null;
+    boolean shouldRetryIndexedMutation = false;
+    // Number of leading batches whose data write succeeded but whose index writes failed
+    int indexWriteFailedBatchCount = 0;
+    int replayBatchCount = 0;
+    IndexWriteException iwe = null;
+    do {
+      TableRef origTableRef = tableInfo.getOrigTableRef();
+      PTable table = origTableRef.getTable();
+      table.getIndexMaintainers(indexMetaDataPtr, connection);
+      final ServerCache cache = tableInfo.isDataTable()
+        ? IndexMetaDataCacheClient.setMetaDataOnMutations(connection, table, mutationList,
+          indexMetaDataPtr)
+        : null;
+      // no-op if table doesn't have Conditional TTL
+      ScanUtil.annotateMutationWithConditionalTTL(connection, tableInfo.getPTable(),
+        mutationList);
+      // If we haven't retried yet, retry for this case only, as it's possible that
+      // a split will occur after we send the index metadata cache to all known
+      // region servers.
+      shouldRetry = cache != null;
+      SQLException sqlE = null;
+      Table hTable = connection.getQueryServices().getTable(htableName);
+      List<Mutation> currentMutationBatch = null;
+      boolean areAllBatchesSuccessful = false;
+      Object[] resultObjects = null;
+
+      try {
+        if (table.isTransactional()) {
+          // Track tables to which we've sent uncommitted data
+          if (tableInfo.isDataTable()) {
+            uncommittedPhysicalNames.add(table.getPhysicalName().getString());
+            phoenixTransactionContext.markDMLFence(table);
           }
-          numMutations = mutationList.size();
-          GLOBAL_MUTATION_BATCH_SIZE.update(numMutations);
-          totalMutationBytesObject = calculateMutationSize(mutationList, true);
-
-          child.addTimelineAnnotation("Attempt " + retryCount);
-          Iterator<List<Mutation>> itrListMutation = mutationBatchList.iterator();
-          while (itrListMutation.hasNext()) {
-            final List<Mutation> mutationBatch = itrListMutation.next();
-            currentMutationBatch = mutationBatch;
-            if (connection.getAutoCommit() && mutationBatch.size() == 1) {
-              resultObjects = new Object[mutationBatch.size()];
+          // Only pass true for last argument if the index is being written to on it's own (i.e.
+          // initial
+          // index population), not if it's being written to for normal maintenance due to writes
+          // to
+          // the data table. This case is different because the initial index population does not
+          // need
+          // to be done transactionally since the index is only made active after all writes have
+          // occurred successfully.
+          hTable = phoenixTransactionContext.getTransactionalTableWriter(connection, table,
+            hTable, tableInfo.isDataTable() && table.getType() == PTableType.INDEX);
+        }
+        numMutations = mutationList.size();
+        GLOBAL_MUTATION_BATCH_SIZE.update(numMutations);
+        totalMutationBytesObject = calculateMutationSize(mutationList, true);
+
+        child.addTimelineAnnotation("Attempt " + retryCount);
+        if (
+          sendByServer && retryCount == 0 && !shouldRetryIndexedMutation
+            && mutationBatchList.size() > 1
+        ) {
+          // Applied batches are removed from the list, retries go through the serial path below
+          PipelinedMutationDispatcher.ServerBatchSender sender =
+            pipelinedDispatcher.newServerBatchSender(connection, htableName);
+          try {
+            sender.send(mutationBatchList);
+          } finally {
+            synchronized (this) {
+              batchCount += sender.getSentBatchCount();
             }
-            if (shouldRetryIndexedMutation) {
-              // if there was an index write failure, retry the mutation in a loop
-              final Table finalHTable = hTable;
-              final ImmutableBytesWritable finalindexMetaDataPtr = indexMetaDataPtr;
-              final PTable finalPTable = table;
-              final Object[] finalResultObjects = resultObjects;
-              PhoenixIndexFailurePolicyHelper.doBatchWithRetries(new MutateCommand() {
-                @Override
-                public void doMutation() throws IOException {
-                  try {
-                    finalHTable.batch(mutationBatch, finalResultObjects);
-                  } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException(e);
-                  } catch (IOException e) {
-                    e = updateTableRegionCacheIfNecessary(e);
-                    throw e;
-                  }
+            indexWriteFailedBatchCount = sender.getIndexWriteFailedBatchCount();
+            currentMutationBatch = mutationBatchList.isEmpty() ? null : mutationBatchList.get(0);
+          }
+        }
+        Iterator<List<Mutation>> itrListMutation = mutationBatchList.iterator();
+        while (itrListMutation.hasNext()) {
+          final List<Mutation> mutationBatch = itrListMutation.next();
+          currentMutationBatch = mutationBatch;
+          if (connection.getAutoCommit() && mutationBatch.size() == 1) {
+            resultObjects = new Object[mutationBatch.size()];
+          }
+          if (shouldRetryIndexedMutation) {
+            // if there was an index write failure, retry the mutation in a loop
+            final Table finalHTable = hTable;
+            final ImmutableBytesWritable finalindexMetaDataPtr = indexMetaDataPtr;
+            final PTable finalPTable = table;
+            final Object[] finalResultObjects = resultObjects;
+            PhoenixIndexFailurePolicyHelper.doBatchWithRetries(new MutateCommand() {
+              @Override
+              public void doMutation() throws IOException {
+                try {
+                  finalHTable.batch(mutationBatch, finalResultObjects);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  throw new IOException(e);
+                } catch (IOException e) {
+                  e = updateTableRegionCacheIfNecessary(e);
+                  throw e;
                 }
+              }
 
-                @Override
-                public List<Mutation> getMutationList() {
-                  return mutationBatch;
-                }
+              @Override
+              public List<Mutation> getMutationList() {
+                return mutationBatch;
+              }
 
-                private IOException updateTableRegionCacheIfNecessary(IOException ioe) {
-                  SQLException sqlE = ClientUtil.parseLocalOrRemoteServerException(ioe);
-                  if (
-                    sqlE != null && sqlE.getErrorCode()
-                        == SQLExceptionCode.INDEX_METADATA_NOT_FOUND.getErrorCode()
-                  ) {
-                    try {
-                      connection.getQueryServices().clearTableRegionCache(finalHTable.getName());
-                      IndexMetaDataCacheClient.setMetaDataOnMutations(connection, finalPTable,
-                        mutationBatch, finalindexMetaDataPtr);
-                    } catch (SQLException e) {
-                      return ClientUtil
-                        .createIOException("Exception during updating index meta data cache", ioe);
-                    }
+              private IOException updateTableRegionCacheIfNecessary(IOException ioe) {
+                SQLException sqlE = ClientUtil.parseLocalOrRemoteServerException(ioe);
+                if (
+                  sqlE != null && sqlE.getErrorCode()
+                      == SQLExceptionCode.INDEX_METADATA_NOT_FOUND.getErrorCode()
+                ) {
+                  try {
+                    connection.getQueryServices().clearTableRegionCache(finalHTable.getName());
+                    IndexMetaDataCacheClient.setMetaDataOnMutations(connection, finalPTable,
+                      mutationBatch, finalindexMetaDataPtr);
+                  } catch (SQLException e) {
+                    return ClientUtil
+                      .createIOException("Exception during updating index meta data cache", ioe);
                   }
-                  return ioe;
                 }
-              }, iwe, connection, connection.getQueryServices().getProps());
+                return ioe;
+              }
+            }, iwe, connection, connection.getQueryServices().getProps());
+            if (--replayBatchCount <= 0) {
               shouldRetryIndexedMutation = false;
-            } else {
-              hTable.batch(mutationBatch, resultObjects);
             }
+          } else {
+            hTable.batch(mutationBatch, resultObjects);
+          }
 
-            if (resultObjects != null) {
-              Result result = (Result) resultObjects[0];
-              if (result != null && !result.isEmpty()) {
-                Cell cell = result.getColumnLatestCell(Bytes.toBytes(UPSERT_CF),
-                  Bytes.toBytes(UPSERT_STATUS_CQ));
-                numUpdatedRowsForAutoCommit = PInteger.INSTANCE.getCodec()
-                  .decodeInt(cell.getValueArray(), cell.getValueOffset(), SortOrder.getDefault());
-                if (this.returnResult != null) {
-                  if (
-                    this.returnResult == ReturnResult.NEW_ROW_ON_SUCCESS
-                      || this.returnResult == ReturnResult.OLD_ROW_ALWAYS
-                  ) {
-                    this.result = result;
-                  }
+          if (resultObjects != null) {
+            Result result = (Result) resultObjects[0];
+            if (result != null && !result.isEmpty()) {
+              Cell cell = result.getColumnLatestCell(Bytes.toBytes(UPSERT_CF),
+                Bytes.toBytes(UPSERT_STATUS_CQ));
+              sendResult.hasUpdatedRowCount = true;
+              sendResult.numUpdatedRows = PInteger.INSTANCE.getCodec()
+                .decodeInt(cell.getValueArray(), cell.getValueOffset(), SortOrder.getDefault());
+              if (this.returnResult != null) {
+                if (
+                  this.returnResult == ReturnResult.NEW_ROW_ON_SUCCESS
+                    || this.returnResult == ReturnResult.OLD_ROW_ALWAYS
+                ) {
+                  sendResult.result = result;
                 }
-              } else {
-                numUpdatedRowsForAutoCommit = 1;
               }
+            } else {
+              sendResult.hasUpdatedRowCount = true;
+              sendResult.numUpdatedRows = 1;
             }
+          }
 
-            // remove each batch from the list once it gets applied
-            // so when failures happens for any batch we only start
-            // from that batch only instead of doing duplicate reply of already
-            // applied batches from entire list, also we can set
-            // REPLAY_ONLY_INDEX_WRITES for first batch
-            // only in case of 1121 SQLException
-            itrListMutation.remove();
+          // remove each batch from the list once it gets applied
+          // so when failures happens for any batch we only start
+          // from that batch only instead of doing duplicate reply of already
+          // applied batches from entire list, also we can set
+          // REPLAY_ONLY_INDEX_WRITES for first batch
+          // only in case of 1121 SQLException
+          itrListMutation.remove();
+          synchronized (this) {
             batchCount++;
-            if (LOGGER.isDebugEnabled()) LOGGER.debug(
-              "Sent batch of " + mutationBatch.size() + " for " + Bytes.toString(htableName));
           }
-          child.stop();
-          shouldRetry = false;
-          numFailedMutations = 0;
+          if (LOGGER.isDebugEnabled()) LOGGER.debug(
+            "Sent batch of " + mutationBatch.size() + " for " + Bytes.toString(htableName));
+        }
+        child.stop();
+        shouldRetry = false;
+        numFailedMutations = 0;
 
-          // Remove batches as we process them
+        // Remove batches as we process them
+        synchronized (this) {
           removeMutations(this.mutationsMap, origTableRef);
           if (tableInfo.isDataTable()) {
             numRows -= numMutations;
@@ -1659,135 +1797,152 @@ public class MutationState implements SQLCloseable {
             estimatedSize =
               PhoenixKeyValueUtil.getEstimatedRowMutationSizeWithBatch(this.mutationsMap);
           }
-          areAllBatchesSuccessful = true;
-        } catch (Exception e) {
-          long serverTimestamp = ClientUtil.parseServerTimestamp(e);
-          SQLException inferredE = ClientUtil.parseServerExceptionOrNull(e);
-          if (inferredE != null) {
-            if (
-              shouldRetry && retryCount == 0
-                && inferredE.getErrorCode()
-                    == SQLExceptionCode.INDEX_METADATA_NOT_FOUND.getErrorCode()
-            ) {
-              // Swallow this exception once, as it's possible that we split after sending the index
-              // metadata
-              // and one of the region servers doesn't have it. This will cause it to have it the
-              // next
-              // go around.
-              // If it fails again, we don't retry.
-              String msg =
-                "Swallowing exception and retrying after clearing meta cache on connection. "
-                  + inferredE;
-              LOGGER.warn(LogUtil.addCustomAnnotations(msg, connection));
-              connection.getQueryServices().clearTableRegionCache(TableName.valueOf(htableName));
-
-              // add a new child span as this one failed
-              child.addTimelineAnnotation(msg);
-              child.stop();
-              child = Tracing.child(span, "Failed batch, attempting retry");
-
-              continue;
-            } else
-              if (inferredE.getErrorCode() == SQLExceptionCode.INDEX_WRITE_FAILURE.getErrorCode()) {
-                iwe = PhoenixIndexFailurePolicyHelper.getIndexWriteException(inferredE);
-                if (iwe != null && !shouldRetryIndexedMutation) {
-                  // For an index write failure, the data table write succeeded,
-                  // so when we retry we need to set REPLAY_WRITES
-                  // for first batch in list only.
-                  for (Mutation m : mutationBatchList.get(0)) {
+        }
+        areAllBatchesSuccessful = true;
+      } catch (Exception e) {
+        long serverTimestamp = ClientUtil.parseServerTimestamp(e);
+        SQLException inferredE = ClientUtil.parseServerExceptionOrNull(e);
+        if (inferredE != null) {
+          if (
+            shouldRetry && retryCount == 0
+              && inferredE.getErrorCode()
+                  == SQLExceptionCode.INDEX_METADATA_NOT_FOUND.getErrorCode()
+          ) {
+            // Swallow this exception once, as it's possible that we split after sending the index
+            // metadata
+            // and one of the region servers doesn't have it. This will cause it to have it the
+            // next
+            // go around.
+            // If it fails again, we don't retry.
+            String msg =
+              "Swallowing exception and retrying after clearing meta cache on connection. "
+                + inferredE;
+            LOGGER.warn(LogUtil.addCustomAnnotations(msg, connection));
+            connection.getQueryServices().clearTableRegionCache(TableName.valueOf(htableName));
+
+            // add a new child span as this one failed
+            child.addTimelineAnnotation(msg);
+            child.stop();
+            child = Tracing.child(span, "Failed batch, attempting retry");
+
+            continue;
+          } else
+            if (inferredE.getErrorCode() == SQLExceptionCode.INDEX_WRITE_FAILURE.getErrorCode()) {
+              iwe = PhoenixIndexFailurePolicyHelper.getIndexWriteException(inferredE);
+              if (iwe != null && !shouldRetryIndexedMutation) {
+                // For an index write failure, the data table write succeeded,
+                // so when we retry we need to set REPLAY_WRITES
+                // for first batch in list only, or for every batch that
+                // failed this way when batches were sent by region server.
+                replayBatchCount =
+                  Math.min(Math.max(1, indexWriteFailedBatchCount), mutationBatchList.size());
+                for (int b = 0; b < replayBatchCount; b++) {
+                  for (Mutation m : mutationBatchList.get(b)) {
                     if (!PhoenixIndexMetaData.isIndexRebuild(m.getAttributesMap())) {
                       m.setAttribute(BaseScannerRegionObserverConstants.REPLAY_WRITES,
                         BaseScannerRegionObserverConstants.REPLAY_ONLY_INDEX_WRITES);
                     }
                     PhoenixKeyValueUtil.setTimestamp(m, serverTimestamp);
                   }
-                  shouldRetry = true;
-                  shouldRetryIndexedMutation = true;
-                  continue;
                 }
+                shouldRetry = true;
+                shouldRetryIndexedMutation = true;
+                continue;
               }
-            e = inferredE;
-          }
-          // Throw to client an exception that indicates the statements that
-          // were not committed successfully.
-          int[] uncommittedStatementIndexes = getUncommittedStatementIndexes();
-          sqlE = new CommitException(e, uncommittedStatementIndexes, serverTimestamp);
+            }
+          e = inferredE;
+        }
+        // Throw to client an exception that indicates the statements that
+        // were not committed successfully.
+        int[] uncommittedStatementIndexes;
+        synchronized (this) {
+          uncommittedStatementIndexes = getUncommittedStatementIndexes();
+        }
+        sqlE = new CommitException(e, uncommittedStatementIndexes, serverTimestamp);
 
-          numFailedMutations = uncommittedStatementIndexes.length;
+        numFailedMutations = uncommittedStatementIndexes.length;
 
-          if (isVerifiedPhase) {
-            numFailedPhase3Mutations = numFailedMutations;
-            GLOBAL_MUTATION_INDEX_COMMIT_FAILURE_COUNT.update(numFailedPhase3Mutations);
-          }
-        } finally {
-          mutationCommitTime = EnvironmentEdgeManager.currentTimeMillis() - startTime;
-          GLOBAL_MUTATION_COMMIT_TIME.update(mutationCommitTime);
-          MutationMetric failureMutationMetrics = MutationMetric.EMPTY_METRIC;
-          long mutationQueryParsingTimeMS = this.mutationQueryParsingTimeMS;
-          if (!areAllBatchesSuccessful) {
-            failureMutationMetrics =
-              updateMutationBatchFailureMetrics(currentMutationBatch, htableNameStr,
-                numFailedMutations, table.isTransactional(), mutationQueryParsingTimeMS);
-          }
+        if (isVerifiedPhase) {
+          numFailedPhase3Mutations = numFailedMutations;
+          GLOBAL_MUTATION_INDEX_COMMIT_FAILURE_COUNT.update(numFailedPhase3Mutations);
+        }
+      } finally {
+        mutationCommitTime = EnvironmentEdgeManager.currentTimeMillis() - startTime;
+        GLOBAL_MUTATION_COMMIT_TIME.update(mutationCommitTime);
+        MutationMetric failureMutationMetrics = MutationMetric.EMPTY_METRIC;
+        long mutationQueryParsingTimeMS = this.mutationQueryParsingTimeMS;
+        if (!areAllBatchesSuccessful) {
+          failureMutationMetrics = updateMutationBatchFailureMetrics(currentMutationBatch,
+            htableNameStr, numFailedMutations, table.isTransactional(), mutationQueryParsingTimeMS,
+            sendResult.allUpserts, sendResult.allDeletes);
+        }
 
-          MutationMetric committedMutationsMetric =
-            getCommittedMutationsMetric(totalMutationBytesObject, mutationBatchList, numMutations,
-              numFailedMutations, numFailedPhase3Mutations, mutationCommitTime, totalBatchCount,
-              mutationQueryParsingTimeMS);
-          // Combine failure mutation metrics with committed ones for the final picture
-          committedMutationsMetric.combineMetric(failureMutationMetrics);
+        MutationMetric committedMutationsMetric =
+          getCommittedMutationsMetric(totalMutationBytesObject, mutationBatchList, numMutations,
+            numFailedMutations, numFailedPhase3Mutations, mutationCommitTime, totalBatchCount,
+            mutationQueryParsingTimeMS);
+        // Combine failure mutation metrics with committed ones for the final picture
+        committedMutationsMetric.combineMetric(failureMutationMetrics);
+        synchronized (this) {
           mutationMetricQueue.addMetricsForTable(htableNameStr, committedMutationsMetric);
+        }
+        if (sendByServer) {
+          GLOBAL_MUTATION_PIPELINED_TABLE_COMMIT_TIME.update(mutationCommitTime);
+          TableMetricsManager.updateMetricsMethod(htableNameStr,
+            MUTATION_PIPELINED_TABLE_COMMIT_TIME, mutationCommitTime);
+        }
 
-          if (allUpsertsMutations ^ allDeletesMutations) {
-            // success cases are updated for both cases autoCommit=true and conn.commit explicit
-            if (areAllBatchesSuccessful) {
-              TableMetricsManager.updateMetricsMethod(htableNameStr,
-                allUpsertsMutations
-                  ? UPSERT_AGGREGATE_SUCCESS_SQL_COUNTER
-                  : DELETE_AGGREGATE_SUCCESS_SQL_COUNTER,
-                1);
-            }
-            // Failures cases are updated only for conn.commit explicit case.
-            if (!areAllBatchesSuccessful && !connection.getAutoCommit()) {
-              TableMetricsManager.updateMetricsMethod(htableNameStr,
-                allUpsertsMutations
-                  ? UPSERT_AGGREGATE_FAILURE_SQL_COUNTER
-                  : DELETE_AGGREGATE_FAILURE_SQL_COUNTER,
-                1);
-            }
-            // Update size and latency histogram metrics.
-            TableMetricsManager.updateSizeHistogramMetricsForMutations(htableNameStr,
-              committedMutationsMetric.getTotalMutationsSizeBytes().getValue(),
-              allUpsertsMutations);
-            Long latency = timeInExecuteMutationMap.get(htableNameStr);
-            if (latency == null) {
-              latency = 0l;
-            }
-            latency += mutationCommitTime;
-            TableMetricsManager.updateLatencyHistogramForMutations(htableNameStr, latency,
-              allUpsertsMutations);
+        if (sendResult.allUpserts ^ sendResult.allDeletes) {
+          // success cases are updated for both cases autoCommit=true and conn.commit explicit
+          if (areAllBatchesSuccessful) {
+            TableMetricsManager.updateMetricsMethod(htableNameStr,
+              sendResult.allUpserts
+                ? UPSERT_AGGREGATE_SUCCESS_SQL_COUNTER
+                : DELETE_AGGREGATE_SUCCESS_SQL_COUNTER,
+              1);
+          }
+          // Failures cases are updated only for conn.commit explicit case.
+          if (!areAllBatchesSuccessful && !connection.getAutoCommit()) {
+            TableMetricsManager.updateMetricsMethod(htableNameStr,
+              sendResult.allUpserts
+                ? UPSERT_AGGREGATE_FAILURE_SQL_COUNTER
+                : DELETE_AGGREGATE_FAILURE_SQL_COUNTER,
+              1);
           }
-          resetAllMutationState();
+          // Update size and latency histogram metrics.
+          TableMetricsManager.updateSizeHistogramMetricsForMutations(htableNameStr,
+            committedMutationsMetric.getTotalMutationsSizeBytes().getValue(),
+            sendResult.allUpserts);
+          Long latency = timeInExecuteMutationMap.get(htableNameStr);
+          if (latency == null) {
+            latency = 0l;
+          }
+          latency += mutationCommitTime;
+          TableMetricsManager.updateLatencyHistogramForMutations(htableNameStr, latency,
+            sendResult.allUpserts);
+        }
+        // Retries and later tables don't report the mutation kind again
+        sendResult.allUpserts = true;
+        sendResult.allDeletes = true;
 
+        try {
+          if (cache != null) cache.close();
+        } finally {
           try {
-            if (cache != null) cache.close();
-          } finally {
-            try {
-              hTable.close();
-            } catch (IOException e) {
-              if (sqlE != null) {
-                sqlE.setNextException(ClientUtil.parseServerException(e));
-              } else {
-                sqlE = ClientUtil.parseServerException(e);
-              }
-            }
+            hTable.close();
+          } catch (IOException e) {
             if (sqlE != null) {
-              throw sqlE;
+              sqlE.setNextException(ClientUtil.parseServerException(e));
+            } else {
+              sqlE = ClientUtil.parseServerException(e);
             }
           }
+          if (sqlE != null) {
+            throw sqlE;
+          }
         }
-      } while (shouldRetry && retryCount++ < 1);
-    }
+      }
+    } while (shouldRetry && retryCount++ < 1);
   }
 
   /**
@@ -1800,6 +1955,14 @@ public class MutationState implements SQLCloseable {
   public static MutationMetricQueue.MutationMetric updateMutationBatchFailureMetrics(
     List<Mutation> failedMutationBatch, String tableName, long numFailedMutations,
     boolean isTransactional, long mutationQueryParsingTimeMS) {
+    return updateMutationBatchFailureMetrics(failedMutationBatch, tableName, numFailedMutations,
+      isTransactional, mutationQueryParsingTimeMS, allUpsertsMutations, allDeletesMutations);
+  }
+
+  private static MutationMetricQueue.MutationMetric updateMutationBatchFailureMetrics(
+    List<Mutation> failedMutationBatch, String tableName, long numFailedMutations,
+    boolean isTransactional, long mutationQueryParsingTimeMS, boolean allUpserts,
+    boolean allDeletes) {
 
     if (
       failedMutationBatch == null || failedMutationBatch.isEmpty()
@@ -1827,7 +1990,7 @@ public class MutationState implements SQLCloseable {
     }
 
     long totalNumFailedMutations =
-      allDeletesMutations && !isTransactional ? numDeleteMutationsInBatch : totalFailedMutation;
+      allDeletes && !isTransactional ? numDeleteMutationsInBatch : totalFailedMutation;
     GLOBAL_MUTATION_BATCH_FAILED_COUNT.update(totalNumFailedMutations);
 
     // Update the MUTATION_BATCH_FAILED_SIZE counter with the number of failed delete mutations
@@ -1835,8 +1998,8 @@ public class MutationState implements SQLCloseable {
     // bug in sendMutations where we don't get the correct value for numFailedMutations when
     // we don't use transactions
     return new MutationMetricQueue.MutationMetric(0, 0, 0, 0, 0, 0, totalNumFailedMutations, 0, 0,
-      0, 0, numUpsertMutationsInBatch, allUpsertsMutations ? 1 : 0, numDeleteMutationsInBatch,
-      allDeletesMutations ? 1 : 0, 0, mutationQueryParsingTimeMS);
+      0, 0, numUpsertMutationsInBatch, allUpserts ? 1 : 0, numDeleteMutationsInBatch,
+      allDeletes ? 1 : 0, 0, mutationQueryParsingTimeMS);
   }
 
   /**
@@ -0,0 +1,427 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_PIPELINED_SERVER_COMMIT_TIME;
+import static org.apache.phoenix.monitoring.MetricType.MUTATION_PIPELINED_SERVER_COMMIT_TIME;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.monitoring.AtomicMetric;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.util.ClientUtil;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Sends the mutations of a commit concurrently when pipelined commit is enabled through
+ * {@link QueryServices#MUTATE_PIPELINED_COMMIT_ENABLED_ATTRIB}. The tables of a commit phase are
+ * dispatched on one bounded pool and, within a table, the batches of each region server on a
+ * second one, so that a table task waiting for its server batches can never starve the pool it is
+ * waiting on. An instance is owned by a {@link ConnectionQueryServices}, sized from its properties
+ * and closed along with it.
+ */
+public class PipelinedMutationDispatcher implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PipelinedMutationDispatcher.class);
+  private static final long SHUTDOWN_TIMEOUT_MS = 10000;
+
+  private final ExecutorService tableExecutor;
+  private final ExecutorService serverExecutor;
+  // Total time spent sending batches, by region server host and port
+  private final ConcurrentMap<String, AtomicMetric> serverCommitTimes = new ConcurrentHashMap<>();
+
+  public PipelinedMutationDispatcher(ReadOnlyProps props) {
+    int maxThreads = props.getInt(QueryServices.MUTATE_PIPELINED_COMMIT_MAX_THREADS_ATTRIB,
+      QueryServicesOptions.DEFAULT_MUTATE_PIPELINED_COMMIT_MAX_THREADS);
+    this.tableExecutor = Executors.newFixedThreadPool(maxThreads, new ThreadFactoryBuilder()
+      .setDaemon(true).setNameFormat("phoenix-pipelined-commit-table-%s").build());
+    this.serverExecutor = Executors.newFixedThreadPool(maxThreads, new ThreadFactoryBuilder()
+      .setDaemon(true).setNameFormat("phoenix-pipelined-commit-server-%s").build());
+  }
+
+  /**
+   * Stop accepting commits and wait for the ones in flight to finish.
+   */
+  @Override
+  public void close() {
+    tableExecutor.shutdown();
+    serverExecutor.shutdown();
+    try {
+      long deadline = EnvironmentEdgeManager.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+      if (
+        !tableExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+          || !serverExecutor.awaitTermination(
+            Math.max(0, deadline - EnvironmentEdgeManager.currentTimeMillis()),
+            TimeUnit.MILLISECONDS)
+      ) {
+        tableExecutor.shutdownNow();
+        serverExecutor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      tableExecutor.shutdownNow();
+      serverExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the total time in milliseconds spent sending mutation batches to each region server,
+   *         keyed by the host and port of the server
+   */
+  public Map<String, Long> getServerCommitTimes() {
+    Map<String, Long> commitTimes = Maps.newHashMapWithExpectedSize(serverCommitTimes.size());
+    for (Map.Entry<String, AtomicMetric> entry : serverCommitTimes.entrySet()) {
+      commitTimes.put(entry.getKey(), entry.getValue().getValue());
+    }
+    return commitTimes;
+  }
+
+  private void updateServerCommitTime(ServerName server, long serverCommitTime) {
+    GLOBAL_MUTATION_PIPELINED_SERVER_COMMIT_TIME.update(serverCommitTime);
+    // Keyed by address rather than by ServerName so that restarts don't add new entries
+    String serverAddress = server.getAddress().toString();
+    AtomicMetric metric = serverCommitTimes.get(serverAddress);
+    if (metric == null) {
+      AtomicMetric newMetric = new AtomicMetric(MUTATION_PIPELINED_SERVER_COMMIT_TIME);
+      metric = serverCommitTimes.putIfAbsent(serverAddress, newMetric);
+      if (metric == null) {
+        metric = newMetric;
+      }
+    }
+    metric.change(serverCommitTime);
+  }
+
+  /**
+   * Runs every table task concurrently and waits for all of them to finish, so that a failure in
+   * one table does not leave the others running past the end of the commit phase.
+   * @throws SQLException the first failure, with the failures of other tables chained to it
+   */
+  public void dispatchTables(List<Callable<Void>> tableTasks) throws SQLException {
+    List<Future<Void>> futures = Lists.newArrayListWithExpectedSize(tableTasks.size());
+    for (Callable<Void> tableTask : tableTasks) {
+      futures.add(tableExecutor.submit(tableTask));
+    }
+    SQLException firstException = null;
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancelAll(futures);
+        throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION).setRootCause(e)
+          .build().buildException();
+      } catch (ExecutionException e) {
+        SQLException sqlE = e.getCause() instanceof SQLException
+          ? (SQLException) e.getCause()
+          : new SQLException(e.getCause());
+        if (firstException == null) {
+          firstException = sqlE;
+        } else {
+          firstException.setNextException(sqlE);
+        }
+      }
+    }
+    if (firstException != null) {
+      throw firstException;
+    }
+  }
+
+  /**
+   * Split the mutations of a table into batches that each target a single region server. Batches
+   * of the same server are consecutive in the returned list. Falls back to
+   * {@link MutationState#getMutationBatchList(long, long, List)} if the region locations cannot be
+   * resolved or all mutations go to the same server.
+   */
+  public List<List<Mutation>> getMutationBatchListByServer(PhoenixConnection connection,
+    byte[] htableName, long batchSize, long batchSizeBytes, List<Mutation> mutations) {
+    Map<ServerName, List<Mutation>> mutationsByServer = Maps.newLinkedHashMap();
+    try {
+      ConnectionQueryServices services = connection.getQueryServices();
+      for (Mutation mutation : mutations) {
+        ServerName server =
+          services.getTableRegionLocation(htableName, mutation.getRow()).getServerName();
+        List<Mutation> serverMutations = mutationsByServer.get(server);
+        if (serverMutations == null) {
+          serverMutations = Lists.newArrayList();
+          mutationsByServer.put(server, serverMutations);
+        }
+        serverMutations.add(mutation);
+      }
+    } catch (SQLException e) {
+      LOGGER.debug("Unable to group mutations by region server, batching them as usual", e);
+      return MutationState.getMutationBatchList(batchSize, batchSizeBytes, mutations);
+    }
+    if (mutationsByServer.size() <= 1) {
+      return MutationState.getMutationBatchList(batchSize, batchSizeBytes, mutations);
+    }
+    List<List<Mutation>> mutationBatchList = Lists.newArrayList();
+    for (List<Mutation> serverMutations : mutationsByServer.values()) {
+      mutationBatchList
+        .addAll(MutationState.getMutationBatchList(batchSize, batchSizeBytes, serverMutations));
+    }
+    return mutationBatchList;
+  }
+
+  public ServerBatchSender newServerBatchSender(PhoenixConnection connection, byte[] htableName) {
+    return new ServerBatchSender(connection, htableName);
+  }
+
+  private static void cancelAll(List<? extends Future<?>> futures) {
+    for (Future<?> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Sends the batches of a single table, one chain of batches per region server. Batches of the
+   * same server are sent in order and a chain stops at its first failure, so that the batches
+   * left behind can be replayed exactly like the serial commit path does.
+   */
+  public class ServerBatchSender {
+    private final PhoenixConnection connection;
+    private final byte[] htableName;
+    private int sentBatchCount;
+    private int indexWriteFailedBatchCount;
+
+    private ServerBatchSender(PhoenixConnection connection, byte[] htableName) {
+      this.connection = connection;
+      this.htableName = htableName;
+    }
+
+    /**
+     * Send all batches and remove the applied ones from the list. On failure, the failed batches
+     * are moved to the front of the list, the ones that failed with an index write failure first,
+     * followed by the batches that were never sent.
+     * @throws IOException  the failure of the first batch that failed writing to an index, or the
+     *                      failure of the first failed batch if no index write failed
+     * @throws SQLException if the region locations of the batches cannot be resolved, or a
+     *                      server chain could not get the table
+     */
+    public void send(List<List<Mutation>> mutationBatchList) throws IOException, SQLException {
+      ConnectionQueryServices services = connection.getQueryServices();
+      Map<ServerName, List<List<Mutation>>> batchesByServer = Maps.newLinkedHashMap();
+      for (List<Mutation> mutationBatch : mutationBatchList) {
+        ServerName server =
+          services.getTableRegionLocation(htableName, mutationBatch.get(0).getRow())
+            .getServerName();
+        List<List<Mutation>> serverBatches = batchesByServer.get(server);
+        if (serverBatches == null) {
+          serverBatches = Lists.newArrayList();
+          batchesByServer.put(server, serverBatches);
+        }
+        serverBatches.add(mutationBatch);
+      }
+
+      List<Future<ServerBatchResult>> futures =
+        Lists.newArrayListWithExpectedSize(batchesByServer.size());
+      for (Map.Entry<ServerName, List<List<Mutation>>> entry : batchesByServer.entrySet()) {
+        final ServerName server = entry.getKey();
+        final List<List<Mutation>> serverBatches = entry.getValue();
+        futures.add(serverExecutor.submit(new Callable<ServerBatchResult>() {
+          @Override
+          public ServerBatchResult call() throws Exception {
+            return sendServerBatches(server, serverBatches);
+          }
+        }));
+      }
+
+      // Wait for every chain, even after a failure, so that the batch list reflects exactly
+      // which batches were applied. A chain that did not return a result counts as unsent.
+      List<ServerBatchResult> results = Lists.newArrayListWithExpectedSize(futures.size());
+      Exception chainFailure = null;
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          results.add(futures.get(i).get());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          cancelAll(futures.subList(i, futures.size()));
+          chainFailure = new IOException(e);
+          break;
+        } catch (ExecutionException e) {
+          if (chainFailure == null) {
+            chainFailure = e.getCause() instanceof Exception
+              ? (Exception) e.getCause()
+              : ClientUtil.createIOException("Pipelined commit failed", e.getCause());
+          }
+        }
+      }
+      reorderUnsentBatches(mutationBatchList, results, chainFailure);
+    }
+
+    private ServerBatchResult sendServerBatches(ServerName server,
+      List<List<Mutation>> serverBatches) {
+      ServerBatchResult result = new ServerBatchResult();
+      long startTime = EnvironmentEdgeManager.currentTimeMillis();
+      // Table instances are not thread safe, so each server chain uses its own
+      try (Table hTable = connection.getQueryServices().getTable(htableName)) {
+        for (List<Mutation> mutationBatch : serverBatches) {
+          try {
+            hTable.batch(mutationBatch, null);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.setFailure(mutationBatch, new IOException(e));
+            break;
+          } catch (IOException e) {
+            result.setFailure(mutationBatch, e);
+            break;
+          }
+          result.sentBatches.add(mutationBatch);
+        }
+      } catch (SQLException | IOException | RuntimeException e) {
+        // Getting or closing the table failed, the batches that weren't sent stay in the list
+        if (result.failure == null) {
+          result.setFailure(null, e);
+        }
+      } finally {
+        long serverCommitTime = EnvironmentEdgeManager.currentTimeMillis() - startTime;
+        updateServerCommitTime(server, serverCommitTime);
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug("Sent {} of {} batches to {} in {} ms", result.sentBatches.size(),
+            serverBatches.size(), server, serverCommitTime);
+        }
+      }
+      return result;
+    }
+
+    private void reorderUnsentBatches(List<List<Mutation>> mutationBatchList,
+      List<ServerBatchResult> results, Exception chainFailure) throws IOException, SQLException {
+      Set<List<Mutation>> processedBatches =
+        Collections.newSetFromMap(new IdentityHashMap<List<Mutation>, Boolean>());
+      List<List<Mutation>> indexWriteFailedBatches = new ArrayList<>();
+      List<List<Mutation>> otherFailedBatches = new ArrayList<>();
+      Exception indexWriteFailure = null;
+      Exception otherFailure = chainFailure;
+      for (ServerBatchResult result : results) {
+        sentBatchCount += result.sentBatches.size();
+        processedBatches.addAll(result.sentBatches);
+        if (result.failure == null) {
+          continue;
+        }
+        SQLException sqlE = ClientUtil.parseServerExceptionOrNull(result.failure);
+        if (
+          result.failedBatch != null && sqlE != null
+            && sqlE.getErrorCode() == SQLExceptionCode.INDEX_WRITE_FAILURE.getErrorCode()
+        ) {
+          processedBatches.add(result.failedBatch);
+          indexWriteFailedBatches.add(result.failedBatch);
+          if (indexWriteFailure == null) {
+            indexWriteFailure = result.failure;
+          }
+        } else {
+          if (result.failedBatch != null) {
+            processedBatches.add(result.failedBatch);
+            otherFailedBatches.add(result.failedBatch);
+          }
+          if (otherFailure == null) {
+            otherFailure = result.failure;
+          }
+        }
+      }
+      indexWriteFailedBatchCount = indexWriteFailedBatches.size();
+      List<List<Mutation>> unsentBatches = new ArrayList<>(indexWriteFailedBatches);
+      unsentBatches.addAll(otherFailedBatches);
+      for (List<Mutation> mutationBatch : mutationBatchList) {
+        if (!processedBatches.contains(mutationBatch)) {
+          unsentBatches.add(mutationBatch);
+        }
+      }
+      mutationBatchList.clear();
+      mutationBatchList.addAll(unsentBatches);
+      if (indexWriteFailure != null) {
+        if (otherFailure != null) {
+          LOGGER.warn("Batches also failed with a non index write failure, they will be resent",
+            otherFailure);
+        }
+        throwFailure(indexWriteFailure);
+      }
+      if (otherFailure != null) {
+        throwFailure(otherFailure);
+      }
+    }
+
+    private void throwFailure(Exception failure) throws IOException, SQLException {
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      if (failure instanceof SQLException) {
+        throw (SQLException) failure;
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      throw ClientUtil.createIOException("Pipelined commit failed", failure);
+    }
+
+    /**
+     * @return number of batches successfully applied by the last {@link #send(List)}
+     */
+    public int getSentBatchCount() {
+      return sentBatchCount;
+    }
+
+    /**
+     * @return number of batches at the front of the batch list whose data table write succeeded
+     *         but whose index writes failed, and which therefore only need their index writes
+     *         replayed
+     */
+    public int getIndexWriteFailedBatchCount() {
+      return indexWriteFailedBatchCount;
+    }
+  }
+
+  private static class ServerBatchResult {
+    private final List<List<Mutation>> sentBatches = new ArrayList<>();
+    // Null if the chain failed before or after sending its batches
+    private List<Mutation> failedBatch;
+    private Exception failure;
+
+    private void setFailure(List<Mutation> failedBatch, Exception failure) {
+      this.failedBatch = failedBatch;
+      this.failure = failure;
+    }
+  }
+}
@@ -47,6 +47,7 @@ import org.apache.phoenix.iterate.BaseResultIterators;
 import org.apache.phoenix.iterate.ChunkedResultIterator;
 import org.apache.phoenix.iterate.ConcatResultIterator;
 import org.apache.phoenix.iterate.LimitingResultIterator;
+import org.apache.phoenix.iterate.MappedSpoolingResultIterator;
 import org.apache.phoenix.iterate.MergeSortRowKeyResultIterator;
 import org.apache.phoenix.iterate.MergeSortTopNResultIterator;
 import org.apache.phoenix.iterate.OffsetResultIterator;
@@ -57,7 +58,6 @@ import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.iterate.RoundRobinResultIterator;
 import org.apache.phoenix.iterate.SequenceResultIterator;
 import org.apache.phoenix.iterate.SerialIterators;
-import org.apache.phoenix.iterate.SpoolingResultIterator;
 import org.apache.phoenix.optimize.Cost;
 import org.apache.phoenix.parse.FilterableStatement;
 import org.apache.phoenix.parse.HintNode;
@@ -216,8 +216,7 @@ public class ScanPlan extends BaseQueryPlan {
       return ParallelIteratorFactory.NOOP_FACTORY;
     }
     ParallelIteratorFactory spoolingResultIteratorFactory =
-      new SpoolingResultIterator.SpoolingResultIteratorFactory(
-        context.getConnection().getQueryServices());
+      MappedSpoolingResultIterator.newSpoolingFactory(context.getConnection().getQueryServices());
 
     // If we're doing an order by then we need the full result before we can do anything,
     // so we don't bother chunking it. If we're just doing a simple scan then we chunk
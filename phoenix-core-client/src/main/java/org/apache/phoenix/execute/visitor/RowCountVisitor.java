@@ -25,6 +25,7 @@ import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.phoenix.compile.GroupByCompiler;
 import org.apache.phoenix.compile.ListJarsQueryPlan;
 import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.compile.TraceQueryPlan;
 import org.apache.phoenix.execute.AggregatePlan;
 import org.apache.phoenix.execute.ClientAggregatePlan;
@@ -40,6 +41,7 @@ import org.apache.phoenix.execute.UnnestArrayPlan;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.filter.BooleanExpressionFilter;
 import org.apache.phoenix.parse.JoinTableNode;
+import org.apache.phoenix.schema.stats.SelectivityEstimator;
 
 /**
  * Implementation of QueryPlanVisitor used to get the number of output rows for a QueryPlan.
@@ -66,7 +68,8 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
       Long b = plan.getEstimatedRowsToScan();
       if (b != null) {
         return limit(filter(aggregate(
-          filter(b.doubleValue(), stripSkipScanFilter(plan.getContext().getScan().getFilter())),
+          filter(b.doubleValue(), stripSkipScanFilter(plan.getContext().getScan().getFilter()),
+            plan.getContext()),
           plan.getGroupBy()), plan.getHaving()), plan.getLimit());
       }
     } catch (SQLException e) {
@@ -81,7 +84,8 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
       Long b = plan.getEstimatedRowsToScan();
       if (b != null) {
         return limit(
-          filter(b.doubleValue(), stripSkipScanFilter(plan.getContext().getScan().getFilter())),
+          filter(b.doubleValue(), stripSkipScanFilter(plan.getContext().getScan().getFilter()),
+            plan.getContext()),
           plan.getLimit());
       }
     } catch (SQLException e) {
@@ -133,8 +137,8 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
         return null;
       }
 
-      Double rows =
-        filter(b.doubleValue(), stripSkipScanFilter(lhsPlan.getContext().getScan().getFilter()));
+      Double rows = filter(b.doubleValue(),
+        stripSkipScanFilter(lhsPlan.getContext().getScan().getFilter()), lhsPlan.getContext());
       JoinTableNode.JoinType[] joinTypes = plan.getJoinInfo().getJoinTypes();
       HashJoinPlan.SubPlan[] subPlans = plan.getSubPlans();
       for (int i = 0; i < joinTypes.length; i++) {
@@ -238,6 +242,21 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
     return 0.5 * inputRows;
   }
 
+  /**
+   * Estimates the row count of a scan filter from the column statistics of the scanned table,
+   * falling back to {@link #filter(double, Filter)} if they are not available.
+   */
+  public static double filter(double inputRows, Filter filter, StatementContext context) {
+    if (filter == null) {
+      return inputRows;
+    }
+    Double selectivity = new SelectivityEstimator(context).estimate(filter);
+    if (selectivity == null) {
+      return filter(inputRows, filter);
+    }
+    return selectivity * inputRows;
+  }
+
   public static double filter(double inputRows, Expression filter) {
     if (filter == null) {
       return inputRows;
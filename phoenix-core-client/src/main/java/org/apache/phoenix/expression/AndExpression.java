@@ -20,8 +20,10 @@ package org.apache.phoenix.expression;
 import java.sql.SQLException;
 import java.util.Iterator;
 import java.util.List;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.expression.visitor.ExpressionVisitor;
 import org.apache.phoenix.schema.TypeMismatchException;
+import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PBoolean;
 
 /**
@@ -79,6 +81,18 @@ public class AndExpression extends AndOrExpression {
     return Boolean.FALSE.equals(value);
   }
 
+  /**
+   * Filters the block by each child in turn, so that a child only sees the rows all the children
+   * before it are TRUE for
+   */
+  @Override
+  public int filter(Tuple[] tuples, int[] selection, int count, ImmutableBytesWritable ptr) {
+    for (int i = 0; i < children.size() && count > 0; i++) {
+      count = children.get(i).filter(tuples, selection, count, ptr);
+    }
+    return count;
+  }
+
   @Override
   public String toString() {
     StringBuilder buf = new StringBuilder("(");
@@ -192,6 +192,40 @@ public class CaseExpression extends BaseCompoundExpression {
     return size;
   }
 
+  /**
+   * Filters the block by each WHEN in turn over the rows no WHEN before it was TRUE for, and then
+   * filters the rows it was TRUE for by its THEN. The rows no WHEN was TRUE for are filtered by the
+   * ELSE, if there is one.
+   */
+  @Override
+  public int filter(Tuple[] tuples, int[] selection, int count, ImmutableBytesWritable ptr) {
+    boolean[] decided = new boolean[tuples.length];
+    boolean[] matched = new boolean[tuples.length];
+    int decidedCount = 0;
+    int size = children.size();
+    int[] taken = new int[count];
+    for (int i = 0; i + 1 < size && decidedCount < count; i += 2) {
+      int takenCount = SelectionVector.copyUnmatched(selection, count, decided, taken);
+      takenCount = children.get(i + 1).filter(tuples, taken, takenCount, ptr);
+      for (int j = 0; j < takenCount; j++) {
+        decided[taken[j]] = true;
+      }
+      decidedCount += takenCount;
+      takenCount = children.get(i).filter(tuples, taken, takenCount, ptr);
+      for (int j = 0; j < takenCount; j++) {
+        matched[taken[j]] = true;
+      }
+    }
+    if (hasElse() && decidedCount < count) {
+      int restCount = SelectionVector.copyUnmatched(selection, count, decided, taken);
+      restCount = children.get(size - 1).filter(tuples, taken, restCount, ptr);
+      for (int j = 0; j < restCount; j++) {
+        matched[taken[j]] = true;
+      }
+    }
+    return SelectionVector.retainMatched(selection, count, matched);
+  }
+
   /**
    * Only expression that currently uses the isPartial flag. The IS NULL expression will use it too.
    * TODO: We could alternatively have a non interface method, like setIsPartial in which we set to
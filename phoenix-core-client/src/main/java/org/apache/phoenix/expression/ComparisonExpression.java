@@ -384,6 +384,49 @@ public class ComparisonExpression extends BaseCompoundExpression {
     return true;
   }
 
+  /**
+   * Evaluates a literal right hand side once for the whole block rather than once per row
+   */
+  @Override
+  public int filter(Tuple[] tuples, int[] selection, int count, ImmutableBytesWritable ptr) {
+    Expression rhs = children.get(1);
+    if (!(rhs instanceof LiteralExpression)) {
+      return super.filter(tuples, selection, count, ptr);
+    }
+    if (!rhs.evaluate(null, ptr) || ptr.getLength() == 0) { // null comparison evals to null
+      return 0;
+    }
+    byte[] rhsBytes = ptr.copyBytes();
+    int rhsLength = rhsBytes.length;
+    PDataType rhsDataType = rhs.getDataType();
+    SortOrder rhsSortOrder = rhs.getSortOrder();
+    if (rhsDataType == PChar.INSTANCE) {
+      rhsLength = StringUtil.getUnpaddedCharLength(rhsBytes, 0, rhsLength, rhsSortOrder);
+    }
+    Expression lhs = children.get(0);
+    PDataType lhsDataType = lhs.getDataType();
+    SortOrder lhsSortOrder = lhs.getSortOrder();
+    int selected = 0;
+    for (int i = 0; i < count; i++) {
+      int row = selection[i];
+      reset();
+      if (!lhs.evaluate(tuples[row], ptr) || ptr.getLength() == 0) {
+        continue;
+      }
+      int lhsLength = ptr.getLength();
+      if (lhsDataType == PChar.INSTANCE) {
+        lhsLength =
+          StringUtil.getUnpaddedCharLength(ptr.get(), ptr.getOffset(), lhsLength, lhsSortOrder);
+      }
+      int comparisonResult = lhsDataType.compareTo(ptr.get(), ptr.getOffset(), lhsLength,
+        lhsSortOrder, rhsBytes, 0, rhsLength, rhsSortOrder, rhsDataType);
+      if (ByteUtil.compare(op, comparisonResult)) {
+        selection[selected++] = row;
+      }
+    }
+    return selected;
+  }
+
   @Override
   public boolean contains(Expression other) {
     if (!(other instanceof ComparisonExpression || other instanceof IsNullExpression)) {
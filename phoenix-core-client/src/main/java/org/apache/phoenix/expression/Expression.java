@@ -89,6 +89,38 @@ public interface Expression extends PDatum, Writable {
     return this.equals(other);
   }
 
+  /**
+   * Evaluates this boolean expression over a block of complete rows, keeping in the selection
+   * vector the positions of the rows for which it is TRUE, in their original order. Expressions
+   * that can do better than evaluating one row at a time override this. The overrides still visit
+   * the rows one at a time; what they save is the work on rows an earlier child already decided and
+   * on literals that are the same for every row.
+   * <p>
+   * Block evaluation is limited to boolean filters over rows that are already materialized, and
+   * the post-join filter of HashJoinRegionScanner is its only caller. Scan filters, aggregations
+   * and projections keep calling {@link #evaluate} one row at a time, and there are no column
+   * vectors of primitive values, so arithmetic is never evaluated a block at a time.
+   * @param tuples    block of rows
+   * @param selection positions in tuples of the rows to evaluate, updated in place
+   * @param count     number of positions in selection
+   * @param ptr       pointer used while evaluating
+   * @return the number of positions left in selection
+   */
+  default int filter(Tuple[] tuples, int[] selection, int count, ImmutableBytesWritable ptr) {
+    int selected = 0;
+    for (int i = 0; i < count; i++) {
+      int row = selection[i];
+      reset();
+      if (
+        evaluate(tuples[row], ptr) && ptr.getLength() != 0
+          && Boolean.TRUE.equals(getDataType().toObject(ptr))
+      ) {
+        selection[selected++] = row;
+      }
+    }
+    return selected;
+  }
+
   /**
    * Determine if the expression should be evaluated over the entire row
    */
@@ -211,7 +211,8 @@ public enum ExpressionType {
   RawRowSizeFunction(RawRowSizeFunction.class),
   RegexpLikeFunction(RegexpLikeFunction.class),
   ByteBasedRegexpLikeFunction(ByteBasedRegexpLikeFunction.class),
-  StringBasedRegexpLikeFunction(StringBasedRegexpLikeFunction.class);
+  StringBasedRegexpLikeFunction(StringBasedRegexpLikeFunction.class),
+  ApproxPercentileAggregateFunction(ApproxPercentileAggregateFunction.class);
 
   ExpressionType(Class<? extends Expression> clazz) {
     this.clazz = clazz;
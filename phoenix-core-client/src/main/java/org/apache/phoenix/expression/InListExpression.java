@@ -220,6 +220,23 @@ public class InListExpression extends BaseSingleExpression {
     return true;
   }
 
+  /**
+   * Looks up the child value of each row directly, without going through the boolean value
+   */
+  @Override
+  public int filter(Tuple[] tuples, int[] selection, int count, ImmutableBytesWritable ptr) {
+    Expression child = getChild();
+    int selected = 0;
+    for (int i = 0; i < count; i++) {
+      int row = selection[i];
+      reset();
+      if (child.evaluate(tuples[row], ptr) && ptr.getLength() != 0 && values.contains(ptr)) {
+        selection[selected++] = row;
+      }
+    }
+    return selected;
+  }
+
   @Override
   public int hashCode() {
     if (!hashCodeSet) {
@@ -303,6 +303,34 @@ public abstract class LikeExpression extends BaseCompoundExpression {
     return true;
   }
 
+  /**
+   * Matches each row against the pattern compiled once for the expression, without the trace
+   * logging done per row by evaluate
+   */
+  @Override
+  public int filter(Tuple[] tuples, int[] selection, int count, ImmutableBytesWritable ptr) {
+    AbstractBasePattern pattern = this.pattern;
+    if (pattern == null) {
+      return super.filter(tuples, selection, count, ptr);
+    }
+    Expression strExpression = getStrExpression();
+    SortOrder strSortOrder = strExpression.getSortOrder();
+    int selected = 0;
+    for (int i = 0; i < count; i++) {
+      int row = selection[i];
+      reset();
+      if (!strExpression.evaluate(tuples[row], ptr)) {
+        continue;
+      }
+      PVarchar.INSTANCE.coerceBytes(ptr, PVarchar.INSTANCE, strSortOrder, SortOrder.ASC);
+      pattern.matches(ptr);
+      if (Boolean.TRUE.equals(PBoolean.INSTANCE.toObject(ptr))) {
+        selection[selected++] = row;
+      }
+    }
+    return selected;
+  }
+
   @Override
   public void readFields(DataInput input) throws IOException {
     super.readFields(input);
@@ -18,7 +18,9 @@
 package org.apache.phoenix.expression;
 
 import java.util.List;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.schema.tuple.Tuple;
 
 /**
  * OR expression implementation
@@ -37,6 +39,21 @@ public class OrExpression extends AndOrExpression {
     return Boolean.TRUE.equals(value);
   }
 
+  /**
+   * Filters the block by each child in turn, so that a child only sees the rows none of the
+   * children before it are TRUE for
+   */
+  @Override
+  public int filter(Tuple[] tuples, int[] selection, int count, ImmutableBytesWritable ptr) {
+    boolean[] matched = new boolean[tuples.length];
+    int matchedCount = 0;
+    for (int i = 0; i < children.size() && matchedCount < count; i++) {
+      matchedCount +=
+        SelectionVector.filterUnmatched(children.get(i), tuples, selection, count, matched, ptr);
+    }
+    return SelectionVector.retainMatched(selection, count, matched);
+  }
+
   @Override
   public String toString() {
     StringBuilder buf = new StringBuilder("(");
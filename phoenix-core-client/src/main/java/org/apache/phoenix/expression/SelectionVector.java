@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+/**
+ * Helpers for the selection vectors used by {@link Expression#filter}
+ */
+class SelectionVector {
+
+  private SelectionVector() {
+  }
+
+  /**
+   * Filters the rows of selection that are not yet matched with the given expression and marks the
+   * rows for which it is TRUE as matched
+   * @return the number of rows newly matched
+   */
+  static int filterUnmatched(Expression expression, Tuple[] tuples, int[] selection, int count,
+    boolean[] matched, ImmutableBytesWritable ptr) {
+    int[] unmatched = new int[count];
+    int unmatchedCount = copyUnmatched(selection, count, matched, unmatched);
+    int passed = expression.filter(tuples, unmatched, unmatchedCount, ptr);
+    for (int i = 0; i < passed; i++) {
+      matched[unmatched[i]] = true;
+    }
+    return passed;
+  }
+
+  /**
+   * Copies the rows of selection that are not matched to unmatched
+   * @return the number of rows copied
+   */
+  static int copyUnmatched(int[] selection, int count, boolean[] matched, int[] unmatched) {
+    int unmatchedCount = 0;
+    for (int i = 0; i < count; i++) {
+      if (!matched[selection[i]]) {
+        unmatched[unmatchedCount++] = selection[i];
+      }
+    }
+    return unmatchedCount;
+  }
+
+  /**
+   * Keeps in selection only the matched rows
+   * @return the number of rows left in selection
+   */
+  static int retainMatched(int[] selection, int count, boolean[] matched) {
+    int selected = 0;
+    for (int i = 0; i < count; i++) {
+      if (matched[selection[i]]) {
+        selection[selected++] = selection[i];
+      }
+    }
+    return selected;
+  }
+}
@@ -28,7 +28,7 @@ import org.apache.phoenix.util.SizedUtil;
  * Aggregator for COUNT aggregations
  * @since 0.1
  */
-public class CountAggregator extends BaseAggregator {
+public class CountAggregator extends BaseAggregator implements LongStateAggregator {
 
   private long count = 0;
   private byte[] buffer = null;
@@ -74,6 +74,21 @@ public class CountAggregator extends BaseAggregator {
     super.reset();
   }
 
+  @Override
+  public long getState() {
+    return count;
+  }
+
+  @Override
+  public boolean hasState() {
+    return true;
+  }
+
+  @Override
+  public void setState(long state, boolean hasState) {
+    count = state;
+  }
+
   @Override
   public String toString() {
     return "COUNT [count=" + count + "]";
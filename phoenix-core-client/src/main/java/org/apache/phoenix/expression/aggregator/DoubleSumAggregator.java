@@ -24,7 +24,7 @@ import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PDouble;
 import org.apache.phoenix.util.SizedUtil;
 
-public class DoubleSumAggregator extends BaseAggregator {
+public class DoubleSumAggregator extends BaseAggregator implements LongStateAggregator {
 
   private double sum = 0;
   private byte[] buffer;
@@ -72,6 +72,26 @@ public class DoubleSumAggregator extends BaseAggregator {
     return PDouble.INSTANCE;
   }
 
+  @Override
+  public long getState() {
+    return Double.doubleToRawLongBits(sum);
+  }
+
+  @Override
+  public boolean hasState() {
+    return buffer != null;
+  }
+
+  @Override
+  public void setState(long state, boolean hasState) {
+    sum = Double.longBitsToDouble(state);
+    if (!hasState) {
+      buffer = null;
+    } else if (buffer == null) {
+      initBuffer();
+    }
+  }
+
   @Override
   public String toString() {
     return "SUM [sum=" + sum + "]";
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+/**
+ * Aggregator whose complete aggregation state is a single primitive long. Group by caches use this
+ * to keep the state of every distinct group in primitive arrays and to reuse one set of aggregator
+ * instances for all groups instead of allocating one per group.
+ * @since 5.4.0
+ */
+public interface LongStateAggregator extends Aggregator {
+
+  /**
+   * Get the current aggregation state, only meaningful if {@link #hasState()} is true.
+   */
+  public long getState();
+
+  /**
+   * Determines whether a value has been aggregated, i.e. whether the aggregator would evaluate to a
+   * non null value.
+   */
+  public boolean hasState();
+
+  /**
+   * Replace the current aggregation state with one previously obtained through
+   * {@link #getState()} and {@link #hasState()}.
+   * @param state    the aggregation state
+   * @param hasState whether a value has been aggregated
+   */
+  public void setState(long state, boolean hasState);
+}
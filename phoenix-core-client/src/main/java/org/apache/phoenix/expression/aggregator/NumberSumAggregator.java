@@ -28,7 +28,8 @@ import org.apache.phoenix.util.SizedUtil;
  * Aggregator that sums integral number values
  * @since 0.1
  */
-abstract public class NumberSumAggregator extends BaseAggregator {
+abstract public class NumberSumAggregator extends BaseAggregator
+  implements LongStateAggregator {
   private long sum = 0;
   private byte[] buffer;
 
@@ -93,6 +94,26 @@ abstract public class NumberSumAggregator extends BaseAggregator {
     super.reset();
   }
 
+  @Override
+  public long getState() {
+    return sum;
+  }
+
+  @Override
+  public boolean hasState() {
+    return buffer != null;
+  }
+
+  @Override
+  public void setState(long state, boolean hasState) {
+    sum = state;
+    if (!hasState) {
+      buffer = null;
+    } else if (buffer == null) {
+      initBuffer();
+    }
+  }
+
   @Override
   public String toString() {
     return "SUM [sum=" + sum + "]";
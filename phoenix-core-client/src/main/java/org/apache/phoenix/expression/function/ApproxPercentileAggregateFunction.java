@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import com.clearspring.analytics.stream.quantile.TDigest;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.BaseAggregator;
+import org.apache.phoenix.parse.FunctionParseNode.Argument;
+import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PVarbinary;
+import org.apache.phoenix.util.SizedUtil;
+
+/**
+ * Built-in function for {@code APPROX_PERCENTILE(<expression>, <percentile> [, <discrete>]) }
+ * aggregate function. Unlike PERCENTILE_CONT and PERCENTILE_DISC, which ship every distinct value
+ * with its count from each region to the client, each region summarizes its values in a t-digest
+ * whose size is bounded by {@link #COMPRESSION}, and the client merges those digests. The result
+ * is interpolated between values like PERCENTILE_CONT, unless discrete is true in which case it is
+ * of the type of the expression like PERCENTILE_DISC. The compression is hard coded so that a
+ * change of it requires re-deployment of the phoenix server coprocessors.
+ */
+@BuiltInFunction(name = ApproxPercentileAggregateFunction.NAME, args = {
+  @Argument(allowedTypes = { PDecimal.class }),
+  @Argument(allowedTypes = { PDecimal.class }, isConstant = true, minValue = "0", maxValue = "1"),
+  @Argument(allowedTypes = { PBoolean.class }, isConstant = true, defaultValue = "false") })
+public class ApproxPercentileAggregateFunction extends SingleAggregateFunction {
+  public static final String NAME = "APPROX_PERCENTILE";
+  public static final double COMPRESSION = 100;
+
+  public ApproxPercentileAggregateFunction() {
+  }
+
+  public ApproxPercentileAggregateFunction(List<Expression> children) {
+    super(children);
+  }
+
+  @Override
+  public Aggregator newClientAggregator() {
+    return new TDigestClientAggregator(children);
+  }
+
+  @Override
+  public Aggregator newServerAggregator(Configuration conf) {
+    Expression child = getAggregatorExpression();
+    return new TDigestServerAggregator(child.getSortOrder(), child.getDataType(), null);
+  }
+
+  @Override
+  public Aggregator newServerAggregator(Configuration conf, ImmutableBytesWritable ptr) {
+    Expression child = getAggregatorExpression();
+    return new TDigestServerAggregator(child.getSortOrder(), child.getDataType(), ptr);
+  }
+
+  @Override
+  public PDataType getDataType() {
+    return isDiscrete(children) ? getAggregatorExpression().getDataType() : PDecimal.INSTANCE;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  static boolean isDiscrete(List<Expression> children) {
+    return Boolean.TRUE.equals(((LiteralExpression) children.get(2)).getValue());
+  }
+
+  static TDigest fromBytes(ImmutableBytesWritable ptr) {
+    return TDigest.fromBytes(ByteBuffer.wrap(ptr.get(), ptr.getOffset(), ptr.getLength()));
+  }
+}
+
+/**
+ * Client side aggregator that merges the t-digests returned by the server side aggregators and
+ * evaluates to the requested percentile of the merged digest.
+ */
+class TDigestClientAggregator extends BaseAggregator {
+  // Not yet initialized by the function with its actual children when the aggregator is created
+  private final List<Expression> children;
+  private TDigest digest = new TDigest(ApproxPercentileAggregateFunction.COMPRESSION);
+  private byte[] cachedResult;
+
+  public TDigestClientAggregator(List<Expression> children) {
+    super(SortOrder.getDefault());
+    this.children = children;
+  }
+
+  @Override
+  public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+    digest.add(ApproxPercentileAggregateFunction.fromBytes(ptr));
+    cachedResult = null;
+  }
+
+  @Override
+  public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+    if (digest.size() == 0) {
+      return false;
+    }
+    if (cachedResult == null) {
+      double p = ((Number) ((LiteralExpression) children.get(1)).getValue()).doubleValue();
+      BigDecimal result = BigDecimal.valueOf(digest.quantile(p));
+      if (ApproxPercentileAggregateFunction.isDiscrete(children)) {
+        PDataType type = children.get(0).getDataType();
+        cachedResult = type.toBytes(type.toObject(result, PDecimal.INSTANCE));
+      } else {
+        cachedResult = PDecimal.INSTANCE.toBytes(result);
+      }
+    }
+    ptr.set(cachedResult);
+    return true;
+  }
+
+  @Override
+  public void reset() {
+    digest = new TDigest(ApproxPercentileAggregateFunction.COMPRESSION);
+    cachedResult = null;
+    super.reset();
+  }
+
+  @Override
+  public PDataType getDataType() {
+    return ApproxPercentileAggregateFunction.isDiscrete(children)
+      ? children.get(0).getDataType()
+      : PDecimal.INSTANCE;
+  }
+}
+
+/**
+ * Server side aggregator that adds the value of every row scanned to a t-digest and evaluates to
+ * its serialized form.
+ */
+class TDigestServerAggregator extends BaseAggregator {
+  // A t-digest keeps in the order of 2 * compression centroids, each a mean, a count and the node
+  // of the tree that holds it
+  private static final int ESTIMATED_SIZE = SizedUtil.OBJECT_SIZE
+    + (int) (2 * ApproxPercentileAggregateFunction.COMPRESSION) * (3 * SizedUtil.OBJECT_SIZE);
+
+  private final PDataType inputDataType;
+  private TDigest digest = new TDigest(ApproxPercentileAggregateFunction.COMPRESSION);
+
+  public TDigestServerAggregator(SortOrder sortOrder, PDataType inputDataType,
+    ImmutableBytesWritable ptr) {
+    super(sortOrder);
+    this.inputDataType = inputDataType;
+    if (ptr != null) {
+      digest.add(ApproxPercentileAggregateFunction.fromBytes(ptr));
+    }
+  }
+
+  @Override
+  public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+    Number value = (Number) inputDataType.toObject(ptr, sortOrder);
+    if (value != null) {
+      digest.add(value.doubleValue());
+    }
+  }
+
+  @Override
+  public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+    ByteBuffer buffer = ByteBuffer.allocate(digest.byteSize());
+    digest.asBytes(buffer);
+    ptr.set(buffer.array());
+    return true;
+  }
+
+  @Override
+  public void reset() {
+    digest = new TDigest(ApproxPercentileAggregateFunction.COMPRESSION);
+    super.reset();
+  }
+
+  @Override
+  public int getSize() {
+    return ESTIMATED_SIZE;
+  }
+
+  @Override
+  public final PDataType getDataType() {
+    return PVarbinary.INSTANCE;
+  }
+}
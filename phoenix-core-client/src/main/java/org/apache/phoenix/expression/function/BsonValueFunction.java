@@ -17,11 +17,14 @@
  */
 package org.apache.phoenix.expression.function;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Determinism;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.util.bson.CommonComparisonExpressionUtils;
@@ -77,6 +80,10 @@ public class BsonValueFunction extends ScalarFunction {
 
   static final String DEFAULT_VALUE = "null";
 
+  // The field key and the data type are constants, so they are parsed once
+  private List<Object> fieldKeyParts;
+  private PDataType<?> bsonValueDataType;
+
   public BsonValueFunction() {
     // no-op
   }
@@ -85,6 +92,23 @@ public class BsonValueFunction extends ScalarFunction {
     super(children);
     Preconditions.checkNotNull(getChildren().get(1));
     Preconditions.checkNotNull(getChildren().get(2));
+    init();
+  }
+
+  private void init() {
+    bsonValueDataType = getPDataType();
+    fieldKeyParts = null;
+    ImmutableBytesWritable tmpPtr = new ImmutableBytesWritable();
+    Expression e = getChildren().get(1);
+    if (
+      e.isStateless() && e.getDeterminism() == Determinism.ALWAYS && e.evaluate(null, tmpPtr)
+        && tmpPtr.getLength() != 0
+    ) {
+      String documentFieldKey = (String) PVarchar.INSTANCE.toObject(tmpPtr, e.getSortOrder());
+      if (documentFieldKey != null) {
+        fieldKeyParts = CommonComparisonExpressionUtils.parseFieldKey(documentFieldKey);
+      }
+    }
   }
 
   private PDataType<?> getPDataType() {
@@ -109,22 +133,28 @@ public class BsonValueFunction extends ScalarFunction {
     Object object = PBson.INSTANCE.toObject(ptr, getChildren().get(0).getSortOrder());
     RawBsonDocument rawBsonDocument = (RawBsonDocument) object;
 
-    if (!getChildren().get(1).evaluate(tuple, ptr)) {
-      return false;
-    }
-    if (ptr.getLength() == 0) {
-      return false;
-    }
+    BsonValue bsonValue;
+    if (fieldKeyParts != null) {
+      bsonValue = CommonComparisonExpressionUtils.getFieldFromDocument(fieldKeyParts,
+        rawBsonDocument);
+    } else {
+      if (!getChildren().get(1).evaluate(tuple, ptr)) {
+        return false;
+      }
+      if (ptr.getLength() == 0) {
+        return false;
+      }
 
-    String documentFieldKey =
-      (String) PVarchar.INSTANCE.toObject(ptr, getChildren().get(1).getSortOrder());
-    if (documentFieldKey == null) {
-      return false;
+      String documentFieldKey =
+        (String) PVarchar.INSTANCE.toObject(ptr, getChildren().get(1).getSortOrder());
+      if (documentFieldKey == null) {
+        return false;
+      }
+      bsonValue =
+        CommonComparisonExpressionUtils.getFieldFromDocument(documentFieldKey, rawBsonDocument);
     }
 
-    PDataType<?> bsonValueDataType = getPDataType();
-    BsonValue bsonValue =
-      CommonComparisonExpressionUtils.getFieldFromDocument(documentFieldKey, rawBsonDocument);
+    PDataType<?> bsonValueDataType = this.bsonValueDataType;
     if (bsonValue == null) {
       returnDefaultValue(ptr, bsonValueDataType);
       return true;
@@ -194,6 +224,12 @@ public class BsonValueFunction extends ScalarFunction {
     }
   }
 
+  @Override
+  public void readFields(DataInput input) throws IOException {
+    super.readFields(input);
+    init();
+  }
+
   @Override
   public PDataType<?> getDataType() {
     return getPDataType();
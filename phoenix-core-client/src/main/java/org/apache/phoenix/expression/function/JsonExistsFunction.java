@@ -17,8 +17,11 @@
  */
 package org.apache.phoenix.expression.function;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.List;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Determinism;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.parse.FunctionParseNode;
 import org.apache.phoenix.parse.JsonExistsParseNode;
@@ -46,6 +49,8 @@ public class JsonExistsFunction extends ScalarFunction {
   public static final String NAME = "JSON_EXISTS";
   private final JsonDataFormat jsonDataFormat =
     JsonDataFormatFactory.getJsonDataFormat(JsonDataFormatFactory.DataFormat.BSON);
+  // Compiled once when the path is a constant, otherwise compiled for each row
+  private Object compiledPath;
 
   // This is called from ExpressionType newInstance
   public JsonExistsFunction() {
@@ -55,6 +60,24 @@ public class JsonExistsFunction extends ScalarFunction {
   public JsonExistsFunction(List<Expression> children) {
     super(children);
     Preconditions.checkNotNull(getJSONPathExpr());
+    init();
+  }
+
+  private void init() {
+    ImmutableBytesWritable tmpPtr = new ImmutableBytesWritable();
+    Expression e = getJSONPathExpr();
+    if (
+      e.isStateless() && e.getDeterminism() == Determinism.ALWAYS && e.evaluate(null, tmpPtr)
+        && tmpPtr.getLength() != 0
+    ) {
+      String jsonPathExprStr = (String) PVarchar.INSTANCE.toObject(tmpPtr, e.getSortOrder());
+      try {
+        compiledPath = jsonPathExprStr == null ? null : jsonDataFormat.compilePath(jsonPathExprStr);
+      } catch (RuntimeException ex) {
+        // An invalid path is reported when the function is evaluated, as before
+        compiledPath = null;
+      }
+    }
   }
 
   @Override
@@ -74,25 +97,35 @@ public class JsonExistsFunction extends ScalarFunction {
     // Column name or JSON string
     Object top = PJson.INSTANCE.toObject(ptr, getColValExpr().getSortOrder());
 
-    if (!getJSONPathExpr().evaluate(tuple, ptr)) {
-      return false;
-    }
-
-    if (ptr.getLength() == 0) {
-      return false;
+    Object compiledPath = this.compiledPath;
+    if (compiledPath == null) {
+      if (!getJSONPathExpr().evaluate(tuple, ptr)) {
+        return false;
+      }
+
+      if (ptr.getLength() == 0) {
+        return false;
+      }
+
+      String jsonPathExprStr =
+        (String) PVarchar.INSTANCE.toObject(ptr, getJSONPathExpr().getSortOrder());
+      if (jsonPathExprStr == null) {
+        return false;
+      }
+      compiledPath = jsonDataFormat.compilePath(jsonPathExprStr);
     }
 
-    String jsonPathExprStr =
-      (String) PVarchar.INSTANCE.toObject(ptr, getJSONPathExpr().getSortOrder());
-    if (jsonPathExprStr == null) {
-      return false;
-    }
-
-    boolean isPathValid = jsonDataFormat.isPathValid(top, jsonPathExprStr);
+    boolean isPathValid = jsonDataFormat.isPathValid(top, compiledPath);
     ptr.set(PBoolean.INSTANCE.toBytes(isPathValid));
     return true;
   }
 
+  @Override
+  public void readFields(DataInput input) throws IOException {
+    super.readFields(input);
+    init();
+  }
+
   private Expression getColValExpr() {
     return getChildren().get(0);
   }
@@ -17,9 +17,12 @@
  */
 package org.apache.phoenix.expression.function;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.sql.Types;
 import java.util.List;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Determinism;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.parse.FunctionParseNode;
 import org.apache.phoenix.parse.JsonQueryParseNode;
@@ -28,6 +31,7 @@ import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PJson;
 import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.json.JsonDataFormat;
 import org.apache.phoenix.util.json.JsonDataFormatFactory;
 
@@ -46,6 +50,8 @@ public class JsonQueryFunction extends ScalarFunction {
   public static final String NAME = "JSON_QUERY";
   private final JsonDataFormat jsonDataFormat =
     JsonDataFormatFactory.getJsonDataFormat(JsonDataFormatFactory.DataFormat.BSON);
+  // Compiled once when the path is a constant, otherwise compiled for each row
+  private Object compiledPath;
 
   // This is called from ExpressionType newInstance
   public JsonQueryFunction() {
@@ -55,6 +61,24 @@ public class JsonQueryFunction extends ScalarFunction {
   public JsonQueryFunction(List<Expression> children) {
     super(children);
     Preconditions.checkNotNull(getJSONPathExpr());
+    init();
+  }
+
+  private void init() {
+    ImmutableBytesWritable tmpPtr = new ImmutableBytesWritable();
+    Expression e = getJSONPathExpr();
+    if (
+      e.isStateless() && e.getDeterminism() == Determinism.ALWAYS && e.evaluate(null, tmpPtr)
+        && tmpPtr.getLength() != 0
+    ) {
+      String jsonPathExprStr = (String) PVarchar.INSTANCE.toObject(tmpPtr, e.getSortOrder());
+      try {
+        compiledPath = jsonPathExprStr == null ? null : jsonDataFormat.compilePath(jsonPathExprStr);
+      } catch (RuntimeException ex) {
+        // An invalid path is reported when the function is evaluated, as before
+        compiledPath = null;
+      }
+    }
   }
 
   @Override
@@ -74,21 +98,27 @@ public class JsonQueryFunction extends ScalarFunction {
     // Column name or JSON string
     Object top = PJson.INSTANCE.toObject(ptr, getColValExpr().getSortOrder());
 
-    if (!getJSONPathExpr().evaluate(tuple, ptr)) {
-      return false;
-    }
+    Object compiledPath = this.compiledPath;
+    if (compiledPath == null) {
+      if (!getJSONPathExpr().evaluate(tuple, ptr)) {
+        return false;
+      }
 
-    if (ptr.getLength() == 0) {
-      return false;
-    }
+      if (ptr.getLength() == 0) {
+        return false;
+      }
 
-    String jsonPathExprStr =
-      (String) PVarchar.INSTANCE.toObject(ptr, getJSONPathExpr().getSortOrder());
-    if (jsonPathExprStr == null) {
-      return false;
+      String jsonPathExprStr =
+        (String) PVarchar.INSTANCE.toObject(ptr, getJSONPathExpr().getSortOrder());
+      if (jsonPathExprStr == null) {
+        return false;
+      }
+      compiledPath = jsonDataFormat.compilePath(jsonPathExprStr);
     }
-    Object value = jsonDataFormat.getValue(top, jsonPathExprStr);
-    int valueType = jsonDataFormat.getValueType(top, jsonPathExprStr);
+    // Navigate the document once and derive both the value and its type from the result
+    Object jsonValue = jsonDataFormat.readValue(top, compiledPath);
+    Object value = jsonDataFormat.toJavaValue(jsonValue);
+    int valueType = jsonDataFormat.getSqlType(jsonValue);
     if (value != null) {
       switch (valueType) {
         case Types.ARRAY:
@@ -98,11 +128,19 @@ public class JsonQueryFunction extends ScalarFunction {
         default:
           return false;
       }
+    } else {
+      ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
     }
 
     return true;
   }
 
+  @Override
+  public void readFields(DataInput input) throws IOException {
+    super.readFields(input);
+    init();
+  }
+
   private Expression getColValExpr() {
     return getChildren().get(0);
   }
@@ -26,6 +26,7 @@ import org.apache.phoenix.expression.aggregator.DistinctValueWithCountServerAggr
 import org.apache.phoenix.expression.aggregator.PercentileDiscClientAggregator;
 import org.apache.phoenix.parse.FunctionParseNode.Argument;
 import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
+import org.apache.phoenix.parse.PercentileAggregateParseNode;
 import org.apache.phoenix.schema.types.PBoolean;
 import org.apache.phoenix.schema.types.PDecimal;
 
@@ -34,7 +35,8 @@ import org.apache.phoenix.schema.types.PDecimal;
  * {@code PERCENTILE_DISC(<expression>) WITHIN GROUP (ORDER BY <expression> ASC/DESC) aggregate function }
  * @since 1.2.1
  */
-@BuiltInFunction(name = PercentileDiscAggregateFunction.NAME, args = {
+@BuiltInFunction(name = PercentileDiscAggregateFunction.NAME,
+    nodeClass = PercentileAggregateParseNode.class, args = {
   @Argument(allowedTypes = { PDecimal.class }),
   @Argument(allowedTypes = { PBoolean.class }, isConstant = true),
   @Argument(allowedTypes = { PDecimal.class }, isConstant = true, minValue = "0", maxValue = "1") })
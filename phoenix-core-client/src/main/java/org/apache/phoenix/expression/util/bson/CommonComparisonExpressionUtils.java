@@ -17,6 +17,8 @@
  */
 package org.apache.phoenix.expression.util.bson;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.bson.BsonArray;
 import org.bson.BsonBinary;
@@ -128,6 +130,95 @@ public class CommonComparisonExpressionUtils {
     return null;
   }
 
+  /**
+   * Parse the document field key into the top level field name followed by the nested field names
+   * (String) and array indexes (Integer) it refers to, so that the same key can be looked up in
+   * many documents with {@link #getFieldFromDocument(List, BsonDocument)} without parsing it again.
+   * @param documentFieldKey The document field key using "." and "[n]" notations.
+   * @return The parsed field key or null if the key is malformed, in which case
+   *         {@link #getFieldFromDocument(String, BsonDocument)} should be used.
+   */
+  public static List<Object> parseFieldKey(final String documentFieldKey) {
+    List<Object> fieldKeyParts = new ArrayList<>();
+    int idx = 0;
+    int length = documentFieldKey.length();
+    int start = idx;
+    while (
+      idx < length && documentFieldKey.charAt(idx) != '.' && documentFieldKey.charAt(idx) != '['
+    ) {
+      idx++;
+    }
+    fieldKeyParts.add(documentFieldKey.substring(start, idx));
+    while (idx < length) {
+      if (documentFieldKey.charAt(idx) == '.') {
+        start = ++idx;
+        while (
+          idx < length && documentFieldKey.charAt(idx) != '.'
+            && documentFieldKey.charAt(idx) != '['
+        ) {
+          idx++;
+        }
+        fieldKeyParts.add(documentFieldKey.substring(start, idx));
+      } else {
+        start = ++idx;
+        int end = documentFieldKey.indexOf(']', start);
+        if (end < 0) {
+          return null;
+        }
+        try {
+          fieldKeyParts.add(Integer.parseInt(documentFieldKey.substring(start, end)));
+        } catch (NumberFormatException e) {
+          return null;
+        }
+        idx = end + 1;
+        if (
+          idx < length && documentFieldKey.charAt(idx) != '.' && documentFieldKey.charAt(idx) != '['
+        ) {
+          return null;
+        }
+      }
+    }
+    return fieldKeyParts;
+  }
+
+  /**
+   * Retrieve the value associated with a document field key parsed by
+   * {@link #parseFieldKey(String)}.
+   * @param fieldKeyParts The parsed document field key.
+   * @param document      The document from which to find the value.
+   * @return If the field key exists in the document, return the corresponding value. Else return
+   *         null.
+   */
+  public static BsonValue getFieldFromDocument(final List<Object> fieldKeyParts,
+    final BsonDocument document) {
+    BsonValue value = document.get((String) fieldKeyParts.get(0));
+    for (int i = 1; i < fieldKeyParts.size() && value != null; i++) {
+      Object fieldKeyPart = fieldKeyParts.get(i);
+      if (fieldKeyPart instanceof String) {
+        if (!value.isDocument()) {
+          LOGGER.warn("Incorrect access. Should have found nested map for value: {}", value);
+          return null;
+        }
+        value = ((BsonDocument) value).get((String) fieldKeyPart);
+      } else {
+        int arrayIdx = (Integer) fieldKeyPart;
+        if (!value.isArray()) {
+          LOGGER.warn("Incorrect access. Should have found nested list for value: {}", value);
+          return null;
+        }
+        BsonArray nestedArray = (BsonArray) value;
+        if (arrayIdx >= nestedArray.size()) {
+          LOGGER.warn(
+            "Incorrect access. Nested list size {} is less than attempted index access at {}",
+            nestedArray.size(), arrayIdx);
+          return null;
+        }
+        value = nestedArray.get(arrayIdx);
+      }
+    }
+    return value;
+  }
+
   /**
    * Retrieve the value associated with the nested field key within the document.
    * @param value            Value of the parent data structure (document or array) which is used to
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Writables;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.visitor.StatelessTraverseAllExpressionVisitor;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.util.ClientUtil;
+import org.apache.phoenix.util.TupleUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.hash.BloomFilter;
+import org.apache.phoenix.thirdparty.com.google.common.hash.Funnel;
+import org.apache.phoenix.thirdparty.com.google.common.hash.PrimitiveSink;
+
+/**
+ * Runtime filter pushed down from the build side of a hash join to the scan of the probe side.
+ * Holds a bloom filter over the hash keys of the cached side and drops every row whose join key,
+ * evaluated over the cells of the row as they come out of the store, cannot be found in it. Only
+ * used for joins where a row without a match is discarded anyway (inner and semi joins), so a
+ * false positive just leaves the row to the exact hash cache probe. The cells the key depends on
+ * are collected as they are filtered and the key is checked once the row is complete, without
+ * {@link #hasFilterRow()}, so that the filter can be combined with a scan batch size.
+ */
+public class JoinKeyBloomFilter extends FilterBase implements Writable {
+
+  private List<Expression> expressions;
+  private BloomFilter<ImmutableBytesWritable> bloomFilter;
+  // Columns the join key is evaluated from
+  private List<byte[]> families;
+  private List<byte[]> qualifiers;
+  // First cell of the current row, for the row key, followed by the cells of the key columns
+  private final List<Cell> rowCells = Lists.newArrayList();
+  private final MultiKeyValueTuple inputTuple = new MultiKeyValueTuple();
+
+  public JoinKeyBloomFilter() {
+  }
+
+  /**
+   * @param expressions expressions evaluating the join key of a probe side row from its cells, in
+   *                    the same way the hash cache evaluates the key of a cached row
+   * @param keys        the keys of the cached rows
+   * @param fpp         the desired false positive probability of the bloom filter
+   */
+  public JoinKeyBloomFilter(List<Expression> expressions,
+    List<? extends ImmutableBytesWritable> keys, double fpp) {
+    this.expressions = expressions;
+    this.bloomFilter = BloomFilter.create(KeyFunnel.INSTANCE, Math.max(keys.size(), 1), fpp);
+    for (ImmutableBytesWritable key : keys) {
+      bloomFilter.put(key);
+    }
+    init();
+  }
+
+  private void init() {
+    families = Lists.newArrayList();
+    qualifiers = Lists.newArrayList();
+    StatelessTraverseAllExpressionVisitor<Void> visitor =
+      new StatelessTraverseAllExpressionVisitor<Void>() {
+        @Override
+        public Void visit(KeyValueColumnExpression expression) {
+          families.add(expression.getColumnFamily());
+          qualifiers.add(expression.getColumnQualifier());
+          return null;
+        }
+      };
+    for (Expression expression : expressions) {
+      expression.accept(visitor);
+    }
+  }
+
+  private boolean isKeyColumn(Cell cell) {
+    for (int i = 0; i < families.size(); i++) {
+      if (CellUtil.matchingColumn(cell, families.get(i), qualifiers.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public List<Expression> getExpressions() {
+    return expressions;
+  }
+
+  public boolean mightContain(ImmutableBytesWritable key) {
+    return bloomFilter.mightContain(key);
+  }
+
+  // No @Override for HBase 3 compatibility
+  public ReturnCode filterKeyValue(Cell cell) {
+    return filterCell(cell);
+  }
+
+  @Override
+  public ReturnCode filterCell(Cell cell) {
+    if (rowCells.isEmpty() || isKeyColumn(cell)) {
+      rowCells.add(cell);
+    }
+    return ReturnCode.INCLUDE;
+  }
+
+  @Override
+  public boolean filterRow() throws IOException {
+    if (rowCells.isEmpty()) {
+      return false;
+    }
+    inputTuple.setKeyValues(rowCells);
+    for (Expression expression : expressions) {
+      expression.reset();
+    }
+    ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(inputTuple, expressions);
+    return !bloomFilter.mightContain(key);
+  }
+
+  @Override
+  public void reset() {
+    rowCells.clear();
+  }
+
+  @Override
+  public void readFields(DataInput input) throws IOException {
+    try {
+      int count = WritableUtils.readVInt(input);
+      expressions = Lists.newArrayListWithExpectedSize(count);
+      for (int i = 0; i < count; i++) {
+        Expression expression = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
+        expression.readFields(input);
+        expressions.add(expression);
+      }
+      bloomFilter = BloomFilter.readFrom(new ByteArrayInputStream(Bytes.readByteArray(input)),
+        KeyFunnel.INSTANCE);
+      init();
+    } catch (Throwable t) { // Catches incompatibilities during reading/writing and doesn't retry
+      ClientUtil.throwIOException("JoinKeyBloomFilter failed during reading", t);
+    }
+  }
+
+  @Override
+  public void write(DataOutput output) throws IOException {
+    try {
+      WritableUtils.writeVInt(output, expressions.size());
+      for (Expression expression : expressions) {
+        WritableUtils.writeVInt(output, ExpressionType.valueOf(expression).ordinal());
+        expression.write(output);
+      }
+      ByteArrayOutputStream bloomOut = new ByteArrayOutputStream();
+      bloomFilter.writeTo(bloomOut);
+      Bytes.writeByteArray(output, bloomOut.toByteArray());
+    } catch (Throwable t) { // Catches incompatibilities during reading/writing and doesn't retry
+      ClientUtil.throwIOException("JoinKeyBloomFilter failed during writing", t);
+    }
+  }
+
+  @Override
+  public byte[] toByteArray() throws IOException {
+    return Writables.getBytes(this);
+  }
+
+  public static JoinKeyBloomFilter parseFrom(final byte[] pbBytes)
+    throws DeserializationException {
+    try {
+      return (JoinKeyBloomFilter) Writables.getWritable(pbBytes, new JoinKeyBloomFilter());
+    } catch (IOException e) {
+      throw new DeserializationException(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "JoinKeyBloomFilter " + expressions;
+  }
+
+  private enum KeyFunnel implements Funnel<ImmutableBytesWritable> {
+    INSTANCE;
+
+    @Override
+    public void funnel(ImmutableBytesWritable from, PrimitiveSink into) {
+      into.putBytes(from.get(), from.getOffset(), from.getLength());
+    }
+  }
+}
@@ -69,6 +69,8 @@ public class PagingFilter extends CompatPagingFilter implements Writable {
   // tracks the row we last visited
   private Cell currentCell;
   private boolean isStopped;
+  // number of rows visited since the last init()
+  private long rowsVisited;
 
   public PagingFilter() {
     super(null);
@@ -99,9 +101,22 @@ public class PagingFilter extends CompatPagingFilter implements Writable {
     return isStopped;
   }
 
+  public long getPageSizeMs() {
+    return pageSizeMs;
+  }
+
+  public void setPageSizeMs(long pageSizeMs) {
+    this.pageSizeMs = pageSizeMs;
+  }
+
+  public long getRowsVisited() {
+    return rowsVisited;
+  }
+
   public void init() {
     isStopped = false;
     currentCell = null;
+    rowsVisited = 0;
     startTime = EnvironmentEdgeManager.currentTimeMillis();
   }
 
@@ -129,6 +144,7 @@ public class PagingFilter extends CompatPagingFilter implements Writable {
   @Override
   public boolean filterRowKey(Cell cell) throws IOException {
     currentCell = cell;
+    rowsVisited++;
     if (delegate != null) {
       return delegate.filterRowKey(cell);
     }
@@ -49,6 +49,14 @@ public interface GlobalIndexCheckerSource extends BaseSource {
   String UNVERIFIED_INDEX_ROW_AGE_DESC =
     "Histogram for the age in " + "milliseconds for unverified row soon after it is repaired";
 
+  String INDEX_REPAIR_BATCH = "indexRepairBatches";
+  String INDEX_REPAIR_BATCH_DESC =
+    "The number of batches of consecutive index rows repaired together";
+
+  String INDEX_REPAIR_BATCH_SIZE = "indexRepairBatchSize";
+  String INDEX_REPAIR_BATCH_SIZE_DESC =
+    "Histogram for the number of index rows repaired together in a batch";
+
   /**
    * Increments the number of index rows inspected for verified status
    * @param indexName Name of the index
@@ -87,4 +95,17 @@ public interface GlobalIndexCheckerSource extends BaseSource {
    * @param t         time taken in milliseconds
    */
   void updateIndexRepairFailureTime(String indexName, long t);
+
+  /**
+   * Increments the number of batches of index rows repaired together
+   * @param indexName Name of the index
+   */
+  void incrementIndexRepairBatches(String indexName);
+
+  /**
+   * Updates the index repair batch size histogram
+   * @param indexName Name of the index
+   * @param size      number of index rows repaired in the batch
+   */
+  void updateIndexRepairBatchSize(String indexName, long size);
 }
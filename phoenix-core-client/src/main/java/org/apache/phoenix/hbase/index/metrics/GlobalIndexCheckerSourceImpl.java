@@ -30,10 +30,12 @@ public class GlobalIndexCheckerSourceImpl extends BaseSourceImpl
   private final MutableFastCounter indexInspections;
   private final MutableFastCounter indexRepairs;
   private final MutableFastCounter indexRepairFailures;
+  private final MutableFastCounter indexRepairBatches;
 
   private final MetricHistogram indexRepairTimeHisto;
   private final MetricHistogram indexRepairFailureTimeHisto;
   private final MetricHistogram unverifiedIndexRowAge;
+  private final MetricHistogram indexRepairBatchSizeHisto;
 
   public GlobalIndexCheckerSourceImpl() {
     this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
@@ -47,6 +49,8 @@ public class GlobalIndexCheckerSourceImpl extends BaseSourceImpl
     indexRepairs = getMetricsRegistry().newCounter(INDEX_REPAIR, INDEX_REPAIR_DESC, 0L);
     indexRepairFailures =
       getMetricsRegistry().newCounter(INDEX_REPAIR_FAILURE, INDEX_REPAIR_FAILURE_DESC, 0L);
+    indexRepairBatches =
+      getMetricsRegistry().newCounter(INDEX_REPAIR_BATCH, INDEX_REPAIR_BATCH_DESC, 0L);
 
     indexRepairTimeHisto =
       getMetricsRegistry().newHistogram(INDEX_REPAIR_TIME, INDEX_REPAIR_TIME_DESC);
@@ -54,6 +58,8 @@ public class GlobalIndexCheckerSourceImpl extends BaseSourceImpl
       getMetricsRegistry().newHistogram(INDEX_REPAIR_FAILURE_TIME, INDEX_REPAIR_FAILURE_TIME_DESC);
     unverifiedIndexRowAge =
       getMetricsRegistry().newHistogram(UNVERIFIED_INDEX_ROW_AGE, UNVERIFIED_INDEX_ROW_AGE_DESC);
+    indexRepairBatchSizeHisto =
+      getMetricsRegistry().newHistogram(INDEX_REPAIR_BATCH_SIZE, INDEX_REPAIR_BATCH_SIZE_DESC);
   }
 
   /**
@@ -108,6 +114,23 @@ public class GlobalIndexCheckerSourceImpl extends BaseSourceImpl
     indexRepairFailureTimeHisto.add(t);
   }
 
+  /**
+   * Increments the number of batches of index rows repaired together
+   */
+  public void incrementIndexRepairBatches(String indexName) {
+    incrementIndexSpecificCounter(INDEX_REPAIR_BATCH, indexName);
+    indexRepairBatches.incr();
+  }
+
+  /**
+   * Updates the index repair batch size histogram
+   * @param size number of index rows repaired in the batch
+   */
+  public void updateIndexRepairBatchSize(String indexName, long size) {
+    incrementIndexSpecificHistogram(INDEX_REPAIR_BATCH_SIZE, indexName, size);
+    indexRepairBatchSizeHisto.add(size);
+  }
+
   private void incrementIndexSpecificCounter(String baseCounterName, String indexName) {
     MutableFastCounter indexSpecificCounter =
       getMetricsRegistry().getCounter(getCounterName(baseCounterName, indexName), 0);
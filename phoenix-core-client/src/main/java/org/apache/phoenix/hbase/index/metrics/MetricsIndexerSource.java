@@ -92,6 +92,17 @@ public interface MetricsIndexerSource extends BaseSource {
   String POST_INDEX_UPDATE_FAILURE_DESC =
     "The number of failures of index updates post data updates";
 
+  String ROW_STATE_CACHE_HIT = "rowStateCacheHit";
+  String ROW_STATE_CACHE_HIT_DESC =
+    "The number of data row states read from the recent row state cache instead of disk";
+  String ROW_STATE_CACHE_MISS = "rowStateCacheMiss";
+  String ROW_STATE_CACHE_MISS_DESC =
+    "The number of data row states not in the recent row state cache and read from disk";
+
+  String COALESCED_INDEX_VERIFICATIONS = "coalescedIndexVerifications";
+  String COALESCED_INDEX_VERIFICATIONS_DESC =
+    "The number of index row verification writes skipped as superseded by a concurrent batch";
+
   /**
    * Updates the index preparation time histogram (preBatchMutate).
    * @param dataTableName Physical data table name
@@ -223,4 +234,26 @@ public interface MetricsIndexerSource extends BaseSource {
    * @param dataTableName Physical data table name
    */
   void incrementPostIndexUpdateFailures(String dataTableName);
+
+  /**
+   * Increments the number of data row states found in the recent row state cache.
+   * @param dataTableName Physical data table name
+   * @param hits          number of row states found
+   */
+  void incrementRowStateCacheHits(String dataTableName, long hits);
+
+  /**
+   * Increments the number of data row states not found in the recent row state cache.
+   * @param dataTableName Physical data table name
+   * @param misses        number of row states not found
+   */
+  void incrementRowStateCacheMisses(String dataTableName, long misses);
+
+  /**
+   * Increments the number of index row verification writes that were coalesced into a later
+   * concurrent batch.
+   * @param dataTableName Physical data table name
+   * @param writes        number of coalesced verification writes
+   */
+  void incrementCoalescedIndexVerifications(String dataTableName, long writes);
 }
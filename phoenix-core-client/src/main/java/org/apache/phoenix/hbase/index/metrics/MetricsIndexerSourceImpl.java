@@ -47,6 +47,9 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
   private final MetricHistogram postIndexUpdateFailureTimeHisto;
   private final MutableFastCounter preIndexUpdateFailures;
   private final MutableFastCounter postIndexUpdateFailures;
+  private final MutableFastCounter rowStateCacheHits;
+  private final MutableFastCounter rowStateCacheMisses;
+  private final MutableFastCounter coalescedIndexVerifications;
 
   public MetricsIndexerSourceImpl() {
     this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
@@ -93,6 +96,12 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
       POST_INDEX_UPDATE_FAILURE_DESC, 0L);
     preIndexUpdateFailures =
       getMetricsRegistry().newCounter(PRE_INDEX_UPDATE_FAILURE, PRE_INDEX_UPDATE_FAILURE_DESC, 0L);
+    rowStateCacheHits =
+      getMetricsRegistry().newCounter(ROW_STATE_CACHE_HIT, ROW_STATE_CACHE_HIT_DESC, 0L);
+    rowStateCacheMisses =
+      getMetricsRegistry().newCounter(ROW_STATE_CACHE_MISS, ROW_STATE_CACHE_MISS_DESC, 0L);
+    coalescedIndexVerifications = getMetricsRegistry().newCounter(COALESCED_INDEX_VERIFICATIONS,
+      COALESCED_INDEX_VERIFICATIONS_DESC, 0L);
   }
 
   @Override
@@ -215,6 +224,27 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
     postIndexUpdateFailures.incr();
   }
 
+  @Override
+  public void incrementRowStateCacheHits(String dataTableName, long hits) {
+    getMetricsRegistry().getCounter(getCounterName(ROW_STATE_CACHE_HIT, dataTableName), 0)
+      .incr(hits);
+    rowStateCacheHits.incr(hits);
+  }
+
+  @Override
+  public void incrementRowStateCacheMisses(String dataTableName, long misses) {
+    getMetricsRegistry().getCounter(getCounterName(ROW_STATE_CACHE_MISS, dataTableName), 0)
+      .incr(misses);
+    rowStateCacheMisses.incr(misses);
+  }
+
+  @Override
+  public void incrementCoalescedIndexVerifications(String dataTableName, long writes) {
+    getMetricsRegistry()
+      .getCounter(getCounterName(COALESCED_INDEX_VERIFICATIONS, dataTableName), 0).incr(writes);
+    coalescedIndexVerifications.incr(writes);
+  }
+
   private void incrementTableSpecificCounter(String baseCounterName, String tableName) {
     MutableFastCounter indexSpecificCounter =
       getMetricsRegistry().getCounter(getCounterName(baseCounterName, tableName), 0);
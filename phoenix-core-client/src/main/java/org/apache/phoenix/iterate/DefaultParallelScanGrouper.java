@@ -26,6 +26,7 @@ import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.PTable.IndexType;
 import org.apache.phoenix.schema.SaltingUtil;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.ScanUtil;
 
 /**
@@ -68,8 +69,14 @@ public class DefaultParallelScanGrouper implements ParallelScanGrouper {
   @Override
   public List<HRegionLocation> getRegionBoundaries(StatementContext context, byte[] tableName)
     throws SQLException {
-    return context.getConnection().getQueryServices().getAllTableRegions(tableName,
-      context.getStatement().getQueryTimeoutInMillis());
+    long startTime = EnvironmentEdgeManager.currentTimeMillis();
+    try {
+      return context.getConnection().getQueryServices().getAllTableRegions(tableName,
+        context.getStatement().getQueryTimeoutInMillis());
+    } finally {
+      context.getOverallQueryMetrics().addRegionLocationLookupTimeMS(
+        EnvironmentEdgeManager.currentTimeMillis() - startTime);
+    }
   }
 
   /**
@@ -78,8 +85,14 @@ public class DefaultParallelScanGrouper implements ParallelScanGrouper {
   @Override
   public List<HRegionLocation> getRegionBoundaries(StatementContext context, byte[] tableName,
     byte[] startRegionBoundaryKey, byte[] stopRegionBoundaryKey) throws SQLException {
-    return context.getConnection().getQueryServices().getTableRegions(tableName,
-      startRegionBoundaryKey, stopRegionBoundaryKey,
-      context.getStatement().getQueryTimeoutInMillis());
+    long startTime = EnvironmentEdgeManager.currentTimeMillis();
+    try {
+      return context.getConnection().getQueryServices().getTableRegions(tableName,
+        startRegionBoundaryKey, stopRegionBoundaryKey,
+        context.getStatement().getQueryTimeoutInMillis());
+    } finally {
+      context.getOverallQueryMetrics().addRegionLocationLookupTimeMS(
+        EnvironmentEdgeManager.currentTimeMillis() - startTime);
+    }
   }
 }
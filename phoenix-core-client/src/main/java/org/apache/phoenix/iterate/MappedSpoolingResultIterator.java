@@ -0,0 +1,450 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MEMORY_CHUNK_BYTES;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MEMORY_WAIT_TIME;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_SPOOL_FILE_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_SPOOL_FILE_READ_TIME;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_SPOOL_FILE_SIZE;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_SPOOL_FILE_WRITE_TIME;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.List;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.compile.ExplainPlanAttributes.ExplainPlanAttributesBuilder;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.monitoring.MemoryMetricsHolder;
+import org.apache.phoenix.monitoring.ReadMetricQueue;
+import org.apache.phoenix.monitoring.SpoolingMetricsHolder;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.ClientUtil;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.ResultUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.apache.phoenix.util.TupleUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Result iterator that holds the results of a scan in memory until an in-memory threshold has been
+ * reached, and spools them to disk after that. Unlike {@link SpoolingResultIterator}, rows are
+ * spooled in blocks: each block starts at a page aligned offset of the spool file with the length of
+ * the block, followed by the rows as written by {@link TupleUtil#write}. The spool file is read
+ * back through a memory mapping, copying a whole block onto the heap at once; the tuples of a block
+ * point into that copy, so no per row buffer or stream is involved. Rows are still copied once out
+ * of the mapping, as Phoenix cells and expressions work on heap byte arrays.
+ */
+public class MappedSpoolingResultIterator implements PeekingResultIterator {
+  private static final int PAGE_SIZE = 4096;
+  // Largest region of the spool file that is mapped at once
+  private static final long MAX_MAPPED_SIZE = 1L << 30;
+
+  private final SpoolingMetricsHolder spoolMetrics;
+  private final BlockReader blockReader;
+  private ImmutableBytesWritable block;
+  private int offset;
+  private Tuple next;
+  private boolean initialized;
+
+  public static class MappedSpoolingResultIteratorFactory implements ParallelIteratorFactory {
+    private final QueryServices services;
+
+    public MappedSpoolingResultIteratorFactory(QueryServices services) {
+      this.services = services;
+    }
+
+    @Override
+    public PeekingResultIterator newIterator(StatementContext context, ResultIterator scanner,
+      Scan scan, String physicalTableName, QueryPlan plan) throws SQLException {
+      ReadMetricQueue readRequestMetric = context.getReadMetricsQueue();
+      SpoolingMetricsHolder spoolMetrics =
+        new SpoolingMetricsHolder(readRequestMetric, physicalTableName);
+      MemoryMetricsHolder memoryMetrics =
+        new MemoryMetricsHolder(readRequestMetric, physicalTableName);
+      return new MappedSpoolingResultIterator(spoolMetrics, memoryMetrics, scanner, services);
+    }
+  }
+
+  /**
+   * Returns the factory of the iterators used to spool the results of parallel scans on the
+   * client, as configured by {@link QueryServices#CLIENT_SPOOL_MAPPED_ENABLED_ATTRIB}.
+   */
+  @SuppressWarnings("deprecation")
+  public static ParallelIteratorFactory newSpoolingFactory(QueryServices services) {
+    return services.getProps().getBoolean(QueryServices.CLIENT_SPOOL_MAPPED_ENABLED_ATTRIB,
+      QueryServicesOptions.DEFAULT_CLIENT_SPOOL_MAPPED_ENABLED)
+        ? new MappedSpoolingResultIteratorFactory(services)
+        : new SpoolingResultIterator.SpoolingResultIteratorFactory(services);
+  }
+
+  private MappedSpoolingResultIterator(SpoolingMetricsHolder spoolMetrics,
+    MemoryMetricsHolder memoryMetrics, ResultIterator scanner, QueryServices services)
+    throws SQLException {
+    this(spoolMetrics, memoryMetrics, scanner, services.getMemoryManager(),
+      services.getProps().getLongBytes(QueryServices.CLIENT_SPOOL_THRESHOLD_BYTES_ATTRIB,
+        QueryServicesOptions.DEFAULT_CLIENT_SPOOL_THRESHOLD_BYTES),
+      services.getProps().getLongBytes(QueryServices.MAX_SPOOL_TO_DISK_BYTES_ATTRIB,
+        QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES),
+      services.getProps().get(QueryServices.SPOOL_DIRECTORY,
+        QueryServicesOptions.DEFAULT_SPOOL_DIRECTORY),
+      services.getProps().getInt(QueryServices.CLIENT_SPOOL_MAPPED_BLOCK_SIZE_ATTRIB,
+        QueryServicesOptions.DEFAULT_CLIENT_SPOOL_MAPPED_BLOCK_SIZE));
+  }
+
+  /**
+   * Create a result iterator by iterating through the results of a scan, spooling them to disk once
+   * a threshold has been reached. The scanner passed in is closed prior to returning.
+   * @param scanner        the results of a table scan
+   * @param mm             memory manager tracking memory usage across threads.
+   * @param thresholdBytes the requested threshold. Will be dialed down if memory usage (as
+   *                       determined by the memory manager) is exceeded.
+   * @param blockSize      the size of the blocks rows are written to the spool file in, once the
+   *                       threshold has been reached
+   */
+  @VisibleForTesting
+  MappedSpoolingResultIterator(SpoolingMetricsHolder sMetrics, MemoryMetricsHolder mMetrics,
+    ResultIterator scanner, MemoryManager mm, final long thresholdBytes, final long maxSpoolToDisk,
+    final String spoolDirectory, final int blockSize) throws SQLException {
+    this.spoolMetrics = sMetrics;
+    boolean success = false;
+    long startTime = EnvironmentEdgeManager.currentTimeMillis();
+    final MemoryChunk chunk = mm.allocate(0, thresholdBytes);
+    long waitTime = EnvironmentEdgeManager.currentTimeMillis() - startTime;
+    GLOBAL_MEMORY_WAIT_TIME.update(waitTime);
+    mMetrics.getMemoryWaitTimeMetric().change(waitTime);
+    BlockWriter blockWriter = null;
+    try {
+      // Can't be bigger than int, since it's the max of the above allocation
+      int size = (int) chunk.getSize();
+      TrustedByteArrayOutputStream buffer = new TrustedByteArrayOutputStream(0);
+      DataOutputStream out = new DataOutputStream(buffer);
+      final long maxBytesAllowed =
+        maxSpoolToDisk == -1 ? Long.MAX_VALUE : thresholdBytes + maxSpoolToDisk;
+      long bytesWritten = 0L;
+      for (Tuple result = scanner.next(); result != null; result = scanner.next()) {
+        bytesWritten += TupleUtil.write(result, out);
+        if (bytesWritten > maxBytesAllowed) {
+          throw new SpoolTooBigToDiskException(
+            "result too big, max allowed(bytes): " + maxBytesAllowed);
+        }
+        if (blockWriter == null) {
+          if (buffer.size() > size) {
+            // Rows held in memory so far become the first block of the spool file
+            blockWriter = new BlockWriter(
+              File.createTempFile("ResultSpooler", ".bin", new File(spoolDirectory)));
+            blockWriter.write(buffer);
+            buffer = new TrustedByteArrayOutputStream(blockSize);
+            out = new DataOutputStream(buffer);
+            chunk.close();
+          }
+        } else if (buffer.size() >= blockSize) {
+          blockWriter.write(buffer);
+          buffer.reset();
+        }
+      }
+      if (blockWriter == null) {
+        chunk.resize(buffer.size());
+        blockReader = new InMemoryBlockReader(buffer.getBuffer(), buffer.size(), chunk);
+        GLOBAL_MEMORY_CHUNK_BYTES.update(buffer.size());
+        mMetrics.getMemoryChunkSizeMetric().change(buffer.size());
+      } else {
+        if (buffer.size() > 0) {
+          blockWriter.write(buffer);
+        }
+        blockWriter.close();
+        long writeTime = blockWriter.getWriteTimeMs();
+        long sizeOfSpoolFile = blockWriter.getFile().length();
+        GLOBAL_SPOOL_FILE_SIZE.update(sizeOfSpoolFile);
+        GLOBAL_SPOOL_FILE_COUNTER.increment();
+        GLOBAL_SPOOL_FILE_WRITE_TIME.update(writeTime);
+        spoolMetrics.getNumSpoolFileMetric().increment();
+        spoolMetrics.getSpoolFileSizeMetric().change(sizeOfSpoolFile);
+        spoolMetrics.getSpoolFileWriteTimeMetric().change(writeTime);
+        blockReader = new MappedBlockReader(blockWriter.getFile(), sizeOfSpoolFile);
+        blockWriter.getFile().deleteOnExit();
+      }
+      success = true;
+    } catch (IOException e) {
+      throw ClientUtil.parseServerException(e);
+    } finally {
+      try {
+        scanner.close();
+      } finally {
+        if (!success) {
+          try {
+            if (blockWriter != null) {
+              blockWriter.close();
+              blockWriter.getFile().delete();
+            }
+          } catch (IOException ignored) {
+            // ignore close error
+          } finally {
+            chunk.close();
+          }
+        }
+      }
+    }
+  }
+
+  private void init() throws SQLException {
+    if (!initialized) {
+      initialized = true;
+      advance();
+    }
+  }
+
+  private void advance() throws SQLException {
+    try {
+      while (block == null || offset >= block.getLength()) {
+        block = blockReader.nextBlock();
+        offset = 0;
+        if (block == null) {
+          next = null;
+          return;
+        }
+      }
+      byte[] bytes = block.get();
+      int position = block.getOffset() + offset;
+      int resultSize = ByteUtil.vintFromBytes(bytes, position);
+      position += WritableUtils.getVIntSize(resultSize);
+      next = new ResultTuple(
+        ResultUtil.toResult(new ImmutableBytesWritable(bytes, position, resultSize)));
+      offset = position + resultSize - block.getOffset();
+    } catch (IOException e) {
+      throw ClientUtil.parseServerException(e);
+    }
+  }
+
+  @Override
+  public Tuple peek() throws SQLException {
+    init();
+    return next;
+  }
+
+  @Override
+  public Tuple next() throws SQLException {
+    init();
+    Tuple current = next;
+    if (current != null) {
+      advance();
+    }
+    return current;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    next = null;
+    block = null;
+    try {
+      blockReader.close();
+    } catch (IOException e) {
+      throw ClientUtil.parseServerException(e);
+    }
+  }
+
+  @Override
+  public void explain(List<String> planSteps) {
+  }
+
+  @Override
+  public void explain(List<String> planSteps,
+    ExplainPlanAttributesBuilder explainPlanAttributesBuilder) {
+  }
+
+  private static long alignToPage(long position) {
+    return (position + PAGE_SIZE - 1) & ~((long) PAGE_SIZE - 1);
+  }
+
+  /**
+   * Writes the blocks of a spool file, each at a page aligned offset.
+   */
+  private static class BlockWriter {
+    private final File file;
+    private final FileChannel channel;
+    private long position;
+    private long writeTimeNs;
+
+    private BlockWriter(File file) throws IOException {
+      this.file = file;
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+    }
+
+    private File getFile() {
+      return file;
+    }
+
+    private long getWriteTimeMs() {
+      return writeTimeNs / 1000000;
+    }
+
+    private void write(TrustedByteArrayOutputStream block) throws IOException {
+      long startTime = System.nanoTime();
+      position = alignToPage(position);
+      position += writeFully(ByteBuffer.wrap(Bytes.toBytes(block.size())), position);
+      position += writeFully(ByteBuffer.wrap(block.getBuffer(), 0, block.size()), position);
+      writeTimeNs += System.nanoTime() - startTime;
+    }
+
+    private int writeFully(ByteBuffer buffer, long position) throws IOException {
+      int length = buffer.remaining();
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      return length;
+    }
+
+    private void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  private interface BlockReader {
+    /**
+     * @return the next block of rows, or null once all blocks have been read
+     */
+    ImmutableBytesWritable nextBlock() throws IOException;
+
+    void close() throws IOException;
+  }
+
+  /**
+   * Returns the rows held in memory as a single block.
+   */
+  private static class InMemoryBlockReader implements BlockReader {
+    private final MemoryChunk memoryChunk;
+    private ImmutableBytesWritable block;
+
+    private InMemoryBlockReader(byte[] bytes, int length, MemoryChunk memoryChunk) {
+      this.block = new ImmutableBytesWritable(bytes, 0, length);
+      this.memoryChunk = memoryChunk;
+    }
+
+    @Override
+    public ImmutableBytesWritable nextBlock() {
+      ImmutableBytesWritable current = block;
+      block = null;
+      return current;
+    }
+
+    @Override
+    public void close() {
+      block = null;
+      memoryChunk.close();
+    }
+  }
+
+  /**
+   * Reads the blocks of a spool file through a memory mapping of it. The file is mapped lazily, so
+   * iterators that are not read yet do not hold on to a mapping, and deleted once all blocks have
+   * been read.
+   */
+  private class MappedBlockReader implements BlockReader {
+    private final File file;
+    private final long fileSize;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long mappedStart;
+    private long position;
+    private long readTimeNs;
+    private boolean isClosed;
+
+    private MappedBlockReader(File file, long fileSize) {
+      this.file = file;
+      this.fileSize = fileSize;
+    }
+
+    private void map(long start, long length) throws IOException {
+      if (channel == null) {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      }
+      long size = Math.min(fileSize - start, Math.max(length, MAX_MAPPED_SIZE));
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+      mappedStart = start;
+    }
+
+    private boolean isMapped(long start, long length) {
+      return mapped != null && start >= mappedStart
+        && start + length <= mappedStart + mapped.capacity();
+    }
+
+    @Override
+    public ImmutableBytesWritable nextBlock() throws IOException {
+      if (isClosed) {
+        return null;
+      }
+      position = alignToPage(position);
+      if (position >= fileSize) {
+        close();
+        return null;
+      }
+      long startTime = System.nanoTime();
+      if (!isMapped(position, Bytes.SIZEOF_INT)) {
+        map(position, Bytes.SIZEOF_INT);
+      }
+      int length = mapped.getInt((int) (position - mappedStart));
+      position += Bytes.SIZEOF_INT;
+      if (!isMapped(position, length)) {
+        map(position, length);
+      }
+      byte[] bytes = new byte[length];
+      ByteBufferUtils.copyFromBufferToArray(bytes, mapped, (int) (position - mappedStart), 0,
+        length);
+      position += length;
+      readTimeNs += System.nanoTime() - startTime;
+      return new ImmutableBytesWritable(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (isClosed) {
+        return;
+      }
+      isClosed = true;
+      mapped = null;
+      long readTime = readTimeNs / 1000000;
+      GLOBAL_SPOOL_FILE_READ_TIME.update(readTime);
+      spoolMetrics.getSpoolFileReadTimeMetric().change(readTime);
+      try {
+        if (channel != null) {
+          channel.close();
+        }
+      } finally {
+        file.delete();
+      }
+    }
+  }
+}
@@ -326,6 +326,9 @@ public class PhoenixDatabaseMetaData implements DatabaseMetaData {
   public static final byte[] GUIDE_POSTS_WIDTH_BYTES = Bytes.toBytes(GUIDE_POSTS_WIDTH);
   public static final String GUIDE_POSTS_ROW_COUNT = "GUIDE_POSTS_ROW_COUNT";
   public static final byte[] GUIDE_POSTS_ROW_COUNT_BYTES = Bytes.toBytes(GUIDE_POSTS_ROW_COUNT);
+  // Serialized column statistics of a region, not declared in the SYSTEM.STATS schema
+  public static final String COLUMN_STATS = "COLUMN_STATS";
+  public static final byte[] COLUMN_STATS_BYTES = Bytes.toBytes(COLUMN_STATS);
   public static final String MIN_KEY = "MIN_KEY";
   public static final byte[] MIN_KEY_BYTES = Bytes.toBytes(MIN_KEY);
   public static final String MAX_KEY = "MAX_KEY";
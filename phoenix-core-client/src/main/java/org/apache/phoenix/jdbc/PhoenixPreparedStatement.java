@@ -162,6 +162,24 @@ public class PhoenixPreparedStatement extends PhoenixStatement
     return compileMutation(statement, query);
   }
 
+  CompilableStatement getCompilableStatement() {
+    return statement;
+  }
+
+  /**
+   * Executes the given batched executions of this UPSERT VALUES statement with a single plan
+   * compiled once for all of them.
+   */
+  void executeUpsertForBatch(List<PhoenixPreparedStatement> statements) throws SQLException {
+    List<List<Object>> parameterSets = new ArrayList<>(statements.size());
+    for (PhoenixPreparedStatement batchStatement : statements) {
+      batchStatement.throwIfUnboundParameters();
+      parameterSets.add(batchStatement.getParameters());
+    }
+    executeMutation(newBatchUpsertStatement(statement, parameterSets),
+      createAuditQueryLogger(statement, query));
+  }
+
   void executeForBatch() throws SQLException {
     throwIfUnboundParameters();
     if (!statement.getOperation().isMutation()) {
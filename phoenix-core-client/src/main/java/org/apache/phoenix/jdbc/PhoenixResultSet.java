@@ -75,16 +75,15 @@ import org.apache.phoenix.monitoring.ReadMetricQueue;
 import org.apache.phoenix.monitoring.TableMetricsManager;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PColumnImpl;
+import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.tuple.ResultTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PBoolean;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PDate;
 import org.apache.phoenix.schema.types.PDecimal;
-import org.apache.phoenix.schema.types.PDouble;
 import org.apache.phoenix.schema.types.PFloat;
 import org.apache.phoenix.schema.types.PInteger;
-import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.schema.types.PSmallint;
 import org.apache.phoenix.schema.types.PTime;
 import org.apache.phoenix.schema.types.PTimestamp;
@@ -396,6 +395,38 @@ public class PhoenixResultSet implements PhoenixMonitoredResultSet, SQLCloseable
     return getBytes(findColumn(columnLabel));
   }
 
+  /**
+   * Sets the given pointer to the serialized bytes of a VARCHAR or VARBINARY column of the current
+   * row, without decoding them into a String or copying them into a new array. The pointer refers
+   * to the buffer of the current row and is only valid until the cursor is moved. VARCHAR values
+   * are UTF-8 encoded. Values of descending row key columns are inverted into a new array.
+   * @param columnIndex the first column is 1, the second is 2, ...
+   * @param valuePtr    set to the bytes of the value, left empty if the value is null
+   * @return true if the value is not null and false otherwise
+   */
+  public boolean getValueBytes(int columnIndex, ImmutableBytesWritable valuePtr)
+    throws SQLException {
+    checkCursorState();
+    ColumnProjector projector = getRowProjector().getColumnProjector(columnIndex - 1);
+    Expression expression = projector.getExpression();
+    PDataType type = expression.getDataType();
+    if (type != PVarchar.INSTANCE && type != PVarbinary.INSTANCE) {
+      throw new SQLExceptionInfo.Builder(SQLExceptionCode.CANNOT_CALL_METHOD_ON_TYPE)
+        .setMessage("Method: getValueBytes; Type:" + type).build().buildException();
+    }
+    wasNull = !projector.getValueBytes(currentRow, valuePtr);
+    if (!wasNull && expression.getSortOrder() == SortOrder.DESC) {
+      valuePtr.set(
+        SortOrder.invert(valuePtr.get(), valuePtr.getOffset(), valuePtr.getLength()));
+    }
+    return !wasNull;
+  }
+
+  public boolean getValueBytes(String columnLabel, ImmutableBytesWritable valuePtr)
+    throws SQLException {
+    return getValueBytes(findColumn(columnLabel), valuePtr);
+  }
+
   @Override
   public byte getByte(int columnIndex) throws SQLException {
     // throw new SQLFeatureNotSupportedException();
@@ -478,12 +509,9 @@ public class PhoenixResultSet implements PhoenixMonitoredResultSet, SQLCloseable
   @Override
   public double getDouble(int columnIndex) throws SQLException {
     checkCursorState();
-    Double value = (Double) getRowProjector().getColumnProjector(columnIndex - 1)
-      .getValue(currentRow, PDouble.INSTANCE, ptr);
-    wasNull = (value == null);
-    if (wasNull) {
-      return 0;
-    }
+    double value =
+      getRowProjector().getColumnProjector(columnIndex - 1).getDouble(currentRow, ptr);
+    wasNull = (ptr.getLength() == 0);
     return value;
   }
 
@@ -527,12 +555,9 @@ public class PhoenixResultSet implements PhoenixMonitoredResultSet, SQLCloseable
   @Override
   public int getInt(int columnIndex) throws SQLException {
     checkCursorState();
-    Integer value = (Integer) getRowProjector().getColumnProjector(columnIndex - 1)
-      .getValue(currentRow, PInteger.INSTANCE, ptr);
-    wasNull = (value == null);
-    if (wasNull) {
-      return 0;
-    }
+    int value =
+      getRowProjector().getColumnProjector(columnIndex - 1).getInt(currentRow, ptr);
+    wasNull = (ptr.getLength() == 0);
     return value;
   }
 
@@ -544,12 +569,9 @@ public class PhoenixResultSet implements PhoenixMonitoredResultSet, SQLCloseable
   @Override
   public long getLong(int columnIndex) throws SQLException {
     checkCursorState();
-    Long value = (Long) getRowProjector().getColumnProjector(columnIndex - 1).getValue(currentRow,
-      PLong.INSTANCE, ptr);
-    wasNull = (value == null);
-    if (wasNull) {
-      return 0;
-    }
+    long value =
+      getRowProjector().getColumnProjector(columnIndex - 1).getLong(currentRow, ptr);
+    wasNull = (ptr.getLength() == 0);
     return value;
   }
 
@@ -136,6 +136,7 @@ import org.apache.phoenix.parse.AddJarsStatement;
 import org.apache.phoenix.parse.AliasedNode;
 import org.apache.phoenix.parse.AlterIndexStatement;
 import org.apache.phoenix.parse.AlterSessionStatement;
+import org.apache.phoenix.parse.BindParseNode;
 import org.apache.phoenix.parse.BindableStatement;
 import org.apache.phoenix.parse.ChangePermsStatement;
 import org.apache.phoenix.parse.CloseStatement;
@@ -178,6 +179,7 @@ import org.apache.phoenix.parse.OrderByNode;
 import org.apache.phoenix.parse.PFunction;
 import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.ParseNodeFactory;
+import org.apache.phoenix.parse.ParsedStatementCache;
 import org.apache.phoenix.parse.PrimaryKeyConstraint;
 import org.apache.phoenix.parse.RowReturningDMLStatement;
 import org.apache.phoenix.parse.SQLParser;
@@ -238,6 +240,7 @@ import org.apache.phoenix.util.PhoenixContextExecutor;
 import org.apache.phoenix.util.PhoenixKeyValueUtil;
 import org.apache.phoenix.util.PhoenixRuntime;
 import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.SQLCloseable;
 import org.apache.phoenix.util.TupleUtil;
 import org.apache.phoenix.util.ValidateLastDDLTimestampUtil;
@@ -1203,6 +1206,52 @@ public class PhoenixStatement implements PhoenixMonitoredStatement, SQLCloseable
       plan.getContext().getSequenceManager().validateSequences(seqAction);
       return plan;
     }
+
+    /**
+     * Returns true if the rows of separate executions of this statement can be upserted by a
+     * single plan, which is the case for single row UPSERT VALUES statements whose values are all
+     * bind parameters or literals.
+     */
+    private boolean isBatchable() {
+      if (
+        getSelect() != null || getValues().size() != 1 || getOnDupKeyPairs() != null
+          || isReturningRow() || !getUdfParseNodes().isEmpty()
+      ) {
+        return false;
+      }
+      for (ParseNode valueNode : getValues().get(0)) {
+        if (!(valueNode instanceof BindParseNode) && !(valueNode instanceof LiteralParseNode)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Single row UPSERT VALUES statement executed with several sets of bind parameters of a JDBC
+   * batch, which is compiled once into a plan upserting a row per parameter set.
+   */
+  private static class ExecutableBatchUpsertStatement extends ExecutableUpsertStatement {
+    private final List<List<Object>> parameterSets;
+
+    private ExecutableBatchUpsertStatement(ExecutableUpsertStatement upsert,
+      List<List<Object>> parameterSets) {
+      super(upsert.getTable(), upsert.getHint(), upsert.getColumns(), upsert.getValues(),
+        upsert.getSelect(), upsert.getBindCount(), upsert.getUdfParseNodes(),
+        upsert.getOnDupKeyPairs(), upsert.getOnDupKeyType(), upsert.isReturningRow());
+      this.parameterSets = parameterSets;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public MutationPlan compilePlan(PhoenixStatement stmt, Sequence.ValueOp seqAction)
+      throws SQLException {
+      UpsertCompiler compiler = new UpsertCompiler(stmt, this.getOperation());
+      MutationPlan plan = compiler.compileBatch(this, parameterSets);
+      plan.getContext().getSequenceManager().validateSequences(seqAction);
+      return plan;
+    }
   }
 
   private static class ExecutableDeleteStatement extends DeleteStatement
@@ -2444,6 +2493,44 @@ public class PhoenixStatement implements PhoenixMonitoredStatement, SQLCloseable
     batch.clear();
   }
 
+  private boolean isBatchUpsertFastPathEnabled() {
+    ReadOnlyProps props = connection.getQueryServices().getProps();
+    // Preserving the mutations on a limit exceeded error requires the statements of the batch to
+    // be joined to the mutation state one by one
+    return props.getBoolean(QueryServices.BATCH_UPSERT_FAST_PATH_ENABLED,
+      QueryServicesOptions.DEFAULT_BATCH_UPSERT_FAST_PATH_ENABLED)
+      && !props.getBoolean(QueryServices.PRESERVE_MUTATIONS_ON_LIMIT_EXCEEDED_ATTRIB,
+        QueryServicesOptions.DEFAULT_PRESERVE_MUTATIONS_ON_LIMIT_EXCEEDED);
+  }
+
+  /**
+   * Returns the number of consecutive executions of the same batchable UPSERT VALUES statement
+   * starting at the given index of the batch.
+   */
+  private int getBatchUpsertCount(int start) {
+    CompilableStatement stmt = batch.get(start).getCompilableStatement();
+    if (
+      !(stmt instanceof ExecutableUpsertStatement)
+        || !((ExecutableUpsertStatement) stmt).isBatchable()
+    ) {
+      return 1;
+    }
+    int end = start + 1;
+    while (end < batch.size() && batch.get(end).getCompilableStatement() == stmt) {
+      end++;
+    }
+    return end - start;
+  }
+
+  /**
+   * Returns a statement upserting a row for each of the given bind parameter sets of the given
+   * UPSERT VALUES statement.
+   */
+  CompilableStatement newBatchUpsertStatement(CompilableStatement stmt,
+    List<List<Object>> parameterSets) {
+    return new ExecutableBatchUpsertStatement((ExecutableUpsertStatement) stmt, parameterSets);
+  }
+
   /**
    * Execute the current batch of statements. If any exception occurs during execution, a
    * {@link java.sql.BatchUpdateException} is thrown which compposes the update counts for
@@ -2455,12 +2542,30 @@ public class PhoenixStatement implements PhoenixMonitoredStatement, SQLCloseable
     int[] returnCodes = new int[batch.size()];
     Arrays.fill(returnCodes, -1);
     boolean autoCommit = connection.getAutoCommit();
+    boolean upsertFastPath = isBatchUpsertFastPathEnabled();
+    // The statements before this index are executed one by one after their fast path run failed
+    int oneByOneEnd = 0;
     connection.setAutoCommit(false);
     try {
-      for (i = 0; i < returnCodes.length; i++) {
+      for (i = 0; i < returnCodes.length;) {
         PhoenixPreparedStatement statement = batch.get(i);
+        int batchUpsertCount = upsertFastPath && i >= oneByOneEnd ? getBatchUpsertCount(i) : 1;
+        if (batchUpsertCount > 1) {
+          try {
+            statement.executeUpsertForBatch(batch.subList(i, i + batchUpsertCount));
+            // Each UPSERT VALUES statement upserts a single row
+            Arrays.fill(returnCodes, i, i + batchUpsertCount, 1);
+            i += batchUpsertCount;
+          } catch (SQLException e) {
+            // None of the rows of the run have been added, so run its statements one by one to
+            // report the update counts and the exception of the statement that fails
+            oneByOneEnd = i + batchUpsertCount;
+          }
+          continue;
+        }
         statement.executeForBatch();
         returnCodes[i] = statement.getUpdateCount();
+        i++;
       }
       // Flush all changes in batch if auto flush is true
       flushIfNecessary();
@@ -2555,13 +2660,21 @@ public class PhoenixStatement implements PhoenixMonitoredStatement, SQLCloseable
 
   protected CompilableStatement parseStatement(String sql) throws SQLException {
     long startQueryParsingTime = EnvironmentEdgeManager.currentTimeMillis();
-    PhoenixStatementParser parser = null;
-    try {
-      parser = new PhoenixStatementParser(sql, new ExecutableNodeFactory());
-    } catch (IOException e) {
-      throw ClientUtil.parseServerException(e);
+    ParsedStatementCache cache = connection.getQueryServices().getParsedStatementCache();
+    CompilableStatement statement = cache == null ? null : (CompilableStatement) cache.get(sql);
+    if (statement == null) {
+      PhoenixStatementParser parser = null;
+      try {
+        parser = new PhoenixStatementParser(sql, new ExecutableNodeFactory());
+      } catch (IOException e) {
+        throw ClientUtil.parseServerException(e);
+      }
+      statement = parser.parseStatement();
+      // Only queries are known not to be modified while being compiled
+      if (cache != null && statement instanceof ExecutableSelectStatement) {
+        cache.put(sql, statement);
+      }
     }
-    CompilableStatement statement = parser.parseStatement();
     setSqlQueryParsingTime(EnvironmentEdgeManager.currentTimeMillis() - startQueryParsingTime);
     return statement;
   }
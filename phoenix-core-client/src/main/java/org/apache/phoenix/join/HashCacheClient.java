@@ -32,6 +32,7 @@ import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.query.QueryServices;
@@ -79,24 +80,38 @@ public class HashCacheClient {
   /**
    * Send the results of scanning through the scanner to all region servers for regions of the table
    * that will use the cache that intersect with the minMaxKeyRange.
+   * @param hashKeys if not null, collects a copy of the hash key of every cached row
    * @return client-side {@link ServerCache} representing the added hash cache
    * @throws MaxServerCacheSizeExceededException if size of hash cache exceeds max allowed size
    */
   public ServerCache addHashCache(ScanRanges keyRanges, byte[] cacheId, ResultIterator iterator,
     long estimatedSize, List<Expression> onExpressions, boolean singleValueOnly,
     boolean usePersistentCache, PTable cacheUsingTable, Expression keyRangeRhsExpression,
-    List<Expression> keyRangeRhsValues) throws SQLException {
+    List<Expression> keyRangeRhsValues, List<ImmutableBytesPtr> hashKeys) throws SQLException {
     /**
      * Serialize and compress hashCacheTable
      */
     ImmutableBytesWritable ptr = new ImmutableBytesWritable();
     serialize(ptr, iterator, estimatedSize, onExpressions, singleValueOnly, keyRangeRhsExpression,
-      keyRangeRhsValues);
+      keyRangeRhsValues, hashKeys);
     ServerCache cache = serverCache.addServerCache(keyRanges, cacheId, ptr,
       ByteUtil.EMPTY_BYTE_ARRAY, new HashCacheFactory(), cacheUsingTable, usePersistentCache, true);
     return cache;
   }
 
+  /**
+   * Take a reference on a hash cache with the given id that an earlier query already sent to all
+   * region servers for regions of the table that will use the cache that intersect with the
+   * keyRanges.
+   * @return client-side {@link ServerCache} representing the shared hash cache, or null if it has
+   *         to be added with {@link #addHashCache}
+   */
+  public ServerCache reuseHashCache(ScanRanges keyRanges, byte[] cacheId, PTable cacheUsingTable)
+    throws SQLException {
+    return serverCache.reuseServerCache(keyRanges, cacheId, new HashCacheFactory(),
+      cacheUsingTable);
+  }
+
   /**
    * Should only be used to resend the hash table cache to the regionserver.
    * @param startkeyOfRegion start key of any region hosted on a regionserver which needs hash cache
@@ -113,7 +128,7 @@ public class HashCacheClient {
 
   private void serialize(ImmutableBytesWritable ptr, ResultIterator iterator, long estimatedSize,
     List<Expression> onExpressions, boolean singleValueOnly, Expression keyRangeRhsExpression,
-    List<Expression> keyRangeRhsValues) throws SQLException {
+    List<Expression> keyRangeRhsValues, List<ImmutableBytesPtr> hashKeys) throws SQLException {
     long maxSize = serverCache.getConnection().getQueryServices().getProps().getLongBytes(
       QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB,
       QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
@@ -146,6 +161,11 @@ public class HashCacheClient {
         if (keyRangeRhsExpression != null) {
           keyRangeRhsValues.add(evaluateKeyExpression(keyRangeRhsExpression, result, tempPtr));
         }
+        // Evaluate hash keys for the bloom filter pushed down to the probe side.
+        if (hashKeys != null) {
+          ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(result, onExpressions);
+          hashKeys.add(new ImmutableBytesPtr(key.copyBytesIfNecessary()));
+        }
         nRows++;
       }
       TrustedByteArrayOutputStream sizeOut = new TrustedByteArrayOutputStream(Bytes.SIZEOF_INT);
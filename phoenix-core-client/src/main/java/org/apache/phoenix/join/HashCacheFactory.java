@@ -24,14 +24,11 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import net.jcip.annotations.Immutable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
@@ -42,6 +39,7 @@ import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.InsufficientMemoryException;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
 import org.apache.phoenix.schema.tuple.ResultTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
@@ -80,21 +78,48 @@ public class HashCacheFactory implements ServerCacheFactory {
     }
   }
 
-  @Immutable
+  /**
+   * Hash cache probed directly over the uncompressed build side rows. The rows stay serialized in
+   * the single byte array they were received in, the distinct join keys are copied into a key byte
+   * array and an open addressing slot table over the key hashes points at them. The rows of each
+   * key are laid out contiguously in a row index array, so a probe only materializes the tuples of
+   * a matching key, and only when they are iterated. A materialized tuple is kept and handed out
+   * to every later probe of its key, it shares the bytes of its row with the cache but its objects
+   * are added to the memory chunk. Once the chunk cannot grow any more, tuples are materialized
+   * again by every probe instead of being kept.
+   */
   private static class HashCacheImpl implements HashCache {
-    private final Map<ImmutableBytesPtr, List<Tuple>> hashCache;
+    private static final int MIN_SLOTS = 16;
+
     private final MemoryChunk memoryChunk;
     private final boolean singleValueOnly;
     private final int clientVersion;
+    private final byte[] rows;
+    private final int[] rowOffsets;
+    private final int[] rowLengths;
+    // Tuple of each row, null until the row is first returned by a probe and the chunk could grow
+    // by the size of its tuple. Scanners of different regions probe the same cache concurrently,
+    // so tuples are published through an atomic array.
+    private final AtomicReferenceArray<Tuple> rowTuples;
+    // Row indexes grouped by key, the rows of key k are at keyRowStarts[k] until keyRowStarts[k+1]
+    private final int[] keyRowIndexes;
+    private final int[] keyRowStarts;
+    private final int[] keyOffsets;
+    private final int[] keyLengths;
+    private final int[] keyHashes;
+    private final byte[] keys;
+    // key index + 1 of the key hashed to each slot, 0 for an empty slot
+    private final int[] slots;
+    private final int nKeys;
 
     private HashCacheImpl(byte[] hashCacheBytes, MemoryChunk memoryChunk, int clientVersion) {
       try {
         this.memoryChunk = memoryChunk;
         this.clientVersion = clientVersion;
-        byte[] hashCacheByteArray = hashCacheBytes;
+        this.rows = hashCacheBytes;
         int offset = 0;
         ByteArrayInputStream input =
-          new ByteArrayInputStream(hashCacheByteArray, offset, hashCacheBytes.length);
+          new ByteArrayInputStream(hashCacheBytes, offset, hashCacheBytes.length);
         DataInputStream dataInput = new DataInputStream(input);
         int nExprs = dataInput.readInt();
         List<Expression> onExpressions = new ArrayList<Expression>(nExprs);
@@ -114,41 +139,168 @@ public class HashCacheFactory implements ServerCacheFactory {
         this.singleValueOnly = singleValueOnly;
         offset += exprSize;
         int nRows = dataInput.readInt();
-        long estimatedSize =
-          SizedUtil.sizeOfMap(nRows, SizedUtil.IMMUTABLE_BYTES_WRITABLE_SIZE, SizedUtil.RESULT_SIZE)
-            + hashCacheBytes.length;
-        this.memoryChunk.resize(estimatedSize);
-        HashMap<ImmutableBytesPtr, List<Tuple>> hashCacheMap =
-          new HashMap<ImmutableBytesPtr, List<Tuple>>(nRows * 5 / 4);
+        int nSlots = Math.max(MIN_SLOTS, Integer.highestOneBit(Math.max(1, nRows)) << 2);
+        // Reserve for the worst case of distinct keys, the key bytes are accounted for once known
+        this.memoryChunk.resize(sizeOf(nRows, nRows, nSlots, 0) + hashCacheBytes.length);
+        this.rowOffsets = new int[nRows];
+        this.rowLengths = new int[nRows];
+        this.rowTuples = new AtomicReferenceArray<>(nRows);
+        int[] rowKeyIndexes = new int[nRows];
+        int[] keyOffsets = new int[Math.max(1, nRows)];
+        int[] keyLengths = new int[keyOffsets.length];
+        int[] keyHashes = new int[keyOffsets.length];
+        int[] keyRowCounts = new int[keyOffsets.length];
+        byte[] keys = new byte[Math.max(MIN_SLOTS, nRows * Bytes.SIZEOF_LONG)];
+        int keysSize = 0;
+        int nKeys = 0;
+        this.slots = new int[nSlots];
         offset += Bytes.SIZEOF_INT;
-        // Build Map with evaluated hash key as key and row as value
+        // Index every row under its evaluated hash key
         for (int i = 0; i < nRows; i++) {
-          int resultSize = (int) Bytes.readAsVLong(hashCacheByteArray, offset);
-          offset += WritableUtils.decodeVIntSize(hashCacheByteArray[offset]);
-          ImmutableBytesWritable value =
-            new ImmutableBytesWritable(hashCacheByteArray, offset, resultSize);
-          Tuple result = new ResultTuple(ResultUtil.toResult(value));
+          int resultSize = (int) Bytes.readAsVLong(hashCacheBytes, offset);
+          offset += WritableUtils.decodeVIntSize(hashCacheBytes[offset]);
+          rowOffsets[i] = offset;
+          rowLengths[i] = resultSize;
+          Tuple result = toTuple(hashCacheBytes, offset, resultSize);
           ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(result, onExpressions);
-          List<Tuple> tuples = hashCacheMap.get(key);
-          if (tuples == null) {
-            tuples = new LinkedList<Tuple>();
-            hashCacheMap.put(key, tuples);
+          int hash = spread(key.hashCode());
+          int keyIndex = findKey(keys, keyOffsets, keyLengths, keyHashes, key, hash);
+          if (keyIndex < 0) {
+            keyIndex = nKeys++;
+            if (keysSize + key.getLength() > keys.length) {
+              keys = Arrays.copyOf(keys, Math.max(keysSize + key.getLength(), 2 * keys.length));
+            }
+            System.arraycopy(key.get(), key.getOffset(), keys, keysSize, key.getLength());
+            keyOffsets[keyIndex] = keysSize;
+            keyLengths[keyIndex] = key.getLength();
+            keyHashes[keyIndex] = hash;
+            keysSize += key.getLength();
+            insertSlot(keyIndex, hash);
           }
-          tuples.add(result);
+          rowKeyIndexes[i] = keyIndex;
+          keyRowCounts[keyIndex]++;
           offset += resultSize;
         }
-        this.hashCache = Collections.unmodifiableMap(hashCacheMap);
+        // Counting sort of the rows by key, which keeps the rows of a key in insertion order
+        this.keyRowStarts = new int[nKeys + 1];
+        for (int k = 0; k < nKeys; k++) {
+          keyRowStarts[k + 1] = keyRowStarts[k] + keyRowCounts[k];
+        }
+        int[] keyRowEnds = Arrays.copyOf(keyRowStarts, nKeys);
+        this.keyRowIndexes = new int[nRows];
+        for (int i = 0; i < nRows; i++) {
+          keyRowIndexes[keyRowEnds[rowKeyIndexes[i]]++] = i;
+        }
+        this.nKeys = nKeys;
+        this.keys = Arrays.copyOf(keys, keysSize);
+        this.keyOffsets = Arrays.copyOf(keyOffsets, nKeys);
+        this.keyLengths = Arrays.copyOf(keyLengths, nKeys);
+        this.keyHashes = Arrays.copyOf(keyHashes, nKeys);
+        this.memoryChunk
+          .resize(sizeOf(nRows, nKeys, nSlots, this.keys.length) + hashCacheBytes.length);
       } catch (IOException e) { // Not possible with ByteArrayInputStream
         throw new RuntimeException(e);
       }
     }
 
+    private static long sizeOf(int nRows, int nKeys, int nSlots, int keysSize) {
+      // rowOffsets, rowLengths, keyRowIndexes and the references to the row tuples
+      long rowsSize = 3L * nRows * Bytes.SIZEOF_INT + (long) nRows * SizedUtil.POINTER_SIZE;
+      // keyOffsets, keyLengths, keyHashes, keyRowStarts
+      long keysIndexSize = 4L * (nKeys + 1) * Bytes.SIZEOF_INT;
+      return rowsSize + keysIndexSize + (long) nSlots * Bytes.SIZEOF_INT + keysSize
+        + 10 * SizedUtil.ARRAY_SIZE;
+    }
+
+    // Spread the higher bits of the key hash code as slots are picked through its lower bits
+    private static int spread(int hashCode) {
+      return hashCode ^ (hashCode >>> 16);
+    }
+
+    private static Tuple toTuple(byte[] b, int offset, int length) {
+      return new ResultTuple(ResultUtil.toResult(new ImmutableBytesWritable(b, offset, length)));
+    }
+
+    private int findKey(byte[] keys, int[] keyOffsets, int[] keyLengths, int[] keyHashes,
+      ImmutableBytesWritable key, int hash) {
+      int mask = slots.length - 1;
+      for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+        int keyIndex = slots[slot] - 1;
+        if (keyIndex < 0) {
+          return -1;
+        }
+        if (
+          keyHashes[keyIndex] == hash && Bytes.equals(keys, keyOffsets[keyIndex],
+            keyLengths[keyIndex], key.get(), key.getOffset(), key.getLength())
+        ) {
+          return keyIndex;
+        }
+      }
+    }
+
+    private void insertSlot(int keyIndex, int hash) {
+      int mask = slots.length - 1;
+      int slot = hash & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = keyIndex + 1;
+    }
+
+    private static long sizeOfTuple(Tuple tuple) {
+      // ResultTuple, Result and its cell array, with a KeyValue for each cell
+      return SizedUtil.OBJECT_SIZE + SizedUtil.RESULT_SIZE + SizedUtil.ARRAY_SIZE
+        + (long) tuple.size() * (SizedUtil.KEY_VALUE_SIZE + SizedUtil.POINTER_SIZE);
+    }
+
+    private Tuple getTuple(int row) {
+      Tuple tuple = rowTuples.get(row);
+      if (tuple == null) {
+        tuple = toTuple(rows, rowOffsets[row], rowLengths[row]);
+        // Concurrent probes may both materialize the row, only the one that keeps it accounts it
+        if (rowTuples.compareAndSet(row, null, tuple) && !reserve(sizeOfTuple(tuple))) {
+          rowTuples.set(row, null);
+        }
+      }
+      return tuple;
+    }
+
+    private boolean reserve(long nBytes) {
+      synchronized (memoryChunk) {
+        try {
+          memoryChunk.resize(memoryChunk.getSize() + nBytes);
+          return true;
+        } catch (InsufficientMemoryException e) {
+          return false;
+        }
+      }
+    }
+
+    private List<Tuple> getTuples(final int keyIndex) {
+      final int start = keyRowStarts[keyIndex];
+      final int size = keyRowStarts[keyIndex + 1] - start;
+      return new AbstractList<Tuple>() {
+        @Override
+        public Tuple get(int index) {
+          if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+          }
+          return getTuple(keyRowIndexes[start + index]);
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+    }
+
     @Override
     public String toString() {
       StringBuilder sb = new StringBuilder();
-      Set<ImmutableBytesPtr> keySet = hashCache.keySet();
-      for (ImmutableBytesPtr key : keySet) {
-        sb.append("key: " + key + " value: " + hashCache.get(key));
+      for (int k = 0; k < nKeys; k++) {
+        ImmutableBytesPtr key = new ImmutableBytesPtr(keys, keyOffsets[k], keyLengths[k]);
+        sb.append("key: " + key + " value: " + getTuples(k));
       }
       return sb.toString();
     }
@@ -160,8 +312,13 @@ public class HashCacheFactory implements ServerCacheFactory {
 
     @Override
     public List<Tuple> get(ImmutableBytesPtr hashKey) throws IOException {
-      List<Tuple> ret = hashCache.get(hashKey);
-      if (singleValueOnly && ret != null && ret.size() > 1) {
+      int keyIndex = findKey(keys, keyOffsets, keyLengths, keyHashes, hashKey,
+        spread(hashKey.hashCode()));
+      if (keyIndex < 0) {
+        return null;
+      }
+      List<Tuple> ret = getTuples(keyIndex);
+      if (singleValueOnly && ret.size() > 1) {
         SQLException ex =
           new SQLExceptionInfo.Builder(SQLExceptionCode.SINGLE_ROW_SUBQUERY_RETURNS_MULTIPLE_ROWS)
             .build().buildException();
@@ -30,6 +30,12 @@ public interface LogWriter {
    */
   void write(RingBufferEvent event) throws SQLException, IOException;
 
+  /**
+   * Called by ring buffer event handler when no further event is available right now, to make
+   * the events written so far durable
+   */
+  void flush() throws SQLException, IOException;
+
   /**
    * will be called when disruptor is getting shutdown
    */
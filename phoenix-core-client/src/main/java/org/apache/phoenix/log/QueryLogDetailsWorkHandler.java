@@ -17,22 +17,45 @@
  */
 package org.apache.phoenix.log;
 
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_LOG_BUFFER_OCCUPANCY;
+
+import com.lmax.disruptor.EventHandler;
 import com.lmax.disruptor.LifecycleAware;
-import com.lmax.disruptor.WorkHandler;
 import org.apache.hadoop.conf.Configuration;
 
-public class QueryLogDetailsWorkHandler implements WorkHandler<RingBufferEvent>, LifecycleAware {
+/**
+ * Writes the events of the ring buffer whose sequence falls to this handler. Every handler sees
+ * all events, so that it learns about the end of a batch and commits what it wrote so far.
+ */
+public class QueryLogDetailsWorkHandler implements EventHandler<RingBufferEvent>, LifecycleAware {
 
   private LogWriter logWriter;
+  private final int ordinal;
+  private final int handlerCount;
 
-  public QueryLogDetailsWorkHandler(Configuration configuration) {
+  public QueryLogDetailsWorkHandler(Configuration configuration, int ordinal, int handlerCount) {
     this.logWriter = new TableLogWriter(configuration);
+    this.ordinal = ordinal;
+    this.handlerCount = handlerCount;
   }
 
   @Override
-  public void onEvent(RingBufferEvent ringBufferEvent) throws Exception {
-    logWriter.write(ringBufferEvent);
-    ringBufferEvent.clear();
+  public void onEvent(RingBufferEvent ringBufferEvent, long sequence, boolean endOfBatch)
+    throws Exception {
+    try {
+      if (sequence % handlerCount == ordinal) {
+        GLOBAL_QUERY_LOG_BUFFER_OCCUPANCY.decrement();
+        try {
+          logWriter.write(ringBufferEvent);
+        } finally {
+          ringBufferEvent.clear();
+        }
+      }
+    } finally {
+      if (endOfBatch) {
+        logWriter.flush();
+      }
+    }
   }
 
   @Override
@@ -17,9 +17,13 @@
  */
 package org.apache.phoenix.log;
 
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_LOG_BUFFER_OCCUPANCY;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_LOG_DROPPED_COUNTER;
+
 import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.EventTranslator;
 import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.TimeoutException;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
@@ -27,11 +31,14 @@ import com.lmax.disruptor.dsl.ProducerType;
 import java.io.Closeable;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Locale;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,7 +46,19 @@ import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFac
 
 public class QueryLoggerDisruptor implements Closeable {
 
+  /**
+   * What to do with query log events while the handlers cannot keep up
+   */
+  public enum BackPressurePolicy {
+    // Drop events only when the ring buffer is full
+    DROP,
+    // Drop a share of the events that grows from none to all as the second half of the ring
+    // buffer fills up, so that the events which are kept are spread over time
+    SAMPLE
+  }
+
   private volatile Disruptor<RingBufferEvent> disruptor;
+  private final BackPressurePolicy backPressurePolicy;
   private boolean isClosed = false;
   // number of elements to create within the ring buffer.
   private static final int RING_BUFFER_SIZE = 8 * 1024;
@@ -56,6 +75,13 @@ public class QueryLoggerDisruptor implements Closeable {
     } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
       throw new SQLException(e);
     }
+    try {
+      backPressurePolicy = BackPressurePolicy.valueOf(
+        configuration.get(QueryServices.LOG_BACKPRESSURE_POLICY,
+          QueryServicesOptions.DEFAULT_LOG_BACKPRESSURE_POLICY).toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new SQLException(e);
+    }
 
     ThreadFactory threadFactory =
       new ThreadFactoryBuilder().setNameFormat("QueryLogger" + "-thread-%s").setDaemon(true)
@@ -88,14 +114,14 @@ public class QueryLoggerDisruptor implements Closeable {
 
     QueryLogDetailsWorkHandler[] workHandlers = new QueryLogDetailsWorkHandler[handlerCount];
     for (int i = 0; i < handlerCount; i++) {
-      workHandlers[i] = new QueryLogDetailsWorkHandler(configuration);
+      workHandlers[i] = new QueryLogDetailsWorkHandler(configuration, i, handlerCount);
     }
-    disruptor.handleEventsWithWorkerPool(workHandlers);
+    disruptor.handleEventsWith(workHandlers);
 
     LOGGER.info("Starting  QueryLoggerDisruptor for with ringbufferSize="
       + disruptor.getRingBuffer().getBufferSize() + ", waitStrategy="
       + waitStrategy.getClass().getSimpleName() + ", " + "exceptionHandler=" + errorHandler
-      + ", handlerCount=" + handlerCount);
+      + ", handlerCount=" + handlerCount + ", backPressurePolicy=" + backPressurePolicy);
     disruptor.start();
 
   }
@@ -108,7 +134,32 @@ public class QueryLoggerDisruptor implements Closeable {
     if (isClosed()) {
       return false;
     }
-    return disruptor.getRingBuffer().tryPublishEvent(translator);
+    RingBuffer<RingBufferEvent> ringBuffer = disruptor.getRingBuffer();
+    if (
+      backPressurePolicy == BackPressurePolicy.SAMPLE && !shouldSample(
+        ringBuffer.getBufferSize() - ringBuffer.remainingCapacity(), ringBuffer.getBufferSize())
+    ) {
+      GLOBAL_QUERY_LOG_DROPPED_COUNTER.increment();
+      return false;
+    }
+    GLOBAL_QUERY_LOG_BUFFER_OCCUPANCY.increment();
+    if (!ringBuffer.tryPublishEvent(translator)) {
+      GLOBAL_QUERY_LOG_BUFFER_OCCUPANCY.decrement();
+      GLOBAL_QUERY_LOG_DROPPED_COUNTER.increment();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Decides whether an event is kept while the given number of events wait in a ring buffer of
+   * the given size. All events are kept while the buffer is at most half full, and beyond that
+   * the chance to keep one drops linearly to zero.
+   */
+  static boolean shouldSample(long waitingEvents, int bufferSize) {
+    long half = Math.max(1, bufferSize / 2);
+    long free = bufferSize - waitingEvents;
+    return free >= half || ThreadLocalRandom.current().nextLong(half) < free;
   }
 
   public boolean isClosed() {
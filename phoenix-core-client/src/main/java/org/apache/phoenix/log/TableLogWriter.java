@@ -28,6 +28,9 @@ import java.util.HashMap;
 import java.util.Map;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.QueryUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +38,8 @@ import org.slf4j.LoggerFactory;
 import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableMap;
 
 /**
- * Writes RingBuffer log event into table
+ * Writes RingBuffer log event into table. Events are committed in batches, once the batch is full,
+ * its first event waited long enough, or no further event is available.
  */
 public class TableLogWriter implements LogWriter {
   private static final Logger LOGGER = LoggerFactory.getLogger(LogWriter.class);
@@ -44,9 +48,17 @@ public class TableLogWriter implements LogWriter {
   private PreparedStatement upsertStatement;
   private Configuration config;
   private Map<MetricType, Integer> metricOrdinals = new HashMap<MetricType, Integer>();
+  private final int batchSize;
+  private final long maxBatchDelayMs;
+  private int uncommittedEvents;
+  private long firstUncommittedEventTime;
 
   public TableLogWriter(Configuration configuration) {
     this.config = configuration;
+    this.batchSize = configuration.getInt(QueryServices.LOG_BATCH_SIZE,
+      QueryServicesOptions.DEFAULT_LOG_BATCH_SIZE);
+    this.maxBatchDelayMs = configuration.getLong(QueryServices.LOG_BATCH_MAX_DELAY_MS,
+      QueryServicesOptions.DEFAULT_LOG_BATCH_MAX_DELAY_MS);
   }
 
   private PreparedStatement buildUpsertStatement(Connection conn) throws SQLException {
@@ -139,7 +151,28 @@ public class TableLogWriter implements LogWriter {
     } else {
       upsertStatement.executeUpdate();
     }
-    connection.commit();
+    long now = EnvironmentEdgeManager.currentTimeMillis();
+    if (uncommittedEvents++ == 0) {
+      firstUncommittedEventTime = now;
+    }
+    if (uncommittedEvents >= batchSize || now - firstUncommittedEventTime >= maxBatchDelayMs) {
+      flush();
+    }
+  }
+
+  @Override
+  public void flush() throws SQLException {
+    if (uncommittedEvents == 0) {
+      return;
+    }
+    uncommittedEvents = 0;
+    try {
+      connection.commit();
+    } catch (SQLException e) {
+      // Do not keep a batch that cannot be committed around for the next events
+      connection.rollback();
+      throw e;
+    }
   }
 
   @Override
@@ -150,8 +183,12 @@ public class TableLogWriter implements LogWriter {
     isClosed = true;
     try {
       if (connection != null) {
-        // It should internally close all the statements
-        connection.close();
+        try {
+          flush();
+        } finally {
+          // It should internally close all the statements
+          connection.close();
+        }
       }
     } catch (SQLException e) {
       // TODO Ignore?
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.memory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Global memory manager that tracks memory usage with compare-and-set on an atomic counter instead
+ * of a shared monitor. Threads are spread over a fixed number of reservation stripes, each holding
+ * a small amount of memory taken from the pool in one go, and serve the allocations that fit into
+ * their stripe without touching the shared counter. When the pool runs low, the unused memory of
+ * all stripes is given back to it before an allocation fails. Allocations that cannot be satisfied
+ * wait, in arrival order and for at most a configured amount of time, for memory to be freed.
+ */
+@ThreadSafe
+public class ConcurrentMemoryManager implements MemoryManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentMemoryManager.class);
+
+  private final long maxMemoryBytes;
+  private final long reservationBytes;
+  private final long maxWaitNanos;
+  // Bytes taken from the pool, whether by memory chunks or by the reservation stripes
+  private final AtomicLong usedMemoryBytes = new AtomicLong();
+  // Bounded by the number of processors rather than the number of threads that ever allocated
+  private final Reservation[] reservations;
+  private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param maxBytes         the size of the memory pool
+   * @param reservationBytes the number of bytes each reservation stripe may hold back from the pool
+   *                         to serve allocations, or zero to always allocate from the pool
+   * @param maxWaitMs        the time an allocation waits for memory to be freed before it fails
+   */
+  public ConcurrentMemoryManager(long maxBytes, long reservationBytes, long maxWaitMs) {
+    if (maxBytes <= 0) {
+      throw new IllegalStateException(
+        "Total number of available bytes (" + maxBytes + ") must be greater than zero");
+    }
+    this.maxMemoryBytes = maxBytes;
+    this.reservationBytes = Math.max(0, reservationBytes);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMs));
+    // A power of two of at least twice the number of processors, so few threads share a stripe
+    int nStripes =
+      Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+    this.reservations = new Reservation[nStripes];
+    for (int i = 0; i < nStripes; i++) {
+      reservations[i] = new Reservation();
+    }
+  }
+
+  @VisibleForTesting
+  int getReservationCount() {
+    return reservations.length;
+  }
+
+  private Reservation localReservation() {
+    long id = Thread.currentThread().getId();
+    int hash = (int) (id ^ (id >>> 32));
+    hash ^= hash >>> 16;
+    return reservations[hash & (reservations.length - 1)];
+  }
+
+  @Override
+  public long getAvailableMemory() {
+    long reservedBytes = 0;
+    for (Reservation reservation : reservations) {
+      reservedBytes += reservation.get();
+    }
+    return maxMemoryBytes - usedMemoryBytes.get() + reservedBytes;
+  }
+
+  @Override
+  public long getMaxMemory() {
+    return maxMemoryBytes;
+  }
+
+  private long allocateBytes(long minBytes, long reqBytes) {
+    if (minBytes < 0 || reqBytes < 0) {
+      throw new IllegalStateException("Minimum requested bytes (" + minBytes
+        + ") and requested bytes (" + reqBytes + ") must be greater than zero");
+    }
+    if (minBytes > maxMemoryBytes) {
+      throw new InsufficientMemoryException(
+        new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY)
+          .setMessage("Requested memory of " + minBytes + " bytes is larger than global pool of "
+            + maxMemoryBytes + " bytes.")
+          .build().buildException());
+    }
+    // Nobody may jump the queue of allocations waiting for memory
+    if (waiters.isEmpty()) {
+      if (reqBytes > 0 && localReservation().take(reqBytes)) {
+        return reqBytes;
+      }
+      long nBytes = tryAllocateBytes(minBytes, reqBytes);
+      if (nBytes >= 0) {
+        return nBytes;
+      }
+    }
+    return waitForBytes(minBytes, reqBytes);
+  }
+
+  /**
+   * Takes at most reqBytes, but at least minBytes, from the pool and tops up the reservation stripe
+   * of the current thread while at it.
+   * @return the number of bytes allocated, or -1 if minBytes are not available
+   */
+  private long tryAllocateBytes(long minBytes, long reqBytes) {
+    boolean reclaimed = false;
+    while (true) {
+      long usedBytes = usedMemoryBytes.get();
+      long freeBytes = maxMemoryBytes - usedBytes;
+      if (freeBytes < reqBytes && !reclaimed) {
+        reclaimed = true;
+        if (reclaimReservations() > 0) {
+          continue;
+        }
+      }
+      if (freeBytes < minBytes) {
+        return -1;
+      }
+      // Allocate at most reqBytes, but at least minBytes
+      long nBytes = Math.min(reqBytes, freeBytes);
+      Reservation reservation = localReservation();
+      long refillBytes = nBytes == reqBytes
+        ? Math.max(0, Math.min(reservationBytes - reservation.get(), freeBytes - nBytes))
+        : 0;
+      if (usedMemoryBytes.compareAndSet(usedBytes, usedBytes + nBytes + refillBytes)) {
+        if (refillBytes > 0) {
+          reservation.addAndGet(refillBytes);
+        }
+        return nBytes;
+      }
+    }
+  }
+
+  /**
+   * Gives the unused memory of all reservation stripes back to the pool.
+   * @return the number of bytes given back
+   */
+  private long reclaimReservations() {
+    long reclaimedBytes = 0;
+    for (Reservation reservation : reservations) {
+      reclaimedBytes += reservation.getAndSet(0);
+    }
+    if (reclaimedBytes > 0) {
+      freeBytes(reclaimedBytes);
+    }
+    return reclaimedBytes;
+  }
+
+  private long waitForBytes(long minBytes, long reqBytes) {
+    Thread current = Thread.currentThread();
+    long deadline = System.nanoTime() + maxWaitNanos;
+    waiters.add(current);
+    try {
+      while (true) {
+        if (waiters.peek() == current) {
+          long nBytes = tryAllocateBytes(minBytes, reqBytes);
+          if (nBytes >= 0) {
+            return nBytes;
+          }
+        }
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0 || current.isInterrupted()) {
+          throw new InsufficientMemoryException(
+            new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY)
+              .setMessage("Requested memory of " + minBytes
+                + " bytes could not be allocated. Using memory of " + usedMemoryBytes.get()
+                + " bytes from global pool of " + maxMemoryBytes)
+              .build().buildException());
+        }
+        LockSupport.parkNanos(this, remainingNanos);
+      }
+    } finally {
+      waiters.remove(current);
+      signalWaiter();
+    }
+  }
+
+  private void freeBytes(long nBytes) {
+    usedMemoryBytes.addAndGet(-nBytes);
+    signalWaiter();
+  }
+
+  private void signalWaiter() {
+    Thread waiter = waiters.peek();
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  @Override
+  public MemoryChunk allocate(long minBytes, long reqBytes) {
+    long nBytes = allocateBytes(minBytes, reqBytes);
+    return new ConcurrentMemoryChunk(nBytes);
+  }
+
+  @Override
+  public MemoryChunk allocate(long nBytes) {
+    return allocate(nBytes, nBytes);
+  }
+
+  /**
+   * Bytes held back from the pool by the threads sharing one stripe.
+   */
+  private static class Reservation extends AtomicLong {
+    private static final long serialVersionUID = 1L;
+
+    private boolean take(long nBytes) {
+      while (true) {
+        long availableBytes = get();
+        if (availableBytes < nBytes) {
+          return false;
+        }
+        if (compareAndSet(availableBytes, availableBytes - nBytes)) {
+          return true;
+        }
+      }
+    }
+  }
+
+  private class ConcurrentMemoryChunk implements MemoryChunk {
+    private volatile long size;
+
+    private ConcurrentMemoryChunk(long size) {
+      if (size < 0) {
+        throw new IllegalStateException(
+          "Size of memory chunk must be greater than zero, but instead is " + size);
+      }
+      this.size = size;
+    }
+
+    @Override
+    public long getSize() {
+      return size;
+    }
+
+    @Override
+    public synchronized void resize(long nBytes) {
+      if (nBytes < 0) {
+        throw new IllegalStateException(
+          "Number of bytes to resize to must be greater than zero, but instead is " + nBytes);
+      }
+      long nAdditionalBytes = nBytes - size;
+      if (nAdditionalBytes < 0) {
+        freeBytes(-nAdditionalBytes);
+      } else if (nAdditionalBytes > 0) {
+        allocateBytes(nAdditionalBytes, nAdditionalBytes);
+      }
+      size = nBytes;
+    }
+
+    /**
+     * Check that MemoryChunk has previously been closed.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+      try {
+        if (size > 0) {
+          LOGGER.warn("Orphaned chunk of " + size + " bytes found during finalize");
+        }
+        close();
+      } finally {
+        super.finalize();
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      if (size > 0) {
+        freeBytes(size);
+        size = 0;
+      }
+    }
+  }
+}
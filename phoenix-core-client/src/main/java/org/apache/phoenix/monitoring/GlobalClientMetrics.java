@@ -57,23 +57,33 @@ import static org.apache.phoenix.monitoring.MetricType.MUTATION_BATCH_FAILED_SIZ
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_BATCH_SIZE;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_BYTES;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_COMMIT_TIME;
+import static org.apache.phoenix.monitoring.MetricType.MUTATION_PIPELINED_SERVER_COMMIT_TIME;
+import static org.apache.phoenix.monitoring.MetricType.MUTATION_PIPELINED_TABLE_COMMIT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_SQL_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_SYSCAT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.NUM_PARALLEL_SCANS;
 import static org.apache.phoenix.monitoring.MetricType.OPEN_INTERNAL_PHOENIX_CONNECTIONS_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.OPEN_PHOENIX_CONNECTIONS_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PAGED_ROWS_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.PARSED_STATEMENT_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.PARSED_STATEMENT_CACHE_MISS_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PHOENIX_CONNECTIONS_ATTEMPTED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PHOENIX_CONNECTIONS_FAILED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PHOENIX_CONNECTIONS_THROTTLED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_FAILED_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.QUERY_LOG_BUFFER_OCCUPANCY;
+import static org.apache.phoenix.monitoring.MetricType.QUERY_LOG_DROPPED_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.QUERY_PLAN_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.QUERY_PLAN_CACHE_MISS_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_SERVICES_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_TIME;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_TIMEOUT_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.SCAN_BYTES;
 import static org.apache.phoenix.monitoring.MetricType.SELECT_SQL_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.SPOOL_FILE_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.SPOOL_FILE_READ_TIME;
 import static org.apache.phoenix.monitoring.MetricType.SPOOL_FILE_SIZE;
+import static org.apache.phoenix.monitoring.MetricType.SPOOL_FILE_WRITE_TIME;
 import static org.apache.phoenix.monitoring.MetricType.STALE_METADATA_CACHE_EXCEPTION_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.TASK_END_TO_END_TIME;
 import static org.apache.phoenix.monitoring.MetricType.TASK_EXECUTED_COUNTER;
@@ -109,6 +119,8 @@ public enum GlobalClientMetrics {
   GLOBAL_MUTATION_BATCH_FAILED_COUNT(MUTATION_BATCH_FAILED_SIZE),
   GLOBAL_MUTATION_INDEX_COMMIT_FAILURE_COUNT(INDEX_COMMIT_FAILURE_SIZE),
   GLOBAL_MUTATION_SYSCAT_TIME(MUTATION_SYSCAT_TIME),
+  GLOBAL_MUTATION_PIPELINED_TABLE_COMMIT_TIME(MUTATION_PIPELINED_TABLE_COMMIT_TIME),
+  GLOBAL_MUTATION_PIPELINED_SERVER_COMMIT_TIME(MUTATION_PIPELINED_SERVER_COMMIT_TIME),
   GLOBAL_QUERY_TIME(QUERY_TIME),
   GLOBAL_NUM_PARALLEL_SCANS(NUM_PARALLEL_SCANS),
   GLOBAL_SCAN_BYTES(SCAN_BYTES),
@@ -125,6 +137,8 @@ public enum GlobalClientMetrics {
   GLOBAL_QUERY_TIMEOUT_COUNTER(QUERY_TIMEOUT_COUNTER),
   GLOBAL_FAILED_QUERY_COUNTER(QUERY_FAILED_COUNTER),
   GLOBAL_SPOOL_FILE_COUNTER(SPOOL_FILE_COUNTER),
+  GLOBAL_SPOOL_FILE_WRITE_TIME(SPOOL_FILE_WRITE_TIME),
+  GLOBAL_SPOOL_FILE_READ_TIME(SPOOL_FILE_READ_TIME),
   GLOBAL_OPEN_PHOENIX_CONNECTIONS(OPEN_PHOENIX_CONNECTIONS_COUNTER),
   GLOBAL_OPEN_INTERNAL_PHOENIX_CONNECTIONS(OPEN_INTERNAL_PHOENIX_CONNECTIONS_COUNTER),
   GLOBAL_FAILED_PHOENIX_CONNECTIONS(PHOENIX_CONNECTIONS_FAILED_COUNTER),
@@ -169,7 +183,13 @@ public enum GlobalClientMetrics {
   GLOBAL_CLIENT_METADATA_CACHE_REMOVAL_COUNTER(CLIENT_METADATA_CACHE_REMOVAL_COUNTER),
   GLOBAL_CLIENT_METADATA_CACHE_ADD_COUNTER(CLIENT_METADATA_CACHE_ADD_COUNTER),
   GLOBAL_CLIENT_METADATA_CACHE_ESTIMATED_USED_SIZE(CLIENT_METADATA_CACHE_ESTIMATED_USED_SIZE),
-  GLOBAL_CLIENT_STALE_METADATA_CACHE_EXCEPTION_COUNTER(STALE_METADATA_CACHE_EXCEPTION_COUNTER);
+  GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER(PARSED_STATEMENT_CACHE_HIT_COUNTER),
+  GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER(PARSED_STATEMENT_CACHE_MISS_COUNTER),
+  GLOBAL_QUERY_PLAN_CACHE_HIT_COUNTER(QUERY_PLAN_CACHE_HIT_COUNTER),
+  GLOBAL_QUERY_PLAN_CACHE_MISS_COUNTER(QUERY_PLAN_CACHE_MISS_COUNTER),
+  GLOBAL_CLIENT_STALE_METADATA_CACHE_EXCEPTION_COUNTER(STALE_METADATA_CACHE_EXCEPTION_COUNTER),
+  GLOBAL_QUERY_LOG_BUFFER_OCCUPANCY(QUERY_LOG_BUFFER_OCCUPANCY),
+  GLOBAL_QUERY_LOG_DROPPED_COUNTER(QUERY_LOG_DROPPED_COUNTER);
 
   private static final Logger LOGGER = LoggerFactory.getLogger(GlobalClientMetrics.class);
   private static final boolean isGlobalMetricsEnabled =
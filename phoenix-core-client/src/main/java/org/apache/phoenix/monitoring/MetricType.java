@@ -46,6 +46,12 @@ public enum MetricType {
     PLong.INSTANCE),
   MUTATION_SQL_COUNTER("msc", "Counter for number of mutation sql statements", LogLevel.OFF,
     PLong.INSTANCE),
+  MUTATION_PIPELINED_TABLE_COMMIT_TIME("mptct",
+    "Time it took to commit the mutations of a table with pipelined commit", LogLevel.OFF,
+    PLong.INSTANCE),
+  MUTATION_PIPELINED_SERVER_COMMIT_TIME("mpsct",
+    "Time it took to send the mutation batches of one region server with pipelined commit",
+    LogLevel.OFF, PLong.INSTANCE),
   UPSERT_SQL_COUNTER("uc", "Counter for number of upsert sql queries", LogLevel.OFF,
     PLong.INSTANCE),
   UPSERT_COMMIT_TIME("ut", "Time it took to commit a batch of upserts", LogLevel.OFF,
@@ -201,6 +207,10 @@ public enum MetricType {
   // spool metrics
   SPOOL_FILE_SIZE("ss", "Size of spool files created in bytes", LogLevel.DEBUG, PLong.INSTANCE),
   SPOOL_FILE_COUNTER("sn", "Number of spool files created", LogLevel.DEBUG, PLong.INSTANCE),
+  SPOOL_FILE_WRITE_TIME("swt", "Time in milliseconds spent writing spool files", LogLevel.DEBUG,
+    PLong.INSTANCE),
+  SPOOL_FILE_READ_TIME("srt", "Time in milliseconds spent reading spool files back",
+    LogLevel.DEBUG, PLong.INSTANCE),
   // misc metrics
   MEMORY_CHUNK_BYTES("mc", "Number of bytes allocated by the memory manager", LogLevel.DEBUG,
     PLong.INSTANCE),
@@ -218,6 +228,8 @@ public enum MetricType {
   QUERY_RESULT_ITR_TIME_MS("qrt", "Time elapsed in query result iterator", LogLevel.INFO,
     PLong.INSTANCE),
   SQL_QUERY_PARSING_TIME_MS("pt", "Time elapsed in query parsing", LogLevel.OFF, PLong.INSTANCE),
+  REGION_LOCATION_LOOKUP_TIME_MS("rlt", "Time elapsed in looking up region locations",
+    LogLevel.DEBUG, PLong.INSTANCE),
   OPEN_PHOENIX_CONNECTIONS_COUNTER("o", "Number of open phoenix connections", LogLevel.OFF,
     PLong.INSTANCE),
   OPEN_INTERNAL_PHOENIX_CONNECTIONS_COUNTER("io", "Number of open internal phoenix connections",
@@ -248,10 +260,27 @@ public enum MetricType {
     LogLevel.DEBUG, PLong.INSTANCE),
   CLIENT_METADATA_CACHE_ESTIMATED_USED_SIZE("cmcu", "Estimated used size of the CQSI cache.",
     LogLevel.DEBUG, PLong.INSTANCE),
+  PARSED_STATEMENT_CACHE_HIT_COUNTER("psch",
+    "Number of statements found in the parsed statement cache.", LogLevel.DEBUG, PLong.INSTANCE),
+  PARSED_STATEMENT_CACHE_MISS_COUNTER("pscm",
+    "Number of statements not found in the parsed statement cache.", LogLevel.DEBUG,
+    PLong.INSTANCE),
+  QUERY_PLAN_CACHE_HIT_COUNTER("qpch",
+    "Number of statements optimized with the plan found in the query plan cache.", LogLevel.DEBUG,
+    PLong.INSTANCE),
+  QUERY_PLAN_CACHE_MISS_COUNTER("qpcm",
+    "Number of statements optimized without a plan in the query plan cache.", LogLevel.DEBUG,
+    PLong.INSTANCE),
   PAGED_ROWS_COUNTER("prc", "Number of dummy rows returned to client due to paging.",
     LogLevel.DEBUG, PLong.INSTANCE),
   STALE_METADATA_CACHE_EXCEPTION_COUNTER("smce",
     "Number of StaleMetadataCacheException encountered.", LogLevel.DEBUG, PLong.INSTANCE),
+  QUERY_LOG_BUFFER_OCCUPANCY("qlbo",
+    "Number of query log events waiting in the ring buffer to be written to SYSTEM.LOG",
+    LogLevel.OFF, PLong.INSTANCE),
+  QUERY_LOG_DROPPED_COUNTER("qldc",
+    "Number of query log events dropped because the ring buffer was full or under back-pressure",
+    LogLevel.OFF, PLong.INSTANCE),
 
   // hbase metrics
   COUNT_RPC_CALLS("rp", "Number of RPC calls", LogLevel.DEBUG, PLong.INSTANCE,
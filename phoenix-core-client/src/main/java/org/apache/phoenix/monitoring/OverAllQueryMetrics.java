@@ -28,6 +28,7 @@ import static org.apache.phoenix.monitoring.MetricType.QUERY_RESULT_ITR_TIME_MS;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_SCAN_FAILED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_SCAN_TIMEOUT_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_TIMEOUT_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.REGION_LOCATION_LOOKUP_TIME_MS;
 import static org.apache.phoenix.monitoring.MetricType.RESULT_SET_TIME_MS;
 import static org.apache.phoenix.monitoring.MetricType.SQL_QUERY_PARSING_TIME_MS;
 import static org.apache.phoenix.monitoring.MetricType.WALL_CLOCK_TIME_MS;
@@ -58,6 +59,7 @@ public class OverAllQueryMetrics {
   private final CombinableMetric queryScanFailed;
   private final CombinableMetric cacheRefreshedDueToSplits;
   private final CombinableMetric queryParsingTimeMS;
+  private final CombinableMetric regionLocationLookupTimeMS;
 
   public OverAllQueryMetrics(boolean isRequestMetricsEnabled, LogLevel connectionLogLevel) {
     queryWatch = MetricUtil.getMetricsStopWatch(isRequestMetricsEnabled, connectionLogLevel,
@@ -92,6 +94,8 @@ public class OverAllQueryMetrics {
       connectionLogLevel, CACHE_REFRESH_SPLITS_COUNTER);
     queryParsingTimeMS = MetricUtil.getCombinableMetric(isRequestMetricsEnabled, connectionLogLevel,
       SQL_QUERY_PARSING_TIME_MS);
+    regionLocationLookupTimeMS = MetricUtil.getCombinableMetric(isRequestMetricsEnabled,
+      connectionLogLevel, REGION_LOCATION_LOOKUP_TIME_MS);
   }
 
   public void updateNumParallelScans(long numParallelScans) {
@@ -178,6 +182,10 @@ public class OverAllQueryMetrics {
     queryParsingTimeMS.change(time);
   }
 
+  public void addRegionLocationLookupTimeMS(long time) {
+    regionLocationLookupTimeMS.change(time);
+  }
+
   public Map<MetricType, Long> publish() {
     Map<MetricType, Long> metricsForPublish = new HashMap<>();
     metricsForPublish.put(numParallelScans.getMetricType(), numParallelScans.getValue());
@@ -198,6 +206,8 @@ public class OverAllQueryMetrics {
     metricsForPublish.put(cacheRefreshedDueToSplits.getMetricType(),
       cacheRefreshedDueToSplits.getValue());
     metricsForPublish.put(queryParsingTimeMS.getMetricType(), queryParsingTimeMS.getValue());
+    metricsForPublish.put(regionLocationLookupTimeMS.getMetricType(),
+      regionLocationLookupTimeMS.getValue());
     return metricsForPublish;
   }
 
@@ -216,6 +226,7 @@ public class OverAllQueryMetrics {
     queryScanFailed.reset();
     cacheRefreshedDueToSplits.reset();
     queryParsingTimeMS.reset();
+    regionLocationLookupTimeMS.reset();
     queryWatch.stop();
     resultSetWatch.stop();
   }
@@ -235,6 +246,7 @@ public class OverAllQueryMetrics {
     queryOptimizerTimeMS.combine(metric.queryOptimizerTimeMS);
     queryResultItrSetTimeMS.combine(metric.queryResultItrSetTimeMS);
     queryParsingTimeMS.combine(metric.queryParsingTimeMS);
+    regionLocationLookupTimeMS.combine(metric.regionLocationLookupTimeMS);
     return this;
   }
 
@@ -27,12 +27,18 @@ public class SpoolingMetricsHolder {
 
   private final CombinableMetric spoolFileSizeMetric;
   private final CombinableMetric numSpoolFileMetric;
+  private final CombinableMetric spoolFileWriteTimeMetric;
+  private final CombinableMetric spoolFileReadTimeMetric;
   public static final SpoolingMetricsHolder NO_OP_INSTANCE =
     new SpoolingMetricsHolder(new ReadMetricQueue(false, LogLevel.OFF), "");
 
   public SpoolingMetricsHolder(ReadMetricQueue readMetrics, String tableName) {
     this.spoolFileSizeMetric = readMetrics.allotMetric(MetricType.SPOOL_FILE_SIZE, tableName);
     this.numSpoolFileMetric = readMetrics.allotMetric(MetricType.SPOOL_FILE_COUNTER, tableName);
+    this.spoolFileWriteTimeMetric =
+      readMetrics.allotMetric(MetricType.SPOOL_FILE_WRITE_TIME, tableName);
+    this.spoolFileReadTimeMetric =
+      readMetrics.allotMetric(MetricType.SPOOL_FILE_READ_TIME, tableName);
   }
 
   public CombinableMetric getSpoolFileSizeMetric() {
@@ -42,4 +48,12 @@ public class SpoolingMetricsHolder {
   public CombinableMetric getNumSpoolFileMetric() {
     return numSpoolFileMetric;
   }
+
+  public CombinableMetric getSpoolFileWriteTimeMetric() {
+    return spoolFileWriteTimeMetric;
+  }
+
+  public CombinableMetric getSpoolFileReadTimeMetric() {
+    return spoolFileReadTimeMetric;
+  }
 }
@@ -37,6 +37,7 @@ import static org.apache.phoenix.monitoring.MetricType.MUTATION_BATCH_FAILED_SIZ
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_BATCH_SIZE;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_BYTES;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_COMMIT_TIME;
+import static org.apache.phoenix.monitoring.MetricType.MUTATION_PIPELINED_TABLE_COMMIT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_SQL_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.NUM_METADATA_LOOKUP_FAILURES;
 import static org.apache.phoenix.monitoring.MetricType.NUM_SYSTEM_TABLE_RPC_FAILURES;
@@ -95,6 +96,7 @@ public class TableClientMetrics {
     TABLE_DELETE_MUTATION_SQL_COUNTER(DELETE_MUTATION_SQL_COUNTER),
     TABLE_MUTATION_SQL_COUNTER(MUTATION_SQL_COUNTER),
     TABLE_MUTATION_COMMIT_TIME(MUTATION_COMMIT_TIME),
+    TABLE_MUTATION_PIPELINED_COMMIT_TIME(MUTATION_PIPELINED_TABLE_COMMIT_TIME),
     TABLE_UPSERT_SQL_COUNTER(UPSERT_SQL_COUNTER),
     TABLE_UPSERT_SQL_QUERY_TIME(UPSERT_SQL_QUERY_TIME),
     TABLE_SUCCESS_UPSERT_SQL_COUNTER(UPSERT_SUCCESS_SQL_COUNTER),
@@ -88,6 +88,7 @@ public class QueryOptimizer {
   private final boolean useIndexes;
   private final boolean costBased;
   private long indexPendingDisabledThreshold;
+  private final QueryPlanCache planCache;
 
   public QueryOptimizer(QueryServices services) {
     this.services = services;
@@ -98,6 +99,16 @@ public class QueryOptimizer {
     this.indexPendingDisabledThreshold =
       this.services.getProps().getLong(QueryServices.INDEX_PENDING_DISABLE_THRESHOLD,
         QueryServicesOptions.DEFAULT_INDEX_PENDING_DISABLE_THRESHOLD);
+    int planCacheSize = this.services.getProps().getInt(QueryServices.QUERY_PLAN_CACHE_SIZE_ATTRIB,
+      QueryServicesOptions.DEFAULT_QUERY_PLAN_CACHE_SIZE);
+    this.planCache = planCacheSize > 0 ? new QueryPlanCache(planCacheSize) : null;
+  }
+
+  /**
+   * @return the cache of the plans chosen for statements, or null if it is disabled
+   */
+  public QueryPlanCache getPlanCache() {
+    return planCache;
   }
 
   public QueryPlan optimize(PhoenixStatement statement, QueryPlan dataPlan) throws SQLException {
@@ -292,6 +303,16 @@ public class QueryOptimizer {
     List<QueryPlan> plans = Lists.newArrayListWithExpectedSize((forCDC ? 0 : 1) + indexes.size());
     SelectStatement translatedIndexSelect =
       IndexStatementRewriter.translate(select, FromCompiler.getResolver(dataPlan.getTableRef()));
+    // Plans of statements without hints are cached as the table they were compiled against
+    boolean usePlanCache = planCache != null && stopAtBestPlan && indexHint == null && !forCDC;
+    String sql = usePlanCache ? select.toString() : null;
+    if (usePlanCache) {
+      QueryPlan cachedPlan = getCachedPlan(statement, select, sql, translatedIndexSelect,
+        targetColumns, parallelIteratorFactory, dataPlan);
+      if (cachedPlan != null) {
+        return Collections.singletonList(cachedPlan);
+      }
+    }
     QueryPlan hintedPlan = null;
     // We can't have hints work with CDC queries so skip looking for hinted plans.
     if (!forCDC) {
@@ -349,9 +370,42 @@ public class QueryOptimizer {
     }
 
     // OrderPlans
-    return hintedPlan == null
-      ? orderPlansBestToWorst(select, applicablePlans, stopAtBestPlan)
-      : applicablePlans;
+    if (hintedPlan != null) {
+      return applicablePlans;
+    }
+    List<QueryPlan> bestPlans = orderPlansBestToWorst(select, applicablePlans, stopAtBestPlan);
+    if (usePlanCache) {
+      planCache.put(statement.getConnection().getTenantId(), sql, table,
+        bestPlans.get(0).getTableRef().getTable());
+    }
+    return bestPlans;
+  }
+
+  /**
+   * Compiles the statement against the table of the plan cached for it, which binds the values of
+   * this execution.
+   * @return the plan, or null if no plan is cached or the cached one cannot be used any more
+   */
+  private QueryPlan getCachedPlan(PhoenixStatement statement, SelectStatement select, String sql,
+    SelectStatement translatedIndexSelect, List<? extends PDatum> targetColumns,
+    ParallelIteratorFactory parallelIteratorFactory, QueryPlan dataPlan) throws SQLException {
+    PTable dataTable = dataPlan.getTableRef().getTable();
+    PTable planTable = planCache.get(statement.getConnection().getTenantId(), sql, dataTable);
+    if (planTable == null) {
+      return null;
+    }
+    if (planTable == dataTable) {
+      return dataPlan.isApplicable() ? dataPlan : null;
+    }
+    QueryPlan plan = addPlan(statement, translatedIndexSelect, planTable, targetColumns,
+      parallelIteratorFactory, dataPlan, false, null);
+    if (
+      plan != null && plan.isApplicable() && (planTable.getIndexWhere() == null
+        || isPartialIndexUsable(select, dataPlan, planTable))
+    ) {
+      return plan;
+    }
+    return null;
   }
 
   private QueryPlan getHintedQueryPlan(PhoenixStatement statement, SelectStatement select,
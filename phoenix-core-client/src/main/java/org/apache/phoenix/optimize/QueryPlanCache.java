@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.optimize;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_PLAN_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_PLAN_CACHE_MISS_COUNTER;
+
+import java.util.Map;
+import java.util.Objects;
+import org.apache.phoenix.schema.PName;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableKey;
+
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the plans chosen by the {@link QueryOptimizer}, keyed by tenant and by the SQL of the
+ * statement, shared by all connections of a ConnectionQueryServices. A plan is cached as the table,
+ * either the data table or one of its indexes, that the optimizer picked for the statement. When
+ * the same statement is optimized again only the plan over that table is compiled, with the bind
+ * values of the new execution, instead of a plan over the data table and each of its indexes.
+ * <p>
+ * An entry records the last DDL timestamps of the data table, of its ancestors and of the chosen
+ * index. It is dropped as soon as one of them changed, so that a plan is chosen again once a
+ * column or an index was added or dropped. Tables without a last DDL timestamp are never cached.
+ */
+public class QueryPlanCache {
+  private final Cache<Key, Entry> cache;
+
+  public QueryPlanCache(long maxSize) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  /**
+   * @return the table of the plan chosen before for sql, either dataTable itself or one of its
+   *         indexes, or null if there is none or if the DDL timestamps of the tables changed since
+   */
+  public PTable get(PName tenantId, String sql, PTable dataTable) {
+    Key key = new Key(tenantId, sql);
+    Entry entry = cache.getIfPresent(key);
+    PTable planTable = entry == null ? null : entry.getPlanTable(dataTable);
+    if (planTable == null) {
+      if (entry != null) {
+        cache.invalidate(key);
+      }
+      GLOBAL_QUERY_PLAN_CACHE_MISS_COUNTER.increment();
+    } else {
+      GLOBAL_QUERY_PLAN_CACHE_HIT_COUNTER.increment();
+    }
+    return planTable;
+  }
+
+  public void put(PName tenantId, String sql, PTable dataTable, PTable planTable) {
+    if (
+      dataTable.getLastDDLTimestamp() == null
+        || (planTable != dataTable && planTable.getLastDDLTimestamp() == null)
+    ) {
+      return;
+    }
+    cache.put(new Key(tenantId, sql), new Entry(dataTable, planTable));
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  private static final class Key {
+    private final String tenantId;
+    private final String sql;
+
+    private Key(PName tenantId, String sql) {
+      this.tenantId = tenantId == null ? null : tenantId.getString();
+      this.sql = sql;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equals(tenantId, other.tenantId) && sql.equals(other.sql);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Objects.hashCode(tenantId) + sql.hashCode();
+    }
+  }
+
+  private static final class Entry {
+    private final long dataTableTimestamp;
+    private final Map<PTableKey, Long> ancestorTimestamps;
+    // null when the plan over the data table was chosen
+    private final String indexName;
+    private final Long indexTimestamp;
+
+    private Entry(PTable dataTable, PTable planTable) {
+      this.dataTableTimestamp = dataTable.getLastDDLTimestamp();
+      this.ancestorTimestamps = dataTable.getAncestorLastDDLTimestampMap();
+      boolean isIndex = !planTable.getName().equals(dataTable.getName());
+      this.indexName = isIndex ? planTable.getName().getString() : null;
+      this.indexTimestamp = isIndex ? planTable.getLastDDLTimestamp() : null;
+    }
+
+    private PTable getPlanTable(PTable dataTable) {
+      if (
+        !Objects.equals(dataTableTimestamp, dataTable.getLastDDLTimestamp())
+          || !Objects.equals(ancestorTimestamps, dataTable.getAncestorLastDDLTimestampMap())
+      ) {
+        return null;
+      }
+      if (indexName == null) {
+        return dataTable;
+      }
+      for (PTable index : dataTable.getIndexes()) {
+        if (indexName.equals(index.getName().getString())) {
+          return Objects.equals(indexTimestamp, index.getLastDDLTimestamp()) ? index : null;
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.parse;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER;
+
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of parsed statements keyed by their SQL text, shared by all connections of a
+ * ConnectionQueryServices so that a statement issued over and over again, whether through a new
+ * PhoenixStatement or a new PhoenixPreparedStatement each time, is only parsed once. Parsing does
+ * not depend on the tenant or on any table metadata, so entries never need to be invalidated.
+ * Only statements that are not modified while being compiled may be cached, since they are
+ * compiled by many threads at the same time.
+ * <p>
+ * Every execution still compiles the parsed statement with its own bind values. The choice of the
+ * table or index to compile it against is cached separately by the QueryPlanCache.
+ */
+public class ParsedStatementCache {
+  private final Cache<String, BindableStatement> cache;
+
+  public ParsedStatementCache(long maxSize) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  /**
+   * @return the statement parsed from sql before, or null if there is none
+   */
+  public BindableStatement get(String sql) {
+    BindableStatement statement = cache.getIfPresent(sql);
+    if (statement == null) {
+      GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER.increment();
+    } else {
+      GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER.increment();
+    }
+    return statement;
+  }
+
+  public void put(String sql, BindableStatement statement) {
+    cache.put(sql, statement);
+  }
+
+  public long size() {
+    return cache.size();
+  }
+}
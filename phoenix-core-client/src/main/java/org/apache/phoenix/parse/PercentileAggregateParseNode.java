@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.parse;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.function.ApproxPercentileAggregateFunction;
+import org.apache.phoenix.expression.function.PercentileDiscAggregateFunction;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+
+/**
+ * Parse node for PERCENTILE_CONT and PERCENTILE_DISC that computes them with APPROX_PERCENTILE
+ * instead of exactly when {@link QueryServices#PERCENTILE_APPROXIMATE_ENABLED_ATTRIB} is set.
+ */
+public class PercentileAggregateParseNode extends AggregateFunctionWithinGroupParseNode {
+
+  public PercentileAggregateParseNode(String name, List<ParseNode> children,
+    BuiltInFunctionInfo info) {
+    super(name, children, info);
+  }
+
+  @Override
+  public Expression create(List<Expression> children, StatementContext context)
+    throws SQLException {
+    if (
+      !context.getConnection().getQueryServices().getProps().getBoolean(
+        QueryServices.PERCENTILE_APPROXIMATE_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_PERCENTILE_APPROXIMATE_ENABLED)
+    ) {
+      return super.create(children, context);
+    }
+    // Children are the ordering expression, whether it is ascending and the percentile
+    boolean isAscending = Boolean.TRUE.equals(((LiteralExpression) children.get(1)).getValue());
+    Number percentile = (Number) ((LiteralExpression) children.get(2)).getValue();
+    BigDecimal p = percentile instanceof BigDecimal
+      ? (BigDecimal) percentile
+      : BigDecimal.valueOf(percentile.doubleValue());
+    boolean isDiscrete = PercentileDiscAggregateFunction.NAME.equals(getName());
+    return new ApproxPercentileAggregateFunction(Arrays.asList(children.get(0),
+      LiteralExpression.newConstant(isAscending ? p : BigDecimal.ONE.subtract(p)),
+      LiteralExpression.newConstant(isDiscrete)));
+  }
+}
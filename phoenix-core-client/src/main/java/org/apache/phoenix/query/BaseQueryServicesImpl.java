@@ -19,9 +19,11 @@ package org.apache.phoenix.query;
 
 import java.util.concurrent.ThreadPoolExecutor;
 import org.apache.phoenix.job.JobManager;
+import org.apache.phoenix.memory.ConcurrentMemoryManager;
 import org.apache.phoenix.memory.GlobalMemoryManager;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.optimize.QueryOptimizer;
+import org.apache.phoenix.parse.ParsedStatementCache;
 import org.apache.phoenix.util.ReadOnlyProps;
 
 /**
@@ -33,14 +35,30 @@ public abstract class BaseQueryServicesImpl implements QueryServices {
   private final MemoryManager memoryManager;
   private final ReadOnlyProps props;
   private final QueryOptimizer queryOptimizer;
+  private final ParsedStatementCache parsedStatementCache;
 
   public BaseQueryServicesImpl(ReadOnlyProps defaultProps, QueryServicesOptions options) {
     this.executor = JobManager.createThreadPoolExec(options.getKeepAliveMs(),
       options.getThreadPoolSize(), options.getQueueSize(), options.isGlobalMetricsEnabled());
-    this.memoryManager =
-      new GlobalMemoryManager(Runtime.getRuntime().maxMemory() * options.getMaxMemoryPerc() / 100);
     this.props = options.getProps(defaultProps);
+    long maxMemory = Runtime.getRuntime().maxMemory() * options.getMaxMemoryPerc() / 100;
+    if (
+      props.getBoolean(CONCURRENT_MEMORY_MANAGER_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_CONCURRENT_MEMORY_MANAGER_ENABLED)
+    ) {
+      this.memoryManager = new ConcurrentMemoryManager(maxMemory,
+        props.getLongBytes(CONCURRENT_MEMORY_MANAGER_RESERVATION_BYTES_ATTRIB,
+          QueryServicesOptions.DEFAULT_CONCURRENT_MEMORY_MANAGER_RESERVATION_BYTES),
+        props.getLong(CONCURRENT_MEMORY_MANAGER_MAX_WAIT_MS_ATTRIB,
+          QueryServicesOptions.DEFAULT_CONCURRENT_MEMORY_MANAGER_MAX_WAIT_MS));
+    } else {
+      this.memoryManager = new GlobalMemoryManager(maxMemory);
+    }
     this.queryOptimizer = new QueryOptimizer(this);
+    int parsedStatementCacheSize = props.getInt(PARSED_STATEMENT_CACHE_SIZE_ATTRIB,
+      QueryServicesOptions.DEFAULT_PARSED_STATEMENT_CACHE_SIZE);
+    this.parsedStatementCache =
+      parsedStatementCacheSize > 0 ? new ParsedStatementCache(parsedStatementCacheSize) : null;
   }
 
   @Override
@@ -68,4 +86,9 @@ public abstract class BaseQueryServicesImpl implements QueryServices {
   public QueryOptimizer getOptimizer() {
     return queryOptimizer;
   }
+
+  @Override
+  public ParsedStatementCache getParsedStatementCache() {
+    return parsedStatementCache;
+  }
 }
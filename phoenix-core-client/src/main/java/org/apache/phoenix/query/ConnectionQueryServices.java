@@ -39,6 +39,7 @@ import org.apache.phoenix.coprocessorclient.InvalidateServerMetadataCacheRequest
 import org.apache.phoenix.coprocessorclient.MetaDataProtocol.MetaDataMutationResult;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.execute.PipelinedMutationDispatcher;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.log.ConnectionLimiter;
@@ -234,7 +235,9 @@ public interface ConnectionQueryServices extends QueryServices, MetaDataMutated
 
   public enum Feature {
     LOCAL_INDEX,
-    RENEW_LEASE
+    RENEW_LEASE,
+    SERVER_CACHE_REUSE,
+    CHUNKED_SERVER_CACHE
   };
 
   public boolean supportsFeature(Feature feature);
@@ -320,6 +323,12 @@ public interface ConnectionQueryServices extends QueryServices, MetaDataMutated
 
   int getConnectionCount(boolean isInternal);
 
+  /**
+   * @return the dispatcher used by pipelined commits of connections of these services, created on
+   *         first use and closed along with the services
+   */
+  PipelinedMutationDispatcher getPipelinedMutationDispatcher();
+
   void invalidateServerMetadataCache(List<InvalidateServerMetadataCacheRequest> requests)
     throws Throwable;
 
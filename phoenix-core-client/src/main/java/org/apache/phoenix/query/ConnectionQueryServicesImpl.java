@@ -244,6 +244,7 @@ import org.apache.phoenix.exception.UpgradeInProgressException;
 import org.apache.phoenix.exception.UpgradeNotRequiredException;
 import org.apache.phoenix.exception.UpgradeRequiredException;
 import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.execute.PipelinedMutationDispatcher;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
 import org.apache.phoenix.hbase.index.util.VersionUtil;
 import org.apache.phoenix.index.PhoenixIndexCodec;
@@ -377,6 +378,8 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
 
   // Lowest HBase version on the cluster.
   private int lowestClusterHBaseVersion = Integer.MAX_VALUE;
+  // Lowest Phoenix version on the cluster.
+  private int lowestClusterPhoenixVersion = Integer.MAX_VALUE;
   private boolean hasIndexWALCodec = true;
 
   @GuardedBy("connectionCountLock")
@@ -429,6 +432,10 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
   private final int loggingIntervalInMins;
 
   private final ConnectionLimiter connectionLimiter;
+  // Region locations of tables loaded with one meta scan per table, or null if disabled
+  private final TableRegionLocationCache regionLocationCache;
+  // Created on the first pipelined commit, guarded by this
+  private PipelinedMutationDispatcher pipelinedMutationDispatcher;
 
   // writes guarded by "liveRegionServersLock"
   private volatile List<ServerName> liveRegionServers;
@@ -460,6 +467,18 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
         int hbaseVersion = services.getLowestClusterHBaseVersion();
         return hbaseVersion >= MetaDataProtocol.MIN_RENEW_LEASE_VERSION;
       }
+    }, Feature.SERVER_CACHE_REUSE, new FeatureSupported() {
+      @Override
+      public boolean isSupported(ConnectionQueryServices services) {
+        // Older servers ignore the reuse only flag and install an empty cache instead
+        return lowestClusterPhoenixVersion >= MetaDataProtocol.MIN_SERVER_CACHE_REUSE_VERSION;
+      }
+    }, Feature.CHUNKED_SERVER_CACHE, new FeatureSupported() {
+      @Override
+      public boolean isSupported(ConnectionQueryServices services) {
+        // Older servers ignore the upload fields and take the first chunk for the whole cache
+        return lowestClusterPhoenixVersion >= MetaDataProtocol.MIN_CHUNKED_SERVER_CACHE_VERSION;
+      }
     });
   private QueryLoggerDisruptor queryDisruptor;
 
@@ -592,6 +611,13 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
       list.add(queue);
     }
     connectionQueues = ImmutableList.copyOf(list);
+    this.regionLocationCache = props.getBoolean(
+      QueryServices.REGION_LOCATION_CACHE_ENABLED_ATTRIB,
+      QueryServicesOptions.DEFAULT_REGION_LOCATION_CACHE_ENABLED)
+        ? new TableRegionLocationCache(
+          props.getLong(QueryServices.REGION_LOCATION_CACHE_TTL_MS_ATTRIB,
+            QueryServicesOptions.DEFAULT_REGION_LOCATION_CACHE_TTL_MS))
+        : null;
 
     // A little bit of a smell to leak `this` here, but should not be a problem
     this.tableStatsCache =
@@ -862,6 +888,9 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
             tableStatsCache.invalidateAll();
             super.close();
             shutdownThreadPool(this.threadPoolExecutor);
+            if (pipelinedMutationDispatcher != null) {
+              pipelinedMutationDispatcher.close();
+            }
           } catch (SQLException e) {
             if (sqlE == null) {
               sqlE = e;
@@ -916,6 +945,9 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
 
   @Override
   public void clearTableRegionCache(TableName tableName) throws SQLException {
+    if (regionLocationCache != null) {
+      regionLocationCache.invalidate(tableName);
+    }
     try {
       connection.getRegionLocator(tableName).clearRegionLocationCache();
     } catch (IOException e) {
@@ -1023,6 +1055,15 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
         // to get the sizing info we need, but this would require a new class in the same package
         // and a cast
         // to this implementation class, so it's probably not worth it.
+        if (regionLocationCache != null) {
+          List<HRegionLocation> locations = regionLocationCache.getTableRegions(table,
+            startRowKey, endRowKey, connection.getRegionLocator(table));
+          if (locations != null) {
+            return locations;
+          }
+          // hbase:meta does not have a consistent view of the regions yet, e.g. during a split,
+          // so fall back to looking up the region of each key
+        }
         List<HRegionLocation> locations = Lists.newArrayList();
         HRegionLocation prevRegionLocation = null;
         currentKey = startRowKey;
@@ -2167,6 +2208,7 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
     throws SQLException, AccessDeniedException {
     StringBuilder errorMessage = new StringBuilder();
     int minHBaseVersion = Integer.MAX_VALUE;
+    int minPhoenixVersion = Integer.MAX_VALUE;
     boolean isTableNamespaceMappingEnabled = false;
     long systemCatalogTimestamp = Long.MAX_VALUE;
     long startTime = 0L;
@@ -2235,6 +2277,8 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
         if (minHBaseVersion > MetaDataUtil.decodeHBaseVersion(serverJarVersion)) {
           minHBaseVersion = MetaDataUtil.decodeHBaseVersion(serverJarVersion);
         }
+        minPhoenixVersion =
+          Math.min(minPhoenixVersion, MetaDataUtil.decodePhoenixVersion(serverJarVersion));
         // In case this is the first time connecting to this cluster, the system catalog table does
         // not have an
         // entry for itself yet, so we cannot get the timestamp and this will not be returned from
@@ -2272,6 +2316,7 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
             .build().buildException();
       }
       lowestClusterHBaseVersion = minHBaseVersion;
+      lowestClusterPhoenixVersion = minPhoenixVersion;
     } finally {
       if (ht != null) {
         try {
@@ -2343,6 +2388,14 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
     return connectionLimiter;
   }
 
+  @Override
+  public synchronized PipelinedMutationDispatcher getPipelinedMutationDispatcher() {
+    if (pipelinedMutationDispatcher == null) {
+      pipelinedMutationDispatcher = new PipelinedMutationDispatcher(getProps());
+    }
+    return pipelinedMutationDispatcher;
+  }
+
   /**
    * helper function to return the exception from the RPC
    */
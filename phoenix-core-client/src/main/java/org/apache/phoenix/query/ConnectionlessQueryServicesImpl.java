@@ -55,6 +55,7 @@ import org.apache.phoenix.coprocessorclient.MetaDataProtocol.MutationCode;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.execute.PipelinedMutationDispatcher;
 import org.apache.phoenix.hbase.index.util.GenericKeyValueBuilder;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
 import org.apache.phoenix.jdbc.ConnectionInfo;
@@ -122,6 +123,7 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices
   private final Map<String, List<HRegionLocation>> tableSplits = Maps.newHashMap();
   private final GuidePostsCacheWrapper guidePostsCache;
   private final Configuration config;
+  private PipelinedMutationDispatcher pipelinedMutationDispatcher;
 
   private User user;
 
@@ -908,6 +910,28 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices
     return 0;
   }
 
+  @Override
+  public synchronized PipelinedMutationDispatcher getPipelinedMutationDispatcher() {
+    if (pipelinedMutationDispatcher == null) {
+      pipelinedMutationDispatcher = new PipelinedMutationDispatcher(getProps());
+    }
+    return pipelinedMutationDispatcher;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    try {
+      super.close();
+    } finally {
+      synchronized (this) {
+        if (pipelinedMutationDispatcher != null) {
+          pipelinedMutationDispatcher.close();
+          pipelinedMutationDispatcher = null;
+        }
+      }
+    }
+  }
+
   @Override
   public void invalidateServerMetadataCache(List<InvalidateServerMetadataCacheRequest> requests)
     throws Throwable {
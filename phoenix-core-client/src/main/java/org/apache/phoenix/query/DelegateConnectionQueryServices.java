@@ -38,6 +38,7 @@ import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.coprocessorclient.InvalidateServerMetadataCacheRequest;
 import org.apache.phoenix.coprocessorclient.MetaDataProtocol.MetaDataMutationResult;
 import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.execute.PipelinedMutationDispatcher;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.log.ConnectionLimiter;
@@ -466,6 +467,11 @@ public class DelegateConnectionQueryServices extends DelegateQueryServices
     return getDelegate().getConnectionLimiter();
   }
 
+  @Override
+  public PipelinedMutationDispatcher getPipelinedMutationDispatcher() {
+    return getDelegate().getPipelinedMutationDispatcher();
+  }
+
   @Override
   public int getConnectionCount(boolean isInternal) {
     return getDelegate().getConnectionCount(isInternal);
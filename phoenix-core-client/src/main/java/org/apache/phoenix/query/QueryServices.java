@@ -22,6 +22,7 @@ import net.jcip.annotations.Immutable;
 import org.apache.phoenix.iterate.SpoolTooBigToDiskException;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.optimize.QueryOptimizer;
+import org.apache.phoenix.parse.ParsedStatementCache;
 import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.SQLCloseable;
 
@@ -406,6 +407,13 @@ public interface QueryServices extends SQLCloseable {
   public static final String LOG_BUFFER_WAIT_STRATEGY = "phoenix.log.wait.strategy";
   public static final String LOG_SAMPLE_RATE = "phoenix.log.sample.rate";
   public static final String LOG_HANDLER_COUNT = "phoenix.log.handler.count";
+  // Maximum number of query log events committed to SYSTEM.LOG together
+  public static final String LOG_BATCH_SIZE = "phoenix.log.batch.size";
+  // Maximum time a written query log event waits for the commit of its batch
+  public static final String LOG_BATCH_MAX_DELAY_MS = "phoenix.log.batch.maxDelayMs";
+  // DROP to drop query log events only when the ring buffer is full, SAMPLE to drop a growing
+  // share of them once it is more than half full
+  public static final String LOG_BACKPRESSURE_POLICY = "phoenix.log.backpressure.policy";
 
   public static final String SYSTEM_CATALOG_SPLITTABLE = "phoenix.system.catalog.splittable";
 
@@ -651,6 +659,100 @@ public interface QueryServices extends SQLCloseable {
   // values.
   String SCAN_METRICS_BY_REGION_ENABLED = "phoenix.scan.metrics.by.region.enabled";
 
+  /**
+   * Whether commits send the mutations of different tables, and of different region servers within
+   * a table, concurrently instead of one batch at a time.
+   */
+  String MUTATE_PIPELINED_COMMIT_ENABLED_ATTRIB = "phoenix.mutate.pipelinedCommit.enabled";
+  // Max number of threads used for each of the table and region server commit dispatch pools.
+  String MUTATE_PIPELINED_COMMIT_MAX_THREADS_ATTRIB = "phoenix.mutate.pipelinedCommit.maxThreads";
+
+  /**
+   * Whether unordered group by aggregation keeps its groups in an open addressing hash table backed
+   * by primitive arrays when every aggregator has a fixed width state. Such a cache does not spill.
+   */
+  String GROUPBY_OPEN_ADDRESSING_ENABLED_ATTRIB = "phoenix.groupby.openAddressing.enabled";
+  /**
+   * How a spillable group by cache spills once it runs out of memory: HASH spills single groups
+   * into hash partitioned pages of the spill files, SORT writes all groups held in memory as a run
+   * sorted by group key and merges the runs when the groups are returned.
+   */
+  String GROUPBY_SPILL_STRATEGY_ATTRIB = "phoenix.groupby.spillStrategy";
+  /**
+   * Whether the keys of a hash join cache are summarized in a bloom filter that is pushed down to
+   * the scan of the probe side of inner and semi joins, so rows without a match are dropped as they
+   * are read.
+   */
+  String HASH_JOIN_BLOOM_FILTER_ENABLED_ATTRIB = "phoenix.join.bloomFilter.enabled";
+  // Hash caches with more keys than this do not get a bloom filter
+  String HASH_JOIN_BLOOM_FILTER_MAX_KEYS_ATTRIB = "phoenix.join.bloomFilter.maxKeys";
+  String HASH_JOIN_BLOOM_FILTER_FPP_ATTRIB = "phoenix.join.bloomFilter.fpp";
+  /**
+   * Whether client side spooling writes page aligned blocks of rows that are read back through a
+   * memory mapping of the spool file and copied onto the heap a block at a time, instead of
+   * streaming the rows through the deprecated SpoolingResultIterator. Disabled by default.
+   */
+  String CLIENT_SPOOL_MAPPED_ENABLED_ATTRIB = "phoenix.query.spoolMapped.enabled";
+  // Target size in bytes of the blocks of rows of a memory mapped spool file
+  String CLIENT_SPOOL_MAPPED_BLOCK_SIZE_ATTRIB = "phoenix.query.spoolMapped.blockSize";
+  // Whether memory is tracked with the lock free ConcurrentMemoryManager
+  String CONCURRENT_MEMORY_MANAGER_ENABLED_ATTRIB = "phoenix.query.concurrentMemoryManager.enabled";
+  // Number of bytes each thread may reserve from the memory pool to allocate from without contention
+  String CONCURRENT_MEMORY_MANAGER_RESERVATION_BYTES_ATTRIB =
+    "phoenix.query.concurrentMemoryManager.reservationBytes";
+  // Time in milliseconds an allocation waits for memory to be freed before it fails
+  String CONCURRENT_MEMORY_MANAGER_MAX_WAIT_MS_ATTRIB =
+    "phoenix.query.concurrentMemoryManager.maxWaitMs";
+  // Whether PERCENTILE_CONT and PERCENTILE_DISC are computed approximately with APPROX_PERCENTILE
+  String PERCENTILE_APPROXIMATE_ENABLED_ATTRIB = "phoenix.query.percentile.approximate.enabled";
+  // Maximum number of parsed statements cached for all connections, or 0 to disable the cache.
+  String PARSED_STATEMENT_CACHE_SIZE_ATTRIB = "phoenix.query.parsedStatementCache.size";
+  // Maximum number of plans chosen by the optimizer cached per tenant and statement for all
+  // connections, or 0 to disable the cache. An entry is dropped once a DDL timestamp changed.
+  String QUERY_PLAN_CACHE_SIZE_ATTRIB = "phoenix.query.planCache.size";
+  // Whether NDV, null count and histogram statistics of columns are collected with the guideposts
+  String STATS_COLUMN_STATS_ENABLED_ATTRIB = "phoenix.stats.columnStats.enabled";
+  // Number of buckets of the equi-depth histogram of the values of a column in a region
+  String STATS_COLUMN_HISTOGRAM_BUCKETS_ATTRIB = "phoenix.stats.columnStats.histogramBuckets";
+  // Whether the tables of multi-way inner joins are reordered based on their row estimates
+  String JOIN_REORDER_ENABLED_ATTRIB = "phoenix.query.joinReorder.enabled";
+  // Maximum number of joined tables ordered exhaustively, larger joins are ordered greedily
+  String JOIN_REORDER_DP_THRESHOLD_ATTRIB = "phoenix.query.joinReorder.dpThreshold";
+  // Maximum number of consecutive unverified index rows repaired together by GlobalIndexChecker,
+  // or 1 to repair each row on its own
+  String GLOBAL_INDEX_REPAIR_BATCH_SIZE_ATTRIB = "phoenix.global.index.repair.batchSize";
+  // Whether the locations of all the regions of a table are loaded and cached with one meta scan
+  String REGION_LOCATION_CACHE_ENABLED_ATTRIB = "phoenix.query.regionLocationCache.enabled";
+  // Time after which the cached region locations of a table are loaded again
+  String REGION_LOCATION_CACHE_TTL_MS_ATTRIB = "phoenix.query.regionLocationCache.ttlMs";
+  // Whether identical hash join build sides of concurrent queries share one server cache
+  String SHARED_HASH_CACHE_ENABLED_ATTRIB = "phoenix.query.sharedHashCache.enabled";
+  // Length of the time windows within which queries may share a hash join cache, which bounds
+  // the staleness of the build side seen by a query
+  String SHARED_HASH_CACHE_WINDOW_MS_ATTRIB = "phoenix.query.sharedHashCache.windowMs";
+  // Size of the chunks in which larger server caches are sent to each region server, or 0 to send
+  // every cache in one request. Requires region servers that understand chunked caches.
+  String SERVER_CACHE_CHUNK_SIZE_ATTRIB = "phoenix.query.serverCache.chunkSize";
+  // Whether region servers scale the page size of each paging scanner based on how selective its
+  // pages are and how many calls are waiting for an RPC handler
+  String PHOENIX_SERVER_PAGING_ADAPTIVE_ENABLED = "phoenix.server.paging.adaptive.enabled";
+  // Bounds of the factor adaptive paging applies to the page size
+  String PHOENIX_SERVER_PAGING_ADAPTIVE_MIN_FACTOR = "phoenix.server.paging.adaptive.minFactor";
+  String PHOENIX_SERVER_PAGING_ADAPTIVE_MAX_FACTOR = "phoenix.server.paging.adaptive.maxFactor";
+  // Number of queued RPC calls above which adaptive paging shrinks the page size
+  String PHOENIX_SERVER_PAGING_ADAPTIVE_QUEUE_THRESHOLD =
+    "phoenix.server.paging.adaptive.queueThreshold";
+  // Number of region server threads running the point lookups a multi-key point lookup scan is
+  // split into when it uses bloom filters, or 0 to run them one by one in the RPC handler
+  String PHOENIX_MULTIKEY_POINTLOOKUP_MAX_POOL_SIZE = "phoenix.multikey.pointlookup.threads.max";
+  String PHOENIX_MULTIKEY_POINTLOOKUP_KEEP_ALIVE_TIME_SEC =
+    "phoenix.multikey.pointlookup.threads.keepalive.sec";
+  // Number of point lookups run in parallel before their rows are returned in row key order
+  String PHOENIX_MULTIKEY_POINTLOOKUP_BATCH_SIZE = "phoenix.multikey.pointlookup.batch.size";
+  // Whether executeBatch compiles consecutive executions of the same UPSERT VALUES prepared
+  // statement once and upserts all their rows with a single mutation plan
+  String BATCH_UPSERT_FAST_PATH_ENABLED = "phoenix.batch.upsert.fastpath.enabled";
+
   /**
    * Get executor service used for parallel scans
    */
@@ -671,4 +773,10 @@ public interface QueryServices extends SQLCloseable {
    * Get query optimizer used to choose the best query plan
    */
   public QueryOptimizer getOptimizer();
+
+  /**
+   * Get the cache of parsed statements shared by all connections, or null if it is disabled. The
+   * statements are still compiled for each execution.
+   */
+  public ParsedStatementCache getParsedStatementCache();
 }
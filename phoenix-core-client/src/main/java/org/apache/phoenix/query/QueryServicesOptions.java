@@ -467,6 +467,9 @@ public class QueryServicesOptions {
   public static final String DEFAULT_LOGGING_LEVEL = LogLevel.OFF.name();
   public static final String DEFAULT_AUDIT_LOGGING_LEVEL = LogLevel.OFF.name();
   public static final String DEFAULT_LOG_SAMPLE_RATE = "1.0";
+  public static final int DEFAULT_LOG_BATCH_SIZE = 100;
+  public static final long DEFAULT_LOG_BATCH_MAX_DELAY_MS = 1000;
+  public static final String DEFAULT_LOG_BACKPRESSURE_POLICY = "DROP";
   public static final int DEFAULT_LOG_SALT_BUCKETS = 32;
   public static final int DEFAULT_SALT_BUCKETS = 0;
 
@@ -515,6 +518,40 @@ public class QueryServicesOptions {
   public static final int DEFAULT_PHOENIX_UNCOVERED_INDEX_KEEP_ALIVE_TIME_SEC = 60; // 1min
   public static final int DEFAULT_SLOWEST_SCAN_METRICS_COUNT = 0;
   public static final boolean DEFAULT_SCAN_METRICS_BY_REGION_ENABLED = false;
+  public static final boolean DEFAULT_MUTATE_PIPELINED_COMMIT_ENABLED = false;
+  public static final int DEFAULT_MUTATE_PIPELINED_COMMIT_MAX_THREADS = 16;
+  public static final boolean DEFAULT_GROUPBY_OPEN_ADDRESSING_ENABLED = false;
+  public static final String DEFAULT_GROUPBY_SPILL_STRATEGY = "HASH";
+  public static final boolean DEFAULT_HASH_JOIN_BLOOM_FILTER_ENABLED = false;
+  public static final int DEFAULT_HASH_JOIN_BLOOM_FILTER_MAX_KEYS = 1000000;
+  public static final float DEFAULT_HASH_JOIN_BLOOM_FILTER_FPP = 0.01f;
+  public static final boolean DEFAULT_CLIENT_SPOOL_MAPPED_ENABLED = false;
+  public static final int DEFAULT_CLIENT_SPOOL_MAPPED_BLOCK_SIZE = 64 * 1024;
+  public static final boolean DEFAULT_CONCURRENT_MEMORY_MANAGER_ENABLED = false;
+  public static final long DEFAULT_CONCURRENT_MEMORY_MANAGER_RESERVATION_BYTES = 256 * 1024;
+  // Fail right away, like the GlobalMemoryManager does
+  public static final long DEFAULT_CONCURRENT_MEMORY_MANAGER_MAX_WAIT_MS = 0;
+  public static final boolean DEFAULT_PERCENTILE_APPROXIMATE_ENABLED = false;
+  public static final int DEFAULT_PARSED_STATEMENT_CACHE_SIZE = 0;
+  public static final int DEFAULT_QUERY_PLAN_CACHE_SIZE = 0;
+  public static final boolean DEFAULT_STATS_COLUMN_STATS_ENABLED = false;
+  public static final int DEFAULT_STATS_COLUMN_HISTOGRAM_BUCKETS = 32;
+  public static final boolean DEFAULT_JOIN_REORDER_ENABLED = false;
+  public static final int DEFAULT_JOIN_REORDER_DP_THRESHOLD = 8;
+  public static final int DEFAULT_GLOBAL_INDEX_REPAIR_BATCH_SIZE = 1;
+  public static final boolean DEFAULT_REGION_LOCATION_CACHE_ENABLED = false;
+  public static final long DEFAULT_REGION_LOCATION_CACHE_TTL_MS = 60000;
+  public static final boolean DEFAULT_SHARED_HASH_CACHE_ENABLED = false;
+  public static final long DEFAULT_SHARED_HASH_CACHE_WINDOW_MS = 1000;
+  public static final int DEFAULT_SERVER_CACHE_CHUNK_SIZE = 0;
+  public static final boolean DEFAULT_PHOENIX_SERVER_PAGING_ADAPTIVE_ENABLED = false;
+  public static final float DEFAULT_PHOENIX_SERVER_PAGING_ADAPTIVE_MIN_FACTOR = 0.25f;
+  public static final float DEFAULT_PHOENIX_SERVER_PAGING_ADAPTIVE_MAX_FACTOR = 8;
+  public static final int DEFAULT_PHOENIX_SERVER_PAGING_ADAPTIVE_QUEUE_THRESHOLD = 0;
+  public static final int DEFAULT_PHOENIX_MULTIKEY_POINTLOOKUP_MAX_POOL_SIZE = 0;
+  public static final int DEFAULT_PHOENIX_MULTIKEY_POINTLOOKUP_KEEP_ALIVE_TIME_SEC = 60;
+  public static final int DEFAULT_PHOENIX_MULTIKEY_POINTLOOKUP_BATCH_SIZE = 64;
+  public static final boolean DEFAULT_BATCH_UPSERT_FAST_PATH_ENABLED = false;
 
   private final Configuration config;
 
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.RegionReplicaUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+
+/**
+ * Cache of the region locations of tables. The locations of all the regions of a table are loaded
+ * at once with a single scan of hbase:meta through {@link RegionLocator#getAllRegionLocations()},
+ * instead of looking up the region of each key separately, and the regions overlapping a key range
+ * are then found in the cached locations.
+ * <p>
+ * Every table has a region topology version, which is bumped when the cached locations of the table
+ * are invalidated, e.g. after a split has been detected. Locations loaded while the version changed
+ * are returned to the caller that loaded them but are not cached. Locations are also reloaded once
+ * they are older than the configured time to live.
+ */
+class TableRegionLocationCache {
+
+  private static final Comparator<HRegionLocation> START_KEY_COMPARATOR =
+    new Comparator<HRegionLocation>() {
+      @Override
+      public int compare(HRegionLocation l1, HRegionLocation l2) {
+        return Bytes.compareTo(l1.getRegion().getStartKey(), l2.getRegion().getStartKey());
+      }
+    };
+
+  private static class Entry {
+    private final long version;
+    // Locations of the regions sorted by start key, or null if not loaded
+    private final List<HRegionLocation> locations;
+    private final long loadTime;
+
+    private Entry(long version, List<HRegionLocation> locations, long loadTime) {
+      this.version = version;
+      this.locations = locations;
+      this.loadTime = loadTime;
+    }
+  }
+
+  private final ConcurrentHashMap<TableName, Entry> entries = new ConcurrentHashMap<>();
+  private final long ttlMs;
+
+  TableRegionLocationCache(long ttlMs) {
+    this.ttlMs = ttlMs;
+  }
+
+  /**
+   * Returns the locations of the regions of the table that overlap the given key range, loading
+   * the locations of all the regions of the table if they are not cached
+   * @return the locations or null if hbase:meta did not return a complete set of regions for the
+   *         table, for example because of a split in progress
+   */
+  List<HRegionLocation> getTableRegions(TableName table, byte[] startRowKey, byte[] endRowKey,
+    RegionLocator regionLocator) throws IOException {
+    Entry entry = entries.get(table);
+    final long version = entry == null ? 0 : entry.version;
+    List<HRegionLocation> locations = entry == null ? null : entry.locations;
+    if (
+      locations == null || EnvironmentEdgeManager.currentTimeMillis() - entry.loadTime >= ttlMs
+    ) {
+      final long loadTime = EnvironmentEdgeManager.currentTimeMillis();
+      locations = loadRegionLocations(regionLocator);
+      if (locations == null) {
+        return null;
+      }
+      final List<HRegionLocation> loaded = locations;
+      entries.compute(table, (k, current) -> {
+        long currentVersion = current == null ? 0 : current.version;
+        return currentVersion == version ? new Entry(version, loaded, loadTime) : current;
+      });
+    }
+    return getOverlappingRegions(locations, startRowKey, endRowKey);
+  }
+
+  /**
+   * Drops the cached locations of the table and bumps its region topology version
+   */
+  void invalidate(TableName table) {
+    entries.compute(table,
+      (k, current) -> new Entry(current == null ? 1 : current.version + 1, null, 0));
+  }
+
+  /**
+   * Returns the region topology version of the table
+   */
+  long getVersion(TableName table) {
+    Entry entry = entries.get(table);
+    return entry == null ? 0 : entry.version;
+  }
+
+  private static List<HRegionLocation> loadRegionLocations(RegionLocator regionLocator)
+    throws IOException {
+    List<HRegionLocation> locations = new ArrayList<>();
+    for (HRegionLocation location : regionLocator.getAllRegionLocations()) {
+      // A split parent stays in meta next to its daughters until it is cleaned up
+      if (
+        location != null && RegionReplicaUtil.isDefaultReplica(location.getRegion())
+          && !location.getRegion().isSplitParent() && !location.getRegion().isOffline()
+      ) {
+        locations.add(location);
+      }
+    }
+    Collections.sort(locations, START_KEY_COMPARATOR);
+    // Only keep a set of regions covering the whole table without overlaps or holes
+    byte[] endKey = HConstants.EMPTY_START_ROW;
+    for (HRegionLocation location : locations) {
+      if (!Bytes.equals(location.getRegion().getStartKey(), endKey)) {
+        return null;
+      }
+      endKey = location.getRegion().getEndKey();
+      if (Bytes.equals(endKey, HConstants.EMPTY_END_ROW)) {
+        break;
+      }
+    }
+    if (locations.isEmpty() || !Bytes.equals(endKey, HConstants.EMPTY_END_ROW)) {
+      return null;
+    }
+    return Collections.unmodifiableList(locations);
+  }
+
+  static List<HRegionLocation> getOverlappingRegions(List<HRegionLocation> locations,
+    byte[] startRowKey, byte[] endRowKey) {
+    // Find the last region starting at or before the start row key
+    int low = 0;
+    int high = locations.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (Bytes.compareTo(locations.get(mid).getRegion().getStartKey(), startRowKey) <= 0) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    List<HRegionLocation> regions = new ArrayList<>();
+    for (int i = low; i < locations.size(); i++) {
+      HRegionLocation location = locations.get(i);
+      regions.add(location);
+      byte[] regionEndKey = location.getRegion().getEndKey();
+      if (
+        !Bytes.equals(endRowKey, HConstants.EMPTY_END_ROW)
+          && !Bytes.equals(regionEndKey, HConstants.EMPTY_END_ROW)
+          && Bytes.compareTo(regionEndKey, endRowKey) >= 0
+      ) {
+        break;
+      }
+    }
+    return regions;
+  }
+}
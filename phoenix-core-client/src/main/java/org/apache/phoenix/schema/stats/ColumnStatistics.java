@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.util.EquiDepthStreamHistogram;
+import org.apache.phoenix.util.EquiDepthStreamHistogram.Bucket;
+import org.apache.phoenix.util.SizedUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Statistics of the values of a single non primary key column: the number of distinct values
+ * (estimated with HyperLogLog), the number of nulls and an equi-depth histogram of the values. The
+ * statistics of a region are collected along with its guideposts and stored in the
+ * {@link org.apache.phoenix.jdbc.PhoenixDatabaseMetaData#COLUMN_STATS} cell of the last guidepost
+ * of the region. The statistics of all regions are merged when the guideposts of a table are read
+ * into the GuidePostsCache. Since regions partition the row key and not the column values, the
+ * histogram buckets of different regions may overlap.
+ */
+public class ColumnStatistics {
+  static final int NORMAL_SET_PRECISION = 12;
+  static final int SPARSE_SET_PRECISION = 20;
+  // Bound on the number of histogram buckets kept after merging the statistics of many regions
+  static final int MAX_MERGED_BUCKETS = 256;
+  // Selectivity of a range predicate when no histogram is available, as in most databases
+  static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+  // Fraction of the rows of a histogram bucket assumed to match a range partially overlapping it
+  static final double PARTIAL_BUCKET_FRACTION = 0.5;
+
+  private static final Comparator<Bucket> BUCKET_COMPARATOR = new Comparator<Bucket>() {
+    @Override
+    public int compare(Bucket b1, Bucket b2) {
+      return Bytes.compareTo(b1.getLeftBoundInclusive(), b2.getLeftBoundInclusive());
+    }
+  };
+
+  private final long rowCount;
+  private final long nullCount;
+  private final HyperLogLogPlus hll;
+  private final List<Bucket> buckets;
+
+  ColumnStatistics(long rowCount, long nullCount, HyperLogLogPlus hll, List<Bucket> buckets) {
+    this.rowCount = rowCount;
+    this.nullCount = nullCount;
+    this.hll = hll;
+    this.buckets = buckets;
+  }
+
+  /** Returns the number of rows of the column family the column statistics were collected over */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public long getNullCount() {
+    return nullCount;
+  }
+
+  /** Returns the estimated number of distinct non null values of the column */
+  public long getDistinctCount() {
+    return hll.cardinality();
+  }
+
+  public List<Bucket> getBuckets() {
+    return buckets;
+  }
+
+  public double getNullFraction() {
+    return rowCount == 0 ? 0 : Math.min(1.0, (double) nullCount / rowCount);
+  }
+
+  /** Returns the estimated fraction of rows for which the column is equal to a given value */
+  public double getEqualsSelectivity() {
+    return (1 - getNullFraction()) / Math.max(1, getDistinctCount());
+  }
+
+  /**
+   * Returns the estimated fraction of rows for which the column is in the given range, based on
+   * the histogram of the column values.
+   * @param lower          lower bound of the range, or null if the range has no lower bound
+   * @param lowerInclusive true if the lower bound is included in the range
+   * @param upper          upper bound of the range, or null if the range has no upper bound
+   * @param upperInclusive true if the upper bound is included in the range
+   */
+  public double getRangeSelectivity(byte[] lower, boolean lowerInclusive, byte[] upper,
+    boolean upperInclusive) {
+    double nonNullFraction = 1 - getNullFraction();
+    long totalCount = 0;
+    double matchingCount = 0;
+    for (Bucket bucket : buckets) {
+      long count = bucket.getCountEstimate();
+      totalCount += count;
+      byte[] left = bucket.getLeftBoundInclusive();
+      byte[] right = bucket.getRightBoundExclusive();
+      if (upper != null) {
+        int c = Bytes.compareTo(upper, left);
+        if (c < 0 || (c == 0 && !upperInclusive)) {
+          continue;
+        }
+      }
+      if (lower != null) {
+        int c = Bytes.compareTo(lower, right);
+        if (c > 0 || (c == 0 && !lowerInclusive)) {
+          continue;
+        }
+      }
+      boolean contained = (lower == null || Bytes.compareTo(lower, left) <= 0)
+        && (upper == null || Bytes.compareTo(upper, right) >= 0);
+      matchingCount += contained ? count : count * PARTIAL_BUCKET_FRACTION;
+    }
+    if (totalCount == 0) {
+      return nonNullFraction * DEFAULT_RANGE_SELECTIVITY;
+    }
+    // A range never selects fewer rows than a single value
+    return Math.max(getEqualsSelectivity(), nonNullFraction * matchingCount / totalCount);
+  }
+
+  /**
+   * Combines these statistics with the statistics of the same column collected over other rows.
+   */
+  public ColumnStatistics merge(ColumnStatistics other) {
+    HyperLogLogPlus mergedHll = new HyperLogLogPlus(NORMAL_SET_PRECISION, SPARSE_SET_PRECISION);
+    try {
+      mergedHll.addAll(hll);
+      mergedHll.addAll(other.hll);
+    } catch (CardinalityMergeException e) {
+      throw new IllegalStateException(e);
+    }
+    List<Bucket> mergedBuckets = new ArrayList<>(buckets.size() + other.buckets.size());
+    mergedBuckets.addAll(buckets);
+    mergedBuckets.addAll(other.buckets);
+    return new ColumnStatistics(rowCount + other.rowCount, nullCount + other.nullCount, mergedHll,
+      compact(mergedBuckets));
+  }
+
+  // Halves the number of buckets by combining neighbouring buckets until at most
+  // MAX_MERGED_BUCKETS remain
+  private static List<Bucket> compact(List<Bucket> buckets) {
+    if (buckets.size() <= MAX_MERGED_BUCKETS) {
+      return buckets;
+    }
+    Collections.sort(buckets, BUCKET_COMPARATOR);
+    while (buckets.size() > MAX_MERGED_BUCKETS) {
+      List<Bucket> compacted = new ArrayList<>((buckets.size() + 1) / 2);
+      for (int i = 0; i < buckets.size(); i += 2) {
+        Bucket first = buckets.get(i);
+        if (i + 1 == buckets.size()) {
+          compacted.add(first);
+          break;
+        }
+        Bucket second = buckets.get(i + 1);
+        byte[] right = Bytes.compareTo(first.getRightBoundExclusive(),
+          second.getRightBoundExclusive()) >= 0
+            ? first.getRightBoundExclusive()
+            : second.getRightBoundExclusive();
+        Bucket bucket = new Bucket(first.getLeftBoundInclusive(), right);
+        bucket.incrementCountEstimate(first.getCountEstimate() + second.getCountEstimate());
+        compacted.add(bucket);
+      }
+      buckets = compacted;
+    }
+    return buckets;
+  }
+
+  public int getEstimatedSize() {
+    int size = SizedUtil.OBJECT_SIZE + 2 * SizedUtil.LONG_SIZE + 2 * SizedUtil.POINTER_SIZE
+      + hll.sizeof() + SizedUtil.ARRAY_SIZE;
+    for (Bucket bucket : buckets) {
+      size += SizedUtil.OBJECT_SIZE + SizedUtil.LONG_SIZE + 2 * SizedUtil.ARRAY_SIZE
+        + bucket.getLeftBoundInclusive().length + bucket.getRightBoundExclusive().length;
+    }
+    return size;
+  }
+
+  private void write(DataOutput output) throws IOException {
+    WritableUtils.writeVLong(output, rowCount);
+    WritableUtils.writeVLong(output, nullCount);
+    Bytes.writeByteArray(output, hll.getBytes());
+    WritableUtils.writeVInt(output, buckets.size());
+    for (Bucket bucket : buckets) {
+      Bytes.writeByteArray(output, bucket.getLeftBoundInclusive());
+      Bytes.writeByteArray(output, bucket.getRightBoundExclusive());
+      WritableUtils.writeVLong(output, bucket.getCountEstimate());
+    }
+  }
+
+  private static ColumnStatistics read(DataInput input) throws IOException {
+    long rowCount = WritableUtils.readVLong(input);
+    long nullCount = WritableUtils.readVLong(input);
+    HyperLogLogPlus hll = HyperLogLogPlus.Builder.build(Bytes.readByteArray(input));
+    int bucketCount = WritableUtils.readVInt(input);
+    List<Bucket> buckets = new ArrayList<>(bucketCount);
+    for (int i = 0; i < bucketCount; i++) {
+      Bucket bucket = new Bucket(Bytes.readByteArray(input), Bytes.readByteArray(input));
+      bucket.incrementCountEstimate(WritableUtils.readVLong(input));
+      buckets.add(bucket);
+    }
+    return new ColumnStatistics(rowCount, nullCount, hll, buckets);
+  }
+
+  /**
+   * Serializes the statistics of the columns of a column family, keyed by column qualifier.
+   */
+  public static byte[] toBytes(Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics)
+    throws IOException {
+    TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(256);
+    DataOutputStream output = new DataOutputStream(stream);
+    WritableUtils.writeVInt(output, columnStatistics.size());
+    for (Map.Entry<ImmutableBytesPtr, ColumnStatistics> entry : columnStatistics.entrySet()) {
+      Bytes.writeByteArray(output, entry.getKey().copyBytesIfNecessary());
+      entry.getValue().write(output);
+    }
+    output.flush();
+    return stream.toByteArray();
+  }
+
+  public static Map<ImmutableBytesPtr, ColumnStatistics> fromBytes(byte[] b, int offset,
+    int length) throws IOException {
+    DataInput input = new DataInputStream(new ByteArrayInputStream(b, offset, length));
+    int count = WritableUtils.readVInt(input);
+    Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics =
+      Maps.newHashMapWithExpectedSize(count);
+    for (int i = 0; i < count; i++) {
+      ImmutableBytesPtr qualifier = new ImmutableBytesPtr(Bytes.readByteArray(input));
+      columnStatistics.put(qualifier, read(input));
+    }
+    return columnStatistics;
+  }
+
+  /**
+   * Collects the statistics of a column from a stream of its non null values.
+   */
+  public static class Builder {
+    private final HyperLogLogPlus hll =
+      new HyperLogLogPlus(NORMAL_SET_PRECISION, SPARSE_SET_PRECISION);
+    private final EquiDepthStreamHistogram histogram;
+    private long valueCount;
+
+    public Builder(int histogramBuckets) {
+      this.histogram = new EquiDepthStreamHistogram(histogramBuckets);
+    }
+
+    public void addValue(byte[] value) {
+      hll.offer(value);
+      histogram.addValue(value);
+      valueCount++;
+    }
+
+    /**
+     * Builds the statistics of the column
+     * @param rowCount the number of rows the values were collected from
+     */
+    public ColumnStatistics build(long rowCount) {
+      List<Bucket> buckets;
+      try {
+        buckets = histogram.computeBuckets();
+      } catch (IllegalStateException | IllegalArgumentException e) {
+        // Too few distinct values to split into buckets
+        buckets = Collections.emptyList();
+      }
+      return new ColumnStatistics(rowCount, Math.max(0, rowCount - valueCount), hll, buckets);
+    }
+  }
+}
@@ -20,8 +20,10 @@ package org.apache.phoenix.schema.stats;
 import edu.umd.cs.findbugs.annotations.SuppressWarnings;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.SizedUtil;
 
@@ -71,6 +73,10 @@ public class GuidePostsInfo {
    * The timestamps at which guideposts were created/updated
    */
   private final long[] gpTimestamps;
+  /**
+   * The statistics of the non primary key columns of the column family, keyed by column qualifier
+   */
+  private final Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics;
 
   /**
    * Constructor that creates GuidePostsInfo per region The bytecounts of each guidePost traversed
@@ -79,12 +85,20 @@ public class GuidePostsInfo {
    */
   public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts,
     List<Long> rowCounts, int maxLength, int guidePostsCount, List<Long> updateTimes) {
+    this(byteCounts, guidePosts, rowCounts, maxLength, guidePostsCount, updateTimes,
+      Collections.<ImmutableBytesPtr, ColumnStatistics> emptyMap());
+  }
+
+  public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts,
+    List<Long> rowCounts, int maxLength, int guidePostsCount, List<Long> updateTimes,
+    Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics) {
     this.guidePosts = new ImmutableBytesWritable(guidePosts);
     this.maxLength = maxLength;
     this.guidePostsCount = guidePostsCount;
     this.rowCounts = Longs.toArray(rowCounts);
     this.byteCounts = Longs.toArray(byteCounts);
     this.gpTimestamps = Longs.toArray(updateTimes);
+    this.columnStatistics = columnStatistics;
     // Those Java equivalents of sizeof() in C/C++, mentioned on the Web, might be overkilled here.
     int estimatedSize =
       SizedUtil.OBJECT_SIZE + SizedUtil.IMMUTABLE_BYTES_WRITABLE_SIZE + guidePosts.getLength() // guidePosts
@@ -94,6 +108,10 @@ public class GuidePostsInfo {
         + SizedUtil.ARRAY_SIZE + this.byteCounts.length * SizedUtil.LONG_SIZE // byteCounts
         + SizedUtil.ARRAY_SIZE + this.gpTimestamps.length * SizedUtil.LONG_SIZE // gpTimestamps
         + SizedUtil.INT_SIZE; // estimatedSize
+    for (ColumnStatistics stats : columnStatistics.values()) {
+      estimatedSize += SizedUtil.MAP_ENTRY_SIZE + SizedUtil.IMMUTABLE_BYTES_PTR_SIZE
+        + stats.getEstimatedSize();
+    }
     this.estimatedSize = estimatedSize;
   }
 
@@ -125,6 +143,18 @@ public class GuidePostsInfo {
     return estimatedSize;
   }
 
+  public Map<ImmutableBytesPtr, ColumnStatistics> getColumnStatistics() {
+    return columnStatistics;
+  }
+
+  /**
+   * Returns the statistics of the column with the given qualifier, or null if no statistics were
+   * collected for it.
+   */
+  public ColumnStatistics getColumnStatistics(byte[] columnQualifier) {
+    return columnStatistics.get(new ImmutableBytesPtr(columnQualifier));
+  }
+
   @SuppressWarnings(value = "EC_ARRAY_AND_NONARRAY",
       justification = "ImmutableBytesWritable DOES implement equals(byte])")
   public boolean isEmptyGuidePost() {
@@ -133,9 +163,15 @@ public class GuidePostsInfo {
   }
 
   public static GuidePostsInfo createEmptyGuidePost(long byteCount, long guidePostUpdateTime) {
+    return createEmptyGuidePost(byteCount, guidePostUpdateTime,
+      Collections.<ImmutableBytesPtr, ColumnStatistics> emptyMap());
+  }
+
+  public static GuidePostsInfo createEmptyGuidePost(long byteCount, long guidePostUpdateTime,
+    Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics) {
     return new GuidePostsInfo(Collections.singletonList(byteCount),
       new ImmutableBytesWritable(EMPTY_GUIDEPOST_KEY), Collections.<Long> emptyList(), 0, 0,
-      Collections.<Long> singletonList(guidePostUpdateTime));
+      Collections.<Long> singletonList(guidePostUpdateTime), columnStatistics);
   }
 
   public static boolean isEmptyGpsKey(byte[] key) {
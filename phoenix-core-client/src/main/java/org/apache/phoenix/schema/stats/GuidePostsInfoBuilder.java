@@ -21,11 +21,15 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.PrefixByteEncoder;
 import org.apache.phoenix.util.TrustedByteArrayOutputStream;
 
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
 /*
  * Builder to help in adding guidePosts and building guidePostInfo. This is used when we are collecting stats or reading stats for a table.
  */
@@ -41,6 +45,11 @@ public class GuidePostsInfoBuilder {
    */
   private long rowCount = 0;
 
+  /**
+   * The rowCount across all guide posts, which is not reset when a guide post is added.
+   */
+  private long totalRowCount = 0;
+
   /**
    * Maximum length of a guidePost collected
    */
@@ -50,6 +59,9 @@ public class GuidePostsInfoBuilder {
   private List<Long> rowCounts = new ArrayList<Long>();
   private List<Long> byteCounts = new ArrayList<Long>();
   private List<Long> guidePostsTimestamps = new ArrayList<Long>();
+  private Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics = Maps.newHashMap();
+  private Map<ImmutableBytesPtr, ColumnStatistics.Builder> columnStatisticsBuilders =
+    Maps.newHashMap();
 
   public boolean isEmpty() {
     return rowCounts.size() == 0;
@@ -113,15 +125,51 @@ public class GuidePostsInfoBuilder {
     return false;
   }
 
+  /**
+   * Track a non null value of a column while collecting stats
+   * @param columnQualifier  qualifier of the column
+   * @param value            value of the column
+   * @param histogramBuckets number of buckets of the histogram of the column values
+   */
+  public void trackColumnValue(ImmutableBytesPtr columnQualifier, byte[] value,
+    int histogramBuckets) {
+    ColumnStatistics.Builder builder = columnStatisticsBuilders.get(columnQualifier);
+    if (builder == null) {
+      builder = new ColumnStatistics.Builder(histogramBuckets);
+      columnStatisticsBuilders.put(columnQualifier, builder);
+    }
+    builder.addValue(value);
+  }
+
+  /**
+   * Track the statistics of a column read from the stats table, merging them with the statistics
+   * of the same column read from other regions.
+   */
+  public void trackColumnStatistics(ImmutableBytesPtr columnQualifier, ColumnStatistics stats) {
+    ColumnStatistics existing = columnStatistics.get(columnQualifier);
+    columnStatistics.put(columnQualifier, existing == null ? stats : existing.merge(stats));
+  }
+
+  public Map<ImmutableBytesPtr, ColumnStatistics> getColumnStatistics() {
+    Map<ImmutableBytesPtr, ColumnStatistics> result = Maps.newHashMap(columnStatistics);
+    for (Map.Entry<ImmutableBytesPtr, ColumnStatistics.Builder> entry : columnStatisticsBuilders
+      .entrySet()) {
+      result.put(entry.getKey(), entry.getValue().build(totalRowCount));
+    }
+    return result;
+  }
+
   public GuidePostsInfo build() {
     this.guidePosts.set(stream.getBuffer(), 0, stream.size());
-    GuidePostsInfo guidePostsInfo = new GuidePostsInfo(this.byteCounts, this.guidePosts,
-      this.rowCounts, this.maxLength, this.guidePostsCount, this.guidePostsTimestamps);
+    GuidePostsInfo guidePostsInfo =
+      new GuidePostsInfo(this.byteCounts, this.guidePosts, this.rowCounts, this.maxLength,
+        this.guidePostsCount, this.guidePostsTimestamps, getColumnStatistics());
     return guidePostsInfo;
   }
 
   public void incrementRowCount() {
     this.rowCount++;
+    this.totalRowCount++;
   }
 
   public void resetRowCount() {
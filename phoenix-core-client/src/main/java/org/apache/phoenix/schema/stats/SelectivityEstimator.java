@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hbase.CompareOperator;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.IsNullExpression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.NotExpression;
+import org.apache.phoenix.expression.OrExpression;
+import org.apache.phoenix.expression.SingleCellColumnExpression;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.util.ByteUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Estimates the fraction of the rows of a table selected by a filter from the
+ * {@link ColumnStatistics} of the non primary key columns it references. Only conjunctions,
+ * disjunctions and negations of comparisons, IN lists and IS NULL checks of a column against
+ * constants are estimated; the selectivity of any other filter is unknown.
+ */
+public class SelectivityEstimator {
+  private final StatementContext context;
+  private final Map<ImmutableBytesPtr, GuidePostsInfo> statsByFamily = Maps.newHashMap();
+
+  public SelectivityEstimator(StatementContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Returns the estimated selectivity of the filter of a scan, or null if it cannot be estimated
+   */
+  public Double estimate(Filter filter) {
+    if (filter instanceof BooleanExpressionFilter) {
+      return estimate(((BooleanExpressionFilter) filter).getExpression());
+    }
+    if (
+      filter instanceof FilterList
+        && ((FilterList) filter).getOperator() == FilterList.Operator.MUST_PASS_ALL
+    ) {
+      Double selectivity = null;
+      for (Filter f : ((FilterList) filter).getFilters()) {
+        selectivity = and(selectivity, estimate(f));
+      }
+      return selectivity;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the estimated selectivity of a boolean expression, or null if it cannot be estimated
+   */
+  public Double estimate(Expression expression) {
+    if (expression instanceof AndExpression) {
+      Double selectivity = null;
+      for (Expression child : expression.getChildren()) {
+        selectivity = and(selectivity, estimate(child));
+      }
+      return selectivity;
+    }
+    if (expression instanceof OrExpression) {
+      double unselected = 1;
+      for (Expression child : expression.getChildren()) {
+        Double selectivity = estimate(child);
+        if (selectivity == null) {
+          return null;
+        }
+        unselected *= 1 - selectivity;
+      }
+      return 1 - unselected;
+    }
+    if (expression instanceof NotExpression) {
+      Double selectivity = estimate(expression.getChildren().get(0));
+      return selectivity == null ? null : 1 - selectivity;
+    }
+    if (expression instanceof IsNullExpression) {
+      ColumnStatistics stats = getColumnStatistics(expression.getChildren().get(0));
+      if (stats == null) {
+        return null;
+      }
+      return ((IsNullExpression) expression).isNegate()
+        ? 1 - stats.getNullFraction()
+        : stats.getNullFraction();
+    }
+    if (expression instanceof InListExpression) {
+      List<Expression> children = expression.getChildren();
+      ColumnStatistics stats = getColumnStatistics(children.get(0));
+      if (stats == null) {
+        return null;
+      }
+      return Math.min(1 - stats.getNullFraction(),
+        (children.size() - 1) * stats.getEqualsSelectivity());
+    }
+    if (expression instanceof ComparisonExpression) {
+      return estimate((ComparisonExpression) expression);
+    }
+    return null;
+  }
+
+  private Double estimate(ComparisonExpression comparison) {
+    Expression lhs = comparison.getChildren().get(0);
+    Expression rhs = comparison.getChildren().get(1);
+    CompareOperator op = comparison.getFilterOp();
+    if (lhs instanceof LiteralExpression) {
+      Expression swap = lhs;
+      lhs = rhs;
+      rhs = swap;
+      op = invert(op);
+    }
+    ColumnStatistics stats = getColumnStatistics(lhs);
+    if (stats == null || !(rhs instanceof LiteralExpression)) {
+      return null;
+    }
+    switch (op) {
+      case EQUAL:
+        return stats.getEqualsSelectivity();
+      case NOT_EQUAL:
+        return Math.max(0, 1 - stats.getNullFraction() - stats.getEqualsSelectivity());
+      default:
+        break;
+    }
+    byte[] value = null;
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    // Histogram bounds are cell values, so they can only be compared with values of the same type
+    if (
+      rhs.getSortOrder() == SortOrder.ASC
+        && lhs.getDataType().isBytesComparableWith(rhs.getDataType()) && rhs.evaluate(null, ptr)
+        && ptr.getLength() > 0
+    ) {
+      value = ByteUtil.copyKeyBytesIfNecessary(ptr);
+    }
+    if (value == null) {
+      return (1 - stats.getNullFraction()) * ColumnStatistics.DEFAULT_RANGE_SELECTIVITY;
+    }
+    switch (op) {
+      case LESS:
+        return stats.getRangeSelectivity(null, true, value, false);
+      case LESS_OR_EQUAL:
+        return stats.getRangeSelectivity(null, true, value, true);
+      case GREATER:
+        return stats.getRangeSelectivity(value, false, null, true);
+      case GREATER_OR_EQUAL:
+        return stats.getRangeSelectivity(value, true, null, true);
+      default:
+        return null;
+    }
+  }
+
+  private static CompareOperator invert(CompareOperator op) {
+    switch (op) {
+      case LESS:
+        return CompareOperator.GREATER;
+      case LESS_OR_EQUAL:
+        return CompareOperator.GREATER_OR_EQUAL;
+      case GREATER:
+        return CompareOperator.LESS;
+      case GREATER_OR_EQUAL:
+        return CompareOperator.LESS_OR_EQUAL;
+      default:
+        return op;
+    }
+  }
+
+  // Children of a conjunction are assumed independent. Children whose selectivity is unknown are
+  // ignored, unless the selectivity of all of them is unknown.
+  private static Double and(Double selectivity, Double childSelectivity) {
+    if (childSelectivity == null) {
+      return selectivity;
+    }
+    return selectivity == null ? childSelectivity : selectivity * childSelectivity;
+  }
+
+  private ColumnStatistics getColumnStatistics(Expression expression) {
+    // The cell of a column stored with SINGLE_CELL_ARRAY_WITH_OFFSETS holds all the columns of
+    // the column family, so no statistics are collected for the individual columns
+    if (
+      !(expression instanceof KeyValueColumnExpression)
+        || expression instanceof SingleCellColumnExpression || context.getCurrentTable() == null
+    ) {
+      return null;
+    }
+    PTable table = context.getCurrentTable().getTable();
+    if (table.getType() == PTableType.PROJECTED || table.getType() == PTableType.SUBQUERY) {
+      return null;
+    }
+    KeyValueColumnExpression column = (KeyValueColumnExpression) expression;
+    ImmutableBytesPtr family = new ImmutableBytesPtr(column.getColumnFamily());
+    GuidePostsInfo gps = statsByFamily.get(family);
+    if (gps == null) {
+      try {
+        gps = context.getConnection().getQueryServices().getTableStats(
+          new GuidePostsKey(table.getPhysicalName().getBytes(), column.getColumnFamily()));
+      } catch (SQLException e) {
+        gps = GuidePostsInfo.NO_GUIDEPOST;
+      }
+      if (gps == null) {
+        gps = GuidePostsInfo.NO_GUIDEPOST;
+      }
+      statsByFamily.put(family, gps);
+    }
+    return gps.getColumnStatistics(column.getColumnQualifier());
+  }
+}
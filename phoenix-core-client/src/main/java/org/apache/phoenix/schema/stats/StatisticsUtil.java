@@ -37,6 +37,7 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
 import org.apache.phoenix.coprocessorclient.MetaDataProtocol;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
@@ -164,10 +165,13 @@ public class StatisticsUtil {
       PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES);
     s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
       PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES);
+    s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+      PhoenixDatabaseMetaData.COLUMN_STATS_BYTES);
     s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, QueryConstants.EMPTY_COLUMN_BYTES);
     GuidePostsInfoBuilder guidePostsInfoBuilder = new GuidePostsInfoBuilder();
     Cell current = null;
-    GuidePostsInfo emptyGuidePost = null;
+    long emptyGuidePostByteCount = -1;
+    long emptyGuidePostUpdateTime = 0;
     try (ResultScanner scanner = statsHTable.getScanner(s)) {
       Result result = null;
       while ((result = scanner.next()) != null) {
@@ -190,6 +194,17 @@ public class StatisticsUtil {
           ) {
             byteCount = PLong.INSTANCE.getCodec().decodeLong(current.getValueArray(),
               current.getValueOffset(), SortOrder.getDefault());
+          } else if (
+            Bytes.equals(current.getQualifierArray(), current.getQualifierOffset(),
+              current.getQualifierLength(), PhoenixDatabaseMetaData.COLUMN_STATS_BYTES, 0,
+              PhoenixDatabaseMetaData.COLUMN_STATS_BYTES.length)
+          ) {
+            for (Map.Entry<ImmutableBytesPtr, ColumnStatistics> entry : ColumnStatistics
+              .fromBytes(current.getValueArray(), current.getValueOffset(),
+                current.getValueLength())
+              .entrySet()) {
+              guidePostsInfoBuilder.trackColumnStatistics(entry.getKey(), entry.getValue());
+            }
           }
         }
         if (current != null) {
@@ -206,7 +221,8 @@ public class StatisticsUtil {
           // created/updated
           long guidePostUpdateTime = current.getTimestamp();
           if (isEmptyGuidePost) {
-            emptyGuidePost = GuidePostsInfo.createEmptyGuidePost(byteCount, guidePostUpdateTime);
+            emptyGuidePostByteCount = byteCount;
+            emptyGuidePostUpdateTime = guidePostUpdateTime;
           } else {
             guidePostsInfoBuilder.trackGuidePost(new ImmutableBytesWritable(newGPStartKey),
               byteCount, rowCount, guidePostUpdateTime);
@@ -217,9 +233,15 @@ public class StatisticsUtil {
     // We write a row with an empty KeyValue in the case that stats were generated but without
     // enough data
     // for any guideposts. If we have no rows, it means stats were never generated.
-    return current == null ? GuidePostsInfo.NO_GUIDEPOST
-      : guidePostsInfoBuilder.isEmpty() ? emptyGuidePost
-      : guidePostsInfoBuilder.build();
+    if (current == null) {
+      return GuidePostsInfo.NO_GUIDEPOST;
+    }
+    if (guidePostsInfoBuilder.isEmpty()) {
+      return emptyGuidePostByteCount < 0 ? null
+        : GuidePostsInfo.createEmptyGuidePost(emptyGuidePostByteCount, emptyGuidePostUpdateTime,
+          guidePostsInfoBuilder.getColumnStatistics());
+    }
+    return guidePostsInfoBuilder.build();
   }
 
   public static long getGuidePostDepth(int guidepostPerRegion, long guidepostWidth,
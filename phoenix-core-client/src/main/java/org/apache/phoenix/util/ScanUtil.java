@@ -1727,6 +1727,14 @@ public class ScanUtil {
     return getPageSizeMs(scan, 0.3);
   }
 
+  /**
+   * Returns the full server page size the client set on the scan, or Long.MAX_VALUE if it did not
+   * set one
+   */
+  public static long getServerPageSizeMs(Scan scan) {
+    return getPageSizeMs(scan, 1);
+  }
+
   /**
    * Put the attributes we want to annotate the WALs with (such as logical table name, tenant, DDL
    * timestamp, etc) on the Scan object so that on the Ungrouped/GroupedAggregateCoprocessor side,
@@ -37,6 +37,12 @@ import org.bson.codecs.RawBsonDocumentCodec;
 import org.bson.io.ByteBufferBsonInput;
 
 public class BsonDataFormat implements JsonDataFormat {
+  // Configurations are immutable and BsonJsonProvider keeps no state, so they can be shared
+  private static final Configuration CONFIGURATION =
+    Configuration.builder().jsonProvider(new BsonJsonProvider()).build();
+  // This options will make us work in lax mode.
+  private static final Configuration LAX_CONFIGURATION =
+    CONFIGURATION.addOptions(Option.SUPPRESS_EXCEPTIONS);
 
   @Override
   public byte[] toBytes(Object object) {
@@ -71,6 +77,31 @@ public class BsonDataFormat implements JsonDataFormat {
     return getValue(value);
   }
 
+  @Override
+  public Object compilePath(String jsonPathExprStr) {
+    return JsonPath.compile(jsonPathExprStr);
+  }
+
+  /**
+   * Reads the value directly from the bytes of the RawBsonDocument, nested documents and arrays
+   * are only decoded as far as the path goes into them.
+   */
+  @Override
+  public Object readValue(Object obj, Object compiledPath) {
+    return JsonPath.using(LAX_CONFIGURATION).parse(obj).read((JsonPath) compiledPath,
+      BsonValue.class);
+  }
+
+  @Override
+  public int getSqlType(Object value) {
+    return getSqlType((BsonValue) value);
+  }
+
+  @Override
+  public Object toJavaValue(Object value) {
+    return getValue((BsonValue) value);
+  }
+
   private Object getValue(BsonValue value) {
     if (value != null) {
       switch (value.getBsonType()) {
@@ -104,10 +135,9 @@ public class BsonDataFormat implements JsonDataFormat {
 
   @Override
   public ByteBuffer updateValue(Object top, String jsonPathExprStr, String newVal) {
-    Configuration conf = Configuration.builder().jsonProvider(new BsonJsonProvider()).build();
-    BsonValue newValue = JsonPath.using(conf).parse(newVal).json();
+    BsonValue newValue = JsonPath.using(CONFIGURATION).parse(newVal).json();
     BsonDocument root = fromRaw((RawBsonDocument) top);
-    JsonPath.using(conf).parse(root).set(jsonPathExprStr, newValue);
+    JsonPath.using(CONFIGURATION).parse(root).set(jsonPathExprStr, newValue);
     RawBsonDocument updated = new RawBsonDocumentCodec().decode(new BsonDocumentReader(root),
       DecoderContext.builder().build());
     return updated.getByteBuffer().asNIO();
@@ -116,10 +146,15 @@ public class BsonDataFormat implements JsonDataFormat {
   // Ref: https://github.com/json-path/JsonPath/pull/828
   @Override
   public boolean isPathValid(Object top, String path) {
+    return isPathValid(top, compilePath(path));
+  }
+
+  // The path is read from the RawBsonDocument without first decoding it into a BsonDocument,
+  // which only updateValue needs as it modifies the document.
+  @Override
+  public boolean isPathValid(Object top, Object compiledPath) {
     try {
-      Configuration conf = Configuration.builder().jsonProvider(new BsonJsonProvider()).build();
-      BsonDocument root = fromRaw((RawBsonDocument) top);
-      JsonPath.using(conf).parse(root).read(path);
+      JsonPath.using(CONFIGURATION).parse(top).read((JsonPath) compiledPath);
       return true;
     } catch (PathNotFoundException e) {
       return false;
@@ -127,8 +162,8 @@ public class BsonDataFormat implements JsonDataFormat {
   }
 
   private BsonValue getBsonValue(String jsonPathExprStr, RawBsonDocument top) {
-    Configuration conf = getConfiguration();
-    BsonValue value = JsonPath.using(conf).parse(top).read(jsonPathExprStr, BsonValue.class);
+    BsonValue value =
+      JsonPath.using(LAX_CONFIGURATION).parse(top).read(jsonPathExprStr, BsonValue.class);
     return value;
   }
 
@@ -147,13 +182,6 @@ public class BsonDataFormat implements JsonDataFormat {
     }).collect(Collectors.toList());
   }
 
-  private Configuration getConfiguration() {
-    Configuration conf = Configuration.builder().jsonProvider(new BsonJsonProvider()).build();
-    // This options will make us work in lax mode.
-    conf = conf.addOptions(Option.SUPPRESS_EXCEPTIONS);
-    return conf;
-  }
-
   // Transform to an in memory BsonDocument instance
   private BsonDocument fromRaw(RawBsonDocument rawDocument) {
     // Transform to an in memory BsonDocument instance
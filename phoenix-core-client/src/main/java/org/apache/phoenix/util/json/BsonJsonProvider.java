@@ -111,9 +111,10 @@ public class BsonJsonProvider extends AbstractJsonProvider {
 
   @Override
   public Object getMapValue(final Object obj, final String key) {
-    BsonDocument bsonDocument = toBsonDocument(obj);
-    Object o = bsonDocument.get(key);
-    if (!bsonDocument.containsKey(key)) {
+    // A BsonDocument never maps a key to null, so a null value means the key is missing. This
+    // avoids scanning a RawBsonDocument a second time for containsKey.
+    Object o = toBsonDocument(obj).get(key);
+    if (o == null) {
       return UNDEFINED;
     } else {
       return unwrap(o);
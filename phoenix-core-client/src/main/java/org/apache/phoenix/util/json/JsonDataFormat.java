@@ -51,6 +51,29 @@ public interface JsonDataFormat {
    */
   Object getValue(Object obj, String jsonPathExprStr);
 
+  /**
+   * Compile the path so that it can be evaluated against many Json documents without parsing it
+   * again. Throws the same exception as evaluating an invalid path would.
+   */
+  Object compilePath(String jsonPathExprStr);
+
+  /**
+   * Read the value in the compiled path in a single navigation of the Json. The returned value is
+   * in the representation of the underlying format and is null if the path does not exist.
+   */
+  Object readValue(Object obj, Object compiledPath);
+
+  /**
+   * Get the type of a value returned by {@link #readValue(Object, Object)}. The type confirms to a
+   * java.sql.Types
+   */
+  int getSqlType(Object value);
+
+  /**
+   * Get the Java object for a value returned by {@link #readValue(Object, Object)}
+   */
+  Object toJavaValue(Object value);
+
   /**
    * Update the value in the Json path and return the ByteBuffer
    */
@@ -60,4 +83,9 @@ public interface JsonDataFormat {
    * Checks if the path is valid in a JSON document.
    */
   boolean isPathValid(Object top, String path);
+
+  /**
+   * Checks if the compiled path is valid in a JSON document.
+   */
+  boolean isPathValid(Object top, Object compiledPath);
 }
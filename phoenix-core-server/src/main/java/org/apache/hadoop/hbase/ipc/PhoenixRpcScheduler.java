@@ -38,6 +38,8 @@ public class PhoenixRpcScheduler extends CompatPhoenixRpcScheduler {
     "ipc.server.callqueue.handler.factor";
   private static final String CALLQUEUE_LENGTH_CONF_KEY = "ipc.server.max.callqueue.length";
   private static final int DEFAULT_MAX_CALLQUEUE_LENGTH_PER_HANDLER = 10;
+  // the scheduler of this region server while it is running, read by adaptive paging
+  private static volatile PhoenixRpcScheduler runningScheduler;
 
   private int indexPriority;
   private int metadataPriority;
@@ -100,10 +102,14 @@ public class PhoenixRpcScheduler extends CompatPhoenixRpcScheduler {
     metadataCallExecutor.start(port);
     serverSideCallExecutor.start(port);
     invalidateMetadataCacheCallExecutor.start(port);
+    runningScheduler = this;
   }
 
   @Override
   public void stop() {
+    if (runningScheduler == this) {
+      runningScheduler = null;
+    }
     delegate.stop();
     indexCallExecutor.stop();
     metadataCallExecutor.stop();
@@ -142,6 +148,15 @@ public class PhoenixRpcScheduler extends CompatPhoenixRpcScheduler {
       + this.invalidateMetadataCacheCallExecutor.getQueueLength();
   }
 
+  /**
+   * Returns the number of calls waiting for a handler in the running scheduler of this region
+   * server, or 0 if the region server does not use this scheduler.
+   */
+  public static int getCallQueueLength() {
+    PhoenixRpcScheduler scheduler = runningScheduler;
+    return scheduler == null ? 0 : scheduler.getGeneralQueueLength();
+  }
+
   @Override
   public int getPriorityQueueLength() {
     return this.delegate.getPriorityQueueLength();
@@ -31,7 +31,9 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.memory.ChildMemoryManager;
+import org.apache.phoenix.memory.ConcurrentMemoryManager;
 import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PMetaDataEntity;
@@ -160,8 +162,23 @@ public class GlobalCache extends TenantCacheImpl {
     return maxSize;
   }
 
+  private static MemoryManager newMemoryManager(Configuration config) {
+    long maxSize = getMaxMemorySize(config);
+    if (
+      config.getBoolean(QueryServices.CONCURRENT_MEMORY_MANAGER_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_CONCURRENT_MEMORY_MANAGER_ENABLED)
+    ) {
+      return new ConcurrentMemoryManager(maxSize,
+        config.getLongBytes(QueryServices.CONCURRENT_MEMORY_MANAGER_RESERVATION_BYTES_ATTRIB,
+          QueryServicesOptions.DEFAULT_CONCURRENT_MEMORY_MANAGER_RESERVATION_BYTES),
+        config.getLong(QueryServices.CONCURRENT_MEMORY_MANAGER_MAX_WAIT_MS_ATTRIB,
+          QueryServicesOptions.DEFAULT_CONCURRENT_MEMORY_MANAGER_MAX_WAIT_MS));
+    }
+    return new GlobalMemoryManager(maxSize);
+  }
+
   private GlobalCache(Configuration config) {
-    super(new GlobalMemoryManager(getMaxMemorySize(config)),
+    super(newMemoryManager(config),
       config.getInt(QueryServices.MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB,
         QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS),
       config.getInt(QueryServices.MAX_SERVER_CACHE_PERSISTENCE_TIME_TO_LIVE_MS_ATTRIB,
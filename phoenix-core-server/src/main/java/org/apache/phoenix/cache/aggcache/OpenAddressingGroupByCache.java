@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
+import static org.apache.phoenix.query.QueryConstants.GROUPED_AGGREGATOR_VALUE_BYTES;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.coprocessor.BaseRegionScanner;
+import org.apache.phoenix.coprocessor.GroupByCache;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.LongStateAggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * GroupByCache that keeps the distinct groups of an unordered group by in an open addressing hash
+ * table laid out over a few primitive arrays, instead of a map holding a key object and a set of
+ * aggregators per group. Group keys and last scanned row keys are appended to a single byte slab,
+ * the per group bookkeeping (hash, key and row key location) lives in an int array and the
+ * aggregation state of every group in a long array, so the number of objects on the heap does not
+ * grow with the number of groups. Collisions are resolved through linear probing over a power of
+ * two slot table holding group indexes. A single set of aggregators is shared by all groups: the
+ * state of the group returned by the previous {@link #cache(ImmutableBytesPtr)} call is written
+ * back before the state of the next group is loaded, which requires every aggregator to be a
+ * {@link LongStateAggregator} (see {@link #isSupported(ServerAggregators, Configuration)}). The
+ * arrays are accounted against the tenant MemoryManager as they grow and, unlike
+ * {@link SpillableGroupByCache}, nothing is spilled once memory runs out.
+ */
+public class OpenAddressingGroupByCache implements GroupByCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OpenAddressingGroupByCache.class);
+
+  // Layout of the ints kept for every group
+  private static final int HASH = 0;
+  private static final int KEY_OFFSET = 1;
+  private static final int KEY_LENGTH = 2;
+  private static final int ROW_KEY_OFFSET = 3;
+  private static final int ROW_KEY_LENGTH = 4;
+  private static final int ROW_KEY_CAPACITY = 5;
+  private static final int INTS_PER_GROUP = 6;
+
+  // The null bits of a group are kept in the first long of its state
+  private static final int MAX_AGGREGATORS = Long.SIZE;
+  private static final int MIN_GROUPS = 16;
+  // The distinct value estimate is often far off, so only a small table is allocated upfront and
+  // the arrays are doubled as groups are added, which keeps small group bys from reserving memory
+  // they never use while costing large ones only a few amortized copies
+  private static final int MAX_INITIAL_GROUPS = 1 << 12;
+  private static final int MAX_SLOTS = 1 << 30;
+  private static final int ESTIMATED_KEY_SIZE = 32;
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  private final ServerAggregators aggregators;
+  private final Aggregator[] rowAggregators;
+  private final LongStateAggregator[] stateAggregators;
+  private final int longsPerGroup;
+  private final boolean isIncompatibleClient;
+  private final MemoryChunk chunk;
+
+  // group index + 1 of the group hashed to each slot, 0 for an empty slot
+  private int[] slots;
+  private int[] groups;
+  private long[] states;
+  private byte[] data;
+  private int dataSize;
+  private int groupCapacity;
+  private int groupCount;
+  private int currentGroup = -1;
+  private ImmutableBytesPtr currentKey;
+
+  public OpenAddressingGroupByCache(RegionCoprocessorEnvironment env, ImmutableBytesPtr tenantId,
+    ServerAggregators aggregators, int estDistVals, boolean isIncompatibleClient) {
+    this(GlobalCache.getTenantCache(env, tenantId).getMemoryManager(), env.getConfiguration(),
+      aggregators, estDistVals, isIncompatibleClient);
+  }
+
+  @VisibleForTesting
+  OpenAddressingGroupByCache(MemoryManager memoryManager, Configuration conf,
+    ServerAggregators aggregators, int estDistVals, boolean isIncompatibleClient) {
+    this.aggregators = aggregators;
+    this.isIncompatibleClient = isIncompatibleClient;
+    this.rowAggregators = aggregators.newAggregators(conf);
+    this.stateAggregators = new LongStateAggregator[rowAggregators.length];
+    for (int i = 0; i < rowAggregators.length; i++) {
+      stateAggregators[i] = (LongStateAggregator) rowAggregators[i];
+    }
+    this.longsPerGroup = rowAggregators.length + 1;
+    this.groupCapacity = Math.max(MIN_GROUPS, Math.min(estDistVals, MAX_INITIAL_GROUPS));
+    int slotCount = Integer.highestOneBit(groupCapacity - 1) << 2;
+    int dataCapacity = groupCapacity * ESTIMATED_KEY_SIZE;
+    this.chunk = memoryManager.allocate(sizeOf(slotCount, groupCapacity, dataCapacity));
+    this.slots = new int[slotCount];
+    this.groups = new int[groupCapacity * INTS_PER_GROUP];
+    this.states = new long[groupCapacity * longsPerGroup];
+    this.data = new byte[dataCapacity];
+  }
+
+  /**
+   * Determines whether the state of every aggregator fits in a primitive long, which is required
+   * to aggregate through this cache.
+   */
+  public static boolean isSupported(ServerAggregators aggregators, Configuration conf) {
+    Aggregator[] newAggregators = aggregators.newAggregators(conf);
+    if (newAggregators.length > MAX_AGGREGATORS) {
+      return false;
+    }
+    for (Aggregator aggregator : newAggregators) {
+      if (!(aggregator instanceof LongStateAggregator)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long sizeOf(int slotCount, int groupCapacity, int dataCapacity) {
+    long groupSize = INTS_PER_GROUP * Bytes.SIZEOF_INT + longsPerGroup * Bytes.SIZEOF_LONG;
+    return (long) slotCount * Bytes.SIZEOF_INT + groupCapacity * groupSize + dataCapacity;
+  }
+
+  private static int hash(byte[] b, int offset, int length) {
+    int h = Bytes.hashCode(b, offset, length) * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private int findGroup(byte[] b, int offset, int length, int hash) {
+    int mask = slots.length - 1;
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      int group = slots[slot] - 1;
+      if (group < 0) {
+        return -1;
+      }
+      int base = group * INTS_PER_GROUP;
+      if (
+        groups[base + HASH] == hash && Bytes.equals(data, groups[base + KEY_OFFSET],
+          groups[base + KEY_LENGTH], b, offset, length)
+      ) {
+        return group;
+      }
+    }
+  }
+
+  private void insertSlot(int group, int hash) {
+    int mask = slots.length - 1;
+    int slot = hash & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = group + 1;
+  }
+
+  private int append(byte[] b, int offset, int length) {
+    long required = (long) dataSize + length;
+    if (required > data.length) {
+      if (required > MAX_ARRAY_SIZE) {
+        throw new InsufficientMemoryException(
+          "Group by cache cannot hold more than " + MAX_ARRAY_SIZE + " bytes of keys");
+      }
+      int capacity = (int) Math.min(MAX_ARRAY_SIZE, Math.max(required, 2L * data.length));
+      chunk.resize(chunk.getSize() + capacity - data.length);
+      data = Arrays.copyOf(data, capacity);
+    }
+    System.arraycopy(b, offset, data, dataSize, length);
+    int dataOffset = dataSize;
+    dataSize += length;
+    return dataOffset;
+  }
+
+  private int addGroup(byte[] b, int offset, int length, int hash) {
+    if (groupCount == groupCapacity) {
+      int maxGroups = MAX_ARRAY_SIZE / Math.max(INTS_PER_GROUP, longsPerGroup);
+      if (groupCapacity >= maxGroups) {
+        throw new InsufficientMemoryException(
+          "Group by cache cannot hold more than " + maxGroups + " groups");
+      }
+      int capacity = (int) Math.min(maxGroups, 2L * groupCapacity);
+      chunk.resize(chunk.getSize() + sizeOf(0, capacity - groupCapacity, 0));
+      groups = Arrays.copyOf(groups, capacity * INTS_PER_GROUP);
+      states = Arrays.copyOf(states, capacity * longsPerGroup);
+      groupCapacity = capacity;
+    }
+    // Keep the load factor of the slot table at or below 3/4
+    if ((long) (groupCount + 1) * 4 > (long) slots.length * 3 && slots.length < MAX_SLOTS) {
+      chunk.resize(chunk.getSize() + sizeOf(slots.length, 0, 0));
+      slots = new int[slots.length * 2];
+      for (int group = 0; group < groupCount; group++) {
+        insertSlot(group, groups[group * INTS_PER_GROUP + HASH]);
+      }
+    }
+    int group = groupCount++;
+    int base = group * INTS_PER_GROUP;
+    groups[base + HASH] = hash;
+    groups[base + KEY_OFFSET] = append(b, offset, length);
+    groups[base + KEY_LENGTH] = length;
+    insertSlot(group, hash);
+    return group;
+  }
+
+  private void saveState() {
+    if (currentGroup < 0) {
+      return;
+    }
+    int base = currentGroup * longsPerGroup;
+    long nullBits = 0;
+    for (int i = 0; i < stateAggregators.length; i++) {
+      if (stateAggregators[i].hasState()) {
+        states[base + 1 + i] = stateAggregators[i].getState();
+      } else {
+        nullBits |= 1L << i;
+      }
+    }
+    states[base] = nullBits;
+  }
+
+  private void loadState(int group) {
+    int base = group * longsPerGroup;
+    long nullBits = states[base];
+    for (int i = 0; i < stateAggregators.length; i++) {
+      stateAggregators[i].setState(states[base + 1 + i], (nullBits & (1L << i)) == 0);
+    }
+    currentGroup = group;
+  }
+
+  @Override
+  public Aggregator[] cache(ImmutableBytesPtr cacheKey) {
+    byte[] b = cacheKey.get();
+    int offset = cacheKey.getOffset();
+    int length = cacheKey.getLength();
+    int hash = hash(b, offset, length);
+    int group = findGroup(b, offset, length, hash);
+    if (group < 0) {
+      saveState();
+      currentGroup = addGroup(b, offset, length, hash);
+      aggregators.reset(rowAggregators);
+    } else if (group != currentGroup) {
+      saveState();
+      loadState(group);
+    }
+    currentKey = cacheKey;
+    return rowAggregators;
+  }
+
+  @Override
+  public void cacheAggregateRowKey(ImmutableBytesPtr value, ImmutableBytesPtr rowKey) {
+    // Only clients that understand GROUPED_AGGREGATOR_VALUE_BYTES get the row keys back
+    if (isIncompatibleClient) {
+      return;
+    }
+    int group = value == currentKey
+      ? currentGroup
+      : findGroup(value.get(), value.getOffset(), value.getLength(),
+        hash(value.get(), value.getOffset(), value.getLength()));
+    if (group < 0) {
+      return;
+    }
+    int base = group * INTS_PER_GROUP;
+    int length = rowKey.getLength();
+    // Overwrite the previous row key in place whenever it fits, as row keys of a table tend to
+    // be of similar length this keeps the slab from growing with the number of rows scanned
+    if (length > groups[base + ROW_KEY_CAPACITY]) {
+      groups[base + ROW_KEY_OFFSET] = append(rowKey.get(), rowKey.getOffset(), length);
+      groups[base + ROW_KEY_CAPACITY] = length;
+    } else {
+      System.arraycopy(rowKey.get(), rowKey.getOffset(), data, groups[base + ROW_KEY_OFFSET],
+        length);
+    }
+    groups[base + ROW_KEY_LENGTH] = length;
+  }
+
+  private Cell getCell(int group) {
+    loadState(group);
+    byte[] aggregateArrayBytes = aggregators.toBytes(rowAggregators);
+    int base = group * INTS_PER_GROUP;
+    int keyOffset = groups[base + KEY_OFFSET];
+    int keyLength = groups[base + KEY_LENGTH];
+    if (isIncompatibleClient) {
+      return PhoenixKeyValueUtil.newKeyValue(data, keyOffset, keyLength, SINGLE_COLUMN_FAMILY,
+        SINGLE_COLUMN, AGG_TIMESTAMP, aggregateArrayBytes, 0, aggregateArrayBytes.length);
+    }
+    byte[] finalValue = ByteUtil.concat(PInteger.INSTANCE.toBytes(keyLength),
+      Arrays.copyOfRange(data, keyOffset, keyOffset + keyLength), aggregateArrayBytes);
+    return PhoenixKeyValueUtil.newKeyValue(data, groups[base + ROW_KEY_OFFSET],
+      groups[base + ROW_KEY_LENGTH], GROUPED_AGGREGATOR_VALUE_BYTES,
+      GROUPED_AGGREGATOR_VALUE_BYTES, AGG_TIMESTAMP, finalValue, 0, finalValue.length);
+  }
+
+  @Override
+  public RegionScanner getScanner(final RegionScanner s) {
+    saveState();
+    currentGroup = -1;
+    currentKey = null;
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Open addressing group by cache holds " + groupCount + " groups in "
+        + chunk.getSize() + " bytes");
+    }
+    // Cells are materialized one group at a time as the scanner is consumed
+    return new BaseRegionScanner(s) {
+      private int index = 0;
+
+      @Override
+      public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+        return next(result);
+      }
+
+      @Override
+      public void close() throws IOException {
+        try {
+          s.close();
+        } finally {
+          OpenAddressingGroupByCache.this.close();
+        }
+      }
+
+      @Override
+      public boolean next(List<Cell> results) throws IOException {
+        if (index >= groupCount) {
+          return false;
+        }
+        results.add(getCell(index));
+        index++;
+        return index < groupCount;
+      }
+    };
+  }
+
+  @Override
+  public long size() {
+    return groupCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    chunk.close();
+  }
+}
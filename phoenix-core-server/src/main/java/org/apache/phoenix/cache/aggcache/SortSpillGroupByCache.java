@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
+import static org.apache.phoenix.query.QueryConstants.GROUPED_AGGREGATOR_VALUE_BYTES;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_MAX_CACHE_SIZE_ATTRIB;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_MAX_CACHE_MAX;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.coprocessor.BaseRegionScanner;
+import org.apache.phoenix.coprocessor.GroupByCache;
+import org.apache.phoenix.coprocessor.GroupedAggregateRegionObserver;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.Closeables;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Spillable GroupByCache that spills through sorted runs instead of the extendible hashing of
+ * {@link SpillManager}. Groups are aggregated in an in-memory map until it can no longer grow, at
+ * which point all of its groups are sorted by group key, written sequentially to a
+ * {@link SortedRunFile} and the map is cleared. A group seen again after its run was written simply
+ * starts from new aggregators, so the same group may end up partially aggregated in several runs.
+ * When the groups are returned, the runs and the groups still in memory are merged in key order,
+ * only keeping the current group of every run in memory. Partial aggregations of the same group
+ * are returned as consecutive rows and combined by the client, just like the partial aggregations
+ * of a group returned by different regions.
+ */
+public class SortSpillGroupByCache implements GroupByCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SortSpillGroupByCache.class);
+
+  // Min size of the in-memory map in bytes --> lower bound
+  private static final int SORT_SPILL_CACHE_MIN_SIZE = 4096; // 4K
+
+  private static final Comparator<GroupCursor> CURSOR_COMPARATOR = new Comparator<GroupCursor>() {
+    @Override
+    public int compare(GroupCursor c1, GroupCursor c2) {
+      return c1.getKey().compareTo(c2.getKey());
+    }
+  };
+
+  private final ServerAggregators aggregators;
+  private final Configuration conf;
+  private final boolean isIncompatibleClient;
+  private final MemoryChunk chunk;
+  private final int estValueSize;
+  private final int maxCacheSize;
+  private final File spillFilesDirectory;
+  private final List<SortedRunFile> runs = Lists.newArrayList();
+  private final Map<ImmutableBytesPtr, Aggregator[]> cache;
+  private final Map<ImmutableBytesPtr, ImmutableBytesPtr> aggregateValueToLastScannedRowKeys;
+  private int cacheSize;
+  private long totalNumElements;
+
+  public SortSpillGroupByCache(RegionCoprocessorEnvironment env, ImmutableBytesPtr tenantId,
+    ServerAggregators aggregators, int estSizeNum, boolean isIncompatibleClient) {
+    this(GlobalCache.getTenantCache(env, tenantId).getMemoryManager(), env.getConfiguration(),
+      aggregators, estSizeNum, isIncompatibleClient);
+  }
+
+  @VisibleForTesting
+  SortSpillGroupByCache(MemoryManager memoryManager, Configuration conf,
+    ServerAggregators aggregators, int estSizeNum, boolean isIncompatibleClient) {
+    this.aggregators = aggregators;
+    this.conf = conf;
+    this.isIncompatibleClient = isIncompatibleClient;
+    this.estValueSize = aggregators.getEstimatedByteSize();
+    long maxCacheSizeConf =
+      conf.getLongBytes(GROUPBY_MAX_CACHE_SIZE_ATTRIB, DEFAULT_GROUPBY_MAX_CACHE_MAX);
+    int minSizeNum = SORT_SPILL_CACHE_MIN_SIZE / estValueSize;
+    // use upper and lower bounds for the number of groups held in memory
+    this.maxCacheSize = Math.max(minSizeNum, (int) (maxCacheSizeConf / estValueSize));
+    this.cacheSize = Math.max(minSizeNum, Math.min(maxCacheSize, estSizeNum));
+    try {
+      this.chunk = memoryManager.allocate(
+        GroupedAggregateRegionObserver.sizeOfUnorderedGroupByMap(cacheSize, estValueSize));
+    } catch (InsufficientMemoryException ime) {
+      LOGGER.error("Requested Map size exceeds memory limit, "
+        + "please decrease max size via config paramter: " + GROUPBY_MAX_CACHE_SIZE_ATTRIB);
+      throw ime;
+    }
+    this.spillFilesDirectory = conf.get(QueryServices.SPOOL_DIRECTORY) != null
+      ? new File(conf.get(QueryServices.SPOOL_DIRECTORY))
+      : null;
+    this.cache = Maps.newHashMapWithExpectedSize(cacheSize);
+    this.aggregateValueToLastScannedRowKeys = Maps.newHashMapWithExpectedSize(cacheSize);
+  }
+
+  @Override
+  public long size() {
+    return totalNumElements;
+  }
+
+  @Override
+  public Aggregator[] cache(ImmutableBytesPtr cacheKey) {
+    ImmutableBytesPtr key = new ImmutableBytesPtr(cacheKey);
+    Aggregator[] rowAggregators = cache.get(key);
+    if (rowAggregators == null) {
+      if (cache.size() >= cacheSize && !growCache()) {
+        spillRun();
+      }
+      rowAggregators = aggregators.newAggregators(conf);
+      cache.put(key, rowAggregators);
+      totalNumElements++;
+    }
+    return rowAggregators;
+  }
+
+  private boolean growCache() {
+    if (cacheSize >= maxCacheSize) {
+      return false;
+    }
+    int newCacheSize = (int) Math.min(maxCacheSize, cacheSize * 1.5f);
+    try {
+      chunk.resize(GroupedAggregateRegionObserver.sizeOfUnorderedGroupByMap(newCacheSize,
+        estValueSize));
+    } catch (InsufficientMemoryException ime) {
+      return false;
+    }
+    cacheSize = newCacheSize;
+    return true;
+  }
+
+  /**
+   * Write all groups held in memory as a run sorted by group key and clear the in-memory map
+   */
+  private void spillRun() {
+    List<ImmutableBytesPtr> keys = Lists.newArrayList(cache.keySet());
+    Collections.sort(keys);
+    try {
+      SortedRunFile run = new SortedRunFile(spillFilesDirectory);
+      runs.add(run);
+      for (ImmutableBytesPtr key : keys) {
+        run.append(key, aggregateValueToLastScannedRowKeys.get(key),
+          aggregators.toBytes(cache.get(key)));
+      }
+    } catch (IOException ioe) {
+      // Ensure that we always close and delete the temp files
+      try {
+        throw new RuntimeException(ioe);
+      } finally {
+        Closeables.closeQuietly(this);
+      }
+    }
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Spilled sorted run " + runs.size() + " of " + keys.size() + " groups");
+    }
+    cache.clear();
+    aggregateValueToLastScannedRowKeys.clear();
+  }
+
+  @Override
+  public void cacheAggregateRowKey(ImmutableBytesPtr value, ImmutableBytesPtr rowKey) {
+    aggregateValueToLastScannedRowKeys.put(value, rowKey);
+  }
+
+  /**
+   * Current group of a sorted run or of the groups still held in memory, which is advanced as the
+   * groups are merged
+   */
+  private interface GroupCursor {
+    ImmutableBytesWritable getKey();
+
+    ImmutableBytesWritable getRowKey();
+
+    byte[] getValue();
+
+    boolean next() throws IOException;
+  }
+
+  private static final class RunCursor implements GroupCursor {
+    private final SortedRunFile.Reader reader;
+    private final ImmutableBytesWritable key = new ImmutableBytesWritable();
+    private final ImmutableBytesWritable rowKey = new ImmutableBytesWritable();
+
+    private RunCursor(SortedRunFile.Reader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public ImmutableBytesWritable getKey() {
+      return key;
+    }
+
+    @Override
+    public ImmutableBytesWritable getRowKey() {
+      return rowKey;
+    }
+
+    @Override
+    public byte[] getValue() {
+      return reader.getValue();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      if (!reader.next()) {
+        return false;
+      }
+      key.set(reader.getKey());
+      rowKey.set(reader.getRowKey());
+      return true;
+    }
+  }
+
+  private final class MemoryCursor implements GroupCursor {
+    private final Iterator<ImmutableBytesPtr> keys;
+    private ImmutableBytesPtr key;
+
+    private MemoryCursor() {
+      List<ImmutableBytesPtr> sortedKeys = Lists.newArrayList(cache.keySet());
+      Collections.sort(sortedKeys);
+      this.keys = sortedKeys.iterator();
+    }
+
+    @Override
+    public ImmutableBytesWritable getKey() {
+      return key;
+    }
+
+    @Override
+    public ImmutableBytesWritable getRowKey() {
+      return aggregateValueToLastScannedRowKeys.get(key);
+    }
+
+    @Override
+    public byte[] getValue() {
+      return aggregators.toBytes(cache.get(key));
+    }
+
+    @Override
+    public boolean next() {
+      if (!keys.hasNext()) {
+        return false;
+      }
+      key = keys.next();
+      return true;
+    }
+  }
+
+  private Cell newCell(GroupCursor cursor) {
+    ImmutableBytesWritable aggregateGroupValPtr = cursor.getKey();
+    byte[] aggregateArrayBytes = cursor.getValue();
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Adding new distinct group: "
+        + Bytes.toStringBinary(aggregateGroupValPtr.get(), aggregateGroupValPtr.getOffset(),
+          aggregateGroupValPtr.getLength())
+        + " value = " + Bytes.toStringBinary(aggregateArrayBytes));
+    }
+    if (!isIncompatibleClient) {
+      ImmutableBytesWritable lastScannedRowKey = cursor.getRowKey();
+      byte[] aggregateGroupValueBytes = aggregateGroupValPtr.copyBytes();
+      byte[] finalValue = ByteUtil.concat(
+        PInteger.INSTANCE.toBytes(aggregateGroupValueBytes.length), aggregateGroupValueBytes,
+        aggregateArrayBytes);
+      return PhoenixKeyValueUtil.newKeyValue(lastScannedRowKey.get(),
+        lastScannedRowKey.getOffset(), lastScannedRowKey.getLength(),
+        GROUPED_AGGREGATOR_VALUE_BYTES, GROUPED_AGGREGATOR_VALUE_BYTES, AGG_TIMESTAMP, finalValue,
+        0, finalValue.length);
+    }
+    return PhoenixKeyValueUtil.newKeyValue(aggregateGroupValPtr.get(),
+      aggregateGroupValPtr.getOffset(), aggregateGroupValPtr.getLength(), SINGLE_COLUMN_FAMILY,
+      SINGLE_COLUMN, AGG_TIMESTAMP, aggregateArrayBytes, 0, aggregateArrayBytes.length);
+  }
+
+  /**
+   * Returns the groups in group key order by merging the sorted runs with the groups still held in
+   * memory.
+   */
+  @Override
+  public RegionScanner getScanner(final RegionScanner s) {
+    final PriorityQueue<GroupCursor> cursors =
+      new PriorityQueue<GroupCursor>(runs.size() + 1, CURSOR_COMPARATOR);
+    try {
+      for (SortedRunFile run : runs) {
+        addCursor(cursors, new RunCursor(run.openReader()));
+      }
+      addCursor(cursors, new MemoryCursor());
+    } catch (IOException ioe) {
+      try {
+        throw new RuntimeException(ioe);
+      } finally {
+        Closeables.closeQuietly(this);
+      }
+    }
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Merging " + runs.size() + " sorted runs with " + cache.size()
+        + " groups held in memory");
+    }
+
+    // scanner using the sort based spillable implementation
+    return new BaseRegionScanner(s) {
+      @Override
+      public void close() throws IOException {
+        try {
+          s.close();
+        } finally {
+          // Always close gbCache and swallow possible Exceptions
+          Closeables.closeQuietly(SortSpillGroupByCache.this);
+        }
+      }
+
+      @Override
+      public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+        return next(result);
+      }
+
+      @Override
+      public boolean next(List<Cell> results) throws IOException {
+        GroupCursor cursor = cursors.poll();
+        if (cursor == null) {
+          return false;
+        }
+        results.add(newCell(cursor));
+        addCursor(cursors, cursor);
+        return !cursors.isEmpty();
+      }
+    };
+  }
+
+  private static void addCursor(PriorityQueue<GroupCursor> cursors, GroupCursor cursor)
+    throws IOException {
+    if (cursor.next()) {
+      cursors.add(cursor);
+    }
+  }
+
+  /**
+   * Closes cache and deletes the sorted run files
+   */
+  @Override
+  public void close() throws IOException {
+    for (SortedRunFile run : runs) {
+      Closeables.closeQuietly(run);
+    }
+    runs.clear();
+    Closeables.closeQuietly(chunk);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.util.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Temp file holding a run of partially aggregated groups, sorted by group key. Each entry consists
+ * of the group key, the last scanned row key and the serialized aggregators of the group. A run is
+ * appended to once and then read back front to back, so all I/O on it is sequential.
+ */
+class SortedRunFile implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SortedRunFile.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private DataOutputStream output;
+  private DataInputStream input;
+  private int entryCount;
+
+  SortedRunFile(File spillFilesDirectory) throws IOException {
+    this.file = File.createTempFile(UUID.randomUUID().toString(), null, spillFilesDirectory);
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Creating new sorted run file: " + file.getAbsolutePath());
+    }
+    this.output =
+      new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+  }
+
+  /**
+   * Append the next group of the run, groups must be appended in key order
+   */
+  void append(ImmutableBytesWritable key, ImmutableBytesWritable rowKey, byte[] value)
+    throws IOException {
+    write(key.get(), key.getOffset(), key.getLength());
+    if (rowKey == null) {
+      WritableUtils.writeVInt(output, 0);
+    } else {
+      write(rowKey.get(), rowKey.getOffset(), rowKey.getLength());
+    }
+    write(value, 0, value.length);
+    entryCount++;
+  }
+
+  private void write(byte[] b, int offset, int length) throws IOException {
+    WritableUtils.writeVInt(output, length);
+    output.write(b, offset, length);
+  }
+
+  /**
+   * Finish writing the run and open it for reading
+   */
+  Reader openReader() throws IOException {
+    output.close();
+    output = null;
+    input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    return new Reader();
+  }
+
+  int getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * Cursor over the groups of the run, in key order
+   */
+  class Reader {
+    private int remaining = entryCount;
+    private byte[] key;
+    private byte[] rowKey;
+    private byte[] value;
+
+    /**
+     * Move to the next group of the run
+     * @return false if the run is exhausted
+     */
+    boolean next() throws IOException {
+      if (remaining == 0) {
+        return false;
+      }
+      key = read();
+      rowKey = read();
+      value = read();
+      remaining--;
+      return true;
+    }
+
+    private byte[] read() throws IOException {
+      byte[] b = new byte[WritableUtils.readVInt(input)];
+      input.readFully(b);
+      return b;
+    }
+
+    byte[] getKey() {
+      return key;
+    }
+
+    byte[] getRowKey() {
+      return rowKey;
+    }
+
+    byte[] getValue() {
+      return value;
+    }
+  }
+
+  @Override
+  public void close() {
+    Closeables.closeQuietly(output);
+    Closeables.closeQuietly(input);
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Deleting sorted run file: " + file.getAbsolutePath());
+    }
+    try {
+      file.delete();
+    } catch (SecurityException e) {
+      LOGGER.warn("Could not delete sorted run file " + file.getAbsolutePath(), e);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+
+/**
+ * Scales the page size of a single PagingRegionScanner between a minimum and a maximum factor of
+ * the configured page size. A page that returns a row only after visiting many rows did little work
+ * for its round trip, so the page size grows. This includes pages that timed out without finding a
+ * row, which are the round trips the growth saves. Calls waiting for an RPC handler take priority
+ * over making any one scan more efficient, so the page size shrinks while the call queue is above
+ * the threshold. Otherwise the factor moves back towards 1. The scaled page size never exceeds the
+ * page size budget the client set on the scan.
+ */
+class AdaptivePageSize {
+  // A page is selective if it returns fewer rows than this share of the rows it visits
+  private static final double SELECTIVE_RATIO = 0.01;
+
+  private final double minFactor;
+  private final double maxFactor;
+  private final int queueThreshold;
+  private double factor = 1;
+
+  AdaptivePageSize(double minFactor, double maxFactor, int queueThreshold) {
+    this.minFactor = Math.min(minFactor, 1);
+    this.maxFactor = Math.max(maxFactor, 1);
+    this.queueThreshold = queueThreshold;
+  }
+
+  /**
+   * Returns a new instance if adaptive paging is enabled in the given configuration, or null
+   */
+  static AdaptivePageSize create(Configuration conf) {
+    if (
+      !conf.getBoolean(QueryServices.PHOENIX_SERVER_PAGING_ADAPTIVE_ENABLED,
+        QueryServicesOptions.DEFAULT_PHOENIX_SERVER_PAGING_ADAPTIVE_ENABLED)
+    ) {
+      return null;
+    }
+    return new AdaptivePageSize(
+      conf.getFloat(QueryServices.PHOENIX_SERVER_PAGING_ADAPTIVE_MIN_FACTOR,
+        QueryServicesOptions.DEFAULT_PHOENIX_SERVER_PAGING_ADAPTIVE_MIN_FACTOR),
+      conf.getFloat(QueryServices.PHOENIX_SERVER_PAGING_ADAPTIVE_MAX_FACTOR,
+        QueryServicesOptions.DEFAULT_PHOENIX_SERVER_PAGING_ADAPTIVE_MAX_FACTOR),
+      conf.getInt(QueryServices.PHOENIX_SERVER_PAGING_ADAPTIVE_QUEUE_THRESHOLD,
+        QueryServicesOptions.DEFAULT_PHOENIX_SERVER_PAGING_ADAPTIVE_QUEUE_THRESHOLD));
+  }
+
+  /**
+   * Returns the given page size scaled by the current factor, but no more than maxPageSizeMs
+   */
+  long scale(long pageSizeMs, long maxPageSizeMs) {
+    return Math.max(1, Math.min(maxPageSizeMs, (long) (pageSizeMs * factor)));
+  }
+
+  double getFactor() {
+    return factor;
+  }
+
+  /**
+   * Adjusts the factor after a page
+   * @param rowsReturned number of rows the page returned, 0 for a dummy result
+   * @param rowsVisited  number of rows the page visited
+   * @param queuedCalls  number of calls waiting for an RPC handler
+   */
+  void onPageEnd(long rowsReturned, long rowsVisited, int queuedCalls) {
+    if (queuedCalls > queueThreshold) {
+      factor = Math.max(minFactor, factor / 2);
+    } else if (rowsVisited > 0 && rowsReturned < rowsVisited * SELECTIVE_RATIO) {
+      factor = Math.min(maxFactor, factor * 2);
+    } else if (factor > 1) {
+      factor = Math.max(1, factor / 2);
+    } else if (factor < 1) {
+      factor = Math.min(1, factor * 2);
+    }
+  }
+}
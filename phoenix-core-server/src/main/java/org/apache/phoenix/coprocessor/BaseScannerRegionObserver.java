@@ -327,11 +327,14 @@ abstract public class BaseScannerRegionObserver implements RegionObserver {
       } else {
         // An old client may not set these attributes which are required by TTLRegionScanner
         if (emptyCF != null && emptyCQ != null) {
-          return new RegionScannerHolder(c, scan, new TTLRegionScanner(c.getEnvironment(), scan,
-            new PagingRegionScanner(c.getEnvironment().getRegion(), s, scan)));
+          return new RegionScannerHolder(c, scan,
+            new TTLRegionScanner(c.getEnvironment(), scan,
+              new PagingRegionScanner(c.getEnvironment().getRegion(), s, scan,
+                AdaptivePageSize.create(c.getEnvironment().getConfiguration()))));
         }
         return new RegionScannerHolder(c, scan,
-          new PagingRegionScanner(c.getEnvironment().getRegion(), s, scan));
+          new PagingRegionScanner(c.getEnvironment().getRegion(), s, scan,
+            AdaptivePageSize.create(c.getEnvironment().getConfiguration())));
 
       }
     } catch (Throwable t) {
@@ -22,9 +22,13 @@ import static org.apache.phoenix.query.QueryConstants.GROUPED_AGGREGATOR_VALUE_B
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_ESTIMATED_DISTINCT_VALUES_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_OPEN_ADDRESSING_ENABLED_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILLABLE_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILL_STRATEGY_ATTRIB;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_ESTIMATED_DISTINCT_VALUES;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_OPEN_ADDRESSING_ENABLED;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_SPILLABLE;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_SPILL_STRATEGY;
 import static org.apache.phoenix.util.ScanUtil.getDummyResult;
 import static org.apache.phoenix.util.ScanUtil.getPageSizeMsForRegionScanner;
 import static org.apache.phoenix.util.ScanUtil.isDummy;
@@ -59,6 +63,8 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.cache.GlobalCache;
 import org.apache.phoenix.cache.TenantCache;
+import org.apache.phoenix.cache.aggcache.OpenAddressingGroupByCache;
+import org.apache.phoenix.cache.aggcache.SortSpillGroupByCache;
 import org.apache.phoenix.cache.aggcache.SpillableGroupByCache;
 import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
 import org.apache.phoenix.execute.TupleProjector;
@@ -92,6 +98,7 @@ import org.apache.phoenix.util.TupleUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
 
 /**
@@ -371,7 +378,8 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
 
   }
 
-  private static final class GroupByCacheFactory {
+  @VisibleForTesting
+  static final class GroupByCacheFactory {
     public static final GroupByCacheFactory INSTANCE = new GroupByCacheFactory();
 
     private GroupByCacheFactory() {
@@ -381,9 +389,21 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
       byte[] customAnnotations, ServerAggregators aggregators, int estDistVals,
       boolean isIncompatibleClient) {
       Configuration conf = env.getConfiguration();
+      boolean openAddressingEnabled = conf.getBoolean(GROUPBY_OPEN_ADDRESSING_ENABLED_ATTRIB,
+        DEFAULT_GROUPBY_OPEN_ADDRESSING_ENABLED);
+      if (openAddressingEnabled && OpenAddressingGroupByCache.isSupported(aggregators, conf)) {
+        return new OpenAddressingGroupByCache(env, tenantId, aggregators, estDistVals,
+          isIncompatibleClient);
+      }
       boolean spillableEnabled =
         conf.getBoolean(GROUPBY_SPILLABLE_ATTRIB, DEFAULT_GROUPBY_SPILLABLE);
       if (spillableEnabled) {
+        String spillStrategy =
+          conf.get(GROUPBY_SPILL_STRATEGY_ATTRIB, DEFAULT_GROUPBY_SPILL_STRATEGY);
+        if ("SORT".equalsIgnoreCase(spillStrategy)) {
+          return new SortSpillGroupByCache(env, tenantId, aggregators, estDistVals,
+            isIncompatibleClient);
+        }
         return new SpillableGroupByCache(env, tenantId, aggregators, estDistVals,
           isIncompatibleClient);
       }
@@ -238,24 +238,50 @@ public class HashJoinRegionScanner implements RegionScanner {
       // apply post-join filter
       Expression postFilter = joinInfo.getPostJoinFilterExpression();
       if (postFilter != null) {
-        for (Iterator<Tuple> iter = resultQueue.iterator(); iter.hasNext();) {
-          Tuple t = iter.next();
-          postFilter.reset();
-          ImmutableBytesPtr tempPtr = new ImmutableBytesPtr();
-          try {
-            if (!postFilter.evaluate(t, tempPtr) || tempPtr.getLength() == 0) {
-              iter.remove();
-              continue;
-            }
-          } catch (IllegalDataException e) {
-            iter.remove();
-            continue;
-          }
-          Boolean b = (Boolean) postFilter.getDataType().toObject(tempPtr);
-          if (!Boolean.TRUE.equals(b)) {
-            iter.remove();
-          }
+        applyPostJoinFilter(postFilter);
+      }
+    }
+  }
+
+  /**
+   * Filters the joined rows as one block, or one row at a time if some row cannot be evaluated
+   */
+  private void applyPostJoinFilter(Expression postFilter) {
+    Tuple[] tuples = resultQueue.toArray(new Tuple[resultQueue.size()]);
+    int[] selection = new int[tuples.length];
+    for (int i = 0; i < selection.length; i++) {
+      selection[i] = i;
+    }
+    int count;
+    try {
+      count = postFilter.filter(tuples, selection, tuples.length, new ImmutableBytesPtr());
+    } catch (IllegalDataException e) {
+      applyPostJoinFilterByRow(postFilter);
+      return;
+    }
+    resultQueue.clear();
+    for (int i = 0; i < count; i++) {
+      resultQueue.offer(tuples[selection[i]]);
+    }
+  }
+
+  private void applyPostJoinFilterByRow(Expression postFilter) {
+    for (Iterator<Tuple> iter = resultQueue.iterator(); iter.hasNext();) {
+      Tuple t = iter.next();
+      postFilter.reset();
+      ImmutableBytesPtr tempPtr = new ImmutableBytesPtr();
+      try {
+        if (!postFilter.evaluate(t, tempPtr) || tempPtr.getLength() == 0) {
+          iter.remove();
+          continue;
         }
+      } catch (IllegalDataException e) {
+        iter.remove();
+        continue;
+      }
+      Boolean b = (Boolean) postFilter.getDataType().toObject(tempPtr);
+      if (!Boolean.TRUE.equals(b)) {
+        iter.remove();
       }
     }
   }
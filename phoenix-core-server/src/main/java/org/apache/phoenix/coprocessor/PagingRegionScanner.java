@@ -20,25 +20,46 @@ package org.apache.phoenix.coprocessor;
 import static org.apache.phoenix.query.QueryServices.USE_BLOOMFILTER_FOR_MULTIKEY_POINTLOOKUP;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.PackagePrivateFieldAccessor;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
 import org.apache.hadoop.hbase.regionserver.BloomType;
 import org.apache.hadoop.hbase.regionserver.PhoenixScannerContext;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.ipc.PhoenixRpcScheduler;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.coprocessorclient.metrics.MetricsPagingSource;
+import org.apache.phoenix.coprocessorclient.metrics.MetricsPhoenixCoprocessorSourceFactory;
 import org.apache.phoenix.filter.PagingFilter;
 import org.apache.phoenix.filter.SkipScanFilter;
+import org.apache.phoenix.hbase.index.parallel.EarlyExitFailure;
+import org.apache.phoenix.hbase.index.parallel.Task;
+import org.apache.phoenix.hbase.index.parallel.TaskBatch;
+import org.apache.phoenix.hbase.index.parallel.TaskRunner;
 import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.ScanUtil;
+import org.apache.phoenix.util.ServerUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.FilterProtos;
+
 import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 
 /**
@@ -51,7 +72,11 @@ import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTes
  * returning a dummy result to signal to Phoenix client to resume the scan operation by skipping
  * this dummy result and calling ResultScanner#next(). PagingRegionScanner also converts a multi-key
  * point lookup scan into N single point lookup scans to allow individual scan to leverage HBase
- * bloom filter. This conversion is done within the MultiKeyPointLookup inner class.
+ * bloom filter. This conversion is done within the MultiKeyPointLookup inner class, which runs
+ * the point lookups in batches on the region server level thread pool of
+ * {@link PhoenixRegionServerEndpoint} if one is configured. When adaptive paging is enabled, the
+ * page sizes of PagingRegionScanner and PagingFilter are scaled after every page by
+ * {@link AdaptivePageSize}.
  */
 public class PagingRegionScanner extends BaseRegionScanner {
   private static final Logger LOGGER = LoggerFactory.getLogger(PagingRegionScanner.class);
@@ -61,12 +86,25 @@ public class PagingRegionScanner extends BaseRegionScanner {
   private MultiKeyPointLookup multiKeyPointLookup = null;
   private boolean initialized = false;
   private long pageSizeMs;
+  private final long basePageSizeMs;
+  private long baseFilterPageSizeMs;
+  // the page size budget the client set, the adaptive page size never goes above it
+  private final long maxPageSizeMs;
+  // null if adaptive paging is disabled
+  private final AdaptivePageSize adaptivePageSize;
+  private final MetricsPagingSource metricsSource;
 
   private class MultiKeyPointLookup {
     private SkipScanFilter skipScanFilter;
     private List<KeyRange> pointLookupRanges = null;
     private int lookupPosition = 0;
     private byte[] lookupKeyPrefix = null;
+    // null if the point lookups are run one by one
+    private TaskRunner pool = null;
+    private int batchSize;
+    // Rows of the point lookups run ahead in parallel, in the order of the lookups starting at
+    // lookupPosition. An empty row means the lookup did not find a row.
+    private final Deque<List<Cell>> fetchedRows = new ArrayDeque<>();
 
     private MultiKeyPointLookup(SkipScanFilter skipScanFilter) throws IOException {
       this.skipScanFilter = skipScanFilter;
@@ -80,6 +118,12 @@ public class PagingRegionScanner extends BaseRegionScanner {
       if (pagingFilter != null) {
         scan.setFilter(pagingFilter.getDelegateFilter());
       }
+      Configuration conf = region.getReadOnlyConfiguration();
+      batchSize = conf.getInt(QueryServices.PHOENIX_MULTIKEY_POINTLOOKUP_BATCH_SIZE,
+        QueryServicesOptions.DEFAULT_PHOENIX_MULTIKEY_POINTLOOKUP_BATCH_SIZE);
+      if (batchSize > 1) {
+        pool = PhoenixRegionServerEndpoint.getMultiKeyPointLookupThreadPool();
+      }
     }
 
     private int findLookupPosition(byte[] startRowKey) {
@@ -99,6 +143,7 @@ public class PagingRegionScanner extends BaseRegionScanner {
       // The startRowKey may not be one of the point lookup keys. This happens when
       // the region moves and the HBase client adjusts the scan start row key.
       lookupPosition = findLookupPosition(startRowKey);
+      fetchedRows.clear();
       if (lookupPosition == pointLookupRanges.size()) {
         return false;
       }
@@ -108,11 +153,12 @@ public class PagingRegionScanner extends BaseRegionScanner {
       return true;
     }
 
-    private RegionScanner getNewScanner() throws IOException {
-      if (lookupPosition >= pointLookupRanges.size()) {
-        return null;
-      }
-      byte[] rowKey = pointLookupRanges.get(lookupPosition++).getLowerRange();
+    private boolean isParallel() {
+      return pool != null;
+    }
+
+    private byte[] getLookupRowKey(int position) {
+      byte[] rowKey = pointLookupRanges.get(position).getLowerRange();
       byte[] adjustedRowKey = rowKey;
       if (lookupKeyPrefix != null) {
         int len = rowKey.length + lookupKeyPrefix.length;
@@ -120,6 +166,14 @@ public class PagingRegionScanner extends BaseRegionScanner {
         System.arraycopy(lookupKeyPrefix, 0, adjustedRowKey, 0, lookupKeyPrefix.length);
         System.arraycopy(rowKey, 0, adjustedRowKey, lookupKeyPrefix.length, rowKey.length);
       }
+      return adjustedRowKey;
+    }
+
+    private RegionScanner getNewScanner() throws IOException {
+      if (lookupPosition >= pointLookupRanges.size()) {
+        return null;
+      }
+      byte[] adjustedRowKey = getLookupRowKey(lookupPosition++);
       scan.withStartRow(adjustedRowKey, true);
       scan.withStopRow(adjustedRowKey, true);
       return region.getScanner(scan);
@@ -167,6 +221,9 @@ public class PagingRegionScanner extends BaseRegionScanner {
             ScanUtil.getDummyResult(rowKey, results);
             return true;
           }
+          if (isParallel()) {
+            break;
+          }
 
           RegionScanner regionScanner = getNewScanner();
           if (regionScanner == null) {
@@ -181,15 +238,118 @@ public class PagingRegionScanner extends BaseRegionScanner {
       } finally {
         scanner.close();
       }
+      return nextParallel(results, raw, scannerContext);
+    }
+
+    /**
+     * Same as {@link #next(List, boolean, RegionScanner, ScannerContext)} but takes the rows from
+     * the point lookups run ahead in parallel, running the next batch of lookups when needed
+     */
+    private boolean nextParallel(List<Cell> results, boolean raw, ScannerContext scannerContext)
+      throws IOException {
+      while (true) {
+        if (fetchedRows.isEmpty()) {
+          if (!hasMore()) {
+            return false;
+          }
+          fetchRows(raw);
+        }
+        List<Cell> row = fetchedRows.poll();
+        lookupPosition++;
+        if (!row.isEmpty()) {
+          results.addAll(row);
+          if (PhoenixScannerContext.isTimedOut(scannerContext, pageSizeMs)) {
+            // we got a valid result but scanner timed out so return immediately
+            PhoenixScannerContext.setReturnImmediately(scannerContext);
+          }
+          return hasMore();
+        }
+        if (!hasMore()) {
+          return false;
+        }
+        if (PhoenixScannerContext.isTimedOut(scannerContext, pageSizeMs)) {
+          byte[] rowKey = pointLookupRanges.get(lookupPosition - 1).getLowerRange();
+          ScanUtil.getDummyResult(rowKey, results);
+          return true;
+        }
+      }
+    }
+
+    private void fetchRows(final boolean raw) throws IOException {
+      int end = Math.min(lookupPosition + batchSize, pointLookupRanges.size());
+      TaskBatch<List<Cell>> tasks = new TaskBatch<>(end - lookupPosition);
+      // Filters keep per row state, so each lookup needs its own copy. The filter is serialized
+      // once for the batch and each lookup deserializes its own copy.
+      final FilterProtos.Filter filterProto =
+        scan.getFilter() == null ? null : ProtobufUtil.toFilter(scan.getFilter());
+      for (int i = lookupPosition; i < end; i++) {
+        final Scan lookupScan = new Scan(scan);
+        byte[] rowKey = getLookupRowKey(i);
+        lookupScan.withStartRow(rowKey, true);
+        lookupScan.withStopRow(rowKey, true);
+        tasks.add(new Task<List<Cell>>() {
+          @Override
+          public List<Cell> call() throws IOException {
+            if (filterProto != null) {
+              try {
+                lookupScan.setFilter(ProtobufUtil.toFilter(filterProto));
+              } catch (DeserializationException e) {
+                throw new IOException(e);
+              }
+            }
+            List<Cell> row = new ArrayList<>();
+            try (RegionScanner scanner = region.getScanner(lookupScan)) {
+              // The RPC handler waits for the batch while holding the region operation, which
+              // covers the raw calls made here
+              if (raw) {
+                scanner.nextRaw(row);
+              } else {
+                scanner.next(row);
+              }
+            }
+            return row;
+          }
+        });
+      }
+      Pair<List<List<Cell>>, List<Future<List<Cell>>>> resultsAndFutures;
+      try {
+        resultsAndFutures = pool.submitUninterruptible(tasks);
+      } catch (ExecutionException e) {
+        throw new IOException(e);
+      } catch (EarlyExitFailure e) {
+        throw new IOException("Stopped while waiting for point lookups", e);
+      }
+      int index = 0;
+      for (List<Cell> row : resultsAndFutures.getFirst()) {
+        if (row == null) {
+          fetchedRows.clear();
+          throw new IOException("Point lookup failed, scan " + scan + ", region " + region,
+            ServerUtil.getExceptionFromFailedFuture(resultsAndFutures.getSecond().get(index)));
+        }
+        fetchedRows.add(row);
+        index++;
+      }
     }
   }
 
   public PagingRegionScanner(Region region, RegionScanner scanner, Scan scan) {
+    this(region, scanner, scan, null);
+  }
+
+  PagingRegionScanner(Region region, RegionScanner scanner, Scan scan,
+    AdaptivePageSize adaptivePageSize) {
     super(scanner);
     this.region = region;
     this.scan = scan;
+    this.adaptivePageSize = adaptivePageSize;
     pagingFilter = ScanUtil.getPhoenixPagingFilter(scan);
     pageSizeMs = ScanUtil.getPageSizeMsForRegionScanner(scan);
+    basePageSizeMs = pageSizeMs;
+    maxPageSizeMs = ScanUtil.getServerPageSizeMs(scan);
+    if (pagingFilter != null) {
+      baseFilterPageSizeMs = pagingFilter.getPageSizeMs();
+    }
+    metricsSource = MetricsPhoenixCoprocessorSourceFactory.getInstance().getPagingSource();
   }
 
   @VisibleForTesting
@@ -221,9 +381,36 @@ public class PagingRegionScanner extends BaseRegionScanner {
   private boolean next(List<Cell> results, boolean raw, ScannerContext scannerContext)
     throws IOException {
     init();
+    if (adaptivePageSize != null) {
+      pageSizeMs = adaptivePageSize.scale(basePageSizeMs, maxPageSizeMs);
+      if (pagingFilter != null) {
+        pagingFilter.setPageSizeMs(adaptivePageSize.scale(baseFilterPageSizeMs, maxPageSizeMs));
+      }
+      metricsSource.addPageSize(pageSizeMs);
+    }
     if (pagingFilter != null) {
       pagingFilter.init();
     }
+    long startTime = EnvironmentEdgeManager.currentTimeMillis();
+    boolean hasMore = nextPage(results, raw, scannerContext);
+    boolean isDummy = ScanUtil.isDummy(results);
+    if (isDummy) {
+      metricsSource.incrementDummyResultCount();
+      metricsSource.addPageTime(EnvironmentEdgeManager.currentTimeMillis() - startTime);
+    }
+    if (adaptivePageSize != null) {
+      // A point lookup visits a single row, and the paging filter is removed for point lookups
+      long rowsVisited = pagingFilter != null && multiKeyPointLookup == null
+        ? pagingFilter.getRowsVisited()
+        : 1;
+      adaptivePageSize.onPageEnd(isDummy || results.isEmpty() ? 0 : 1, rowsVisited,
+        PhoenixRpcScheduler.getCallQueueLength());
+    }
+    return hasMore;
+  }
+
+  private boolean nextPage(List<Cell> results, boolean raw, ScannerContext scannerContext)
+    throws IOException {
     byte[] adjustedStartRowKey =
       scan.getAttribute(QueryServices.PHOENIX_PAGING_NEW_SCAN_START_ROWKEY);
     byte[] adjustedStartRowKeyIncludeBytes =
@@ -252,6 +439,9 @@ public class PagingRegionScanner extends BaseRegionScanner {
 
     } else {
       if (multiKeyPointLookup != null) {
+        if (multiKeyPointLookup.isParallel()) {
+          return multiKeyPointLookup.nextParallel(results, raw, scannerContext);
+        }
         RegionScanner regionScanner = multiKeyPointLookup.getNewScanner();
         if (regionScanner == null) {
           return false;
@@ -324,6 +514,6 @@ public class PagingRegionScanner extends BaseRegionScanner {
 
   @Override
   public RegionScanner getNewRegionScanner(Scan scan) throws IOException {
-    return new PagingRegionScanner(region, region.getScanner(scan), scan);
+    return new PagingRegionScanner(region, region.getScanner(scan), scan, adaptivePageSize);
   }
 }
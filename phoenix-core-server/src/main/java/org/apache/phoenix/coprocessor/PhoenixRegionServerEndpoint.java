@@ -56,6 +56,9 @@ public class PhoenixRegionServerEndpoint extends
 
   // regionserver level thread pool used by Uncovered Indexes to scan data table rows
   private static TaskRunner uncoveredIndexThreadPool;
+  // regionserver level thread pool running the point lookups of multi-key point lookup scans, null
+  // if they are run one by one in the RPC handler
+  private static TaskRunner multiKeyPointLookupThreadPool;
 
   @Override
   public void start(CoprocessorEnvironment env) throws IOException {
@@ -63,6 +66,7 @@ public class PhoenixRegionServerEndpoint extends
     this.metricsSource =
       MetricsPhoenixCoprocessorSourceFactory.getInstance().getMetadataCachingSource();
     initUncoveredIndexThreadPool(this.conf);
+    initMultiKeyPointLookupThreadPool(this.conf);
   }
 
   @Override
@@ -72,6 +76,11 @@ public class PhoenixRegionServerEndpoint extends
       uncoveredIndexThreadPool
         .stop("PhoenixRegionServerEndpoint is stopping. Shutting down uncovered index threadpool.");
     }
+    if (multiKeyPointLookupThreadPool != null) {
+      multiKeyPointLookupThreadPool.stop("PhoenixRegionServerEndpoint is stopping. "
+        + "Shutting down multi-key point lookup threadpool.");
+      multiKeyPointLookupThreadPool = null;
+    }
     ServerUtil.ConnectionFactory.shutdown();
   }
 
@@ -158,6 +167,10 @@ public class PhoenixRegionServerEndpoint extends
     return uncoveredIndexThreadPool;
   }
 
+  public static TaskRunner getMultiKeyPointLookupThreadPool() {
+    return multiKeyPointLookupThreadPool;
+  }
+
   private static void initUncoveredIndexThreadPool(Configuration conf) {
     uncoveredIndexThreadPool = new WaitForCompletionTaskRunner(
       ThreadPoolManager.getExecutor(new ThreadPoolBuilder("Uncovered Global Index", conf)
@@ -168,4 +181,20 @@ public class PhoenixRegionServerEndpoint extends
     LOGGER.info("Initialized region level thread pool for Uncovered Global Indexes.");
   }
 
+  private static void initMultiKeyPointLookupThreadPool(Configuration conf) {
+    if (
+      conf.getInt(QueryServices.PHOENIX_MULTIKEY_POINTLOOKUP_MAX_POOL_SIZE,
+        QueryServicesOptions.DEFAULT_PHOENIX_MULTIKEY_POINTLOOKUP_MAX_POOL_SIZE) <= 0
+    ) {
+      return;
+    }
+    multiKeyPointLookupThreadPool = new WaitForCompletionTaskRunner(
+      ThreadPoolManager.getExecutor(new ThreadPoolBuilder("Multi-Key Point Lookup", conf)
+        .setMaxThread(QueryServices.PHOENIX_MULTIKEY_POINTLOOKUP_MAX_POOL_SIZE,
+          QueryServicesOptions.DEFAULT_PHOENIX_MULTIKEY_POINTLOOKUP_MAX_POOL_SIZE)
+        .setCoreTimeout(QueryServices.PHOENIX_MULTIKEY_POINTLOOKUP_KEEP_ALIVE_TIME_SEC,
+          QueryServicesOptions.DEFAULT_PHOENIX_MULTIKEY_POINTLOOKUP_KEEP_ALIVE_TIME_SEC)));
+    LOGGER.info("Initialized region server level thread pool for multi-key point lookups.");
+  }
+
 }
@@ -65,6 +65,12 @@ public class ServerCachingEndpointImpl extends ServerCachingService implements R
       tenantId = new ImmutableBytesPtr(request.getTenantId().toByteArray());
     }
     TenantCache tenantCache = GlobalCache.getTenantCache(this.env, tenantId);
+    if (request.getReuseOnly()) {
+      boolean reused =
+        tenantCache.reuseServerCache(new ImmutableBytesPtr(request.getCacheId().toByteArray()));
+      done.run(AddServerCacheResponse.newBuilder().setReturn(reused).build());
+      return;
+    }
     ImmutableBytesWritable cachePtr =
       org.apache.phoenix.protobuf.ProtobufUtil.toImmutableBytesWritable(request.getCachePtr());
     byte[] txState =
@@ -80,11 +86,19 @@ public class ServerCachingEndpointImpl extends ServerCachingService implements R
       } else {
         throw new DoNotRetryIOException("Disallowed ServerCacheFactory class: " + factoryClassName);
       }
-      tenantCache.addServerCache(new ImmutableBytesPtr(request.getCacheId().toByteArray()),
-        cachePtr, txState, cacheFactory,
-        request.hasHasProtoBufIndexMaintainer() && request.getHasProtoBufIndexMaintainer(),
-        request.getUsePersistentCache(),
-        request.hasClientVersion() ? request.getClientVersion() : ScanUtil.UNKNOWN_CLIENT_VERSION);
+      ImmutableBytesPtr cacheId = new ImmutableBytesPtr(request.getCacheId().toByteArray());
+      boolean useProtoForIndexMaintainer =
+        request.hasHasProtoBufIndexMaintainer() && request.getHasProtoBufIndexMaintainer();
+      int clientVersion =
+        request.hasClientVersion() ? request.getClientVersion() : ScanUtil.UNKNOWN_CLIENT_VERSION;
+      if (request.hasUploadId()) {
+        tenantCache.addServerCacheChunk(cacheId, request.getUploadId(), cachePtr,
+          request.getChunkOffset(), request.getTotalLength(), txState, cacheFactory,
+          useProtoForIndexMaintainer, request.getUsePersistentCache(), clientVersion);
+      } else {
+        tenantCache.addServerCache(cacheId, cachePtr, txState, cacheFactory,
+          useProtoForIndexMaintainer, request.getUsePersistentCache(), clientVersion);
+      }
     } catch (Throwable e) {
       ProtobufUtil.setControllerException(controller,
         ClientUtil.createIOException("Error when adding cache: ", e));
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.util.MutationUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.phoenix.thirdparty.com.google.common.cache.RemovalListener;
+import org.apache.phoenix.thirdparty.com.google.common.cache.RemovalNotification;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Weigher;
+
+/**
+ * Cache of the data row states recently committed through {@link IndexRegionObserver} in a region,
+ * used to skip reading the current state of hot rows from disk. The cache is bounded by the heap
+ * size of the cached row states and entries expire a fixed time after they are written. The heap
+ * size of the cached row states is also reserved from the given memory manager, which is shared
+ * with the server caches of the region server, and a row state is not cached when the memory
+ * manager has no memory left for it. Callers must hold the row lock while reading or updating the
+ * state of a row.
+ */
+public class DataRowStateCache {
+  private static final Weigher<ImmutableBytesPtr, Put> WEIGHER =
+    new Weigher<ImmutableBytesPtr, Put>() {
+      @Override
+      public int weigh(ImmutableBytesPtr rowKey, Put rowState) {
+        return (int) Math.min(Integer.MAX_VALUE, rowKey.getLength() + rowState.heapSize());
+      }
+    };
+
+  private final Cache<ImmutableBytesPtr, Put> cache;
+  private final MemoryManager memoryManager;
+  private final MemoryChunk memoryChunk;
+
+  public DataRowStateCache(long maxSizeBytes, long expiryMs, MemoryManager memoryManager) {
+    this.memoryManager = memoryManager;
+    this.memoryChunk = memoryManager.allocate(0);
+    cache = CacheBuilder.newBuilder().maximumWeight(maxSizeBytes).weigher(WEIGHER)
+      .removalListener(new RemovalListener<ImmutableBytesPtr, Put>() {
+        @Override
+        public void onRemoval(RemovalNotification<ImmutableBytesPtr, Put> notification) {
+          release(WEIGHER.weigh(notification.getKey(), notification.getValue()));
+        }
+      }).expireAfterWrite(expiryMs, TimeUnit.MILLISECONDS).build();
+  }
+
+  /**
+   * Returns a copy of the cached state of the given row, or null if it is not cached
+   */
+  public Put get(ImmutableBytesPtr rowKey) throws IOException {
+    Put rowState = cache.getIfPresent(rowKey);
+    return rowState == null ? null : MutationUtil.copyPut(rowState, true);
+  }
+
+  /**
+   * Caches a copy of the committed state of the given row. If the memory manager cannot reserve
+   * the heap size of the row state, the row is removed from the cache instead.
+   */
+  public void put(ImmutableBytesPtr rowKey, Put rowState) throws IOException {
+    ImmutableBytesPtr key = new ImmutableBytesPtr(rowKey.copyBytesIfNecessary());
+    Put value = MutationUtil.copyPut(rowState, true);
+    if (!reserve(WEIGHER.weigh(key, value))) {
+      cache.invalidate(rowKey);
+      return;
+    }
+    cache.put(key, value);
+  }
+
+  public void invalidate(ImmutableBytesPtr rowKey) {
+    cache.invalidate(rowKey);
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the number of bytes currently reserved from the memory manager
+   */
+  public long getReservedBytes() {
+    return memoryChunk.getSize();
+  }
+
+  /**
+   * Removes all the cached row states and releases their memory back to the memory manager
+   */
+  public void close() {
+    cache.invalidateAll();
+    memoryChunk.close();
+  }
+
+  private boolean reserve(long nBytes) {
+    // The write path must not block waiting for memory, so give up if it is not available now
+    if (memoryManager.getAvailableMemory() < nBytes) {
+      return false;
+    }
+    synchronized (memoryChunk) {
+      try {
+        memoryChunk.resize(memoryChunk.getSize() + nBytes);
+        return true;
+      } catch (InsufficientMemoryException e) {
+        return false;
+      }
+    }
+  }
+
+  private void release(long nBytes) {
+    synchronized (memoryChunk) {
+      memoryChunk.resize(Math.max(0, memoryChunk.getSize() - nBytes));
+    }
+  }
+}
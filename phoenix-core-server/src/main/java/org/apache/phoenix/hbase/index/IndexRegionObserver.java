@@ -38,6 +38,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.CellScanner;
@@ -57,6 +59,7 @@ import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Increment;
@@ -75,6 +78,10 @@ import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
 import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionLifeCycleTracker;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.wal.WALEdit;
@@ -83,6 +90,7 @@ import org.apache.hadoop.io.WritableUtils;
 import org.apache.htrace.Span;
 import org.apache.htrace.Trace;
 import org.apache.htrace.TraceScope;
+import org.apache.phoenix.cache.GlobalCache;
 import org.apache.phoenix.compile.ScanRanges;
 import org.apache.phoenix.coprocessor.DelegateRegionCoprocessorEnvironment;
 import org.apache.phoenix.coprocessor.generated.IndexMutationsProtos;
@@ -231,6 +239,34 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     "phoenix.index.cdc.mutation.serialize";
   public static final boolean DEFAULT_PHOENIX_INDEX_CDC_MUTATION_SERIALIZE = false;
 
+  /**
+   * The max heap size in bytes of the region level cache of recently committed data row states.
+   * When a batch updates a row whose state is cached, the current row state is taken from the
+   * cache instead of being read from disk. Zero disables the cache. The cache is not used for
+   * tables with a column family TTL or a conditional TTL since rows of these tables can expire
+   * without being mutated.
+   */
+  public static final String PHOENIX_INDEX_ROW_STATE_CACHE_MAX_SIZE_BYTES =
+    "phoenix.index.row.state.cache.max.size.bytes";
+  public static final long DEFAULT_PHOENIX_INDEX_ROW_STATE_CACHE_MAX_SIZE_BYTES = 0;
+  public static final String PHOENIX_INDEX_ROW_STATE_CACHE_EXPIRY_MS =
+    "phoenix.index.row.state.cache.expiry.ms";
+  public static final long DEFAULT_PHOENIX_INDEX_ROW_STATE_CACHE_EXPIRY_MS = 30000;
+
+  /**
+   * Whether to coalesce the index row verification writes of concurrent batches updating the same
+   * data rows. When enabled, a batch skips the verification of the index rows of the data rows that
+   * have already been updated by a later pending batch, since the later batch either verifies or
+   * deletes these index rows in its own post phase. The skipped verification puts are handed over
+   * to the later batch, which writes them if it fails. This only reduces the index writes of hot
+   * rows. A batch still waits for the earlier batches on its rows and is still failed for retry
+   * when they do not complete in time.
+   */
+  public static final String PHOENIX_INDEX_CONCURRENT_VERIFICATION_COALESCE_ENABLED =
+    "phoenix.index.concurrent.verification.coalesce.enabled";
+  public static final boolean DEFAULT_PHOENIX_INDEX_CONCURRENT_VERIFICATION_COALESCE_ENABLED =
+    false;
+
   /**
    * Class to represent pending data table rows
    */
@@ -273,6 +309,12 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
       return count;
     }
 
+    public BatchMutateContext getLastContext() {
+      synchronized (this) {
+        return lastContext;
+      }
+    }
+
   }
 
   private static boolean ignoreIndexRebuildForTesting = false;
@@ -333,6 +375,12 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     // The empty column (i.e. the verified column) will have the value true ("verified")
     // on the put mutations.
     private ListMultimap<HTableInterfaceReference, Mutation> postIndexUpdates;
+    // The data table row keys of the index row verification puts in postIndexUpdates. This is
+    // only populated when the index updates of concurrent batches are coalesced.
+    private Map<Mutation, ImmutableBytesPtr> verifiedIndexPutRows;
+    // The index row verification puts that earlier concurrent batches skipped because this batch
+    // updates the same data rows. This batch writes them if it fails.
+    private ListMultimap<HTableInterfaceReference, Mutation> handedOverIndexUpdates;
     // The collection of candidate index mutations that will be applied after the data table
     // mutations.
     private ListMultimap<HTableInterfaceReference, Pair<Mutation, byte[]>> indexUpdates;
@@ -380,6 +428,8 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     private boolean returnOldRow;
     private boolean hasConditionalTTL; // table has Conditional TTL
     private boolean immutableRows;
+    // true if the current states of the rows of this batch have been retrieved
+    private boolean rowStatesRetrieved;
 
     public BatchMutateContext() {
       this.clientVersion = 0;
@@ -439,6 +489,37 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     public int getMaxPendingRowCount() {
       return maxPendingRowCount;
     }
+
+    /**
+     * Hands over the index row verification puts of an earlier batch to this batch
+     * @return false if this batch has failed, in which case the earlier batch has to write them
+     */
+    boolean handOverIndexUpdates(ListMultimap<HTableInterfaceReference, Mutation> updates) {
+      synchronized (this) {
+        if (currentPhase == BatchMutatePhase.FAILED) {
+          return false;
+        }
+        if (handedOverIndexUpdates == null) {
+          handedOverIndexUpdates = ArrayListMultimap.create();
+        }
+        handedOverIndexUpdates.putAll(updates);
+        return true;
+      }
+    }
+
+    /**
+     * Marks this batch as failed
+     * @return the index row verification puts handed over to this batch, which nobody else will
+     *         write now, or null
+     */
+    ListMultimap<HTableInterfaceReference, Mutation> fail() {
+      synchronized (this) {
+        currentPhase = BatchMutatePhase.FAILED;
+        ListMultimap<HTableInterfaceReference, Mutation> updates = handedOverIndexUpdates;
+        handedOverIndexUpdates = null;
+        return updates;
+      }
+    }
   }
 
   private ThreadLocal<BatchMutateContext> batchMutateContext =
@@ -486,6 +567,9 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
   private boolean serializeCDCMutations = DEFAULT_PHOENIX_INDEX_CDC_MUTATION_SERIALIZE;
   private boolean isNamespaceEnabled = false;
   private boolean useBloomFilter = false;
+  private DataRowStateCache rowStateCache;
+  private boolean coalesceIndexVerifications =
+    DEFAULT_PHOENIX_INDEX_CONCURRENT_VERIFICATION_COALESCE_ENABLED;
   private long lastTimestamp = 0;
   private List<Set<ImmutableBytesPtr>> batchesWithLastTimestamp = new ArrayList<>();
   private IndexCDCConsumer indexCDCConsumer;
@@ -553,6 +637,18 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
       BloomType bloomFilterType = tableDescriptor.getColumnFamilies()[0].getBloomFilterType();
       // when the table descriptor changes, the coproc is reloaded
       this.useBloomFilter = bloomFilterType == BloomType.ROW;
+      long rowStateCacheMaxSize =
+        env.getConfiguration().getLong(PHOENIX_INDEX_ROW_STATE_CACHE_MAX_SIZE_BYTES,
+          DEFAULT_PHOENIX_INDEX_ROW_STATE_CACHE_MAX_SIZE_BYTES);
+      this.coalesceIndexVerifications =
+        env.getConfiguration().getBoolean(PHOENIX_INDEX_CONCURRENT_VERIFICATION_COALESCE_ENABLED,
+          DEFAULT_PHOENIX_INDEX_CONCURRENT_VERIFICATION_COALESCE_ENABLED);
+      if (rowStateCacheMaxSize > 0 && !hasColumnFamilyTTL(tableDescriptor)) {
+        this.rowStateCache = new DataRowStateCache(rowStateCacheMaxSize,
+          env.getConfiguration().getLong(PHOENIX_INDEX_ROW_STATE_CACHE_EXPIRY_MS,
+            DEFAULT_PHOENIX_INDEX_ROW_STATE_CACHE_EXPIRY_MS),
+          GlobalCache.getInstance(env).getMemoryManager());
+      }
       if (
         this.indexCDCConsumerEnabled && !this.dataTableName.startsWith("SYSTEM.")
           && !this.dataTableName.startsWith("SYSTEM:")
@@ -567,6 +663,15 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     }
   }
 
+  private static boolean hasColumnFamilyTTL(TableDescriptor tableDescriptor) {
+    for (ColumnFamilyDescriptor family : tableDescriptor.getColumnFamilies()) {
+      if (family.getTimeToLive() != HConstants.FOREVER) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Extracts the slow call threshold values from the configuration.
    */
@@ -600,6 +705,39 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     if (this.indexCDCConsumer != null) {
       this.indexCDCConsumer.stop();
     }
+    if (this.rowStateCache != null) {
+      this.rowStateCache.close();
+    }
+  }
+
+  @Override
+  public void postBulkLoadHFile(ObserverContext<RegionCoprocessorEnvironment> ctx,
+    List<Pair<byte[], String>> stagingFamilyPaths, Map<byte[], List<Path>> finalPaths)
+    throws IOException {
+    // Bulk loaded rows bypass the batch mutate path and so the cached row states
+    if (this.rowStateCache != null) {
+      this.rowStateCache.invalidateAll();
+    }
+  }
+
+  @Override
+  public void postCompact(ObserverContext<RegionCoprocessorEnvironment> c, Store store,
+    StoreFile resultFile, CompactionLifeCycleTracker tracker, CompactionRequest request)
+    throws IOException {
+    // Only compactions of all the store files purge deleted and expired rows (e.g., for Phoenix
+    // level TTL). The cache is not used for tables with a column family TTL, so other compactions
+    // cannot change the latest state of a cached row
+    if (this.rowStateCache != null && (request.isMajor() || request.isAllFiles())) {
+      this.rowStateCache.invalidateAll();
+    }
+  }
+
+  /**
+   * Returns the cache of the data row states recently committed in the region, or null if the
+   * cache is not used for the region. Exposed for tests.
+   */
+  public DataRowStateCache getRowStateCache() {
+    return rowStateCache;
   }
 
   /**
@@ -1164,15 +1302,22 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
    */
   private void getCurrentRowStates(ObserverContext<RegionCoprocessorEnvironment> c,
     BatchMutateContext context) throws IOException {
+    context.rowStatesRetrieved = true;
     Set<KeyRange> keys = new HashSet<KeyRange>(context.rowsToLock.size());
+    long cacheHits = 0;
     for (ImmutableBytesPtr rowKeyPtr : context.rowsToLock) {
       PendingRow pendingRow = new PendingRow(rowKeyPtr, context);
       // Add the data table rows in the mini batch to the per region collection of pending
       // rows. This will be used to detect concurrent updates
       PendingRow existingPendingRow = pendingRows.putIfAbsent(rowKeyPtr, pendingRow);
       if (existingPendingRow == null) {
-        // There was no pending row for this row key. We need to retrieve this row from disk
-        keys.add(PVarbinary.INSTANCE.getKeyRange(rowKeyPtr.get(), SortOrder.ASC));
+        // There was no pending row for this row key. We need to retrieve this row from the
+        // row state cache or disk
+        if (getCachedRowState(rowKeyPtr, context)) {
+          cacheHits++;
+        } else {
+          keys.add(PVarbinary.INSTANCE.getKeyRange(rowKeyPtr.get(), SortOrder.ASC));
+        }
       } else {
         // There is a pending row for this row key. We need to retrieve the row from memory
         BatchMutateContext lastContext = existingPendingRow.addAndGetPrevCtx(context);
@@ -1204,10 +1349,22 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
           // The existing pending row is removed from the map. That means there is no
           // pending row for this row key anymore. We need to add the new one to the map
           pendingRows.put(rowKeyPtr, pendingRow);
-          keys.add(PVarbinary.INSTANCE.getKeyRange(rowKeyPtr.get(), SortOrder.ASC));
+          if (getCachedRowState(rowKeyPtr, context)) {
+            cacheHits++;
+          } else {
+            keys.add(PVarbinary.INSTANCE.getKeyRange(rowKeyPtr.get(), SortOrder.ASC));
+          }
         }
       }
     }
+    if (rowStateCache != null) {
+      if (cacheHits > 0) {
+        metricSource.incrementRowStateCacheHits(dataTableName, cacheHits);
+      }
+      if (!keys.isEmpty()) {
+        metricSource.incrementRowStateCacheMisses(dataTableName, keys.size());
+      }
+    }
     if (keys.isEmpty()) {
       return;
     }
@@ -1232,6 +1389,58 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     }
   }
 
+  /**
+   * Retrieves the current state of the given row from the row state cache.
+   * @return true if the row state is found in the cache
+   */
+  private boolean getCachedRowState(ImmutableBytesPtr rowKeyPtr, BatchMutateContext context)
+    throws IOException {
+    if (rowStateCache == null) {
+      return false;
+    }
+    Put put = rowStateCache.get(rowKeyPtr);
+    if (put == null) {
+      return false;
+    }
+    context.dataRowStates.put(rowKeyPtr, new Pair<>(put, new Put(put)));
+    return true;
+  }
+
+  /**
+   * Updates the row state cache with the next states of the rows of a completed batch. The rows are
+   * still locked by the batch when this is called. The next state of a row is cached only if it was
+   * prepared from the current state of the row and no later batch is pending on the row. The cached
+   * states of all the other rows of the batch are invalidated.
+   */
+  private void updateRowStateCache(MiniBatchOperationInProgress<Mutation> miniBatchOp,
+    BatchMutateContext context, boolean success) throws IOException {
+    if (rowStateCache == null) {
+      return;
+    }
+    boolean cacheable = success && context != null && context.rowStatesRetrieved
+      && !context.hasConditionalTTL
+      && (context.hasGlobalIndex || context.hasUncoveredIndex || context.hasTransform);
+    Set<ImmutableBytesPtr> cachedRows = null;
+    if (cacheable) {
+      cachedRows = new HashSet<>(context.rowsToLock.size());
+      for (ImmutableBytesPtr rowKeyPtr : context.rowsToLock) {
+        Put nextState = context.getNextDataRowState(rowKeyPtr);
+        if (nextState != null && !pendingRows.containsKey(rowKeyPtr)) {
+          rowStateCache.put(rowKeyPtr, nextState);
+          cachedRows.add(rowKeyPtr);
+        } else {
+          rowStateCache.invalidate(rowKeyPtr);
+        }
+      }
+    }
+    for (int i = 0; i < miniBatchOp.size(); i++) {
+      ImmutableBytesPtr rowKeyPtr = new ImmutableBytesPtr(miniBatchOp.getOperation(i).getRow());
+      if (cachedRows == null || !cachedRows.contains(rowKeyPtr)) {
+        rowStateCache.invalidate(rowKeyPtr);
+      }
+    }
+  }
+
   private void readDataTableRows(ObserverContext<RegionCoprocessorEnvironment> c,
     BatchMutateContext context, Scan scan) throws IOException {
     try (RegionScanner scanner = c.getEnvironment().getRegion().getScanner(scan)) {
@@ -1579,6 +1788,9 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
   private void preparePostIndexMutations(BatchMutateContext context, long batchTimestamp,
     PhoenixIndexMetaData indexMetaData) {
     context.postIndexUpdates = ArrayListMultimap.<HTableInterfaceReference, Mutation> create();
+    if (coalesceIndexVerifications) {
+      context.verifiedIndexPutRows = new IdentityHashMap<>();
+    }
     List<IndexMaintainer> maintainers = indexMetaData.getIndexMaintainers();
     for (IndexMaintainer indexMaintainer : maintainers) {
       if (
@@ -1600,6 +1812,10 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
             // Set the status of the index row to "verified"
             verifiedPut.addColumn(emptyCF, emptyCQ, batchTimestamp, QueryConstants.VERIFIED_BYTES);
             context.postIndexUpdates.put(hTableInterfaceReference, verifiedPut);
+            if (context.verifiedIndexPutRows != null) {
+              context.verifiedIndexPutRows.put(verifiedPut,
+                new ImmutableBytesPtr(update.getSecond()));
+            }
           }
         } else {
           context.postIndexUpdates.put(hTableInterfaceReference, m);
@@ -2007,8 +2223,10 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     }
     BatchMutateContext context = getBatchMutateContext(c);
     if (context == null) {
+      updateRowStateCache(miniBatchOp, null, success);
       return;
     }
+    ListMultimap<HTableInterfaceReference, Mutation> handedOverIndexUpdates = null;
     try {
       // We add to pending rows only after we have locked all the rows in the batch
       // If we are in the INIT phase that means we failed to acquire the locks before the
@@ -2016,7 +2234,9 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
       if (context.getCurrentPhase() != BatchMutatePhase.INIT) {
         removePendingRows(context);
       }
+      updateRowStateCache(miniBatchOp, context, success);
       if (success) {
+        coalesceSupersededIndexUpdates(context);
         context.currentPhase = BatchMutatePhase.POST;
         if ((context.hasAtomic || context.returnResult) && miniBatchOp.size() == 1) {
           if (!isAtomicOperationComplete(miniBatchOp.getOperationStatus(0))) {
@@ -2040,7 +2260,7 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
           }
         }
       } else {
-        context.currentPhase = BatchMutatePhase.FAILED;
+        handedOverIndexUpdates = context.fail();
       }
       context.countDownAllLatches();
       if (context.indexUpdates != null) {
@@ -2052,6 +2272,10 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
       if (success) { // The pre-index and data table updates are successful, and now, do post index
                      // updates
         doPost(c, context);
+      } else if (handedOverIndexUpdates != null) {
+        // The data rows keep the states written by the earlier batches, so their index rows are
+        // verified as they would have been without coalescing
+        writeHandedOverIndexUpdates(context, handedOverIndexUpdates);
       }
     } finally {
       removeBatchMutateContext(c);
@@ -2137,6 +2361,21 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     }
   }
 
+  private void writeHandedOverIndexUpdates(BatchMutateContext context,
+    ListMultimap<HTableInterfaceReference, Mutation> updates) {
+    long start = EnvironmentEdgeManager.currentTimeMillis();
+    try {
+      postWriter.write(updates, false, context.clientVersion);
+      metricSource.updatePostIndexUpdateTime(dataTableName,
+        EnvironmentEdgeManager.currentTimeMillis() - start);
+    } catch (Throwable e) {
+      metricSource.updatePostIndexUpdateFailureTime(dataTableName,
+        EnvironmentEdgeManager.currentTimeMillis() - start);
+      metricSource.incrementPostIndexUpdateFailures(dataTableName);
+      // The index rows stay unverified and are repaired on read
+    }
+  }
+
   private void doIndexWritesWithExceptions(BatchMutateContext context, boolean post)
     throws IOException {
     ListMultimap<HTableInterfaceReference, Mutation> indexUpdates =
@@ -2164,6 +2403,64 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     }
   }
 
+  /**
+   * Hands over the index row verification puts of the data rows that have been updated by a later
+   * concurrent batch to that batch, since the later batch will either verify or delete these index
+   * rows, or write the puts if it fails. The puts stay in this batch if the later batch has already
+   * failed. The rows are locked by the caller.
+   */
+  private void coalesceSupersededIndexUpdates(BatchMutateContext context) {
+    if (context.verifiedIndexPutRows == null || context.verifiedIndexPutRows.isEmpty()) {
+      return;
+    }
+    Map<ImmutableBytesPtr, BatchMutateContext> laterContexts = null;
+    for (ImmutableBytesPtr rowKey : context.rowsToLock) {
+      PendingRow pendingRow = pendingRows.get(rowKey);
+      if (pendingRow == null) {
+        continue;
+      }
+      BatchMutateContext lastContext = pendingRow.getLastContext();
+      if (lastContext != context) {
+        if (laterContexts == null) {
+          laterContexts = new HashMap<>();
+        }
+        laterContexts.put(rowKey, lastContext);
+      }
+    }
+    if (laterContexts == null) {
+      return;
+    }
+    Map<BatchMutateContext, ListMultimap<HTableInterfaceReference, Mutation>> handOvers =
+      new IdentityHashMap<>();
+    for (Map.Entry<HTableInterfaceReference, Mutation> entry : context.postIndexUpdates
+      .entries()) {
+      ImmutableBytesPtr dataRowKey = context.verifiedIndexPutRows.get(entry.getValue());
+      BatchMutateContext laterContext = dataRowKey == null ? null : laterContexts.get(dataRowKey);
+      if (laterContext != null) {
+        handOvers.computeIfAbsent(laterContext, k -> ArrayListMultimap.create())
+          .put(entry.getKey(), entry.getValue());
+      }
+    }
+    Set<Mutation> handedOver = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (BatchMutateContext laterContext : handOvers.keySet()) {
+      ListMultimap<HTableInterfaceReference, Mutation> updates = handOvers.get(laterContext);
+      if (laterContext.handOverIndexUpdates(updates)) {
+        handedOver.addAll(updates.values());
+      }
+    }
+    if (handedOver.isEmpty()) {
+      return;
+    }
+    Iterator<Map.Entry<HTableInterfaceReference, Mutation>> iterator =
+      context.postIndexUpdates.entries().iterator();
+    while (iterator.hasNext()) {
+      if (handedOver.contains(iterator.next().getValue())) {
+        iterator.remove();
+      }
+    }
+    metricSource.incrementCoalescedIndexVerifications(dataTableName, handedOver.size());
+  }
+
   private void removePendingRows(BatchMutateContext context) {
     for (ImmutableBytesPtr rowKey : context.rowsToLock) {
       PendingRow pendingRow = pendingRows.get(rowKey);
@@ -17,6 +17,9 @@
  */
 package org.apache.phoenix.index;
 
+import static org.apache.phoenix.coprocessor.GlobalIndexRegionScanner.DEFAULT_CONCURRENT_INDEX_VERIFY_THREADS;
+import static org.apache.phoenix.coprocessor.GlobalIndexRegionScanner.NUM_CONCURRENT_INDEX_VERIFY_THREADS_CONF_KEY;
+import static org.apache.phoenix.hbase.index.write.AbstractParallelWriterIndexCommitter.INDEX_WRITER_KEEP_ALIVE_TIME_CONF_KEY;
 import static org.apache.phoenix.index.IndexMaintainer.getIndexMaintainer;
 import static org.apache.phoenix.query.QueryConstants.UNVERIFIED_BYTES;
 import static org.apache.phoenix.query.QueryConstants.VERIFIED_BYTES;
@@ -26,11 +29,19 @@ import static org.apache.phoenix.util.ScanUtil.getPageSizeMsForRegionScanner;
 import static org.apache.phoenix.util.ScanUtil.isDummy;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
@@ -55,6 +66,7 @@ import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.regionserver.ScannerContext;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.compat.hbase.CompatScanMetrics;
 import org.apache.phoenix.coprocessor.BaseRegionScanner;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
@@ -66,6 +78,8 @@ import org.apache.phoenix.filter.UnverifiedRowFilter;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.hbase.index.metrics.GlobalIndexCheckerSource;
 import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSourceFactory;
+import org.apache.phoenix.hbase.index.parallel.ThreadPoolBuilder;
+import org.apache.phoenix.hbase.index.parallel.ThreadPoolManager;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.SortOrder;
@@ -99,6 +113,12 @@ import org.slf4j.LoggerFactory;
  * unverified index row updates) complete but the second phase updates (i.e., data table row
  * updates) fail. There could be back to back such events so we need to scan older versions to
  * retrieve the verified version that is masked by the unverified version(s).
+ * <p>
+ * If {@link QueryServices#GLOBAL_INDEX_REPAIR_BATCH_SIZE_ATTRIB} is greater than one, a window of
+ * consecutive unverified index rows is collected before any of them is repaired. The index rows of
+ * the window are rebuilt from their data rows in parallel, and the scanner is reopened once from
+ * the first row of the window instead of once per row. The rows of the window are then handled as
+ * above when they are scanned again.
  */
 public class GlobalIndexChecker extends BaseScannerRegionObserver implements RegionCoprocessor {
   private static final Logger LOG = LoggerFactory.getLogger(GlobalIndexChecker.class);
@@ -156,6 +176,18 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
     private long pageSizeMs;
     private boolean initialized = false;
     private boolean isScanMetricsEnabled = false;
+    private byte[] dataTableName;
+    private int repairBatchSize;
+    // Keys and timestamps of the consecutive unverified rows to be repaired together
+    private final List<byte[]> unverifiedRowKeys = new ArrayList<>();
+    private final List<Long> unverifiedRowTimestamps = new ArrayList<>();
+    // Rebuild return codes of the rows of the last repaired batch, until the scan moves past them
+    private final TreeMap<byte[], Long> repairedRows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    // Shared by all scanners of the region server, so it is never shut down by a scanner
+    private ExecutorService repairPool;
+    // Repairs of this scanner that are running, waited for when the scanner is closed
+    private volatile List<Future<Pair<Long, ScanMetrics>>> pendingRepairs =
+      Collections.emptyList();
 
     public GlobalIndexScanner(RegionCoprocessorEnvironment env, Scan scan, RegionScanner scanner,
       GlobalIndexCheckerSource metricsSource) throws IOException {
@@ -189,6 +221,9 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
       pageSizeMs = getPageSizeMsForRegionScanner(scan);
       isScanMetricsEnabled =
         scan.isScanMetricsEnabled() && CompatScanMetrics.supportsFineGrainedReadMetrics();
+      repairBatchSize = env.getConfiguration().getInt(
+        QueryServices.GLOBAL_INDEX_REPAIR_BATCH_SIZE_ATTRIB,
+        QueryServicesOptions.DEFAULT_GLOBAL_INDEX_REPAIR_BATCH_SIZE);
     }
 
     @Override
@@ -255,12 +290,41 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
               : scanner.next(result, scannerContext);
           }
           if (result.isEmpty()) {
+            if (!unverifiedRowKeys.isEmpty()) {
+              repairUnverifiedRows();
+              continue;
+            }
             return hasMore;
           }
           if (isDummy(result)) {
+            if (!unverifiedRowKeys.isEmpty()) {
+              // The rows of the batch have to be returned before moving past them
+              result.clear();
+              repairUnverifiedRows();
+              continue;
+            }
             return true;
           }
           Cell cell = result.get(0);
+          if (repairBatchSize > 1) {
+            if (addToRepairBatch(result)) {
+              if (
+                unverifiedRowKeys.size() < repairBatchSize && hasMore
+                  && !PhoenixScannerContext.isTimedOut(scannerContext, pageSizeMs)
+                  && !PhoenixScannerContext.isReturnImmediately(scannerContext)
+              ) {
+                continue;
+              }
+              repairUnverifiedRows();
+              continue;
+            }
+            if (!unverifiedRowKeys.isEmpty()) {
+              // The rows of the batch come before this row, which is scanned again after them
+              result.clear();
+              repairUnverifiedRows();
+              continue;
+            }
+          }
           if (verifyRowAndRepairIfNecessary(result)) {
             break;
           }
@@ -309,12 +373,59 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
 
     @Override
     public void close() throws IOException {
-      scanner.close();
-      if (dataHTable != null) {
-        dataHTable.close();
+      try {
+        waitForRepairs(pendingRepairs);
+      } catch (IOException e) {
+        // The scan is over, so the failure of a repair no longer matters
+        LOG.debug("Index row repair failed while closing scanner on {}", indexName, e);
+      } finally {
+        scanner.close();
+        if (dataHTable != null) {
+          dataHTable.close();
+        }
       }
     }
 
+    /**
+     * Waits for all the given repairs to finish, even if some of them fail, so that none of them
+     * is left running against tables this scanner is about to close
+     * @return the results of the repairs in the order they were given
+     * @throws IOException the failure of the first repair that failed
+     */
+    private List<Pair<Long, ScanMetrics>>
+      waitForRepairs(List<Future<Pair<Long, ScanMetrics>>> repairs) throws IOException {
+      List<Pair<Long, ScanMetrics>> results = new ArrayList<>(repairs.size());
+      IOException failure = null;
+      boolean interrupted = false;
+      for (Future<Pair<Long, ScanMetrics>> repair : repairs) {
+        while (true) {
+          try {
+            results.add(repair.get());
+            break;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          } catch (ExecutionException e) {
+            if (failure == null) {
+              failure = new IOException("Index row repair failed for table " + indexName,
+                e.getCause());
+            }
+            results.add(null);
+            break;
+          }
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+        if (failure == null) {
+          failure = new InterruptedIOException("Interrupted while repairing index rows");
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return results;
+    }
+
     @Override
     public RegionInfo getRegionInfo() {
       return scanner.getRegionInfo();
@@ -336,7 +447,7 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
       return builder.build();
     }
 
-    private void repairIndexRows(byte[] indexRowKey, long ts, List<Cell> row) throws IOException {
+    private void initRepair() throws IOException {
       if (buildIndexScanForDataTable == null) {
         buildIndexScanForDataTable = new Scan();
         indexScan = new Scan(scan);
@@ -352,7 +463,7 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
         // index updates.
         PackagePrivateFieldAccessor.setMvccReadPoint(indexScan, -1);
         PackagePrivateFieldAccessor.setMvccReadPoint(singleRowIndexScan, -1);
-        byte[] dataTableName =
+        dataTableName =
           scan.getAttribute(BaseScannerRegionObserverConstants.PHYSICAL_DATA_TABLE_NAME);
         dataHTable = ServerUtil.ConnectionFactory
           .getConnection(ServerUtil.ConnectionType.INDEX_WRITER_CONNECTION, env)
@@ -380,6 +491,10 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
         buildIndexScanForDataTable.addColumn(indexMaintainer.getDataEmptyKeyValueCF(),
           indexMaintainer.getEmptyKeyValueQualifierForDataTable());
       }
+    }
+
+    private void repairIndexRows(byte[] indexRowKey, long ts, List<Cell> row) throws IOException {
+      initRepair();
       // Rebuild the index row from the corresponding the row in the the data table
       // Get the data row key from the index row key
       byte[] dataRowKey =
@@ -404,10 +519,7 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
       } catch (Throwable t) {
         ClientUtil.throwIOException(dataHTable.getName().toString(), t);
       }
-      // A single cell will be returned. We decode that here
-      byte[] value = result.value();
-      long code = PLong.INSTANCE.getCodec().decodeLong(new ImmutableBytesWritable(value),
-        SortOrder.getDefault());
+      long code = decodeRebuildReturnCode(result);
       if (code == RebuildReturnCode.NO_DATA_ROW.getValue()) {
         // This means there does not exist a data table row for the data row key derived from
         // this unverified index row. So, no index row has been built
@@ -537,6 +649,136 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
           + region.getRegionInfo().getTable().getNameAsString());
     }
 
+    private long decodeRebuildReturnCode(Result result) {
+      // A single cell will be returned. We decode that here
+      byte[] value = result.value();
+      return PLong.INSTANCE.getCodec().decodeLong(new ImmutableBytesWritable(value),
+        SortOrder.getDefault());
+    }
+
+    /**
+     * Adds the given row to the batch of rows to be repaired together if it is unverified and it
+     * is not a row of the last repaired batch, in which case the given list is cleared
+     * @return true if the row has been added to the batch
+     */
+    private boolean addToRepairBatch(List<Cell> cellList) throws IOException {
+      Cell cell = cellList.get(0);
+      if (
+        !repairedRows.isEmpty() && Bytes.compareTo(cell.getRowArray(), cell.getRowOffset(),
+          cell.getRowLength(), repairedRows.lastKey(), 0, repairedRows.lastKey().length) > 0
+      ) {
+        repairedRows.clear();
+      }
+      if (!repairedRows.isEmpty() || verifyRowAndRemoveEmptyColumn(cellList)) {
+        return false;
+      }
+      metricsSource.incrementIndexInspections(indexName);
+      unverifiedRowKeys.add(CellUtil.cloneRow(cell));
+      unverifiedRowTimestamps.add(getMaxTimestamp(cellList));
+      cellList.clear();
+      return true;
+    }
+
+    /**
+     * Rebuilds the index rows of the current batch from their data rows in parallel and reopens the
+     * scanner from the first row of the batch so that the rebuilt rows are scanned
+     */
+    private void repairUnverifiedRows() throws IOException {
+      long repairStart = EnvironmentEdgeManager.currentTimeMillis();
+      int size = unverifiedRowKeys.size();
+      initRepair();
+      if (repairPool == null) {
+        repairPool =
+          ThreadPoolManager.getExecutor(new ThreadPoolBuilder("IndexVerify", env.getConfiguration())
+            .setMaxThread(NUM_CONCURRENT_INDEX_VERIFY_THREADS_CONF_KEY,
+              DEFAULT_CONCURRENT_INDEX_VERIFY_THREADS)
+            .setCoreTimeout(INDEX_WRITER_KEEP_ALIVE_TIME_CONF_KEY), env);
+      }
+      List<Future<Pair<Long, ScanMetrics>>> repairs = new ArrayList<>(size);
+      for (byte[] indexRowKey : unverifiedRowKeys) {
+        final Scan dataScan = new Scan(buildIndexScanForDataTable);
+        byte[] dataRowKey =
+          indexMaintainer.buildDataRowKey(new ImmutableBytesWritable(indexRowKey), viewConstants);
+        dataScan.withStartRow(dataRowKey, true);
+        dataScan.withStopRow(dataRowKey, true);
+        dataScan.setTimeRange(0, maxTimestamp);
+        dataScan.setAttribute(BaseScannerRegionObserverConstants.INDEX_ROW_KEY, indexRowKey);
+        dataScan.setScanMetricsEnabled(isScanMetricsEnabled);
+        repairs.add(repairPool.submit(new Callable<Pair<Long, ScanMetrics>>() {
+          @Override
+          public Pair<Long, ScanMetrics> call() throws Exception {
+            return rebuildIndexRow(dataScan);
+          }
+        }));
+      }
+      pendingRepairs = repairs;
+      List<Pair<Long, ScanMetrics>> results;
+      try {
+        results = waitForRepairs(repairs);
+      } catch (IOException e) {
+        long repairTime = EnvironmentEdgeManager.currentTimeMillis() - repairStart;
+        metricsSource.incrementIndexRepairFailures(indexName);
+        metricsSource.updateIndexRepairFailureTime(indexName, repairTime);
+        if (shouldLog()) {
+          LOG.warn("Index row repair failure on region {} for {} rows took {} ms.",
+            env.getRegionInfo().getRegionNameAsString(), size, repairTime);
+        }
+        throw e;
+      } finally {
+        pendingRepairs = Collections.emptyList();
+      }
+      for (int i = 0; i < size; i++) {
+        byte[] indexRowKey = unverifiedRowKeys.get(i);
+        long ts = unverifiedRowTimestamps.get(i);
+        long code = results.get(i).getFirst();
+        if (isScanMetricsEnabled) {
+          buildDataTableScanMetrics(results.get(i).getSecond())
+            .populateThreadLocalServerSideScanMetrics();
+        }
+        if (
+          code != RebuildReturnCode.INDEX_ROW_EXISTS.getValue()
+            && indexMaintainer.isAgedEnough(ts, ageThreshold)
+        ) {
+          region.delete(indexMaintainer.createDelete(indexRowKey, ts, false));
+        }
+        repairedRows.put(indexRowKey, code);
+        metricsSource.incrementIndexRepairs(indexName);
+        metricsSource.updateUnverifiedIndexRowAge(indexName,
+          EnvironmentEdgeManager.currentTimeMillis() - ts);
+      }
+      // The rebuilt rows are not visible to the current scanner
+      scanner.close();
+      indexScan.withStartRow(unverifiedRowKeys.get(0), true);
+      scanner = ((DelegateRegionScanner) delegate).getNewRegionScanner(indexScan);
+      hasMore = true;
+      unverifiedRowKeys.clear();
+      unverifiedRowTimestamps.clear();
+      long repairTime = EnvironmentEdgeManager.currentTimeMillis() - repairStart;
+      metricsSource.incrementIndexRepairBatches(indexName);
+      metricsSource.updateIndexRepairBatchSize(indexName, size);
+      metricsSource.updateIndexRepairTime(indexName, repairTime);
+      if (shouldLog()) {
+        LOG.info("Index row repair on region {} for {} rows took {} ms.",
+          env.getRegionInfo().getRegionNameAsString(), size, repairTime);
+      }
+    }
+
+    private Pair<Long, ScanMetrics> rebuildIndexRow(Scan dataScan) throws IOException {
+      Result result = null;
+      ScanMetrics scanMetrics = null;
+      try (
+        Table table = ServerUtil.ConnectionFactory
+          .getConnection(ServerUtil.ConnectionType.INDEX_WRITER_CONNECTION, env)
+          .getTable(TableName.valueOf(dataTableName));
+        ResultScanner resultScanner = table.getScanner(dataScan)) {
+        result = resultScanner.next();
+        scanMetrics = resultScanner.getScanMetrics();
+      } catch (Throwable t) {
+        ClientUtil.throwIOException(Bytes.toString(dataTableName), t);
+      }
+      return new Pair<>(decodeRebuildReturnCode(result), scanMetrics);
+    }
+
     private boolean isEmptyColumn(Cell cell) {
       return Bytes.compareTo(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength(),
         emptyCF, 0, emptyCF.length) == 0
@@ -611,6 +853,14 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
         long repairStart = EnvironmentEdgeManager.currentTimeMillis();
 
         byte[] rowKey = CellUtil.cloneRow(cell);
+        Long repairedCode = repairedRows.get(rowKey);
+        if (
+          repairedCode != null && repairedCode != RebuildReturnCode.INDEX_ROW_EXISTS.getValue()
+        ) {
+          // The row has been repaired with its batch and there is no index row to return for it
+          cellList.clear();
+          return false;
+        }
         long ts = getMaxTimestamp(cellList);
         cellList.clear();
         long repairTime;
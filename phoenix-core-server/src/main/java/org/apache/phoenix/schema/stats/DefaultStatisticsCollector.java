@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.client.Get;
@@ -38,11 +39,13 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.coprocessorclient.MetaDataProtocol;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PName;
@@ -86,12 +89,20 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
   private final boolean isViewIndexTable;
   private final Region region;
   private final Configuration configuration;
+  private final boolean collectColumnStats;
+  private final int columnHistogramBuckets;
 
   public DefaultStatisticsCollector(Configuration configuration, Region region, String tableName,
     byte[] family, byte[] gp_width_bytes, byte[] gp_per_region_bytes, StatisticsWriter statsWriter,
     Table htable) {
     this.configuration = configuration;
     this.region = region;
+    this.collectColumnStats = configuration.getBoolean(
+      QueryServices.STATS_COLUMN_STATS_ENABLED_ATTRIB,
+      QueryServicesOptions.DEFAULT_STATS_COLUMN_STATS_ENABLED);
+    this.columnHistogramBuckets =
+      configuration.getInt(QueryServices.STATS_COLUMN_HISTOGRAM_BUCKETS_ATTRIB,
+        QueryServicesOptions.DEFAULT_STATS_COLUMN_HISTOGRAM_BUCKETS);
     this.guidePostWidthBytes = gp_width_bytes;
     this.guidePostPerRegionBytes = gp_per_region_bytes;
     String pName = tableName;
@@ -321,6 +332,7 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
       currentRow = row;
       incrementRow = true;
     }
+    Cell previousCell = null;
     for (Cell cell : results) {
       maxTimeStamp = Math.max(maxTimeStamp, cell.getTimestamp());
       Pair<Long, GuidePostsInfoBuilder> gps;
@@ -343,6 +355,10 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
           incrementRow = false;
         }
       }
+      if (collectColumnStats) {
+        trackColumnValue(gps.getSecond(), previousCell, cell);
+        previousCell = cell;
+      }
       int kvLength = KeyValueUtil.getSerializedSize(cell, true);
       long byteCount = gps.getFirst() + kvLength;
       gps.setFirst(byteCount);
@@ -357,6 +373,33 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
     }
   }
 
+  /**
+   * Track the value of a non primary key column for the column statistics. Only the latest version
+   * of a column is tracked, as stats are collected over all versions of the cells.
+   */
+  private void trackColumnValue(GuidePostsInfoBuilder builder, Cell previousCell, Cell cell) {
+    if (
+      previousCell != null && CellUtil.matchingFamily(previousCell, cell)
+        && CellUtil.matchingQualifier(previousCell, cell)
+    ) {
+      return;
+    }
+    if (CellUtil.isDelete(cell) || cell.getValueLength() == 0) {
+      return;
+    }
+    if (
+      Bytes.equals(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength(),
+        QueryConstants.EMPTY_COLUMN_BYTES, 0, QueryConstants.EMPTY_COLUMN_BYTES.length)
+        || Bytes.equals(cell.getQualifierArray(), cell.getQualifierOffset(),
+          cell.getQualifierLength(), QueryConstants.ENCODED_EMPTY_COLUMN_BYTES, 0,
+          QueryConstants.ENCODED_EMPTY_COLUMN_BYTES.length)
+    ) {
+      return;
+    }
+    builder.trackColumnValue(new ImmutableBytesPtr(CellUtil.cloneQualifier(cell)),
+      CellUtil.cloneValue(cell), columnHistogramBuckets);
+  }
+
   @Override
   public GuidePostsInfo getGuidePosts(ImmutableBytesPtr fam) {
     Pair<Long, GuidePostsInfoBuilder> pair = guidePostsInfoWriterMap.get(fam);
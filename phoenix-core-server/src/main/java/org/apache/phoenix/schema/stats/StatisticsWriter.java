@@ -177,19 +177,21 @@ public class StatisticsWriter implements Closeable {
       boolean hasGuidePosts = keys.getLength() > 0;
       if (hasGuidePosts) {
         int guidePostCount = 0;
+        Put lastGuidePost = null;
         try (ByteArrayInputStream stream =
           new ByteArrayInputStream(keys.get(), keys.getOffset(), keys.getLength())) {
           DataInput input = new DataInputStream(stream);
           PrefixByteDecoder decoder = new PrefixByteDecoder(gps.getMaxLength());
           do {
             ImmutableBytesWritable ptr = decoder.decode(input);
-            addGuidepost(cfKey, mutations, ptr, byteCounts[guidePostCount],
+            lastGuidePost = addGuidepost(cfKey, mutations, ptr, byteCounts[guidePostCount],
               rowCounts[guidePostCount], timeStamp);
             guidePostCount++;
           } while (decoder != null);
         } catch (EOFException e) { // Ignore as this signifies we're done
 
         }
+        addColumnStats(lastGuidePost, gps, timeStamp);
         // If we've written guideposts with a guidepost key, then delete the
         // empty guidepost indicator that may have been written by other
         // regions.
@@ -207,14 +209,31 @@ public class StatisticsWriter implements Closeable {
          * StatisticsUtil#readStatistics(HTableInterface statsHTable, GuidePostsKey key, long
          * clientTimeStamp).
          */
-        addGuidepost(cfKey, mutations, ByteUtil.EMPTY_IMMUTABLE_BYTE_ARRAY, guidePostDepth, 0,
-          timeStamp);
+        Put emptyGuidePost = addGuidepost(cfKey, mutations, ByteUtil.EMPTY_IMMUTABLE_BYTE_ARRAY,
+          guidePostDepth, 0, timeStamp);
+        addColumnStats(emptyGuidePost, gps, timeStamp);
       }
     }
   }
 
+  /**
+   * The column statistics of a region are stored with its last guidepost, so that they are
+   * deleted along with the guideposts of the region. A region without guideposts shares the empty
+   * guidepost with the other regions, in which case only the statistics of the last region written
+   * are kept.
+   */
+  private static void addColumnStats(Put guidePost, GuidePostsInfo gps, long timeStamp)
+    throws IOException {
+    if (guidePost == null || gps.getColumnStatistics().isEmpty()) {
+      return;
+    }
+    guidePost.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+      PhoenixDatabaseMetaData.COLUMN_STATS_BYTES, timeStamp,
+      ColumnStatistics.toBytes(gps.getColumnStatistics()));
+  }
+
   @SuppressWarnings("deprecation")
-  private void addGuidepost(ImmutableBytesPtr cfKey, List<Mutation> mutations,
+  private Put addGuidepost(ImmutableBytesPtr cfKey, List<Mutation> mutations,
     ImmutableBytesWritable ptr, long byteCount, long rowCount, long timeStamp) {
     byte[] prefix = StatisticsUtil.getRowKey(tableName, cfKey, ptr);
     Put put = new Put(prefix);
@@ -228,6 +247,7 @@ public class StatisticsWriter implements Closeable {
     put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, QueryConstants.EMPTY_COLUMN_BYTES,
       timeStamp, ByteUtil.EMPTY_BYTE_ARRAY);
     mutations.add(put);
+    return put;
   }
 
   private static MutationType getMutationType(Mutation m) throws IOException {
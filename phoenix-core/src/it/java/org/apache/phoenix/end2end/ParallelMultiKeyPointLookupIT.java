@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.query.QueryServices.USE_BLOOMFILTER_FOR_MULTIKEY_POINTLOOKUP;
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.phoenix.coprocessor.PhoenixRegionServerEndpoint;
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests multi-key point lookups run in batches on the region server point lookup thread pool
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class ParallelMultiKeyPointLookupIT extends ParallelStatsDisabledIT {
+  private static final int ROW_COUNT = 500;
+  private static final Random RAND = new Random(7);
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(3);
+    props.put(QueryServices.PHOENIX_MULTIKEY_POINTLOOKUP_MAX_POOL_SIZE, Integer.toString(4));
+    props.put(QueryServices.PHOENIX_MULTIKEY_POINTLOOKUP_BATCH_SIZE, Integer.toString(8));
+    props.put(QueryServices.COLLECT_REQUEST_LEVEL_METRICS, String.valueOf(true));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private String createTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement()
+      .execute(String.format("CREATE TABLE %s (k1 VARCHAR NOT NULL, k2 INTEGER NOT NULL, "
+        + "v1 INTEGER CONSTRAINT pk PRIMARY KEY (k1, k2)) BLOOMFILTER='ROW', \"%s\" = true",
+        tableName, USE_BLOOMFILTER_FOR_MULTIKEY_POINTLOOKUP));
+    PreparedStatement ps = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES(?, ?, ?)");
+    for (int i = 0; i < ROW_COUNT; i++) {
+      ps.setString(1, "k_" + i % 5);
+      ps.setInt(2, i);
+      ps.setInt(3, i % 3);
+      ps.executeUpdate();
+      if (i % 100 == 0) {
+        conn.commit();
+      }
+    }
+    conn.commit();
+    return tableName;
+  }
+
+  /**
+   * Looks up keyCount keys in a random order, about half of them missing, and checks that the rows
+   * with v1 in the given values come back in row key order
+   */
+  private ResultSet lookup(Connection conn, String tableName, int keyCount, List<String> expected,
+    Integer... v1Values) throws Exception {
+    List<Integer> keys = new ArrayList<>();
+    for (int i = 0; i < keyCount; i++) {
+      keys.add(i);
+    }
+    Collections.shuffle(keys, RAND);
+    List<String> inList =
+      Stream.generate(() -> "(?, ?)").limit(keyCount).collect(Collectors.toList());
+    String query = String.format("SELECT k1, k2 FROM %s WHERE (k1, k2) IN (%s)", tableName,
+      String.join(",", inList));
+    if (v1Values.length > 0) {
+      query += " AND v1 IN ("
+        + String.join(",", Stream.generate(() -> "?").limit(v1Values.length)
+          .collect(Collectors.toList()))
+        + ")";
+    }
+    PreparedStatement ps = conn.prepareStatement(query);
+    List<String> found = new ArrayList<>();
+    int index = 1;
+    for (int key : keys) {
+      ps.setString(index++, "k_" + key % 5);
+      if (key % 2 == 0) {
+        ps.setInt(index++, key);
+        if (v1Values.length == 0 || Stream.of(v1Values).anyMatch(v -> v == key % 3)) {
+          found.add("k_" + key % 5 + "," + key);
+        }
+      } else {
+        // a key that is not in the table
+        ps.setInt(index++, key + ROW_COUNT);
+      }
+    }
+    for (Integer v1 : v1Values) {
+      ps.setInt(index++, v1);
+    }
+    // Row key order is k1 first, then k2
+    found.sort((a, b) -> {
+      String[] x = a.split(",");
+      String[] y = b.split(",");
+      int cmp = x[0].compareTo(y[0]);
+      return cmp != 0 ? cmp : Integer.compare(Integer.parseInt(x[1]), Integer.parseInt(y[1]));
+    });
+    expected.addAll(found);
+    return ps.executeQuery();
+  }
+
+  private static List<String> getRows(ResultSet rs) throws Exception {
+    List<String> rows = new ArrayList<>();
+    while (rs.next()) {
+      rows.add(rs.getString(1) + "," + rs.getInt(2));
+    }
+    return rows;
+  }
+
+  private static long getPagedRows(ResultSet rs) throws Exception {
+    long pagedRows = 0;
+    for (Map<MetricType, Long> metrics : PhoenixRuntime.getRequestReadMetricInfo(rs).values()) {
+      Long value = metrics.get(MetricType.PAGED_ROWS_COUNTER);
+      if (value != null) {
+        pagedRows += value;
+      }
+    }
+    return pagedRows;
+  }
+
+  @Test
+  public void testRowsReturnedInRowKeyOrder() throws Exception {
+    assertNotNull(PhoenixRegionServerEndpoint.getMultiKeyPointLookupThreadPool());
+    Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+    try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+      String tableName = createTable(conn);
+      List<String> expected = new ArrayList<>();
+      try (ResultSet rs = lookup(conn, tableName, 200, expected)) {
+        assertEquals(expected, getRows(rs));
+      }
+    }
+  }
+
+  @Test
+  public void testFilterAppliedToEveryLookup() throws Exception {
+    Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+    try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+      String tableName = createTable(conn);
+      List<String> expected = new ArrayList<>();
+      try (ResultSet rs = lookup(conn, tableName, 200, expected, 1, 2)) {
+        List<String> rows = getRows(rs);
+        assertTrue(rows.size() < 100);
+        assertEquals(expected, rows);
+      }
+    }
+  }
+
+  @Test
+  public void testDummyRowsWhenPagesTimeOut() throws Exception {
+    Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+    // Every page times out, so each missing key ends a page with a dummy row, and the next page
+    // starts from the rows already fetched by the batch
+    props.put(QueryServices.PHOENIX_SERVER_PAGE_SIZE_MS, Long.toString(0));
+    try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+      String tableName = createTable(conn);
+      List<String> expected = new ArrayList<>();
+      try (ResultSet rs = lookup(conn, tableName, 200, expected)) {
+        assertEquals(expected, getRows(rs));
+        assertTrue(getPagedRows(rs) > 0);
+      }
+      expected.clear();
+      try (ResultSet rs = lookup(conn, tableName, 200, expected, 0)) {
+        assertEquals(expected, getRows(rs));
+        assertTrue(getPagedRows(rs) > 0);
+      }
+    }
+  }
+}
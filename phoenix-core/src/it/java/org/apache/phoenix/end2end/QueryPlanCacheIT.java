@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_PLAN_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_PLAN_CACHE_MISS_COUNTER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
+import org.apache.phoenix.optimize.QueryPlanCache;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests that the plan chosen for a statement is reused with other bind values and chosen again
+ * after the table was altered
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class QueryPlanCacheIT extends ParallelStatsDisabledIT {
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+    props.put(QueryServices.QUERY_PLAN_CACHE_SIZE_ATTRIB, Integer.toString(100));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private static long hits() {
+    return GLOBAL_QUERY_PLAN_CACHE_HIT_COUNTER.getMetric().getValue();
+  }
+
+  private static long misses() {
+    return GLOBAL_QUERY_PLAN_CACHE_MISS_COUNTER.getMetric().getValue();
+  }
+
+  private static String queryV1(PreparedStatement ps, String v1, String expectedTable)
+    throws Exception {
+    ps.setString(1, v1);
+    ResultSet rs = ps.executeQuery();
+    assertEquals(expectedTable, ps.unwrap(PhoenixPreparedStatement.class).getQueryPlan()
+      .getTableRef().getTable().getName().getString());
+    assertTrue(rs.next());
+    String k = rs.getString(1);
+    assertFalse(rs.next());
+    return k;
+  }
+
+  @Test
+  public void testCachedPlanIsReusedUntilAlter() throws Exception {
+    String tableName = generateUniqueName();
+    String indexName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      conn.createStatement().execute(
+        "CREATE TABLE " + tableName + " (k VARCHAR PRIMARY KEY, v1 VARCHAR, v2 VARCHAR)");
+      conn.createStatement()
+        .execute("CREATE INDEX " + indexName + " ON " + tableName + " (v1) INCLUDE (v2)");
+      for (int i = 0; i < 10; i++) {
+        conn.createStatement().execute(
+          "UPSERT INTO " + tableName + " VALUES ('k" + i + "', 'v" + i + "', 'w" + i + "')");
+      }
+      conn.commit();
+      QueryPlanCache planCache = conn.unwrap(PhoenixConnection.class).getQueryServices()
+        .getOptimizer().getPlanCache();
+      PreparedStatement ps =
+        conn.prepareStatement("SELECT k, v2 FROM " + tableName + " WHERE v1 = ?");
+
+      long hits = hits();
+      long misses = misses();
+      assertEquals("k1", queryV1(ps, "v1", indexName));
+      assertEquals(misses + 1, misses());
+      assertEquals(hits, hits());
+      long size = planCache.size();
+
+      // The cached plan is compiled with the new bind value
+      assertEquals("k2", queryV1(ps, "v2", indexName));
+      assertEquals("k3", queryV1(conn.prepareStatement(
+        "SELECT k, v2 FROM " + tableName + " WHERE v1 = ?"), "v3", indexName));
+      assertEquals(hits + 2, hits());
+      assertEquals(misses + 1, misses());
+      assertEquals(size, planCache.size());
+
+      // Altering the table changes its last DDL timestamp, which drops the cached plan
+      conn.createStatement().execute("ALTER TABLE " + tableName + " ADD v3 VARCHAR");
+      assertEquals("k4", queryV1(ps, "v4", indexName));
+      assertEquals(hits + 2, hits());
+      assertEquals(misses + 2, misses());
+      assertEquals("k5", queryV1(ps, "v5", indexName));
+      assertEquals(hits + 3, hits());
+    }
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.SimpleRegionObserver;
+import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.hbase.index.IndexRegionObserver;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.BaseTest;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests two concurrent batches updating the same row when the index updates of concurrent batches
+ * are coalesced. The earlier batch hands the verification of its index row over to the later
+ * batch, which either replaces the index row or, if it fails, verifies it.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class ConcurrentBatchIndexCoalesceIT extends BaseTest {
+  private static final String EARLIER_VALUE = "EARLIER";
+  private static final String LATER_VALUE = "LATER";
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+    props.put(IndexRegionObserver.PHOENIX_INDEX_CONCURRENT_VERIFICATION_COALESCE_ENABLED,
+      Boolean.TRUE.toString());
+    // The later batch waits for the earlier one for as long as the test holds it
+    props.put("phoenix.index.concurrent.wait.duration.ms", Long.toString(60000));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  @After
+  public void release() {
+    IndexWriteBlocker.release();
+    LaterBatchFailer.failLaterBatch = false;
+  }
+
+  private static boolean startsWith(byte[] row, String value) {
+    return Bytes.startsWith(row, Bytes.toBytes(value));
+  }
+
+  /**
+   * Holds the unverified index put of the earlier batch until it is released, and signals when
+   * the later batch has written its own unverified index put
+   */
+  public static class IndexWriteBlocker extends SimpleRegionObserver {
+    private static volatile CountDownLatch earlierWriteStarted = new CountDownLatch(0);
+    private static volatile CountDownLatch earlierWriteReleased = new CountDownLatch(0);
+    private static volatile CountDownLatch laterWriteStarted = new CountDownLatch(0);
+
+    static void block() {
+      earlierWriteStarted = new CountDownLatch(1);
+      earlierWriteReleased = new CountDownLatch(1);
+      laterWriteStarted = new CountDownLatch(1);
+    }
+
+    static void release() {
+      earlierWriteReleased.countDown();
+    }
+
+    @Override
+    public void preBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+      MiniBatchOperationInProgress<Mutation> miniBatchOp) throws IOException {
+      for (int i = 0; i < miniBatchOp.size(); i++) {
+        byte[] row = miniBatchOp.getOperation(i).getRow();
+        if (startsWith(row, LATER_VALUE)) {
+          laterWriteStarted.countDown();
+        } else if (startsWith(row, EARLIER_VALUE) && earlierWriteStarted.getCount() > 0) {
+          earlierWriteStarted.countDown();
+          try {
+            earlierWriteReleased.await(60, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Fails the data table write of the later batch, once asked to. It runs after
+   * IndexRegionObserver, so the later batch has already waited for the earlier one.
+   */
+  public static class LaterBatchFailer extends SimpleRegionObserver {
+    private static volatile boolean failLaterBatch = false;
+
+    @Override
+    public void preBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+      MiniBatchOperationInProgress<Mutation> miniBatchOp) throws IOException {
+      if (!failLaterBatch) {
+        return;
+      }
+      for (int i = 0; i < miniBatchOp.size(); i++) {
+        for (List<Cell> cells : miniBatchOp.getOperation(i).getFamilyCellMap().values()) {
+          for (Cell cell : cells) {
+            if (Bytes.equals(CellUtil.cloneValue(cell), Bytes.toBytes(LATER_VALUE))) {
+              throw new DoNotRetryIOException("Simulating the failure of the later batch");
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static Callable<Void> upsert(final String tableName, final String value) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+          PreparedStatement stmt =
+            conn.prepareStatement("UPSERT INTO " + tableName + " VALUES ('id1', ?)");
+          stmt.setString(1, value);
+          stmt.execute();
+          conn.commit();
+        }
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Returns the value of the empty column of each index row, keyed by the indexed value
+   */
+  private static Map<String, byte[]> getIndexRowStates(Connection conn, String indexName)
+    throws Exception {
+    Map<String, byte[]> states = new HashMap<>();
+    try (
+      Table table =
+        conn.unwrap(PhoenixConnection.class).getQueryServices().getTable(Bytes.toBytes(indexName));
+      ResultScanner scanner = table.getScanner(new Scan())) {
+      for (Result result : scanner) {
+        String value = startsWith(result.getRow(), EARLIER_VALUE) ? EARLIER_VALUE : LATER_VALUE;
+        // The index has no covered columns, so the empty column is the only cell of the row
+        assertEquals(1, result.rawCells().length);
+        states.put(value, CellUtil.cloneValue(result.rawCells()[0]));
+      }
+    }
+    return states;
+  }
+
+  /**
+   * Runs an earlier batch and a later batch on the same row, with the later batch registered on
+   * the row while the earlier one is still writing its unverified index row
+   */
+  private void runConcurrentBatches(String tableName, boolean failLaterBatch) throws Exception {
+    LaterBatchFailer.failLaterBatch = failLaterBatch;
+    IndexWriteBlocker.block();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Void> earlier = executor.submit(upsert(tableName, EARLIER_VALUE));
+      assertTrue(IndexWriteBlocker.earlierWriteStarted.await(60, TimeUnit.SECONDS));
+      Future<Void> later = executor.submit(upsert(tableName, LATER_VALUE));
+      assertTrue(IndexWriteBlocker.laterWriteStarted.await(60, TimeUnit.SECONDS));
+      IndexWriteBlocker.release();
+      earlier.get(60, TimeUnit.SECONDS);
+      try {
+        later.get(60, TimeUnit.SECONDS);
+        assertFalse(failLaterBatch);
+      } catch (ExecutionException e) {
+        if (!failLaterBatch) {
+          throw e;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private String createTable(Connection conn, String indexName) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement()
+      .execute("CREATE TABLE " + tableName + " (ID VARCHAR NOT NULL PRIMARY KEY, VAL1 VARCHAR)");
+    conn.createStatement().execute("CREATE INDEX " + indexName + " ON " + tableName + " (VAL1)");
+    TestUtil.addCoprocessor(conn, tableName, LaterBatchFailer.class);
+    TestUtil.addCoprocessor(conn, indexName, IndexWriteBlocker.class);
+    return tableName;
+  }
+
+  private static void assertValue(Connection conn, String query, String expected)
+    throws Exception {
+    try (ResultSet rs = conn.createStatement().executeQuery(query)) {
+      assertTrue(rs.next());
+      assertEquals(expected, rs.getString(1));
+      assertFalse(rs.next());
+    }
+  }
+
+  @Test
+  public void testLaterBatchReplacesIndexRow() throws Exception {
+    String indexName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn, indexName);
+      runConcurrentBatches(tableName, false);
+
+      Map<String, byte[]> states = getIndexRowStates(conn, indexName);
+      assertEquals(1, states.size());
+      assertArrayEquals(QueryConstants.VERIFIED_BYTES, states.get(LATER_VALUE));
+      assertValue(conn, "SELECT /*+ NO_INDEX */ VAL1 FROM " + tableName, LATER_VALUE);
+      assertValue(conn, "SELECT VAL1 FROM " + tableName + " WHERE VAL1 IS NOT NULL", LATER_VALUE);
+    }
+  }
+
+  @Test
+  public void testFailedLaterBatchVerifiesEarlierIndexRow() throws Exception {
+    String indexName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn, indexName);
+      runConcurrentBatches(tableName, true);
+
+      // The index row of the earlier batch is verified without a read repair
+      Map<String, byte[]> states = getIndexRowStates(conn, indexName);
+      assertArrayEquals(QueryConstants.VERIFIED_BYTES, states.get(EARLIER_VALUE));
+      assertValue(conn, "SELECT /*+ NO_INDEX */ VAL1 FROM " + tableName, EARLIER_VALUE);
+      try (ResultSet rs = conn.createStatement()
+        .executeQuery("SELECT VAL1 FROM " + tableName + " WHERE VAL1 = '" + EARLIER_VALUE + "'")) {
+        assertTrue(rs.next());
+        assertFalse(rs.next());
+      }
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.hbase.index.DataRowStateCache;
+import org.apache.phoenix.hbase.index.IndexRegionObserver;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.BaseTest;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests the index updates IndexRegionObserver prepares from the data row states it caches.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class DataRowStateCacheIT extends BaseTest {
+  private static final ImmutableBytesPtr ROW_KEY = new ImmutableBytesPtr(Bytes.toBytes("id1"));
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+    props.put(IndexRegionObserver.PHOENIX_INDEX_ROW_STATE_CACHE_MAX_SIZE_BYTES,
+      Long.toString(1024 * 1024));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private static void createTableAndIndex(Connection conn, String tableName, String indexName)
+    throws Exception {
+    conn.createStatement().execute("CREATE TABLE " + tableName
+      + " (ID VARCHAR PRIMARY KEY, V1 VARCHAR, V2 VARCHAR) COLUMN_ENCODED_BYTES=0");
+    conn.createStatement()
+      .execute("CREATE INDEX " + indexName + " ON " + tableName + " (V1) INCLUDE (V2)");
+  }
+
+  private static DataRowStateCache getRowStateCache(String tableName) {
+    List<HRegion> regions =
+      getUtility().getHBaseCluster().getRegions(TableName.valueOf(tableName));
+    assertEquals(1, regions.size());
+    IndexRegionObserver observer =
+      regions.get(0).getCoprocessorHost().findCoprocessor(IndexRegionObserver.class);
+    assertNotNull(observer);
+    DataRowStateCache cache = observer.getRowStateCache();
+    assertNotNull(cache);
+    return cache;
+  }
+
+  /**
+   * Returns the cells of the index rows without their timestamps, in scan order
+   */
+  private static List<String> getIndexRows(Connection conn, String indexName) throws Exception {
+    List<String> rows = new ArrayList<>();
+    try (
+      Table table =
+        conn.unwrap(PhoenixConnection.class).getQueryServices().getTable(Bytes.toBytes(indexName));
+      ResultScanner scanner = table.getScanner(new Scan())) {
+      for (Result result : scanner) {
+        for (Cell cell : result.rawCells()) {
+          rows.add(Bytes.toStringBinary(CellUtil.cloneRow(cell)) + "/"
+            + Bytes.toStringBinary(CellUtil.cloneFamily(cell)) + ":"
+            + Bytes.toStringBinary(CellUtil.cloneQualifier(cell)) + "="
+            + Bytes.toStringBinary(CellUtil.cloneValue(cell)));
+        }
+      }
+    }
+    return rows;
+  }
+
+  private static String indexRowKey(String v1) {
+    return Bytes.toStringBinary(Bytes.add(Bytes.toBytes(v1),
+      QueryConstants.SEPARATOR_BYTE_ARRAY, ROW_KEY.copyBytesIfNecessary()));
+  }
+
+  @Test
+  public void testCacheHitProducesSameIndexRowsAsDiskRead() throws Exception {
+    String cachedTable = generateUniqueName();
+    String cachedIndex = generateUniqueName();
+    String diskTable = generateUniqueName();
+    String diskIndex = generateUniqueName();
+    String[] upserts = { "UPSERT INTO %s VALUES ('id1', 'a', 'x')",
+      "UPSERT INTO %s VALUES ('id1', 'b', 'x')", "UPSERT INTO %s (ID, V2) VALUES ('id1', 'y')",
+      "UPSERT INTO %s (ID, V1) VALUES ('id1', 'c')" };
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTableAndIndex(conn, cachedTable, cachedIndex);
+      createTableAndIndex(conn, diskTable, diskIndex);
+      DataRowStateCache cache = getRowStateCache(cachedTable);
+      DataRowStateCache diskCache = getRowStateCache(diskTable);
+      for (int i = 0; i < upserts.length; i++) {
+        // Every update after the first one takes the current row state from the cache
+        if (i > 0) {
+          assertNotNull(cache.get(ROW_KEY));
+        }
+        conn.createStatement().execute(String.format(upserts[i], cachedTable));
+        conn.commit();
+        // and the other table always reads it from disk
+        diskCache.invalidateAll();
+        conn.createStatement().execute(String.format(upserts[i], diskTable));
+        conn.commit();
+      }
+      List<String> cachedRows = getIndexRows(conn, cachedIndex);
+      assertEquals(getIndexRows(conn, diskIndex), cachedRows);
+      assertEquals(2, cachedRows.size());
+      assertTrue(cachedRows.get(0).startsWith(indexRowKey("c") + "/"));
+      assertTrue(cachedRows.contains(indexRowKey("c") + "/0:0:V2=y"));
+    }
+  }
+
+  @Test
+  public void testWriteWithoutIndexMetadataInvalidatesCachedRow() throws Exception {
+    String tableName = generateUniqueName();
+    String indexName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTableAndIndex(conn, tableName, indexName);
+      DataRowStateCache cache = getRowStateCache(tableName);
+      conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES ('id1', 'a', 'x')");
+      conn.commit();
+      assertNotNull(cache.get(ROW_KEY));
+
+      // A plain HBase write carries no index metadata and so bypasses index maintenance
+      try (Table table = conn.unwrap(PhoenixConnection.class).getQueryServices()
+        .getTable(Bytes.toBytes(tableName))) {
+        Put put = new Put(ROW_KEY.copyBytesIfNecessary());
+        put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, Bytes.toBytes("V2"),
+          Bytes.toBytes("raw"));
+        table.put(put);
+      }
+      assertNull(cache.get(ROW_KEY));
+
+      // The next update must build the index row from the row state on disk
+      conn.createStatement().execute("UPSERT INTO " + tableName + " (ID, V1) VALUES ('id1', 'b')");
+      conn.commit();
+      Put cached = cache.get(ROW_KEY);
+      assertNotNull(cached);
+      assertArrayEquals(Bytes.toBytes("raw"), CellUtil.cloneValue(
+        cached.get(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, Bytes.toBytes("V2")).get(0)));
+      List<String> indexRows = getIndexRows(conn, indexName);
+      assertEquals(2, indexRows.size());
+      assertTrue(indexRows.contains(indexRowKey("b") + "/0:0:V2=raw"));
+      for (String indexRow : indexRows) {
+        assertFalse(indexRow.startsWith(indexRowKey("a") + "/"));
+      }
+      ResultSet rs =
+        conn.createStatement().executeQuery("SELECT V2 FROM " + tableName + " WHERE V1 = 'b'");
+      assertTrue(rs.next());
+      assertEquals("raw", rs.getString(1));
+      assertFalse(rs.next());
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.SimpleRegionObserver;
+import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.hbase.index.IndexRegionObserver;
+import org.apache.phoenix.query.BaseTest;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests unverified index rows repaired in batches by several scanners at the same time.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class GlobalIndexCheckerRepairIT extends BaseTest {
+  private static final int REPAIR_BATCH_SIZE = 4;
+  private static final int ROW_COUNT = 20;
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+    props.put(QueryServices.GLOBAL_INDEX_ROW_AGE_THRESHOLD_TO_DELETE_MS_ATTRIB, Long.toString(0));
+    props.put(QueryServices.GLOBAL_INDEX_REPAIR_BATCH_SIZE_ATTRIB,
+      Integer.toString(REPAIR_BATCH_SIZE));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  @After
+  public void unsetFailForTesting() {
+    IndexRegionObserver.setFailPostIndexUpdatesForTesting(false);
+    BlockingRepairObserver.release();
+  }
+
+  /**
+   * Blocks the data table scans of index row repairs, once asked to, until it is released
+   */
+  public static class BlockingRepairObserver extends SimpleRegionObserver {
+    private static volatile CountDownLatch repairStarted = new CountDownLatch(0);
+    private static volatile CountDownLatch repairReleased = new CountDownLatch(0);
+
+    static void block() {
+      repairStarted = new CountDownLatch(1);
+      repairReleased = new CountDownLatch(1);
+    }
+
+    static boolean awaitRepair() throws InterruptedException {
+      return repairStarted.await(60, TimeUnit.SECONDS);
+    }
+
+    static void release() {
+      repairReleased.countDown();
+    }
+
+    @Override
+    public void preScannerOpen(final ObserverContext<RegionCoprocessorEnvironment> c,
+      final Scan scan) throws InterruptedIOException {
+      if (scan.getAttribute(BaseScannerRegionObserverConstants.INDEX_ROW_KEY) == null) {
+        return;
+      }
+      repairStarted.countDown();
+      try {
+        repairReleased.await(60, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+
+  private static int countRows(ResultSet rs) throws Exception {
+    int count = 0;
+    while (rs.next()) {
+      assertEquals("v" + rs.getString(1).substring(1), rs.getString(2));
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void testCloseScannerWhileAnotherRepairs() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    final String query =
+      "SELECT VAL1, VAL2 FROM " + dataTableName + " WHERE VAL1 >= 'k' ORDER BY VAL1";
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      conn.createStatement().execute("CREATE TABLE " + dataTableName
+        + " (ID VARCHAR NOT NULL PRIMARY KEY, VAL1 VARCHAR, VAL2 VARCHAR)");
+      conn.createStatement().execute(
+        "CREATE INDEX " + indexTableName + " ON " + dataTableName + " (VAL1) INCLUDE (VAL2)");
+      // Leave every index row unverified
+      IndexRegionObserver.setFailPostIndexUpdatesForTesting(true);
+      PreparedStatement upsert =
+        conn.prepareStatement("UPSERT INTO " + dataTableName + " VALUES (?, ?, ?)");
+      for (int i = 0; i < ROW_COUNT; i++) {
+        String suffix = String.format("%02d", i);
+        upsert.setString(1, "id" + suffix);
+        upsert.setString(2, "k" + suffix);
+        upsert.setString(3, "v" + suffix);
+        upsert.execute();
+      }
+      conn.commit();
+      IndexRegionObserver.setFailPostIndexUpdatesForTesting(false);
+      TestUtil.addCoprocessor(conn, dataTableName, BlockingRepairObserver.class);
+    }
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Connection conn1 = DriverManager.getConnection(getUrl());
+      final Connection conn2 = DriverManager.getConnection(getUrl())) {
+      // The first scanner repairs its first batch and stays open on the region server
+      Statement stmt1 = conn1.createStatement();
+      stmt1.setFetchSize(1);
+      ResultSet rs1 = stmt1.executeQuery(query);
+      assertTrue(rs1.next());
+
+      // The second scanner is held in the middle of repairing its first batch
+      BlockingRepairObserver.block();
+      Future<Integer> rowCount = executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          try (ResultSet rs2 = conn2.createStatement().executeQuery(query)) {
+            return countRows(rs2);
+          }
+        }
+      });
+      assertTrue(BlockingRepairObserver.awaitRepair());
+      rs1.close();
+      stmt1.close();
+
+      // The shared repair pool is still running the repairs of the second scanner
+      BlockingRepairObserver.release();
+      assertEquals(ROW_COUNT, (int) rowCount.get(60, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Both scanners left every index row repaired
+    try (Connection conn = DriverManager.getConnection(getUrl());
+      ResultSet rs = conn.createStatement().executeQuery(query)) {
+      assertEquals(ROW_COUNT, countRows(rs));
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.join;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.apache.phoenix.end2end.ParallelStatsEnabledIT;
+import org.apache.phoenix.end2end.ParallelStatsEnabledTest;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.DelegateConnectionQueryServices;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(ParallelStatsEnabledTest.class)
+public class JoinReorderIT extends ParallelStatsEnabledIT {
+  private String dimLarge;
+  private String fact;
+  private String dimSmall;
+
+  @Before
+  public void createTables() throws Exception {
+    dimLarge = generateUniqueName();
+    fact = generateUniqueName();
+    dimSmall = generateUniqueName();
+    try (Connection conn =
+      DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+      conn.createStatement()
+        .execute("CREATE TABLE " + dimLarge + " (ID VARCHAR PRIMARY KEY, NAME VARCHAR)");
+      conn.createStatement().execute("CREATE TABLE " + fact
+        + " (ID VARCHAR PRIMARY KEY, L VARCHAR, S VARCHAR, V INTEGER)");
+      conn.createStatement()
+        .execute("CREATE TABLE " + dimSmall + " (ID VARCHAR PRIMARY KEY, NAME VARCHAR)");
+      PreparedStatement stmt =
+        conn.prepareStatement("UPSERT INTO " + dimLarge + " VALUES (?, ?)");
+      for (int i = 0; i < 100; i++) {
+        stmt.setString(1, "l" + i);
+        stmt.setString(2, "large" + i);
+        stmt.execute();
+      }
+      stmt = conn.prepareStatement("UPSERT INTO " + dimSmall + " VALUES (?, ?)");
+      for (int i = 0; i < 5; i++) {
+        stmt.setString(1, "s" + i);
+        stmt.setString(2, "small" + i);
+        stmt.execute();
+      }
+      // Some fact rows reference dimension rows that do not exist and are dropped by the join
+      stmt = conn.prepareStatement("UPSERT INTO " + fact + " VALUES (?, ?, ?, ?)");
+      for (int i = 0; i < 2000; i++) {
+        stmt.setString(1, "f" + i);
+        stmt.setString(2, "l" + (i % 120));
+        stmt.setString(3, "s" + (i % 7));
+        stmt.setInt(4, i);
+        stmt.execute();
+      }
+      conn.commit();
+      conn.createStatement().execute("UPDATE STATISTICS " + dimLarge);
+      conn.createStatement().execute("UPDATE STATISTICS " + fact);
+      conn.createStatement().execute("UPDATE STATISTICS " + dimSmall);
+    }
+  }
+
+  private Connection getConnection(boolean joinReorder) throws SQLException {
+    Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+    Properties overrides = new Properties();
+    overrides.setProperty(QueryServices.JOIN_REORDER_ENABLED_ATTRIB, Boolean.toString(joinReorder));
+    try (PhoenixConnection conn =
+      DriverManager.getConnection(getUrl(), props).unwrap(PhoenixConnection.class)) {
+      final ReadOnlyProps joinReorderProps = conn.getQueryServices().getProps().addAll(overrides);
+      ConnectionQueryServices services =
+        new DelegateConnectionQueryServices(conn.getQueryServices()) {
+          @Override
+          public ReadOnlyProps getProps() {
+            return joinReorderProps;
+          }
+        };
+      return new PhoenixConnection(conn, services, props);
+    }
+  }
+
+  private static List<String> getRows(Connection conn, String query) throws SQLException {
+    List<String> rows = new ArrayList<>();
+    try (ResultSet rs = conn.createStatement().executeQuery(query)) {
+      int columnCount = rs.getMetaData().getColumnCount();
+      while (rs.next()) {
+        StringBuilder row = new StringBuilder();
+        for (int i = 1; i <= columnCount; i++) {
+          row.append(rs.getString(i)).append(',');
+        }
+        rows.add(row.toString());
+      }
+    }
+    return rows;
+  }
+
+  private static String getExplainPlan(Connection conn, String query) throws SQLException {
+    try (ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + query)) {
+      return QueryUtil.getExplainPlan(rs);
+    }
+  }
+
+  private void assertSameResults(String query) throws SQLException {
+    try (Connection written = getConnection(false);
+      Connection reordered = getConnection(true)) {
+      String reorderedPlan = getExplainPlan(reordered, query);
+      assertNotEquals(getExplainPlan(written, query), reorderedPlan);
+      assertTrue(reorderedPlan, reorderedPlan.split("\n")[0].contains("FULL SCAN OVER " + fact));
+      List<String> expected = getRows(written, query);
+      assertFalse(expected.isEmpty());
+      assertEquals(expected, getRows(reordered, query));
+    }
+  }
+
+  @Test
+  public void testReorderedJoinReturnsWrittenResults() throws Exception {
+    assertSameResults("SELECT D1.NAME, F.ID, F.V, D2.NAME FROM " + dimLarge + " D1 JOIN " + fact
+      + " F ON F.L = D1.ID JOIN " + dimSmall + " D2 ON D2.ID = F.S ORDER BY F.ID");
+  }
+
+  @Test
+  public void testReorderedJoinWithFiltersReturnsWrittenResults() throws Exception {
+    assertSameResults("SELECT D2.NAME, COUNT(*), SUM(F.V) FROM " + dimLarge + " D1 JOIN " + fact
+      + " F ON F.L = D1.ID JOIN " + dimSmall + " D2 ON D2.ID = F.S"
+      + " WHERE D1.NAME LIKE 'large1%' AND F.V > 100 GROUP BY D2.NAME ORDER BY D2.NAME");
+  }
+}
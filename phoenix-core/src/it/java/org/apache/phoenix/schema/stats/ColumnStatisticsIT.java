@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.execute.visitor.RowCountVisitor;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.BaseTest;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.SchemaUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Collects the column statistics of a table, reads them back from SYSTEM.STATS and checks the row
+ * estimates of filtered queries that are based on them
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class ColumnStatisticsIT extends BaseTest {
+  private static final int ROWS = 1000;
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(3);
+    props.put(QueryServices.STATS_COLUMN_STATS_ENABLED_ATTRIB, Boolean.toString(true));
+    props.put(QueryServices.STATS_COLUMN_HISTOGRAM_BUCKETS_ATTRIB, Integer.toString(16));
+    props.put(QueryServices.STATS_GUIDEPOST_WIDTH_BYTES_ATTRIB, Long.toString(1000));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private static void createTable(Connection conn, String tableName) throws Exception {
+    conn.createStatement().execute(
+      "CREATE TABLE " + tableName + " (K INTEGER PRIMARY KEY, A INTEGER, B VARCHAR)");
+    PreparedStatement ps = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+    for (int i = 0; i < ROWS; i++) {
+      ps.setInt(1, i);
+      ps.setInt(2, i);
+      // Every tenth value of B is null
+      ps.setString(3, i % 10 == 9 ? null : "b" + i % 9);
+      ps.executeUpdate();
+    }
+    conn.commit();
+  }
+
+  private static double estimateRows(Connection conn, String query) throws Exception {
+    QueryPlan plan = conn.createStatement().unwrap(PhoenixStatement.class).optimizeQuery(query);
+    Double rows = plan.accept(new RowCountVisitor());
+    assertNotNull(query, rows);
+    return rows;
+  }
+
+  @Test
+  public void testColumnStatisticsChangeRowEstimates() throws Exception {
+    String tableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, tableName);
+      conn.createStatement().execute("UPDATE STATISTICS " + tableName);
+      PhoenixConnection pconn = conn.unwrap(PhoenixConnection.class);
+      PTable table = pconn.getTable(tableName);
+      byte[] a = table.getColumnForColumnName("A").getColumnQualifierBytes();
+      byte[] b = table.getColumnForColumnName("B").getColumnQualifierBytes();
+
+      ConnectionQueryServices services = pconn.getQueryServices();
+      try (Table statsTable = services.getTable(SchemaUtil
+        .getPhysicalName(PhoenixDatabaseMetaData.SYSTEM_STATS_NAME_BYTES, services.getProps())
+        .getName())) {
+        // The statistics of the columns are written to the COLUMN_STATS cell
+        Scan scan = new Scan().addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+          PhoenixDatabaseMetaData.COLUMN_STATS_BYTES);
+        int cells = 0;
+        try (ResultScanner scanner = statsTable.getScanner(scan)) {
+          for (Result result : scanner) {
+            if (Bytes.startsWith(result.getRow(), table.getPhysicalName().getBytes())) {
+              cells += result.size();
+            }
+          }
+        }
+        assertTrue(cells > 0);
+
+        GuidePostsInfo gps = StatisticsUtil.readStatistics(statsTable,
+          new GuidePostsKey(table.getPhysicalName().getBytes(),
+            QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES),
+          HConstants.LATEST_TIMESTAMP);
+        ColumnStatistics statsA = gps.getColumnStatistics(a);
+        ColumnStatistics statsB = gps.getColumnStatistics(b);
+        assertNotNull(statsA);
+        assertNotNull(statsB);
+        assertEquals(ROWS, statsA.getRowCount());
+        assertEquals(0, statsA.getNullCount());
+        assertEquals(ROWS, statsA.getDistinctCount(), 50);
+        assertFalse(statsA.getBuckets().isEmpty());
+        assertEquals(ROWS / 10, statsB.getNullCount());
+        assertEquals(9, statsB.getDistinctCount(), 1);
+      }
+
+      // The estimates follow the data, without statistics half of the rows would pass any filter
+      String query = "SELECT K FROM " + tableName;
+      double scannedRows = estimateRows(conn, query);
+      assertEquals(ROWS, scannedRows, ROWS * 0.2);
+      assertEquals(scannedRows * 0.1, estimateRows(conn, query + " WHERE A < 100"),
+        scannedRows * 0.05);
+      assertEquals(scannedRows * 0.9 / 9, estimateRows(conn, query + " WHERE B = 'b3'"),
+        scannedRows * 0.02);
+      assertEquals(scannedRows * 0.1, estimateRows(conn, query + " WHERE B IS NULL"),
+        scannedRows * 0.01);
+      assertEquals(scannedRows * 0.1 * 0.1,
+        estimateRows(conn, query + " WHERE A < 100 AND B = 'b3'"), scannedRows * 0.02);
+    }
+  }
+}
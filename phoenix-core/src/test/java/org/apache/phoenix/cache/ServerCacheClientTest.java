@@ -18,12 +18,14 @@
 package org.apache.phoenix.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.sql.SQLException;
 import java.util.HashMap;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.ConnectionQueryServices.Feature;
 import org.apache.phoenix.schema.PNameFactory;
 import org.apache.phoenix.schema.PTableImpl;
 import org.apache.phoenix.util.ReadOnlyProps;
@@ -50,4 +52,20 @@ public class ServerCacheClientTest {
       assertEquals(e.getMessage(), "Test Exception");
     }
   }
+
+  @Test
+  public void testReuseServerCacheNeedsNewServers() throws SQLException {
+    PhoenixConnection connection = Mockito.mock(PhoenixConnection.class);
+    ConnectionQueryServices services = Mockito.mock(ConnectionQueryServices.class);
+    Mockito.when(services.getProps()).thenReturn(new ReadOnlyProps(new HashMap<>()));
+    Mockito.when(services.supportsFeature(Feature.SERVER_CACHE_REUSE)).thenReturn(false);
+    Mockito.when(connection.getQueryServices()).thenReturn(services);
+    PTableImpl pTable = Mockito.mock(PTableImpl.class);
+    Mockito.when(pTable.getPhysicalName()).thenReturn(PNameFactory.newName("TableName"));
+    ServerCacheClient client = new ServerCacheClient(connection);
+    // Old servers would install an empty cache, so the cache is sent again instead
+    assertNull(client.reuseServerCache(null, Bytes.toBytes("cacheId"), null, pTable));
+    Mockito.verify(services, Mockito.never()).getAllTableRegions(Mockito.any(byte[].class),
+      Mockito.anyInt());
+  }
 }
@@ -194,6 +194,131 @@ public class TenantCacheTest {
     assertNotNull(cache.getServerCache(cacheId2));
   }
 
+  @Test
+  public void testReusedCacheIsFreedAfterLastRemove() throws Exception {
+    long maxBytes = 1000;
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(maxBytes);
+    TenantCacheImpl cache = new TenantCacheImpl(memoryManager, 10000, 10);
+    ImmutableBytesPtr cacheId1 = new ImmutableBytesPtr(Bytes.toBytes(1L));
+    ImmutableBytesWritable cachePtr = new ImmutableBytesWritable(Bytes.toBytes("a"));
+    cache.addServerCache(cacheId1, cachePtr, ByteUtil.EMPTY_BYTE_ARRAY, cacheFactory, true, false,
+      MetaDataProtocol.PHOENIX_VERSION);
+    assertTrue(cache.reuseServerCache(cacheId1));
+    assertEquals(maxBytes - 1, memoryManager.getAvailableMemory());
+    cache.removeServerCache(cacheId1);
+    assertNotNull(cache.getServerCache(cacheId1));
+    assertEquals(maxBytes - 1, memoryManager.getAvailableMemory());
+    cache.removeServerCache(cacheId1);
+    assertNull(cache.getServerCache(cacheId1));
+    assertEquals(maxBytes, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testReuseOfAbsentCache() throws Exception {
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(1000);
+    TenantCacheImpl cache = new TenantCacheImpl(memoryManager, 10000, 10);
+    assertFalse(cache.reuseServerCache(new ImmutableBytesPtr(Bytes.toBytes(1L))));
+  }
+
+  @Test
+  public void testAddingSameCacheTwiceAllocatesOnce() throws Exception {
+    long maxBytes = 1000;
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(maxBytes);
+    TenantCacheImpl cache = new TenantCacheImpl(memoryManager, 10000, 10);
+    ImmutableBytesPtr cacheId1 = new ImmutableBytesPtr(Bytes.toBytes(1L));
+    ImmutableBytesWritable cachePtr = new ImmutableBytesWritable(Bytes.toBytes("abc"));
+    cache.addServerCache(cacheId1, cachePtr, ByteUtil.EMPTY_BYTE_ARRAY, cacheFactory, true, false,
+      MetaDataProtocol.PHOENIX_VERSION);
+    cache.addServerCache(cacheId1, cachePtr, ByteUtil.EMPTY_BYTE_ARRAY, cacheFactory, true, false,
+      MetaDataProtocol.PHOENIX_VERSION);
+    assertEquals(maxBytes - 3, memoryManager.getAvailableMemory());
+    cache.removeServerCache(cacheId1);
+    cache.removeServerCache(cacheId1);
+    assertEquals(maxBytes, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testChunkedCacheIsAddedAfterLastChunk() throws Exception {
+    long maxBytes = 1000;
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(maxBytes);
+    TenantCacheImpl cache = new TenantCacheImpl(memoryManager, 10000, 10);
+    ImmutableBytesPtr cacheId1 = new ImmutableBytesPtr(Bytes.toBytes(1L));
+    assertNull(cache.addServerCacheChunk(cacheId1, 7L,
+      new ImmutableBytesWritable(Bytes.toBytes("abc")), 0, 5, ByteUtil.EMPTY_BYTE_ARRAY,
+      cacheFactory, true, false, MetaDataProtocol.PHOENIX_VERSION));
+    // The memory of the whole cache is taken by the first chunk
+    assertEquals(maxBytes - 5, memoryManager.getAvailableMemory());
+    assertNull(cache.getServerCache(cacheId1));
+    assertNotNull(cache.addServerCacheChunk(cacheId1, 7L,
+      new ImmutableBytesWritable(Bytes.toBytes("de")), 3, 5, ByteUtil.EMPTY_BYTE_ARRAY,
+      cacheFactory, true, false, MetaDataProtocol.PHOENIX_VERSION));
+    assertNotNull(cache.getServerCache(cacheId1));
+    assertEquals(maxBytes - 5, memoryManager.getAvailableMemory());
+    cache.removeServerCache(cacheId1);
+    assertEquals(maxBytes, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testResentChunksAreIgnored() throws Exception {
+    long maxBytes = 1000;
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(maxBytes);
+    TenantCacheImpl cache = new TenantCacheImpl(memoryManager, 10000, 10);
+    ImmutableBytesPtr cacheId1 = new ImmutableBytesPtr(Bytes.toBytes(1L));
+    for (int i = 0; i < 2; i++) {
+      assertNull(cache.addServerCacheChunk(cacheId1, 7L,
+        new ImmutableBytesWritable(Bytes.toBytes("abc")), 0, 5, ByteUtil.EMPTY_BYTE_ARRAY,
+        cacheFactory, true, false, MetaDataProtocol.PHOENIX_VERSION));
+    }
+    assertEquals(maxBytes - 5, memoryManager.getAvailableMemory());
+    assertNotNull(cache.addServerCacheChunk(cacheId1, 7L,
+      new ImmutableBytesWritable(Bytes.toBytes("de")), 3, 5, ByteUtil.EMPTY_BYTE_ARRAY,
+      cacheFactory, true, false, MetaDataProtocol.PHOENIX_VERSION));
+    // The last chunk sent again neither fails nor starts another upload
+    assertNull(cache.addServerCacheChunk(cacheId1, 7L,
+      new ImmutableBytesWritable(Bytes.toBytes("de")), 3, 5, ByteUtil.EMPTY_BYTE_ARRAY,
+      cacheFactory, true, false, MetaDataProtocol.PHOENIX_VERSION));
+    assertNotNull(cache.getServerCache(cacheId1));
+    assertEquals(maxBytes - 5, memoryManager.getAvailableMemory());
+    cache.removeServerCache(cacheId1);
+    assertEquals(maxBytes, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testOutOfOrderChunkDropsUpload() throws Exception {
+    long maxBytes = 1000;
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(maxBytes);
+    TenantCacheImpl cache = new TenantCacheImpl(memoryManager, 10000, 10);
+    ImmutableBytesPtr cacheId1 = new ImmutableBytesPtr(Bytes.toBytes(1L));
+    cache.addServerCacheChunk(cacheId1, 7L, new ImmutableBytesWritable(Bytes.toBytes("abc")), 0,
+      6, ByteUtil.EMPTY_BYTE_ARRAY, cacheFactory, true, false, MetaDataProtocol.PHOENIX_VERSION);
+    try {
+      cache.addServerCacheChunk(cacheId1, 7L, new ImmutableBytesWritable(Bytes.toBytes("ef")), 4,
+        6, ByteUtil.EMPTY_BYTE_ARRAY, cacheFactory, true, false, MetaDataProtocol.PHOENIX_VERSION);
+      fail();
+    } catch (SQLException e) {
+      // expected
+    }
+    assertEquals(maxBytes, memoryManager.getAvailableMemory());
+    assertNull(cache.getServerCache(cacheId1));
+  }
+
+  @Test
+  public void testAbandonedUploadExpires() throws Exception {
+    int maxServerCacheTimeToLive = 10;
+    long maxBytes = 1000;
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(maxBytes);
+    ManualTicker ticker = new ManualTicker();
+    TenantCacheImpl cache =
+      new TenantCacheImpl(memoryManager, maxServerCacheTimeToLive, 10, ticker);
+    ImmutableBytesPtr cacheId1 = new ImmutableBytesPtr(Bytes.toBytes(1L));
+    cache.addServerCacheChunk(cacheId1, 7L, new ImmutableBytesWritable(Bytes.toBytes("abc")), 0,
+      6, ByteUtil.EMPTY_BYTE_ARRAY, cacheFactory, true, false, MetaDataProtocol.PHOENIX_VERSION);
+    assertEquals(maxBytes - 6, memoryManager.getAvailableMemory());
+    ticker.time += (maxServerCacheTimeToLive + 1) * 1000000;
+    cache.cleanUp();
+    assertEquals(maxBytes, memoryManager.getAvailableMemory());
+  }
+
   public static class ManualTicker extends Ticker {
     public long time = 0;
 
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.MinAggregateFunction;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.expression.function.SumAggregateFunction;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+public class OpenAddressingGroupByCacheTest {
+  private static final long MAX_MEMORY = 64L * 1024 * 1024;
+
+  private final Configuration conf = HBaseConfiguration.create();
+
+  private ServerAggregators newAggregators(SingleAggregateFunction... functions) {
+    return ServerAggregators.deserialize(ServerAggregators.serialize(Arrays.asList(functions), 1),
+      conf, null);
+  }
+
+  private ServerAggregators countAndSums() throws Exception {
+    List<Expression> longChild = Collections.<Expression> singletonList(
+      LiteralExpression.newConstant(1L, PLong.INSTANCE));
+    List<Expression> doubleChild = Collections.<Expression> singletonList(
+      LiteralExpression.newConstant(1.0d, PDouble.INSTANCE));
+    return newAggregators(new CountAggregateFunction(longChild),
+      new SumAggregateFunction(longChild), new SumAggregateFunction(doubleChild));
+  }
+
+  private static void aggregate(Aggregator[] aggregators, int value) {
+    aggregators[0].aggregate(null, new ImmutableBytesWritable());
+    // Leave the sums of every fifth group unset so that null states are covered as well
+    if (value % 5 != 0) {
+      aggregators[1].aggregate(null, new ImmutableBytesWritable(PLong.INSTANCE.toBytes(value)));
+      aggregators[2].aggregate(null,
+        new ImmutableBytesWritable(PDouble.INSTANCE.toBytes(value / 2.0d)));
+    }
+  }
+
+  @Test
+  public void testAggregatesMatchPerGroupAggregators() throws Exception {
+    ServerAggregators aggregators = countAndSums();
+    assertTrue(OpenAddressingGroupByCache.isSupported(aggregators, conf));
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(MAX_MEMORY);
+    // Start from a small estimate so that the arrays and the slot table get resized
+    OpenAddressingGroupByCache cache =
+      new OpenAddressingGroupByCache(memoryManager, conf, aggregators, 16, false);
+    Map<ImmutableBytesPtr, Aggregator[]> expected = Maps.newHashMap();
+    Map<ImmutableBytesPtr, byte[]> expectedRowKeys = Maps.newHashMap();
+    int groupCount = 5000;
+    for (int row = 0; row < 4 * groupCount; row++) {
+      int value = (row * 7919) % groupCount;
+      ImmutableBytesPtr key = new ImmutableBytesPtr(Bytes.toBytes("g" + value));
+      ImmutableBytesPtr rowKey = new ImmutableBytesPtr(Bytes.toBytes("row" + row));
+      aggregate(cache.cache(key), value);
+      cache.cacheAggregateRowKey(key, rowKey);
+      Aggregator[] expectedAggregators = expected.get(key);
+      if (expectedAggregators == null) {
+        expectedAggregators = aggregators.newAggregators(conf);
+        expected.put(key, expectedAggregators);
+      }
+      aggregate(expectedAggregators, value);
+      expectedRowKeys.put(key, rowKey.copyBytes());
+    }
+    assertEquals(groupCount, cache.size());
+    assertTrue(memoryManager.getAvailableMemory() < MAX_MEMORY);
+
+    RegionScanner scanner = cache.getScanner(mock(RegionScanner.class));
+    List<Cell> cells = Lists.newArrayList();
+    boolean hasMore;
+    do {
+      hasMore = scanner.next(cells);
+    } while (hasMore);
+    assertEquals(groupCount, cells.size());
+    for (Cell cell : cells) {
+      byte[] value = CellUtil.cloneValue(cell);
+      int keyLength = PInteger.INSTANCE.getCodec().decodeInt(value, 0, SortOrder.getDefault());
+      int keyOffset = Bytes.SIZEOF_INT;
+      ImmutableBytesPtr key = new ImmutableBytesPtr(
+        Arrays.copyOfRange(value, keyOffset, keyOffset + keyLength));
+      assertArrayEquals(expectedRowKeys.get(key), CellUtil.cloneRow(cell));
+      assertArrayEquals(aggregators.toBytes(expected.get(key)),
+        Arrays.copyOfRange(value, keyOffset + keyLength, value.length));
+    }
+    scanner.close();
+    assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testIncompatibleClientGetsGroupKeys() throws Exception {
+    ServerAggregators aggregators = countAndSums();
+    OpenAddressingGroupByCache cache = new OpenAddressingGroupByCache(
+      new GlobalMemoryManager(MAX_MEMORY), conf, aggregators, 16, true);
+    ImmutableBytesPtr key = new ImmutableBytesPtr(Bytes.toBytes("g"));
+    aggregate(cache.cache(key), 3);
+    cache.cacheAggregateRowKey(key, new ImmutableBytesPtr(Bytes.toBytes("row")));
+    aggregate(cache.cache(key), 4);
+
+    Aggregator[] expected = aggregators.newAggregators(conf);
+    aggregate(expected, 3);
+    aggregate(expected, 4);
+    RegionScanner scanner = cache.getScanner(mock(RegionScanner.class));
+    List<Cell> cells = Lists.newArrayList();
+    assertFalse(scanner.next(cells));
+    assertEquals(1, cells.size());
+    assertArrayEquals(key.copyBytes(), CellUtil.cloneRow(cells.get(0)));
+    assertArrayEquals(aggregators.toBytes(expected), CellUtil.cloneValue(cells.get(0)));
+    scanner.close();
+  }
+
+  @Test
+  public void testVariableWidthAggregatorsAreNotSupported() throws Exception {
+    List<Expression> child =
+      Collections.<Expression> singletonList(LiteralExpression.newConstant("a"));
+    assertFalse(OpenAddressingGroupByCache.isSupported(
+      newAggregators(new CountAggregateFunction(child), new MinAggregateFunction(child)), conf));
+  }
+}
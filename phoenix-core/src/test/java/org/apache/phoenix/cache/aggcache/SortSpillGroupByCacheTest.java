@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+public class SortSpillGroupByCacheTest {
+  private static final long MAX_MEMORY = 64L * 1024 * 1024;
+
+  @Rule
+  public TemporaryFolder spoolFolder = new TemporaryFolder();
+
+  @Test
+  public void testSpilledRunsAreMergedInKeyOrder() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    // Keep only a few dozen groups in memory so that many runs get spilled
+    conf.setLong(QueryServices.GROUPBY_MAX_CACHE_SIZE_ATTRIB, 4096);
+    conf.set(QueryServices.SPOOL_DIRECTORY, spoolFolder.getRoot().getAbsolutePath());
+    List<Expression> child =
+      Collections.<Expression> singletonList(LiteralExpression.newConstant(1L, PLong.INSTANCE));
+    ServerAggregators aggregators = ServerAggregators.deserialize(ServerAggregators
+      .serialize(Arrays.<SingleAggregateFunction> asList(new CountAggregateFunction(child)), 1),
+      conf, null);
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(MAX_MEMORY);
+    SortSpillGroupByCache cache =
+      new SortSpillGroupByCache(memoryManager, conf, aggregators, 16, false);
+
+    int groupCount = 2000;
+    int rowCount = 5 * groupCount;
+    for (int row = 0; row < rowCount; row++) {
+      ImmutableBytesPtr key =
+        new ImmutableBytesPtr(Bytes.toBytes(String.format("g%05d", (row * 7919) % groupCount)));
+      Aggregator[] rowAggregators = cache.cache(key);
+      rowAggregators[0].aggregate(null, new ImmutableBytesWritable());
+      cache.cacheAggregateRowKey(key, new ImmutableBytesPtr(Bytes.toBytes("row" + row)));
+    }
+    assertTrue(spoolFolder.getRoot().list().length > 0);
+
+    RegionScanner scanner = cache.getScanner(mock(RegionScanner.class));
+    List<Cell> cells = Lists.newArrayList();
+    boolean hasMore;
+    do {
+      hasMore = scanner.next(cells);
+    } while (hasMore);
+    // Partial aggregations of a group come back as consecutive rows, as the client combines them
+    assertTrue(cells.size() > groupCount);
+    Map<String, Long> counts = Maps.newHashMap();
+    String previousKey = "";
+    for (Cell cell : cells) {
+      byte[] value = CellUtil.cloneValue(cell);
+      int keyLength = PInteger.INSTANCE.getCodec().decodeInt(value, 0, SortOrder.getDefault());
+      int keyOffset = Bytes.SIZEOF_INT;
+      String key = Bytes.toString(value, keyOffset, keyLength);
+      assertTrue(key.compareTo(previousKey) >= 0);
+      previousKey = key;
+      assertTrue(Bytes.toString(CellUtil.cloneRow(cell)).startsWith("row"));
+      long count = PLong.INSTANCE.getCodec().decodeLong(value, keyOffset + keyLength,
+        SortOrder.getDefault());
+      Long total = counts.get(key);
+      counts.put(key, total == null ? count : total + count);
+    }
+    assertEquals(groupCount, counts.size());
+    for (long total : counts.values()) {
+      assertEquals(rowCount / groupCount, total);
+    }
+    scanner.close();
+    assertEquals(0, spoolFolder.getRoot().list().length);
+    assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+  }
+}
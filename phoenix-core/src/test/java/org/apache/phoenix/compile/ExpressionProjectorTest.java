@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PFloat;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+public class ExpressionProjectorTest {
+  private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+  private static ColumnProjector projector(Expression expression) {
+    return new ExpressionProjector("C", "C", "T", expression, false);
+  }
+
+  @Test
+  public void testPrimitiveGettersDecodeCoercibleTypes() throws SQLException {
+    ColumnProjector projector = projector(LiteralExpression.newConstant(42, PInteger.INSTANCE));
+    assertEquals(42L, projector.getLong(null, ptr));
+    assertTrue(ptr.getLength() > 0);
+    assertEquals(42, projector.getInt(null, ptr));
+    assertEquals(42d, projector.getDouble(null, ptr), 0);
+
+    projector = projector(LiteralExpression.newConstant((short) -7, PSmallint.INSTANCE));
+    assertEquals(-7, projector.getInt(null, ptr));
+    assertEquals(-7L, projector.getLong(null, ptr));
+
+    projector = projector(LiteralExpression.newConstant(1.5f, PFloat.INSTANCE));
+    assertEquals(1.5d, projector.getDouble(null, ptr), 0);
+  }
+
+  @Test
+  public void testPrimitiveGettersHonorSortOrder() throws SQLException {
+    ColumnProjector projector =
+      projector(LiteralExpression.newConstant(-123L, PLong.INSTANCE, SortOrder.DESC));
+    assertEquals(-123L, projector.getLong(null, ptr));
+    assertEquals(-123d, projector.getDouble(null, ptr), 0);
+  }
+
+  @Test
+  public void testPrimitiveGettersFallBackForOtherTypes() throws SQLException {
+    ColumnProjector projector =
+      projector(LiteralExpression.newConstant(new BigDecimal("12"), PDecimal.INSTANCE));
+    assertEquals(12L, projector.getLong(null, ptr));
+    assertEquals(12, projector.getInt(null, ptr));
+    assertEquals(12d, projector.getDouble(null, ptr), 0);
+
+    // narrowing BIGINT to INTEGER keeps going through toObject
+    projector = projector(LiteralExpression.newConstant(5L, PLong.INSTANCE));
+    assertEquals(5, projector.getInt(null, ptr));
+  }
+
+  @Test
+  public void testPrimitiveGettersLeaveNullEmpty() throws SQLException {
+    ColumnProjector projector = projector(LiteralExpression.newConstant(null, PLong.INSTANCE));
+    assertEquals(0L, projector.getLong(null, ptr));
+    assertEquals(0, ptr.getLength());
+    assertEquals(0, projector.getInt(null, ptr));
+    assertEquals(0, ptr.getLength());
+    assertEquals(0d, projector.getDouble(null, ptr), 0);
+    assertEquals(0, ptr.getLength());
+    assertFalse(projector.getValueBytes(null, ptr));
+
+    projector = projector(LiteralExpression.newConstant(null, PDecimal.INSTANCE));
+    assertEquals(0L, projector.getLong(null, ptr));
+    assertEquals(0, ptr.getLength());
+  }
+
+  @Test
+  public void testGetValueBytes() throws SQLException {
+    ColumnProjector projector = projector(LiteralExpression.newConstant("abc", PVarchar.INSTANCE));
+    assertTrue(projector.getValueBytes(null, ptr));
+    assertEquals("abc", Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+  }
+}
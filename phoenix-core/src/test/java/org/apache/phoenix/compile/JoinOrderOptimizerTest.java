@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JoinOrderOptimizerTest {
+  private static final int PARALLEL_LEVEL = 10;
+
+  // Tables: 0 = DIM_LARGE (1000 rows), 1 = FACT (1M rows), 2 = DIM_SMALL (10 rows), joined as
+  // written by DIM_LARGE JOIN FACT ON FACT.L = DIM_LARGE.ID JOIN DIM_SMALL ON DIM_SMALL.ID = FACT.S
+  private static JoinOrderOptimizer starJoin(boolean factCanProbe) {
+    return new JoinOrderOptimizer(new double[] { 1000, 1000000, 10 }, new long[] { 1L, 2L },
+      new int[] { 1, 2 }, new boolean[] { true, factCanProbe, true }, PARALLEL_LEVEL);
+  }
+
+  @Test
+  public void testLargestTableIsProbed() {
+    JoinOrderOptimizer optimizer = starJoin(true);
+    int[] order = optimizer.optimize(8);
+    assertEquals(1, order[0]);
+    assertTrue(optimizer.getCost(order).compareTo(optimizer.getCost(new int[] { 0, 1, 2 })) < 0);
+    // The greedy search makes the same choice
+    assertArrayEquals(order, optimizer.optimize(0));
+  }
+
+  @Test
+  public void testOnlyProbeSideTablesAreProbed() {
+    JoinOrderOptimizer optimizer = starJoin(false);
+    int[] order = optimizer.optimize(8);
+    assertTrue(order[0] != 1);
+    assertTrue(optimizer.optimize(0)[0] != 1);
+    assertNull(optimizer.getCost(new int[] { 1, 0, 2 }));
+  }
+
+  @Test
+  public void testCrossJoinsAreNotIntroduced() {
+    JoinOrderOptimizer optimizer = starJoin(true);
+    // DIM_LARGE and DIM_SMALL are only joined through FACT
+    assertNull(optimizer.getCost(new int[] { 0, 2, 1 }));
+    assertNull(optimizer.getCost(new int[] { 2, 0, 1 }));
+    assertNotNull(optimizer.getCost(new int[] { 2, 1, 0 }));
+  }
+
+  @Test
+  public void testConditionOnSeveralTablesIsJoinedLast() {
+    // A JOIN B ON B.X = A.X JOIN C ON C.Y = A.Y + B.Y
+    JoinOrderOptimizer optimizer =
+      new JoinOrderOptimizer(new double[] { 100, 10000, 1000000 }, new long[] { 1L, 3L },
+        new int[] { 1, 2 }, new boolean[] { true, true, true }, PARALLEL_LEVEL);
+    // C cannot be joined before both A and B, and A + B cannot be the right hand side of a join
+    assertNull(optimizer.getCost(new int[] { 0, 2, 1 }));
+    assertNull(optimizer.getCost(new int[] { 2, 0, 1 }));
+    int[] order = optimizer.optimize(8);
+    assertEquals(2, order[2]);
+    assertArrayEquals(order, optimizer.optimize(0));
+  }
+
+  @Test
+  public void testNoValidOrder() {
+    // A JOIN B ON B.X = A.X, where B is the only table that can be probed, joined with C on a
+    // condition referencing A and B
+    JoinOrderOptimizer optimizer =
+      new JoinOrderOptimizer(new double[] { 100, 100, 100 }, new long[] { 1L, 3L },
+        new int[] { 1, 2 }, new boolean[] { false, false, true }, PARALLEL_LEVEL);
+    assertNull(optimizer.optimize(8));
+    assertNull(optimizer.optimize(0));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.ConnectionlessQueryServicesImpl;
+import org.apache.phoenix.query.DelegateConnectionQueryServices;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableKey;
+import org.apache.phoenix.schema.stats.GuidePostsInfoBuilder;
+import org.apache.phoenix.schema.stats.GuidePostsKey;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compiles multi-way inner joins with and without join reordering against tables with statistics
+ * and compares the resulting plans.
+ */
+public class JoinReorderCompileTest extends BaseConnectionlessQueryTest {
+  private static final int GUIDE_POSTS = 10;
+
+  private String dimLarge;
+  private String fact;
+  private String dimSmall;
+  private String query;
+
+  @Before
+  public void createTables() throws Exception {
+    dimLarge = generateUniqueName();
+    fact = generateUniqueName();
+    dimSmall = generateUniqueName();
+    try (PhoenixConnection conn = DriverManager
+      .getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))
+      .unwrap(PhoenixConnection.class)) {
+      conn.createStatement()
+        .execute("CREATE TABLE " + dimLarge + " (ID VARCHAR PRIMARY KEY, NAME VARCHAR)");
+      conn.createStatement().execute("CREATE TABLE " + fact
+        + " (ID VARCHAR PRIMARY KEY, L VARCHAR, S VARCHAR, V INTEGER)");
+      conn.createStatement()
+        .execute("CREATE TABLE " + dimSmall + " (ID VARCHAR PRIMARY KEY, NAME VARCHAR)");
+      addStats(conn, dimLarge, 1000);
+      addStats(conn, fact, 1000000);
+      addStats(conn, dimSmall, 10);
+    }
+    // Written with the mid-sized dimension table first, so the fact table is hashed as written
+    query = "SELECT D1.NAME, F.V, D2.NAME FROM " + dimLarge + " D1 JOIN " + fact
+      + " F ON F.L = D1.ID JOIN " + dimSmall + " D2 ON D2.ID = F.S";
+  }
+
+  private static void addStats(PhoenixConnection conn, String tableName, long rows)
+    throws SQLException {
+    PTable table = conn.getTable(new PTableKey(null, tableName));
+    GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < GUIDE_POSTS; i++) {
+      builder.trackGuidePost(new ImmutableBytesWritable(Bytes.toBytes("k" + i)),
+        rows * 100 / GUIDE_POSTS, rows / GUIDE_POSTS, now);
+    }
+    ((ConnectionlessQueryServicesImpl) conn.getQueryServices()).addTableStats(
+      new GuidePostsKey(table.getName().getBytes(), QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES),
+      builder.build());
+  }
+
+  private PhoenixConnection getConnection(boolean joinReorder) throws SQLException {
+    Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+    Properties overrides = new Properties();
+    overrides.setProperty(QueryServices.JOIN_REORDER_ENABLED_ATTRIB, Boolean.toString(joinReorder));
+    try (PhoenixConnection conn =
+      DriverManager.getConnection(getUrl(), props).unwrap(PhoenixConnection.class)) {
+      final ReadOnlyProps joinReorderProps = conn.getQueryServices().getProps().addAll(overrides);
+      ConnectionQueryServices services =
+        new DelegateConnectionQueryServices(conn.getQueryServices()) {
+          @Override
+          public ReadOnlyProps getProps() {
+            return joinReorderProps;
+          }
+        };
+      return new PhoenixConnection(conn, services, props);
+    }
+  }
+
+  private String getExplainPlan(boolean joinReorder) throws SQLException {
+    try (PhoenixConnection conn = getConnection(joinReorder);
+      ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + query)) {
+      return QueryUtil.getExplainPlan(rs);
+    }
+  }
+
+  private QueryPlan getQueryPlan(boolean joinReorder) throws SQLException {
+    try (PhoenixConnection conn = getConnection(joinReorder)) {
+      return conn.createStatement().unwrap(PhoenixStatement.class).optimizeQuery(query);
+    }
+  }
+
+  @Test
+  public void testLargestTableIsProbed() throws Exception {
+    String writtenPlan = getExplainPlan(false);
+    assertFalse(writtenPlan, writtenPlan.split("\n")[0].contains("FULL SCAN OVER " + fact));
+
+    String reorderedPlan = getExplainPlan(true);
+    String[] steps = reorderedPlan.split("\n");
+    assertTrue(reorderedPlan, steps[0].contains("FULL SCAN OVER " + fact));
+    // Both dimension tables are hashed and probed by the fact table
+    assertTrue(reorderedPlan, reorderedPlan.contains("FULL SCAN OVER " + dimLarge));
+    assertTrue(reorderedPlan, reorderedPlan.contains("FULL SCAN OVER " + dimSmall));
+    assertEquals(reorderedPlan, 2, reorderedPlan.split("PARALLEL INNER-JOIN TABLE").length - 1);
+  }
+
+  @Test
+  public void testReorderedPlanProjectsWrittenColumns() throws Exception {
+    RowProjector written = getQueryPlan(false).getProjector();
+    RowProjector reordered = getQueryPlan(true).getProjector();
+    assertEquals(written.getColumnCount(), reordered.getColumnCount());
+    for (int i = 0; i < written.getColumnCount(); i++) {
+      ColumnProjector writtenColumn = written.getColumnProjector(i);
+      ColumnProjector reorderedColumn = reordered.getColumnProjector(i);
+      assertEquals(writtenColumn.getName(), reorderedColumn.getName());
+      assertEquals(writtenColumn.getExpression().getDataType(),
+        reorderedColumn.getExpression().getDataType());
+    }
+  }
+
+  @Test
+  public void testJoinWithoutStatsIsNotReordered() throws Exception {
+    String unknown = generateUniqueName();
+    try (PhoenixConnection conn = getConnection(true)) {
+      conn.createStatement()
+        .execute("CREATE TABLE " + unknown + " (ID VARCHAR PRIMARY KEY, NAME VARCHAR)");
+    }
+    query = "SELECT D1.NAME, F.V, U.NAME FROM " + dimLarge + " D1 JOIN " + fact
+      + " F ON F.L = D1.ID JOIN " + unknown + " U ON U.ID = F.S";
+    assertEquals(getExplainPlan(false), getExplainPlan(true));
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.query.QueryServices;
+import org.junit.Test;
+
+public class AdaptivePageSizeTest {
+
+  @Test
+  public void testDisabledByDefault() {
+    assertNull(AdaptivePageSize.create(new Configuration(false)));
+  }
+
+  @Test
+  public void testSelectivePagesGrowUpToMaxFactor() {
+    AdaptivePageSize pageSize = new AdaptivePageSize(0.25, 8, 0);
+    // no rows returned out of 50 visited
+    pageSize.onPageEnd(0, 50, 0);
+    pageSize.onPageEnd(0, 50, 0);
+    assertEquals(4, pageSize.getFactor(), 0);
+    // one row returned out of 1000 visited
+    pageSize.onPageEnd(1, 1000, 0);
+    pageSize.onPageEnd(1, 1000, 0);
+    assertEquals(8, pageSize.getFactor(), 0);
+    assertEquals(800, pageSize.scale(100, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testQueuedCallsShrinkDownToMinFactor() {
+    AdaptivePageSize pageSize = new AdaptivePageSize(0.25, 8, 2);
+    pageSize.onPageEnd(0, 50, 0);
+    assertEquals(2, pageSize.getFactor(), 0);
+    // the call queue wins over a selective page
+    pageSize.onPageEnd(0, 50, 3);
+    pageSize.onPageEnd(0, 50, 3);
+    pageSize.onPageEnd(0, 50, 3);
+    pageSize.onPageEnd(0, 50, 3);
+    assertEquals(0.25, pageSize.getFactor(), 0);
+    assertEquals(25, pageSize.scale(100, Long.MAX_VALUE));
+    assertEquals(1, pageSize.scale(1, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testUnselectivePagesReturnToConfiguredPageSize() {
+    AdaptivePageSize pageSize = new AdaptivePageSize(0.25, 8, 0);
+    pageSize.onPageEnd(0, 50, 1);
+    pageSize.onPageEnd(0, 50, 1);
+    pageSize.onPageEnd(1, 1, 0);
+    assertEquals(0.5, pageSize.getFactor(), 0);
+    pageSize.onPageEnd(1, 1, 0);
+    pageSize.onPageEnd(1, 1, 0);
+    assertEquals(1, pageSize.getFactor(), 0);
+    pageSize.onPageEnd(0, 50, 0);
+    pageSize.onPageEnd(1, 2, 0);
+    assertEquals(1, pageSize.getFactor(), 0);
+  }
+
+  @Test
+  public void testTimedOutPagesGrowWithinClientBudget() {
+    AdaptivePageSize pageSize = new AdaptivePageSize(0.25, 8, 0);
+    // dummy results of pages that ran out of time before finding a row
+    pageSize.onPageEnd(0, 50, 0);
+    assertEquals(200, pageSize.scale(100, 500));
+    pageSize.onPageEnd(0, 50, 0);
+    assertEquals(400, pageSize.scale(100, 500));
+    pageSize.onPageEnd(0, 50, 0);
+    assertEquals(8, pageSize.getFactor(), 0);
+    // the page stops growing at the page size budget the client set
+    assertEquals(500, pageSize.scale(100, 500));
+  }
+
+  @Test
+  public void testScaleIsClampedAtClientBudget() {
+    AdaptivePageSize pageSize = new AdaptivePageSize(0.25, 8, 0);
+    pageSize.onPageEnd(1, 1000, 0);
+    pageSize.onPageEnd(1, 1000, 0);
+    pageSize.onPageEnd(1, 1000, 0);
+    assertEquals(8, pageSize.getFactor(), 0);
+    // 0.6 of a 1000 ms budget scaled by 8 would be 4800 ms
+    assertEquals(1000, pageSize.scale(600, 1000));
+    assertEquals(800, pageSize.scale(100, 1000));
+    // no budget set by the client
+    assertEquals(Long.MAX_VALUE, pageSize.scale(Long.MAX_VALUE, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testCreateReadsConfiguration() {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(QueryServices.PHOENIX_SERVER_PAGING_ADAPTIVE_ENABLED, true);
+    conf.setFloat(QueryServices.PHOENIX_SERVER_PAGING_ADAPTIVE_MAX_FACTOR, 2);
+    AdaptivePageSize pageSize = AdaptivePageSize.create(conf);
+    pageSize.onPageEnd(0, 50, 0);
+    pageSize.onPageEnd(0, 50, 0);
+    assertEquals(2, pageSize.getFactor(), 0);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.filter.JoinKeyBloomFilter;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.junit.Test;
+
+public class HashJoinPlanTest {
+
+  private static JoinKeyBloomFilter newBloomFilter() {
+    return new JoinKeyBloomFilter(Collections.<Expression> emptyList(),
+      Collections.<ImmutableBytesPtr> emptyList(), 0.01);
+  }
+
+  @Test
+  public void testRemoveJoinKeyBloomFiltersKeepsOtherFilters() {
+    Filter other = new KeyOnlyFilter();
+    FilterList filterList =
+      new FilterList(FilterList.Operator.MUST_PASS_ALL, Arrays.asList(other, newBloomFilter()));
+    Scan scan = new Scan().setFilter(filterList);
+    HashJoinPlan.removeJoinKeyBloomFilters(scan);
+    assertSame(other, scan.getFilter());
+    // The list of a previous execution is left untouched
+    assertEquals(2, filterList.size());
+
+    Filter first = new FirstKeyOnlyFilter();
+    filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL,
+      Arrays.asList(other, newBloomFilter(), first));
+    scan.setFilter(filterList);
+    HashJoinPlan.removeJoinKeyBloomFilters(scan);
+    List<Filter> filters = ((FilterList) scan.getFilter()).getFilters();
+    assertEquals(Arrays.asList(other, first), filters);
+    assertEquals(3, filterList.size());
+  }
+
+  @Test
+  public void testRemoveJoinKeyBloomFiltersClearsSingleFilter() {
+    Scan scan = new Scan().setFilter(newBloomFilter());
+    HashJoinPlan.removeJoinKeyBloomFilters(scan);
+    assertNull(scan.getFilter());
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.DelegateConnectionQueryServices;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Sets;
+
+public class PipelinedMutationDispatcherTest extends BaseConnectionlessQueryTest {
+  private static final byte[] TABLE_NAME = Bytes.toBytes("T");
+  private static final byte[] SPLIT = Bytes.toBytes(5);
+  private static final HRegionLocation REGION1 = new HRegionLocation(
+    RegionInfoBuilder.newBuilder(TableName.valueOf(TABLE_NAME)).setEndKey(SPLIT).build(),
+    ServerName.valueOf("host1", 16020, 1L));
+  private static final HRegionLocation REGION2 = new HRegionLocation(
+    RegionInfoBuilder.newBuilder(TableName.valueOf(TABLE_NAME)).setStartKey(SPLIT).build(),
+    ServerName.valueOf("host2", 16020, 1L));
+
+  private static final ServerName SERVER1 = ServerName.valueOf("host1", 16020, 1L);
+  private static final ServerName SERVER2 = ServerName.valueOf("host2", 16020, 1L);
+  // Rows of the connectionless tables below this key are on SERVER1, the others on SERVER2
+  private static final byte[] COMMIT_SPLIT = Bytes.toBytes("m");
+
+  private final PipelinedMutationDispatcher dispatcher =
+    new PipelinedMutationDispatcher(ReadOnlyProps.EMPTY_PROPS);
+
+  @After
+  public void closeDispatcher() {
+    dispatcher.close();
+  }
+
+  private static PhoenixConnection mockConnection() throws SQLException {
+    ConnectionQueryServices services = mock(ConnectionQueryServices.class);
+    when(services.getTableRegionLocation(any(byte[].class), any(byte[].class)))
+      .thenAnswer(new Answer<HRegionLocation>() {
+        @Override
+        public HRegionLocation answer(InvocationOnMock invocation) {
+          byte[] row = invocation.getArgument(1);
+          return Bytes.compareTo(row, SPLIT) < 0 ? REGION1 : REGION2;
+        }
+      });
+    PhoenixConnection connection = mock(PhoenixConnection.class);
+    when(connection.getQueryServices()).thenReturn(services);
+    return connection;
+  }
+
+  private static Put put(int row) {
+    Put put = new Put(Bytes.toBytes(row));
+    put.addColumn(Bytes.toBytes("0"), Bytes.toBytes("V"), Bytes.toBytes(row));
+    return put;
+  }
+
+  @Test
+  public void testMutationBatchListIsGroupedByServer() throws Exception {
+    List<Mutation> mutations = Lists.newArrayList();
+    for (int i : new int[] { 1, 7, 2, 8, 3, 9 }) {
+      mutations.add(put(i));
+    }
+    List<List<Mutation>> batches = dispatcher.getMutationBatchListByServer(mockConnection(),
+      TABLE_NAME, 2, Long.MAX_VALUE, mutations);
+    assertEquals(4, batches.size());
+    // every batch targets a single server and servers keep their relative row order
+    assertEquals(2, batches.get(0).size());
+    assertEquals(1, Bytes.toInt(batches.get(0).get(0).getRow()));
+    assertEquals(2, Bytes.toInt(batches.get(0).get(1).getRow()));
+    assertEquals(3, Bytes.toInt(batches.get(1).get(0).getRow()));
+    assertEquals(7, Bytes.toInt(batches.get(2).get(0).getRow()));
+    assertEquals(9, Bytes.toInt(batches.get(3).get(0).getRow()));
+  }
+
+  @Test
+  public void testSingleServerUsesDefaultBatching() throws Exception {
+    List<Mutation> mutations = Lists.newArrayList(put(1), put(2), put(3));
+    List<List<Mutation>> batches = dispatcher.getMutationBatchListByServer(mockConnection(),
+      TABLE_NAME, 2, Long.MAX_VALUE, mutations);
+    assertEquals(MutationState.getMutationBatchList(2, Long.MAX_VALUE, mutations), batches);
+  }
+
+  @Test
+  public void testDispatchTablesChainsFailures() throws Exception {
+    final SQLException first = new SQLException("first");
+    final SQLException second = new SQLException("second");
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    tasks.add(failingTask(first));
+    tasks.add(new Callable<Void>() {
+      @Override
+      public Void call() {
+        return null;
+      }
+    });
+    tasks.add(failingTask(second));
+    try {
+      dispatcher.dispatchTables(tasks);
+      fail("Expected the failure of the first table to be rethrown");
+    } catch (SQLException e) {
+      assertSame(first, e);
+      assertSame(second, e.getNextException());
+      assertNull(second.getNextException());
+    }
+  }
+
+  @Test
+  public void testCommitSendsTablesAndServersConcurrently() throws Exception {
+    String table1 = generateUniqueName();
+    String table2 = generateUniqueName();
+    Map<String, Set<String>> sentRows = new ConcurrentHashMap<>();
+    try (PhoenixConnection conn = newPipelinedConnection(sentRows, null)) {
+      upsertRows(conn, table1, table2);
+      conn.commit();
+      assertEquals(0, conn.getMutationState().getNumRows());
+    }
+    assertEquals(Sets.newHashSet("a", "b", "c", "n", "o", "p"), sentRows.get(table1));
+    assertEquals(Sets.newHashSet("a", "b", "c", "n", "o", "p"), sentRows.get(table2));
+    Map<String, Long> serverCommitTimes = dispatcher.getServerCommitTimes();
+    assertEquals(Sets.newHashSet(SERVER1.getAddress().toString(),
+      SERVER2.getAddress().toString()), serverCommitTimes.keySet());
+  }
+
+  @Test
+  public void testCommitFailureKeepsUnsentBatches() throws Exception {
+    String table1 = generateUniqueName();
+    String table2 = generateUniqueName();
+    Map<String, Set<String>> sentRows = new ConcurrentHashMap<>();
+    try (PhoenixConnection conn = newPipelinedConnection(sentRows, "o")) {
+      upsertRows(conn, table1, table2);
+      try {
+        conn.commit();
+        fail("Expected the failed batch to fail the commit");
+      } catch (SQLException e) {
+        // expected
+      }
+    }
+    // The failed batch and the batches behind it on the same server were not applied, while the
+    // other server of the table and the other tables were not affected by the failure
+    for (String table : new String[] { table1, table2 }) {
+      Set<String> rows = sentRows.get(table);
+      assertTrue(rows.containsAll(Sets.newHashSet("a", "b", "c")));
+      assertFalse(rows.contains("o"));
+    }
+  }
+
+  private static void upsertRows(PhoenixConnection conn, String table1, String table2)
+    throws SQLException {
+    for (String table : new String[] { table1, table2 }) {
+      conn.createStatement()
+        .execute("CREATE TABLE " + table + " (K VARCHAR PRIMARY KEY, V INTEGER)");
+      for (String row : new String[] { "a", "b", "c", "n", "o", "p" }) {
+        conn.createStatement().execute("UPSERT INTO " + table + " VALUES ('" + row + "', 1)");
+      }
+    }
+  }
+
+  /**
+   * Open a connection that commits through the pipelined path against two fake region servers,
+   * recording the rows applied to each table and failing every batch that contains failRow.
+   */
+  private PhoenixConnection newPipelinedConnection(final Map<String, Set<String>> sentRows,
+    final String failRow) throws SQLException {
+    Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+    props.setProperty(QueryServices.MUTATE_BATCH_SIZE_ATTRIB, "2");
+    Properties pipelinedOverrides = new Properties();
+    pipelinedOverrides.setProperty(QueryServices.MUTATE_PIPELINED_COMMIT_ENABLED_ATTRIB,
+      Boolean.TRUE.toString());
+    try (PhoenixConnection conn =
+      DriverManager.getConnection(getUrl(), props).unwrap(PhoenixConnection.class)) {
+      final ReadOnlyProps pipelinedProps =
+        conn.getQueryServices().getProps().addAll(pipelinedOverrides);
+      ConnectionQueryServices services =
+        new DelegateConnectionQueryServices(conn.getQueryServices()) {
+          @Override
+          public ReadOnlyProps getProps() {
+            return pipelinedProps;
+          }
+
+          @Override
+          public PipelinedMutationDispatcher getPipelinedMutationDispatcher() {
+            return dispatcher;
+          }
+
+          @Override
+          public HRegionLocation getTableRegionLocation(byte[] tableName, byte[] row) {
+            return new HRegionLocation(
+              RegionInfoBuilder.newBuilder(TableName.valueOf(tableName)).build(),
+              Bytes.compareTo(row, COMMIT_SPLIT) < 0 ? SERVER1 : SERVER2);
+          }
+
+          @Override
+          public Table getTable(byte[] tableName) throws SQLException {
+            return recordingTable(Bytes.toString(tableName), sentRows, failRow);
+          }
+        };
+      return new PhoenixConnection(conn, services, props);
+    }
+  }
+
+  private static Table recordingTable(final String tableName,
+    final Map<String, Set<String>> sentRows, final String failRow) throws SQLException {
+    Table table = mock(Table.class);
+    try {
+      doAnswer(new Answer<Void>() {
+        @Override
+        public Void answer(InvocationOnMock invocation) throws IOException {
+          List<Mutation> batch = invocation.getArgument(0);
+          Set<String> rows = Sets.newHashSet();
+          for (Mutation mutation : batch) {
+            rows.add(Bytes.toString(mutation.getRow()));
+          }
+          if (rows.contains(failRow)) {
+            throw new IOException("Injected failure of batch " + rows);
+          }
+          Set<String> tableRows = sentRows.get(tableName);
+          if (tableRows == null) {
+            sentRows.putIfAbsent(tableName, Collections.newSetFromMap(
+              new ConcurrentHashMap<String, Boolean>()));
+            tableRows = sentRows.get(tableName);
+          }
+          tableRows.addAll(rows);
+          return null;
+        }
+      }).when(table).batch(anyList(), any());
+    } catch (IOException | InterruptedException e) {
+      throw new SQLException(e);
+    }
+    return table;
+  }
+
+  private static Callable<Void> failingTask(final SQLException e) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws SQLException {
+        throw e;
+      }
+    };
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.apache.hadoop.hbase.CompareOperator;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.parse.LikeParseNode.LikeType;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.ByteUtil;
+import org.junit.Test;
+
+public class ExpressionFilterTest {
+  private static final int ROWS = 9;
+
+  private final Tuple[] tuples = newTuples();
+
+  private static Tuple[] newTuples() {
+    Tuple[] tuples = new Tuple[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      tuples[i] = new MultiKeyValueTuple();
+    }
+    return tuples;
+  }
+
+  /**
+   * Expression returning a fixed value for each row of the test
+   */
+  private class RowValueExpression extends BaseTerminalExpression {
+    private final PDataType dataType;
+    private final Map<Tuple, Object> values = new IdentityHashMap<>();
+
+    private RowValueExpression(PDataType dataType, Object... values) {
+      this.dataType = dataType;
+      for (int i = 0; i < values.length; i++) {
+        this.values.put(tuples[i], values[i]);
+      }
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+      Object value = values.get(tuple);
+      ptr.set(value == null ? ByteUtil.EMPTY_BYTE_ARRAY : dataType.toBytes(value));
+      return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+      return dataType;
+    }
+
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+      return null;
+    }
+  }
+
+  private RowValueExpression booleans(Boolean... values) {
+    return new RowValueExpression(PBoolean.INSTANCE, (Object[]) values);
+  }
+
+  private RowValueExpression integers(Integer... values) {
+    return new RowValueExpression(PInteger.INSTANCE, (Object[]) values);
+  }
+
+  private static int[] allRows() {
+    int[] selection = new int[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      selection[i] = i;
+    }
+    return selection;
+  }
+
+  // the rows for which evaluating one row at a time gives TRUE
+  private int[] evaluateByRow(Expression expression) {
+    int[] selection = allRows();
+    int count = 0;
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    for (int i = 0; i < ROWS; i++) {
+      expression.reset();
+      if (
+        expression.evaluate(tuples[i], ptr) && ptr.getLength() != 0
+          && Boolean.TRUE.equals(PBoolean.INSTANCE.toObject(ptr))
+      ) {
+        selection[count++] = i;
+      }
+    }
+    return Arrays.copyOf(selection, count);
+  }
+
+  private void assertFilter(Expression expression) {
+    int[] selection = allRows();
+    int count = expression.filter(tuples, selection, ROWS, new ImmutableBytesWritable());
+    assertArrayEquals(expression.toString(), evaluateByRow(expression),
+      Arrays.copyOf(selection, count));
+  }
+
+  private final RowValueExpression a =
+    booleans(true, true, true, false, false, false, null, null, null);
+  private final RowValueExpression b =
+    booleans(true, false, null, true, false, null, true, false, null);
+
+  @Test
+  public void testAndOr() {
+    assertFilter(new AndExpression(Arrays.<Expression> asList(a, b)));
+    assertFilter(new OrExpression(Arrays.<Expression> asList(a, b)));
+    assertFilter(new AndExpression(
+      Arrays.<Expression> asList(new OrExpression(Arrays.<Expression> asList(a, b)), b)));
+  }
+
+  @Test
+  public void testCase() throws Exception {
+    RowValueExpression c = booleans(false, true, true, true, null, false, true, true, false);
+    assertFilter(CaseExpression.create(Arrays.<Expression> asList(b, a, c)));
+    assertFilter(CaseExpression.create(Arrays.<Expression> asList(b, a)));
+    assertFilter(CaseExpression.create(Arrays.<Expression> asList(a, b, c, a, b)));
+  }
+
+  @Test
+  public void testComparison() throws Exception {
+    RowValueExpression x = integers(1, 5, 9, null, 5, 3, 7, 0, 5);
+    for (CompareOperator op : new CompareOperator[] { CompareOperator.EQUAL,
+      CompareOperator.NOT_EQUAL, CompareOperator.LESS, CompareOperator.GREATER_OR_EQUAL }) {
+      assertFilter(
+        new ComparisonExpression(Arrays.<Expression> asList(x, LiteralExpression.newConstant(5)),
+          op));
+      assertFilter(new ComparisonExpression(
+        Arrays.<Expression> asList(x, integers(5, 5, 5, 5, 5, 1, 1, 1, null)), op));
+    }
+  }
+
+  @Test
+  public void testInList() throws Exception {
+    RowValueExpression x = integers(1, 5, 9, null, 5, 3, 7, 0, 5);
+    assertFilter(InListExpression.create(
+      Arrays.<Expression> asList(x, LiteralExpression.newConstant(5),
+        LiteralExpression.newConstant(7), LiteralExpression.newConstant(9)),
+      false, new ImmutableBytesWritable(), true));
+  }
+
+  @Test
+  public void testLike() throws Exception {
+    RowValueExpression s = new RowValueExpression(PVarchar.INSTANCE, "apple", "banana", null,
+      "apricot", "", "grape", "ap", "pineapple", "APPLE");
+    assertFilter(StringBasedLikeExpression.create(
+      Arrays.<Expression> asList(s, LiteralExpression.newConstant("ap%")),
+      LikeType.CASE_SENSITIVE));
+    assertFilter(ByteBasedLikeExpression.create(
+      Arrays.<Expression> asList(s, LiteralExpression.newConstant("%an%")),
+      LikeType.CASE_SENSITIVE));
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Arrays;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PInteger;
+import org.junit.Test;
+
+public class ApproxPercentileAggregateFunctionTest {
+
+  private static ApproxPercentileAggregateFunction newFunction(double percentile,
+    boolean isDiscrete) throws SQLException {
+    Expression column = LiteralExpression.newConstant(null, PInteger.INSTANCE);
+    return new ApproxPercentileAggregateFunction(Arrays.<Expression> asList(column,
+      LiteralExpression.newConstant(BigDecimal.valueOf(percentile)),
+      LiteralExpression.newConstant(isDiscrete)));
+  }
+
+  /**
+   * Aggregates 1 to nValues over the given number of regions and merges the result on the client
+   */
+  private static Object aggregate(ApproxPercentileAggregateFunction function, int nValues,
+    int nRegions) {
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    Aggregator clientAggregator = function.newClientAggregator();
+    for (int region = 0; region < nRegions; region++) {
+      Aggregator serverAggregator = function.newServerAggregator(null);
+      for (int value = 1 + region; value <= nValues; value += nRegions) {
+        ptr.set(PInteger.INSTANCE.toBytes(value));
+        serverAggregator.aggregate(null, ptr);
+      }
+      assertTrue(serverAggregator.evaluate(null, ptr));
+      // Round trip through the spilled form of the server aggregator
+      serverAggregator = function.newServerAggregator(null, ptr);
+      assertTrue(serverAggregator.evaluate(null, ptr));
+      clientAggregator.aggregate(null, ptr);
+    }
+    assertTrue(clientAggregator.evaluate(null, ptr));
+    return function.getDataType().toObject(ptr);
+  }
+
+  @Test
+  public void testContinuousPercentile() throws Exception {
+    ApproxPercentileAggregateFunction function = newFunction(0.5, false);
+    assertEquals(PDecimal.INSTANCE, function.getDataType());
+    BigDecimal median = (BigDecimal) aggregate(function, 100000, 8);
+    assertEquals(50000, median.doubleValue(), 500);
+  }
+
+  @Test
+  public void testDiscretePercentile() throws Exception {
+    ApproxPercentileAggregateFunction function = newFunction(0.9, true);
+    assertEquals(PInteger.INSTANCE, function.getDataType());
+    Integer p90 = (Integer) aggregate(function, 100000, 8);
+    assertEquals(90000, p90, 500);
+  }
+
+  @Test
+  public void testNoValues() throws Exception {
+    ApproxPercentileAggregateFunction function = newFunction(0.5, false);
+    assertFalse(function.newClientAggregator().evaluate(null, new ImmutableBytesWritable()));
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.util.bson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import org.bson.RawBsonDocument;
+import org.junit.Test;
+
+public class CommonComparisonExpressionUtilsTest {
+  private static final RawBsonDocument DOCUMENT =
+    RawBsonDocument.parse("{\"a\": 1, \"b\": {\"c\": {\"d\": \"x\"}, \"e\": [10, [20, 30], "
+      + "{\"f\": true}]}, \"\": {\"g\": 2}}");
+
+  @Test
+  public void testParseFieldKey() {
+    assertEquals(Arrays.asList("a"), CommonComparisonExpressionUtils.parseFieldKey("a"));
+    assertEquals(Arrays.asList("b", "c", "d"),
+      CommonComparisonExpressionUtils.parseFieldKey("b.c.d"));
+    assertEquals(Arrays.asList("b", "e", 1, 0),
+      CommonComparisonExpressionUtils.parseFieldKey("b.e[1][0]"));
+    assertEquals(Arrays.asList("b", "e", 2, "f"),
+      CommonComparisonExpressionUtils.parseFieldKey("b.e[2].f"));
+    assertNull(CommonComparisonExpressionUtils.parseFieldKey("b.e[x]"));
+    assertNull(CommonComparisonExpressionUtils.parseFieldKey("b.e[1"));
+    assertNull(CommonComparisonExpressionUtils.parseFieldKey("b.e[1]f"));
+  }
+
+  @Test
+  public void testParsedFieldKeyMatchesFieldKey() {
+    for (String fieldKey : new String[] { "a", "b", "b.c.d", "b.e[0]", "b.e[1][1]", "b.e[2].f",
+      "b.e[3]", "b.c[0]", "a.x", "b.x.y", "missing", "missing.x", ".g", "[0]" }) {
+      assertEquals(fieldKey,
+        CommonComparisonExpressionUtils.getFieldFromDocument(fieldKey, DOCUMENT),
+        CommonComparisonExpressionUtils.getFieldFromDocument(
+          CommonComparisonExpressionUtils.parseFieldKey(fieldKey), DOCUMENT));
+    }
+  }
+}
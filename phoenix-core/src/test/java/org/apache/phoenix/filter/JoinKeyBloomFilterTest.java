@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class JoinKeyBloomFilterTest {
+  private static final byte[] CF = Bytes.toBytes("0");
+  private static final byte[] CQ = Bytes.toBytes("K");
+  private static final byte[] OTHER_CQ = Bytes.toBytes("V");
+
+  private static final List<Expression> JOIN_EXPRESSIONS =
+    Collections.<Expression> singletonList(new KeyValueColumnExpression(new PDatum() {
+      @Override
+      public boolean isNullable() {
+        return false;
+      }
+
+      @Override
+      public PDataType getDataType() {
+        return PVarchar.INSTANCE;
+      }
+
+      @Override
+      public Integer getMaxLength() {
+        return null;
+      }
+
+      @Override
+      public Integer getScale() {
+        return null;
+      }
+
+      @Override
+      public SortOrder getSortOrder() {
+        return SortOrder.getDefault();
+      }
+    }, CF, CQ));
+
+  private static JoinKeyBloomFilter newFilter(String... keys) {
+    List<ImmutableBytesPtr> hashKeys = Lists.newArrayList();
+    for (String key : keys) {
+      hashKeys.add(new ImmutableBytesPtr(Bytes.toBytes(key)));
+    }
+    return new JoinKeyBloomFilter(JOIN_EXPRESSIONS, hashKeys, 0.001);
+  }
+
+  private static boolean filterRow(JoinKeyBloomFilter filter, String joinKey) throws Exception {
+    byte[] row = Bytes.toBytes("row");
+    List<Cell> cells = Lists.<Cell> newArrayList(new KeyValue(row, CF, CQ, Bytes.toBytes(joinKey)),
+      new KeyValue(row, CF, OTHER_CQ, Bytes.toBytes("value")));
+    filter.reset();
+    for (Cell cell : cells) {
+      assertEquals(ReturnCode.INCLUDE, filter.filterCell(cell));
+    }
+    return filter.filterRow();
+  }
+
+  @Test
+  public void testRowsWithoutMatchingKeyAreFiltered() throws Exception {
+    JoinKeyBloomFilter filter = newFilter("a", "b", "c");
+    assertFalse(filterRow(filter, "a"));
+    assertFalse(filterRow(filter, "c"));
+    assertTrue(filterRow(filter, "zzz"));
+    assertTrue(filterRow(filter, "abc"));
+  }
+
+  @Test
+  public void testEmptyBuildSideFiltersEveryRow() throws Exception {
+    JoinKeyBloomFilter filter = newFilter();
+    assertTrue(filterRow(filter, "a"));
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    JoinKeyBloomFilter filter =
+      JoinKeyBloomFilter.parseFrom(newFilter("a", "b", "c").toByteArray());
+    assertFalse(filterRow(filter, "b"));
+    assertTrue(filterRow(filter, "zzz"));
+  }
+
+  @Test
+  public void testCanBeCombinedWithScanBatch() throws Exception {
+    JoinKeyBloomFilter filter = newFilter("a");
+    assertFalse(filter.hasFilterRow());
+    // HBase rejects filters that need the whole row when the scan returns rows in batches
+    new Scan().setFilter(filter).setBatch(10);
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
+import org.junit.Test;
+
+public class DataRowStateCacheTest {
+
+  private static final byte[] FAMILY = Bytes.toBytes("0");
+  private static final byte[] QUALIFIER = Bytes.toBytes("V");
+
+  private static Put rowState(String row, String value) {
+    Put put = new Put(Bytes.toBytes(row));
+    put.addColumn(FAMILY, QUALIFIER, 1L, Bytes.toBytes(value));
+    return put;
+  }
+
+  private static ImmutableBytesPtr key(String row) {
+    return new ImmutableBytesPtr(Bytes.toBytes(row));
+  }
+
+  private static long weight(String row, Put state) {
+    return key(row).getLength() + state.heapSize();
+  }
+
+  private static MemoryManager memoryManager() {
+    return new GlobalMemoryManager(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void getReturnsCopyOfCachedState() throws Exception {
+    DataRowStateCache cache = new DataRowStateCache(1024 * 1024, 60000, memoryManager());
+    Put state = rowState("a", "v1");
+    cache.put(key("a"), state);
+    // later changes to the cached state must not leak into the cache
+    state.addColumn(FAMILY, Bytes.toBytes("W"), 1L, Bytes.toBytes("x"));
+    Put cached = cache.get(key("a"));
+    assertNotSame(state, cached);
+    assertEquals(1, cached.get(FAMILY, QUALIFIER).size());
+    assertTrue(cached.get(FAMILY, Bytes.toBytes("W")).isEmpty());
+    cached.addColumn(FAMILY, Bytes.toBytes("W"), 1L, Bytes.toBytes("y"));
+    assertTrue(cache.get(key("a")).get(FAMILY, Bytes.toBytes("W")).isEmpty());
+    assertNull(cache.get(key("b")));
+  }
+
+  @Test
+  public void putReplacesAndInvalidateRemoves() throws Exception {
+    DataRowStateCache cache = new DataRowStateCache(1024 * 1024, 60000, memoryManager());
+    cache.put(key("a"), rowState("a", "v1"));
+    cache.put(key("a"), rowState("a", "v2"));
+    assertArrayEquals(Bytes.toBytes("v2"), value(cache.get(key("a"))));
+    cache.invalidate(key("a"));
+    assertNull(cache.get(key("a")));
+    cache.put(key("b"), rowState("b", "v1"));
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void cacheIsBoundedByHeapSize() throws Exception {
+    Put state = rowState("row00", "value");
+    long weight = weight("row00", state);
+    DataRowStateCache cache = new DataRowStateCache(weight * 4, 60000, memoryManager());
+    for (int i = 0; i < 64; i++) {
+      String row = String.format("row%02d", i);
+      cache.put(key(row), rowState(row, "value"));
+    }
+    assertTrue(cache.size() <= 4);
+  }
+
+  @Test
+  public void cachedStatesAreReservedFromMemoryManager() throws Exception {
+    MemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+    DataRowStateCache cache = new DataRowStateCache(1024 * 1024, 60000, memoryManager);
+    Put a = rowState("a", "v1");
+    Put b = rowState("b", "v1");
+    cache.put(key("a"), a);
+    cache.put(key("b"), b);
+    assertEquals(weight("a", a) + weight("b", b), cache.getReservedBytes());
+    assertEquals(1024 * 1024 - cache.getReservedBytes(), memoryManager.getAvailableMemory());
+    // a replaced state releases the memory of the previous state
+    Put a2 = rowState("a", "value2");
+    cache.put(key("a"), a2);
+    assertEquals(weight("a", a2) + weight("b", b), cache.getReservedBytes());
+    cache.invalidate(key("b"));
+    assertEquals(weight("a", a2), cache.getReservedBytes());
+    cache.close();
+    assertEquals(0, cache.size());
+    assertEquals(1024 * 1024, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void statesAreNotCachedWithoutMemory() throws Exception {
+    Put state = rowState("a", "v1");
+    MemoryManager memoryManager = new GlobalMemoryManager(weight("a", state) + 1);
+    DataRowStateCache cache = new DataRowStateCache(1024 * 1024, 60000, memoryManager);
+    cache.put(key("a"), state);
+    assertNotNull(cache.get(key("a")));
+    // the memory manager cannot reserve the new state, so the stale one must not be kept either
+    cache.put(key("a"), rowState("a", "value2"));
+    assertNull(cache.get(key("a")));
+    assertEquals(0, cache.getReservedBytes());
+    assertEquals(weight("a", state) + 1, memoryManager.getAvailableMemory());
+  }
+
+  private static byte[] value(Put put) {
+    return CellUtil.cloneValue(put.get(FAMILY, QUALIFIER).get(0));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.log.LogLevel;
+import org.apache.phoenix.memory.DelegatingMemoryManager;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.monitoring.MemoryMetricsHolder;
+import org.apache.phoenix.monitoring.ReadMetricQueue;
+import org.apache.phoenix.monitoring.SpoolingMetricsHolder;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.AssertResults;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class MappedSpoolingResultIteratorTest {
+  @Rule
+  public TemporaryFolder spoolDirectory = new TemporaryFolder();
+
+  private static Tuple[] newResults(int count) {
+    Tuple[] results = new Tuple[count];
+    for (int i = 0; i < count; i++) {
+      results[i] = new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(String.format("r%05d", i)),
+        SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(i)));
+    }
+    return results;
+  }
+
+  private MappedSpoolingResultIterator newSpoolingIterator(Tuple[] results, int threshold,
+    long maxSizeSpool, int blockSize) throws Exception {
+    MemoryManager memoryManager = new DelegatingMemoryManager(new GlobalMemoryManager(threshold));
+    List<Tuple> tuples = Lists.newArrayList(results);
+    return new MappedSpoolingResultIterator(SpoolingMetricsHolder.NO_OP_INSTANCE,
+      new MemoryMetricsHolder(new ReadMetricQueue(false, LogLevel.OFF), ""),
+      new MaterializedResultIterator(tuples), memoryManager, threshold, maxSizeSpool,
+      spoolDirectory.getRoot().getAbsolutePath(), blockSize);
+  }
+
+  private void testSpooling(int count, int threshold, int blockSize) throws Throwable {
+    Tuple[] results = newResults(count);
+    ResultIterator scanner = newSpoolingIterator(results, threshold,
+      QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES, blockSize);
+    AssertResults.assertResults(scanner, newResults(count));
+    assertEquals(0, spoolDirectory.getRoot().list().length);
+  }
+
+  @Test
+  public void testInMemorySpooling() throws Throwable {
+    testSpooling(2, 1024 * 1024, 1024);
+  }
+
+  @Test
+  public void testOnDiskSpooling() throws Throwable {
+    testSpooling(2, 1, 1024);
+  }
+
+  @Test
+  public void testOnDiskSpoolingAcrossManyBlocks() throws Throwable {
+    // Several rows per block and many page aligned blocks in the spool file
+    testSpooling(1000, 100, 200);
+  }
+
+  @Test
+  public void testPeekAndCloseBeforeEnd() throws Throwable {
+    Tuple[] results = newResults(100);
+    MappedSpoolingResultIterator scanner = newSpoolingIterator(results, 1,
+      QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES, 64);
+    assertEquals(1, spoolDirectory.getRoot().list().length);
+    assertEquals("r00000", Bytes.toString(CellUtil.cloneRow(scanner.peek().getValue(0))));
+    assertEquals("r00000", Bytes.toString(CellUtil.cloneRow(scanner.next().getValue(0))));
+    assertEquals("r00001", Bytes.toString(CellUtil.cloneRow(scanner.peek().getValue(0))));
+    scanner.close();
+    assertEquals(0, spoolDirectory.getRoot().list().length);
+  }
+
+  @Test(expected = SpoolTooBigToDiskException.class)
+  public void testFailToSpool() throws Throwable {
+    try {
+      newSpoolingIterator(newResults(2), 1, 0L, 1024);
+    } finally {
+      assertEquals(0, spoolDirectory.getRoot().list().length);
+    }
+  }
+}
@@ -31,12 +31,19 @@ import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Field;
 import java.sql.*;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.query.BaseConnectionlessQueryTest;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.util.PhoenixRuntime;
 import org.junit.Test;
 
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
@@ -224,6 +231,116 @@ public class PhoenixStatementTest extends BaseConnectionlessQueryTest {
     assertNull(ex.getUpdateCounts());
   }
 
+  private static List<String> executeUpsertBatch(String tableName, boolean fastPath)
+    throws SQLException {
+    Properties connectionProperties = new Properties();
+    connectionProperties.setProperty(QueryServices.BATCH_UPSERT_FAST_PATH_ENABLED,
+      Boolean.toString(fastPath));
+    try (Connection connection = DriverManager.getConnection(getUrl(), connectionProperties)) {
+      connection.setAutoCommit(false);
+      PreparedStatement stmt = connection
+        .prepareStatement("UPSERT INTO " + tableName + " (K, V1, V2, V3) VALUES (?, ?, 'c', ?)");
+      for (int i = 0; i < 5; i++) {
+        stmt.setString(1, "k" + (i % 4));
+        stmt.setInt(2, i);
+        stmt.setNull(3, Types.VARCHAR);
+        stmt.addBatch();
+      }
+      stmt.addBatch("UPSERT INTO " + tableName + " (K, V1) VALUES ('x', 10)");
+      stmt.setString(1, "y");
+      stmt.setInt(2, 11);
+      stmt.setString(3, "d");
+      stmt.addBatch();
+      int[] updateCounts = stmt.executeBatch();
+      assertEquals(7, updateCounts.length);
+      for (int updateCount : updateCounts) {
+        assertEquals(1, updateCount);
+      }
+      List<String> rows = Lists.newArrayList();
+      Iterator<Pair<byte[], List<Cell>>> iterator =
+        PhoenixRuntime.getUncommittedDataIterator(connection);
+      while (iterator.hasNext()) {
+        for (Cell cell : iterator.next().getSecond()) {
+          rows.add(Bytes.toStringBinary(CellUtil.cloneRow(cell)) + "/"
+            + Bytes.toStringBinary(CellUtil.cloneQualifier(cell)) + "/" + cell.getType() + "="
+            + Bytes.toStringBinary(CellUtil.cloneValue(cell)));
+        }
+      }
+      connection.rollback();
+      // the rows of the mutation state are not ordered
+      Collections.sort(rows);
+      return rows;
+    }
+  }
+
+  @Test
+  public void testExecuteBatchUpsertFastPath() throws Exception {
+    String tableName = generateUniqueName();
+    try (Connection connection = DriverManager.getConnection(getUrl())) {
+      connection.createStatement().execute("CREATE TABLE " + tableName
+        + " (K VARCHAR PRIMARY KEY, V1 INTEGER, V2 VARCHAR, V3 VARCHAR)");
+    }
+    List<String> expected = executeUpsertBatch(tableName, false);
+    assertTrue(expected.size() > 0);
+    assertEquals(expected, executeUpsertBatch(tableName, true));
+  }
+
+  /**
+   * Runs a batch whose third row does not fit its column, and returns the update counts of the
+   * BatchUpdateException followed by the uncommitted row keys
+   */
+  private static List<String> executeFailingUpsertBatch(String tableName, boolean fastPath)
+    throws SQLException {
+    Properties connectionProperties = new Properties();
+    connectionProperties.setProperty(QueryServices.BATCH_UPSERT_FAST_PATH_ENABLED,
+      Boolean.toString(fastPath));
+    try (Connection connection = DriverManager.getConnection(getUrl(), connectionProperties)) {
+      connection.setAutoCommit(false);
+      PreparedStatement stmt =
+        connection.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+      String[] values = { "ok", "ok", "too long", "ok" };
+      for (int i = 0; i < values.length; i++) {
+        stmt.setString(1, "k" + i);
+        stmt.setString(2, values[i]);
+        stmt.addBatch();
+      }
+      BatchUpdateException ex = assertThrows(BatchUpdateException.class, () -> stmt.executeBatch());
+      assertEquals(SQLExceptionCode.DATA_EXCEEDS_MAX_CAPACITY.getErrorCode(),
+        ((SQLException) ex.getCause()).getErrorCode());
+      List<String> result = Lists.newArrayList();
+      for (int updateCount : ex.getUpdateCounts()) {
+        result.add(Integer.toString(updateCount));
+      }
+      List<String> rows = Lists.newArrayList();
+      Iterator<Pair<byte[], List<Cell>>> iterator =
+        PhoenixRuntime.getUncommittedDataIterator(connection);
+      while (iterator.hasNext()) {
+        for (Cell cell : iterator.next().getSecond()) {
+          rows.add(Bytes.toStringBinary(CellUtil.cloneRow(cell)));
+        }
+      }
+      connection.rollback();
+      // the rows of the mutation state are not ordered
+      Collections.sort(rows);
+      result.addAll(rows);
+      return result;
+    }
+  }
+
+  @Test
+  public void testExecuteBatchUpsertFastPathWithFailedRow() throws Exception {
+    String tableName = generateUniqueName();
+    try (Connection connection = DriverManager.getConnection(getUrl())) {
+      connection.createStatement()
+        .execute("CREATE TABLE " + tableName + " (K VARCHAR PRIMARY KEY, V1 VARCHAR(2))");
+    }
+    List<String> expected = executeFailingUpsertBatch(tableName, false);
+    // the statements before the failed one are counted and their rows are kept
+    assertEquals(Integer.toString(Statement.EXECUTE_FAILED), expected.get(2));
+    assertTrue(expected.contains("k1"));
+    assertEquals(expected, executeFailingUpsertBatch(tableName, true));
+  }
+
   @Test
   public void testRecursiveClose() throws SQLException {
     Connection connection = DriverManager.getConnection(getUrl());
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.HashCache;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.apache.phoenix.util.TupleUtil;
+import org.iq80.snappy.Snappy;
+import org.junit.Test;
+
+public class HashCacheFactoryTest {
+  private static final byte[] CF = Bytes.toBytes("0");
+  private static final byte[] CQ = Bytes.toBytes("K");
+  private static final long MAX_MEMORY = 1024 * 1024;
+
+  private static final List<Expression> ON_EXPRESSIONS =
+    Collections.<Expression> singletonList(new KeyValueColumnExpression(new PDatum() {
+      @Override
+      public boolean isNullable() {
+        return false;
+      }
+
+      @Override
+      public PDataType getDataType() {
+        return PVarchar.INSTANCE;
+      }
+
+      @Override
+      public Integer getMaxLength() {
+        return null;
+      }
+
+      @Override
+      public Integer getScale() {
+        return null;
+      }
+
+      @Override
+      public SortOrder getSortOrder() {
+        return SortOrder.getDefault();
+      }
+    }, CF, CQ));
+
+  private static Tuple row(String rowKey, String joinKey) {
+    return new ResultTuple(Result.create(Collections.singletonList(new KeyValue(
+      Bytes.toBytes(rowKey), CF, CQ, Bytes.toBytes(joinKey)))));
+  }
+
+  // Serializes the build side rows the same way HashCacheClient does
+  private static ImmutableBytesWritable serialize(boolean singleValueOnly, Tuple... rows)
+    throws IOException {
+    TrustedByteArrayOutputStream baOut = new TrustedByteArrayOutputStream(1024);
+    DataOutputStream out = new DataOutputStream(baOut);
+    out.writeInt(ON_EXPRESSIONS.size());
+    for (Expression expression : ON_EXPRESSIONS) {
+      WritableUtils.writeVInt(out, ExpressionType.valueOf(expression).ordinal());
+      expression.write(out);
+    }
+    int exprSize = baOut.size() + Bytes.SIZEOF_INT;
+    out.writeInt(exprSize * (singleValueOnly ? -1 : 1));
+    out.writeInt(rows.length);
+    for (Tuple row : rows) {
+      TupleUtil.write(row, out);
+    }
+    out.flush();
+    byte[] compressed = new byte[Snappy.maxCompressedLength(baOut.size())];
+    int compressedSize = Snappy.compress(baOut.getBuffer(), 0, baOut.size(), compressed, 0);
+    return new ImmutableBytesWritable(compressed, 0, compressedSize);
+  }
+
+  private static List<Tuple> probe(HashCache cache, String joinKey) throws IOException {
+    return cache.get(TupleUtil.getConcatenatedValue(row("probe", joinKey), ON_EXPRESSIONS));
+  }
+
+  private static String rowKey(Tuple tuple) {
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    tuple.getKey(ptr);
+    return Bytes.toString(ptr.copyBytes());
+  }
+
+  @Test
+  public void testRowsAreGroupedByJoinKey() throws Exception {
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(MAX_MEMORY);
+    MemoryChunk chunk = memoryManager.allocate(0);
+    ImmutableBytesWritable cachePtr = serialize(false, row("r0", "a"), row("r1", "b"),
+      row("r2", "a"), row("r3", "c"), row("r4", "a"));
+    HashCache cache =
+      (HashCache) new HashCacheFactory().newCache(cachePtr, null, chunk, false, 0);
+
+    List<Tuple> tuples = probe(cache, "a");
+    assertEquals(3, tuples.size());
+    // Rows of a key keep the order in which they were sent
+    assertEquals("r0", rowKey(tuples.get(0)));
+    assertEquals("r2", rowKey(tuples.get(1)));
+    assertEquals("r4", rowKey(tuples.get(2)));
+    assertEquals(1, probe(cache, "b").size());
+    assertEquals("r3", rowKey(probe(cache, "c").get(0)));
+    assertNull(probe(cache, "d"));
+    assertTrue(chunk.getSize() > 0);
+
+    cache.close();
+    assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testTuplesAreMaterializedOnce() throws Exception {
+    ImmutableBytesWritable cachePtr =
+      serialize(false, row("r0", "a"), row("r1", "b"), row("r2", "a"));
+    HashCache cache = (HashCache) new HashCacheFactory().newCache(cachePtr, null,
+      new GlobalMemoryManager(MAX_MEMORY).allocate(0), false, 0);
+    List<Tuple> tuples = probe(cache, "a");
+    // Repeated accesses and later probes of the same key hand out the same tuples
+    assertSame(tuples.get(0), tuples.get(0));
+    assertSame(tuples.get(1), probe(cache, "a").get(1));
+    assertEquals("r2", rowKey(probe(cache, "a").get(1)));
+    cache.close();
+  }
+
+  @Test
+  public void testMaterializedTuplesAreAccounted() throws Exception {
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(MAX_MEMORY);
+    MemoryChunk chunk = memoryManager.allocate(0);
+    ImmutableBytesWritable cachePtr =
+      serialize(false, row("r0", "a"), row("r1", "b"), row("r2", "a"));
+    HashCache cache =
+      (HashCache) new HashCacheFactory().newCache(cachePtr, null, chunk, false, 0);
+    long builtSize = chunk.getSize();
+    List<Tuple> tuples = probe(cache, "a");
+    tuples.get(0);
+    long oneTupleSize = chunk.getSize() - builtSize;
+    assertTrue(oneTupleSize > 0);
+    // A kept tuple is accounted once, however often it is handed out
+    tuples.get(0);
+    probe(cache, "a").get(0);
+    assertEquals(builtSize + oneTupleSize, chunk.getSize());
+    tuples.get(1);
+    assertEquals(builtSize + 2 * oneTupleSize, chunk.getSize());
+    cache.close();
+    assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testTuplesAreNotKeptWithoutMemory() throws Exception {
+    GlobalMemoryManager memoryManager = new GlobalMemoryManager(MAX_MEMORY);
+    MemoryChunk chunk = memoryManager.allocate(0);
+    ImmutableBytesWritable cachePtr =
+      serialize(false, row("r0", "a"), row("r1", "b"), row("r2", "a"));
+    HashCache cache =
+      (HashCache) new HashCacheFactory().newCache(cachePtr, null, chunk, false, 0);
+    long builtSize = chunk.getSize();
+    MemoryChunk rest = memoryManager.allocate(memoryManager.getAvailableMemory());
+    List<Tuple> tuples = probe(cache, "a");
+    // Without memory left for them the tuples are materialized again on every access
+    assertNotSame(tuples.get(0), tuples.get(0));
+    assertEquals("r2", rowKey(tuples.get(1)));
+    assertEquals(builtSize, chunk.getSize());
+    rest.close();
+    cache.close();
+    assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testSingleValueOnlyRejectsDuplicateKeys() throws Exception {
+    ImmutableBytesWritable cachePtr =
+      serialize(true, row("r0", "a"), row("r1", "b"), row("r2", "a"));
+    HashCache cache = (HashCache) new HashCacheFactory().newCache(cachePtr, null,
+      new GlobalMemoryManager(MAX_MEMORY).allocate(0), false, 0);
+    assertEquals(1, probe(cache, "b").size());
+    try {
+      probe(cache, "a");
+      fail("Expected multiple rows for a single row subquery to be rejected");
+    } catch (IOException e) {
+      // expected
+    }
+    cache.close();
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.log;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QueryLoggerDisruptorTest {
+
+  @Test
+  public void testAllEventsSampledUpToHalfFullBuffer() {
+    for (int i = 0; i < 100; i++) {
+      assertTrue(QueryLoggerDisruptor.shouldSample(0, 1024));
+      assertTrue(QueryLoggerDisruptor.shouldSample(512, 1024));
+    }
+  }
+
+  @Test
+  public void testNoEventSampledIntoFullBuffer() {
+    for (int i = 0; i < 100; i++) {
+      assertFalse(QueryLoggerDisruptor.shouldSample(1024, 1024));
+    }
+  }
+
+  @Test
+  public void testShareOfSampledEventsShrinksWithFreeCapacity() {
+    int sampledAtThreeQuarters = 0;
+    int sampledNearlyFull = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (QueryLoggerDisruptor.shouldSample(768, 1024)) {
+        sampledAtThreeQuarters++;
+      }
+      if (QueryLoggerDisruptor.shouldSample(1000, 1024)) {
+        sampledNearlyFull++;
+      }
+    }
+    assertTrue(sampledAtThreeQuarters > 4000 && sampledAtThreeQuarters < 6000);
+    assertTrue(sampledNearlyFull < sampledAtThreeQuarters);
+  }
+}
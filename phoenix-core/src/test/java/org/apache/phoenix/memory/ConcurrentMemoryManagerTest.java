@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.junit.Test;
+
+public class ConcurrentMemoryManagerTest {
+
+  @Test
+  public void testOverMemoryLimit() throws Exception {
+    ConcurrentMemoryManager mm = new ConcurrentMemoryManager(250, 0, 0);
+    try {
+      mm.allocate(300);
+      fail();
+    } catch (InsufficientMemoryException e) { // expected
+    }
+    MemoryChunk c1 = mm.allocate(200);
+    try {
+      mm.allocate(100);
+      fail();
+    } catch (InsufficientMemoryException e) { // expected
+    }
+    MemoryChunk c2 = mm.allocate(10, 100);
+    assertEquals(50, c2.getSize());
+    c1.close();
+    c2.close();
+    assertEquals(mm.getMaxMemory(), mm.getAvailableMemory());
+  }
+
+  @Test
+  public void testAllocateFromReservation() throws Exception {
+    ConcurrentMemoryManager mm = new ConcurrentMemoryManager(1000, 100, 0);
+    MemoryChunk c1 = mm.allocate(10);
+    MemoryChunk c2 = mm.allocate(10);
+    c2.resize(50);
+    // The reservation of this thread does not count as used memory
+    assertEquals(940, mm.getAvailableMemory());
+    c1.close();
+    c2.close();
+    assertEquals(mm.getMaxMemory(), mm.getAvailableMemory());
+  }
+
+  @Test
+  public void testReclaimReservations() throws Exception {
+    final ConcurrentMemoryManager mm = new ConcurrentMemoryManager(1000, 500, 0);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // Leaves a reservation of 500 bytes behind on the other thread
+      MemoryChunk c1 = executor.submit(new Callable<MemoryChunk>() {
+        @Override
+        public MemoryChunk call() {
+          return mm.allocate(100);
+        }
+      }).get();
+      MemoryChunk c2 = mm.allocate(900);
+      assertEquals(0, mm.getAvailableMemory());
+      c1.close();
+      c2.close();
+      assertEquals(mm.getMaxMemory(), mm.getAvailableMemory());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReservationsDoNotGrowWithThreads() throws Exception {
+    final ConcurrentMemoryManager mm = new ConcurrentMemoryManager(100000, 100, 0);
+    int nReservations = mm.getReservationCount();
+    // Each short lived thread leaves its unused reservation behind in a shared stripe
+    for (int i = 0; i < 4 * nReservations; i++) {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            mm.allocate(10).close();
+            return null;
+          }
+        }).get();
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    assertEquals(nReservations, mm.getReservationCount());
+    assertEquals(mm.getMaxMemory(), mm.getAvailableMemory());
+    // At most one reservation per stripe is held back from the pool
+    MemoryChunk c1 = mm.allocate(mm.getMaxMemory() - nReservations * 100);
+    c1.close();
+    assertEquals(mm.getMaxMemory(), mm.getAvailableMemory());
+  }
+
+  @Test
+  public void testWaitForMemory() throws Exception {
+    final ConcurrentMemoryManager mm = new ConcurrentMemoryManager(100, 0, 60000);
+    MemoryChunk c1 = mm.allocate(100);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<MemoryChunk> future = executor.submit(new Callable<MemoryChunk>() {
+        @Override
+        public MemoryChunk call() {
+          return mm.allocate(50);
+        }
+      });
+      c1.close();
+      MemoryChunk c2 = future.get(60, TimeUnit.SECONDS);
+      assertEquals(50, c2.getSize());
+      c2.close();
+      assertEquals(mm.getMaxMemory(), mm.getAvailableMemory());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWaitForMemoryTimesOut() throws Exception {
+    ConcurrentMemoryManager mm = new ConcurrentMemoryManager(100, 0, 10);
+    MemoryChunk c1 = mm.allocate(100);
+    try {
+      mm.allocate(50);
+      fail();
+    } catch (InsufficientMemoryException e) { // expected
+    }
+    c1.close();
+    assertEquals(mm.getMaxMemory(), mm.getAvailableMemory());
+  }
+
+  @Test
+  public void testConcurrentAllocations() throws Exception {
+    // Small enough for threads to reclaim reservations and wait for each other
+    int nThreads = 8;
+    final ConcurrentMemoryManager mm = new ConcurrentMemoryManager(nThreads * 1024, 1024, 60000);
+    ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < nThreads; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int j = 0; j < 10000; j++) {
+              MemoryChunk chunk = mm.allocate(1 + j % 512);
+              chunk.resize(1 + j % 1024);
+              chunk.close();
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+      assertEquals(mm.getMaxMemory(), mm.getAvailableMemory());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.optimize;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_PLAN_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_PLAN_CACHE_MISS_COUNTER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.phoenix.schema.PName;
+import org.apache.phoenix.schema.PNameFactory;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableKey;
+import org.junit.Test;
+
+public class QueryPlanCacheTest {
+  private static final String SQL = "SELECT K FROM T WHERE V = :1";
+  private static final PName TENANT = PNameFactory.newName("tenant1");
+
+  private static PTable table(String name, Long lastDDLTimestamp, PTable... indexes) {
+    PTable table = mock(PTable.class);
+    when(table.getName()).thenReturn(PNameFactory.newName(name));
+    when(table.getLastDDLTimestamp()).thenReturn(lastDDLTimestamp);
+    when(table.getAncestorLastDDLTimestampMap())
+      .thenReturn(Collections.<PTableKey, Long> emptyMap());
+    when(table.getIndexes()).thenReturn(Arrays.asList(indexes));
+    return table;
+  }
+
+  @Test
+  public void testCachedPlanTable() {
+    QueryPlanCache cache = new QueryPlanCache(10);
+    PTable index = table("I", 5L);
+    PTable dataTable = table("T", 10L, index);
+    long hits = GLOBAL_QUERY_PLAN_CACHE_HIT_COUNTER.getMetric().getValue();
+    long misses = GLOBAL_QUERY_PLAN_CACHE_MISS_COUNTER.getMetric().getValue();
+    assertNull(cache.get(TENANT, SQL, dataTable));
+    cache.put(TENANT, SQL, dataTable, index);
+    assertSame(index, cache.get(TENANT, SQL, dataTable));
+    // Plans are cached per tenant
+    assertNull(cache.get(null, SQL, dataTable));
+    assertNull(cache.get(PNameFactory.newName("tenant2"), SQL, dataTable));
+    cache.put(null, SQL, dataTable, dataTable);
+    assertSame(dataTable, cache.get(null, SQL, dataTable));
+    assertSame(index, cache.get(TENANT, SQL, dataTable));
+    assertEquals(2, cache.size());
+    assertEquals(hits + 3, GLOBAL_QUERY_PLAN_CACHE_HIT_COUNTER.getMetric().getValue());
+    assertEquals(misses + 3, GLOBAL_QUERY_PLAN_CACHE_MISS_COUNTER.getMetric().getValue());
+  }
+
+  @Test
+  public void testEntryIsDroppedWhenDataTableChanges() {
+    QueryPlanCache cache = new QueryPlanCache(10);
+    PTable index = table("I", 5L);
+    cache.put(TENANT, SQL, table("T", 10L, index), index);
+    assertNull(cache.get(TENANT, SQL, table("T", 11L, index)));
+    assertEquals(0, cache.size());
+    // The entry is gone even though the table it was cached for is back
+    assertNull(cache.get(TENANT, SQL, table("T", 10L, index)));
+  }
+
+  @Test
+  public void testEntryIsDroppedWhenIndexChanges() {
+    QueryPlanCache cache = new QueryPlanCache(10);
+    cache.put(TENANT, SQL, table("T", 10L, table("I", 5L)), table("I", 5L));
+    assertNull(cache.get(TENANT, SQL, table("T", 10L, table("I", 6L))));
+    assertEquals(0, cache.size());
+    cache.put(TENANT, SQL, table("T", 10L, table("I", 5L)), table("I", 5L));
+    // The index was dropped
+    assertNull(cache.get(TENANT, SQL, table("T", 10L)));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testTablesWithoutDDLTimestampAreNotCached() {
+    QueryPlanCache cache = new QueryPlanCache(10);
+    PTable dataTable = table("T", null);
+    cache.put(TENANT, SQL, dataTable, dataTable);
+    assertEquals(0, cache.size());
+    PTable index = table("I", null);
+    cache.put(TENANT, SQL, table("T", 10L, index), index);
+    assertEquals(0, cache.size());
+  }
+}
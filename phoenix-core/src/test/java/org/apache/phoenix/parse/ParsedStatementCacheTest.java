@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.parse;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ParsedStatementCacheTest {
+
+  @Test
+  public void testGetAndPut() throws Exception {
+    ParsedStatementCache cache = new ParsedStatementCache(10);
+    String sql = "SELECT a FROM t WHERE k = ?";
+    long misses = GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER.getMetric().getValue();
+    long hits = GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER.getMetric().getValue();
+    assertNull(cache.get(sql));
+    BindableStatement statement = new SQLParser(sql).parseStatement();
+    cache.put(sql, statement);
+    assertSame(statement, cache.get(sql));
+    // The SQL text is the key, so a differently formatted statement is a different entry
+    assertNull(cache.get("SELECT a FROM t WHERE k=?"));
+    assertEquals(misses + 2, GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER.getMetric().getValue());
+    assertEquals(hits + 1, GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER.getMetric().getValue());
+  }
+
+  @Test
+  public void testMaxSize() throws Exception {
+    ParsedStatementCache cache = new ParsedStatementCache(2);
+    for (int i = 0; i < 10; i++) {
+      String sql = "SELECT a FROM t WHERE k = " + i;
+      cache.put(sql, new SQLParser(sql).parseStatement());
+    }
+    assertEquals(2, cache.size());
+  }
+}
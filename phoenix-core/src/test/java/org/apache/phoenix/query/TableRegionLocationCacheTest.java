@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class TableRegionLocationCacheTest {
+  private static final TableName TABLE = TableName.valueOf("T");
+  private static final ServerName SERVER = ServerName.valueOf("host", 16020, 1L);
+
+  private static HRegionLocation region(String startKey, String endKey) {
+    return region(startKey, endKey, 0);
+  }
+
+  private static HRegionLocation region(String startKey, String endKey, int replicaId) {
+    return new HRegionLocation(RegionInfoBuilder.newBuilder(TABLE)
+      .setStartKey(startKey == null ? HConstants.EMPTY_START_ROW : Bytes.toBytes(startKey))
+      .setEndKey(endKey == null ? HConstants.EMPTY_END_ROW : Bytes.toBytes(endKey))
+      .setReplicaId(replicaId).build(), SERVER);
+  }
+
+  private static HRegionLocation splitParent(String startKey, String endKey) {
+    return new HRegionLocation(RegionInfoBuilder.newBuilder(TABLE)
+      .setStartKey(startKey == null ? HConstants.EMPTY_START_ROW : Bytes.toBytes(startKey))
+      .setEndKey(endKey == null ? HConstants.EMPTY_END_ROW : Bytes.toBytes(endKey)).setSplit(true)
+      .setOffline(true).build(), SERVER);
+  }
+
+  private static RegionLocator locator(HRegionLocation... locations) throws Exception {
+    RegionLocator locator = mock(RegionLocator.class);
+    when(locator.getAllRegionLocations()).thenReturn(Lists.newArrayList(locations));
+    return locator;
+  }
+
+  private static byte[] key(String key) {
+    return key == null ? HConstants.EMPTY_START_ROW : Bytes.toBytes(key);
+  }
+
+  @Test
+  public void testOverlappingRegions() throws Exception {
+    TableRegionLocationCache cache = new TableRegionLocationCache(Long.MAX_VALUE);
+    RegionLocator locator = locator(region("c", "f"), region(null, "c"), region("f", null),
+      region("c", "f", 1));
+    List<HRegionLocation> all = cache.getTableRegions(TABLE, key(null), key(null), locator);
+    assertEquals(3, all.size());
+    assertEquals("c", Bytes.toString(all.get(1).getRegion().getStartKey()));
+
+    List<HRegionLocation> regions = cache.getTableRegions(TABLE, key("d"), key("e"), locator);
+    assertEquals(1, regions.size());
+    assertEquals("c", Bytes.toString(regions.get(0).getRegion().getStartKey()));
+
+    regions = cache.getTableRegions(TABLE, key("a"), key("f"), locator);
+    assertEquals(2, regions.size());
+    regions = cache.getTableRegions(TABLE, key("f"), key(null), locator);
+    assertEquals(1, regions.size());
+    assertEquals("f", Bytes.toString(regions.get(0).getRegion().getStartKey()));
+    // All the lookups are served by the locations loaded by the first one
+    verify(locator, times(1)).getAllRegionLocations();
+  }
+
+  @Test
+  public void testInvalidateReloadsLocations() throws Exception {
+    TableRegionLocationCache cache = new TableRegionLocationCache(Long.MAX_VALUE);
+    RegionLocator locator = locator(region(null, "c"), region("c", null));
+    cache.getTableRegions(TABLE, key(null), key(null), locator);
+    cache.invalidate(TABLE);
+    assertEquals(1, cache.getVersion(TABLE));
+    cache.getTableRegions(TABLE, key(null), key(null), locator);
+    cache.getTableRegions(TABLE, key(null), key(null), locator);
+    verify(locator, times(2)).getAllRegionLocations();
+  }
+
+  @Test
+  public void testExpiredLocationsAreReloaded() throws Exception {
+    TableRegionLocationCache cache = new TableRegionLocationCache(0);
+    RegionLocator locator = locator(region(null, null));
+    cache.getTableRegions(TABLE, key(null), key(null), locator);
+    cache.getTableRegions(TABLE, key(null), key(null), locator);
+    verify(locator, times(2)).getAllRegionLocations();
+  }
+
+  @Test
+  public void testIncompleteRegionsAreNotCached() throws Exception {
+    TableRegionLocationCache cache = new TableRegionLocationCache(Long.MAX_VALUE);
+    // The daughter regions of a split are missing
+    RegionLocator locator = locator(region(null, "c"), region("f", null));
+    assertNull(cache.getTableRegions(TABLE, key(null), key(null), locator));
+    assertNull(cache.getTableRegions(TABLE, key(null), key(null), locator));
+    verify(locator, times(2)).getAllRegionLocations();
+  }
+
+  @Test
+  public void testSplitParentIsSkipped() throws Exception {
+    TableRegionLocationCache cache = new TableRegionLocationCache(Long.MAX_VALUE);
+    // The parent region c-f was split into c-d and d-f but is still listed with its daughters
+    RegionLocator locator = locator(region(null, "c"), splitParent("c", "f"), region("c", "d"),
+      region("d", "f"), region("f", null));
+    List<HRegionLocation> all = cache.getTableRegions(TABLE, key(null), key(null), locator);
+    assertEquals(4, all.size());
+    assertEquals("d", Bytes.toString(all.get(1).getRegion().getEndKey()));
+    assertEquals("d", Bytes.toString(all.get(2).getRegion().getStartKey()));
+
+    List<HRegionLocation> regions = cache.getTableRegions(TABLE, key("c"), key("e"), locator);
+    assertEquals(2, regions.size());
+    assertFalse(regions.get(0).getRegion().isSplitParent());
+    assertEquals("c", Bytes.toString(regions.get(0).getRegion().getStartKey()));
+    assertEquals("d", Bytes.toString(regions.get(1).getRegion().getStartKey()));
+    verify(locator, times(1)).getAllRegionLocations();
+  }
+}
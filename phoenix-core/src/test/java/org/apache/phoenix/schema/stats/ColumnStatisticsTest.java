@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.types.PInteger;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+public class ColumnStatisticsTest {
+  private static final int BUCKETS = 32;
+
+  private static ColumnStatistics collect(int from, int to, long nulls) {
+    ColumnStatistics.Builder builder = new ColumnStatistics.Builder(BUCKETS);
+    for (int i = from; i < to; i++) {
+      builder.addValue(PInteger.INSTANCE.toBytes(i));
+    }
+    return builder.build(to - from + nulls);
+  }
+
+  private static double lessThan(ColumnStatistics stats, int value) {
+    return stats.getRangeSelectivity(null, true, PInteger.INSTANCE.toBytes(value), false);
+  }
+
+  @Test
+  public void testCollectedStatistics() {
+    ColumnStatistics stats = collect(0, 1000, 100);
+    assertEquals(1100, stats.getRowCount());
+    assertEquals(100, stats.getNullCount());
+    assertEquals(1000, stats.getDistinctCount(), 50);
+    assertEquals(BUCKETS, stats.getBuckets().size());
+    double nonNullFraction = 1000.0 / 1100;
+    assertEquals(1 - nonNullFraction, stats.getNullFraction(), 0.0001);
+    assertEquals(nonNullFraction / 1000, stats.getEqualsSelectivity(), 0.0001);
+    assertEquals(0.5 * nonNullFraction, lessThan(stats, 500), 0.05);
+    assertEquals(0.1 * nonNullFraction, lessThan(stats, 100), 0.05);
+    assertEquals(nonNullFraction, lessThan(stats, 2000), 0.0001);
+    assertEquals(stats.getEqualsSelectivity(), lessThan(stats, -1), 0.0001);
+  }
+
+  @Test
+  public void testTooFewValuesForHistogram() {
+    ColumnStatistics stats = collect(0, 3, 0);
+    assertTrue(stats.getBuckets().isEmpty());
+    assertEquals(ColumnStatistics.DEFAULT_RANGE_SELECTIVITY, lessThan(stats, 1), 0.0001);
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    Map<ImmutableBytesPtr, ColumnStatistics> columns = Maps.newHashMap();
+    columns.put(new ImmutableBytesPtr(Bytes.toBytes("A")), collect(0, 1000, 10));
+    columns.put(new ImmutableBytesPtr(Bytes.toBytes("B")), collect(0, 3, 0));
+    byte[] bytes = ColumnStatistics.toBytes(columns);
+    byte[] padded = new byte[bytes.length + 2];
+    System.arraycopy(bytes, 0, padded, 1, bytes.length);
+    Map<ImmutableBytesPtr, ColumnStatistics> read =
+      ColumnStatistics.fromBytes(padded, 1, bytes.length);
+    assertEquals(columns.keySet(), read.keySet());
+    for (Map.Entry<ImmutableBytesPtr, ColumnStatistics> entry : columns.entrySet()) {
+      ColumnStatistics expected = entry.getValue();
+      ColumnStatistics actual = read.get(entry.getKey());
+      assertEquals(expected.getRowCount(), actual.getRowCount());
+      assertEquals(expected.getNullCount(), actual.getNullCount());
+      assertEquals(expected.getDistinctCount(), actual.getDistinctCount());
+      assertEquals(expected.getBuckets(), actual.getBuckets());
+    }
+  }
+
+  @Test
+  public void testMergeRegions() {
+    ColumnStatistics stats = collect(0, 500, 50).merge(collect(500, 1000, 50));
+    assertEquals(1100, stats.getRowCount());
+    assertEquals(100, stats.getNullCount());
+    assertEquals(1000, stats.getDistinctCount(), 50);
+    assertEquals(2 * BUCKETS, stats.getBuckets().size());
+    assertEquals(0.5 * 1000.0 / 1100, lessThan(stats, 500), 0.05);
+  }
+
+  @Test
+  public void testMergedBucketsAreBounded() {
+    ColumnStatistics stats = collect(0, 100, 0);
+    for (int i = 1; i < 20; i++) {
+      stats = stats.merge(collect(i * 100, (i + 1) * 100, 0));
+    }
+    assertTrue(stats.getBuckets().size() <= ColumnStatistics.MAX_MERGED_BUCKETS);
+    assertEquals(2000, stats.getRowCount());
+    assertEquals(0.5, lessThan(stats, 1000), 0.05);
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.execute.visitor.RowCountVisitor;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.NotExpression;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.ConnectionlessQueryServicesImpl;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableKey;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Estimates the selectivity of the filters compiled for queries over a table with known column
+ * statistics: A holds the values 0 to 999 and 100 nulls, B holds 10 distinct values evenly.
+ */
+public class SelectivityEstimatorTest extends BaseConnectionlessQueryTest {
+  private static final int BUCKETS = 32;
+  private static final double DELTA = 0.000001;
+
+  private PhoenixConnection conn;
+  private String tableName;
+  private ColumnStatistics statsA;
+  private ColumnStatistics statsB;
+  private QueryPlan plan;
+
+  @Before
+  public void createTable() throws Exception {
+    conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))
+      .unwrap(PhoenixConnection.class);
+    tableName = generateUniqueName();
+    conn.createStatement().execute("CREATE TABLE " + tableName
+      + " (K VARCHAR PRIMARY KEY, A INTEGER, B INTEGER, C INTEGER)");
+    ColumnStatistics.Builder a = new ColumnStatistics.Builder(BUCKETS);
+    ColumnStatistics.Builder b = new ColumnStatistics.Builder(BUCKETS);
+    for (int i = 0; i < 1000; i++) {
+      a.addValue(PInteger.INSTANCE.toBytes(i));
+      b.addValue(PInteger.INSTANCE.toBytes(i % 10));
+    }
+    statsA = a.build(1100);
+    statsB = b.build(1000);
+    PTable table = conn.getTable(new PTableKey(null, tableName));
+    GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+    builder.trackGuidePost(new ImmutableBytesWritable(Bytes.toBytes("k")), 110000, 1100,
+      System.currentTimeMillis());
+    builder.trackColumnStatistics(
+      new ImmutableBytesPtr(table.getColumnForColumnName("A").getColumnQualifierBytes()), statsA);
+    builder.trackColumnStatistics(
+      new ImmutableBytesPtr(table.getColumnForColumnName("B").getColumnQualifierBytes()), statsB);
+    ((ConnectionlessQueryServicesImpl) conn.getQueryServices()).addTableStats(
+      new GuidePostsKey(table.getPhysicalName().getBytes(),
+        QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES),
+      builder.build());
+  }
+
+  @After
+  public void closeConnection() throws Exception {
+    conn.close();
+  }
+
+  // Compiles a query filtered by the condition and returns the expression of its scan filter
+  private Expression where(String condition) throws SQLException {
+    plan = conn.createStatement().unwrap(PhoenixStatement.class)
+      .optimizeQuery("SELECT K FROM " + tableName + " WHERE " + condition);
+    return ((BooleanExpressionFilter) RowCountVisitor
+      .stripSkipScanFilter(plan.getContext().getScan().getFilter())).getExpression();
+  }
+
+  private Double estimate(Expression expression) {
+    return new SelectivityEstimator(plan.getContext()).estimate(expression);
+  }
+
+  private Double estimate(String condition) throws SQLException {
+    return estimate(where(condition));
+  }
+
+  @Test
+  public void testEquality() throws Exception {
+    assertEquals(1000, statsA.getDistinctCount(), 50);
+    assertEquals(10, statsB.getDistinctCount(), 1);
+    assertEquals(statsA.getEqualsSelectivity(), estimate("A = 5"), DELTA);
+    assertEquals(statsA.getEqualsSelectivity(), estimate("5 = A"), DELTA);
+    assertEquals(0.1, estimate("B = 3"), 0.01);
+    assertEquals(1 - statsB.getEqualsSelectivity(), estimate("B != 3"), DELTA);
+    // Nulls are neither equal nor unequal to any value
+    assertEquals(1 - 100.0 / 1100 - statsA.getEqualsSelectivity(), estimate("A != 5"), DELTA);
+  }
+
+  @Test
+  public void testRange() throws Exception {
+    double nonNullFraction = 1000.0 / 1100;
+    assertEquals(0.5 * nonNullFraction, estimate("A < 500"), 0.05);
+    assertEquals(0.5 * nonNullFraction, estimate("A >= 500"), 0.05);
+    assertEquals(0.1 * nonNullFraction, estimate("A <= 100"), 0.05);
+    assertEquals(0.1 * nonNullFraction, estimate("100 > A"), 0.05);
+    assertEquals(nonNullFraction, estimate("A > -1"), 0.05);
+    // Out of the histogram bounds
+    assertEquals(statsA.getEqualsSelectivity(), estimate("A > 5000"), DELTA);
+  }
+
+  @Test
+  public void testIsNull() throws Exception {
+    assertEquals(100.0 / 1100, estimate("A IS NULL"), DELTA);
+    assertEquals(1000.0 / 1100, estimate("A IS NOT NULL"), DELTA);
+    assertEquals(0, estimate("B IS NULL"), DELTA);
+  }
+
+  @Test
+  public void testInList() throws Exception {
+    assertEquals(3 * statsA.getEqualsSelectivity(), estimate("A IN (1, 2, 3)"), DELTA);
+    // The values of an IN list never select more than the non null rows
+    assertEquals(1, estimate("B IN (0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11)"), DELTA);
+  }
+
+  @Test
+  public void testAndOr() throws Exception {
+    double a = estimate("A < 500");
+    double b = estimate("B = 3");
+    assertEquals(a * b, estimate("A < 500 AND B = 3"), DELTA);
+    assertEquals(1 - (1 - a) * (1 - b), estimate("A < 500 OR B = 3"), DELTA);
+    assertEquals((1 - (1 - a) * (1 - b)) * b, estimate("(A < 500 OR B = 3) AND B = 4"), DELTA);
+  }
+
+  @Test
+  public void testNot() throws Exception {
+    double b = estimate("B = 3");
+    assertEquals(1 - b, estimate(new NotExpression(where("B = 3"))), DELTA);
+    double or = estimate("A = 5 OR B = 3");
+    assertEquals(1 - or, estimate(new NotExpression(where("A = 5 OR B = 3"))), DELTA);
+  }
+
+  @Test
+  public void testUnknownSelectivity() throws Exception {
+    // C has no statistics
+    assertNull(estimate("C = 1"));
+    assertNull(estimate("A = 5 OR C = 1"));
+    // Conjuncts of unknown selectivity are ignored
+    assertEquals(statsA.getEqualsSelectivity(), estimate("A = 5 AND C = 1"), DELTA);
+    // Columns are not compared with a constant
+    assertNull(estimate("A = B"));
+  }
+}
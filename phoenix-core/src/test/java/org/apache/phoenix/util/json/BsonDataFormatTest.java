@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Types;
+import org.bson.RawBsonDocument;
+import org.junit.Test;
+
+public class BsonDataFormatTest {
+  private static final String JSON = "{\"type\": 1, \"name\": \"x\", \"ratio\": 1.5, "
+    + "\"info\": {\"address\": {\"town\": \"Bristol\"}, \"tags\": [\"a\", \"b\"], "
+    + "\"active\": true, \"empty\": null}}";
+
+  private final JsonDataFormat format =
+    JsonDataFormatFactory.getJsonDataFormat(JsonDataFormatFactory.DataFormat.BSON);
+  private final RawBsonDocument document = RawBsonDocument.parse(JSON);
+
+  private void assertSameAsPathString(String path) {
+    Object value = format.readValue(document, format.compilePath(path));
+    assertEquals(format.getValue(document, path), format.toJavaValue(value));
+    assertEquals(format.getValueType(document, path), format.getSqlType(value));
+  }
+
+  @Test
+  public void testCompiledPathMatchesPathString() {
+    for (String path : new String[] { "$.type", "$.name", "$.ratio", "$.info", "$.info.tags",
+      "$.info.tags[1]", "$.info.address.town", "$.info.active", "$.info.empty", "$.missing",
+      "$.info.tags[5]", "$.name.missing" }) {
+      assertSameAsPathString(path);
+    }
+  }
+
+  @Test
+  public void testReadValueTypes() {
+    Object compiledPath = format.compilePath("$.info.address.town");
+    Object value = format.readValue(document, compiledPath);
+    assertEquals("Bristol", format.toJavaValue(value));
+    assertEquals(Types.VARCHAR, format.getSqlType(value));
+    // The same compiled path can be used for other documents
+    value = format.readValue(RawBsonDocument.parse("{\"info\": {\"address\": {\"town\": 7}}}"),
+      compiledPath);
+    assertEquals(7, format.toJavaValue(value));
+    assertEquals(Types.INTEGER, format.getSqlType(value));
+
+    value = format.readValue(document, format.compilePath("$.info.tags"));
+    assertEquals(Types.ARRAY, format.getSqlType(value));
+    assertEquals("[\"a\", \"b\"]", format.toJavaValue(value));
+
+    value = format.readValue(document, format.compilePath("$.missing.town"));
+    assertNull(format.toJavaValue(value));
+    assertEquals(Types.NULL, format.getSqlType(value));
+  }
+
+  @Test
+  public void testIsPathValid() {
+    assertTrue(format.isPathValid(document, "$.info.address"));
+    assertTrue(format.isPathValid(document, format.compilePath("$.info.tags[0]")));
+    assertTrue(format.isPathValid(document, format.compilePath("$.info.empty")));
+    assertFalse(format.isPathValid(document, "$.info.missing"));
+    assertFalse(format.isPathValid(document, format.compilePath("$.info.address.town.x")));
+  }
+}